@@ -76,14 +76,28 @@ public class AutoModeSelector
     {
         String selectedModeName = SmartDashboard.getString(SELECTED_AUTO_MODE_DASHBOARD_KEY, "NO SELECTED MODE!!!!");
         Logger.notice("Auto mode name " + selectedModeName);
+        AutoModeBase mode = createAutoMode(selectedModeName);
+        if (mode == null)
+        {
+            Logger.error("AutoModeSelector failed to select auto mode: " + selectedModeName);
+            return mDefaultMode.mCreator.get();
+        }
+        return mode;
+    }
+
+    /**
+     * @return a new instance of the mode with this dashboard name, or null if
+     *         there isn't one (used by the simulators, which have no dashboard)
+     */
+    public static AutoModeBase createAutoMode(String dashboardName)
+    {
         for (AutoModeCreator mode : mAllModes)
         {
-            if (mode.mDashboardName.equals(selectedModeName))
+            if (mode.mDashboardName.equals(dashboardName))
             {
                 return mode.mCreator.get();
             }
         }
-        Logger.error("AutoModeSelector failed to select auto mode: " + selectedModeName);
-        return mDefaultMode.mCreator.get();
+        return null;
     }
 }
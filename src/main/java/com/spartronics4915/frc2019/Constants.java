@@ -23,6 +23,20 @@ public class Constants
 
     public static final double kLooperDt = 0.01;
 
+    // Fan readPeriodicInputs out to a thread pool, for subsystems that opt in
+    // with hasAtomicInputSnapshot; those that miss the deadline keep last
+    // cycle's inputs and are flagged stale
+    public static final boolean kParallelInputReads = false;
+    public static final int kInputReadThreads = 2;
+    public static final double kInputReadDeadline = 0.004; // Seconds
+
+    // Step auto mode actions in the enabled Looper's tick (AutoModeLoop)
+    // rather than polling them from a thread every 20 ms
+    public static final boolean kRunAutoInLooper = true;
+
+    // How often the Looper watchdog grabs a stack while a cycle is overrunning
+    public static final double kLoopWatchdogSamplePeriod = 0.002; // Seconds
+
     /**** Careful! Measurement units are in millimeters ****/
     public enum ScorableLandmark
     {
@@ -127,6 +141,11 @@ public class Constants
     public static final double kPathLookaheadTime = 0.4; // seconds to look ahead along the path for steering
     public static final double kPathMinLookaheadDistance = 24.0; // inches
 
+    // Velocity/acceleration estimation (see KinematicFilter); higher is smoother but laggier
+    public static final double kStateEstimatorSmoothing = 0.6; // wheel distances and heading
+    public static final double kPathFollowerAccelSmoothing = 0.5; // Ramsete commanded velocity
+    public static final double kCharacterizationAccelSmoothing = 0.7; // wheel velocity during characterization
+
     // PID gains for drive velocity loop (LOW GEAR)
     // Units: setpoint, error, and output are in ticks per second.
     public static final int kPositionPIDSlot = 0; // for compat with 2018
@@ -153,7 +172,19 @@ public class Constants
     public static final double kDriveVisionHeightKp = 40.0; // ft/s
     public static final double kVisionTargetMaxStaleTime = 0.5;
     public static final String kVisionSelectedIndexKey = "Vision/selectedIdx";
-    public static final int kMaxVisionTargets = 2;
+    public static final int kMaxVisionTargets = 4; // Per frame; the legacy double array format only fits 2
+    public static final double kVisionCameraHalfFOV = Math.toRadians(35.0); // Landmarks outside this can't be the one we saw
+    public static final double kVisionMaxTargetSkew = Math.toRadians(60.0); // Targets viewed more obliquely won't solve
+    public static final int kVisionUpdateBufferSize = 10; // Per VisionUpdateManager
+    // Target tracking (see VisionTargetTracker), inches and seconds
+    public static final int kVisionMaxTrackedTargets = 8;
+    public static final double kVisionTrackGateDistance = 18.0; // Detections farther than this from a track are new targets
+    public static final double kVisionTrackTimeout = 1.0;
+    public static final int kVisionTrackMinHits = 3; // Frames before we trust a track
+    public static final double kVisionTrackMeasurementVariance = 4.0; // in^2
+    public static final double kVisionTrackProcessVariance = 4.0; // in^2/s, mostly odometry drift
+    public static final double kVisionTrackHeadingMeasurementVariance = 0.01; // Unit circle components
+    public static final double kVisionTrackHeadingProcessVariance = 0.01; // Per second
     public static final Pose2d kReverseVisionCameraOffset;
 
     public static final double kDriveVoltageRampRate = 0.0;
@@ -5,4 +5,17 @@ package com.spartronics4915.frc2019;
 public interface IVisionUpdate
 {
     boolean isEmpty();
-}
\ No newline at end of file
+
+    /**
+     * @return FPGA timestamp of the frame, used to order buffered updates
+     */
+    double getFrameCapturedTime();
+
+    /**
+     * @return the coprocessor's frame counter, or 0 if the format doesn't have one
+     */
+    default int getFrameId()
+    {
+        return 0;
+    }
+}
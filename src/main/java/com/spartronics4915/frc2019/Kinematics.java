@@ -1,5 +1,6 @@
 package com.spartronics4915.frc2019;
 
+import com.spartronics4915.lib.geometry.MutablePose2d;
 import com.spartronics4915.lib.geometry.Pose2d;
 import com.spartronics4915.lib.geometry.Rotation2d;
 import com.spartronics4915.lib.geometry.Twist2d;
@@ -38,7 +39,18 @@ public class Kinematics
     {
         final double dx = (left_wheel_delta + right_wheel_delta) / 2.0;
         final double dy = 0.0;
-        return new Twist2d(dx, dy, prev_heading.inverse().rotateBy(current_heading).getRadians());
+        return new Twist2d(dx, dy, headingDelta(prev_heading, current_heading));
+    }
+
+    /**
+     * prev_heading.inverse().rotateBy(current_heading).getRadians(), without
+     * the intermediate Rotation2ds
+     */
+    public static double headingDelta(Rotation2d prev_heading, Rotation2d current_heading)
+    {
+        final double c = prev_heading.cos() * current_heading.cos() + prev_heading.sin() * current_heading.sin();
+        final double s = prev_heading.cos() * current_heading.sin() - prev_heading.sin() * current_heading.cos();
+        return Math.atan2(s, c);
     }
 
     /**
@@ -49,4 +61,12 @@ public class Kinematics
     {
         return current_pose.transformBy(Pose2d.exp(forward_kinematics));
     }
+
+    /**
+     * Same as above, but updates current_pose in place.
+     */
+    public static MutablePose2d integrateForwardKinematics(MutablePose2d current_pose, Twist2d forward_kinematics)
+    {
+        return current_pose.transformByExp(forward_kinematics.dx, forward_kinematics.dy, forward_kinematics.dtheta);
+    }
 }
@@ -0,0 +1,133 @@
+package com.spartronics4915.frc2019;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One frame of solvePNP results from a vision coprocessor, in a reusable slot.
+ *
+ * The coprocessor can publish this as a raw NetworkTables entry instead of a
+ * double array. All fields are big-endian (network order):
+ *
+ * <pre>
+ * offset  size  field
+ * 0       1     version, currently 1
+ * 1       1     target count, n
+ * 2       4     frame id (int, increments per frame)
+ * 6       4     latency (float, seconds from capture to publish)
+ * 10      12n   per target: x, y (float, inches), rotation (float, degrees)
+ * </pre>
+ *
+ * That's 22 bytes for one target versus 32 as doubles, and the frame id lets
+ * us notice dropped frames. Targets past the slot's capacity are ignored.
+ */
+public class PNPFrame
+{
+
+    public static final byte kVersion = 1;
+    public static final int kHeaderBytes = 10;
+    public static final int kTargetBytes = 12;
+
+    public int frameId;
+    public double latency;
+    public int targetCount;
+    public final double[] x, y, rotationDegrees;
+
+    public PNPFrame()
+    {
+        this(Constants.kMaxVisionTargets);
+    }
+
+    public PNPFrame(int capacity)
+    {
+        x = new double[capacity];
+        y = new double[capacity];
+        rotationDegrees = new double[capacity];
+    }
+
+    public int getCapacity()
+    {
+        return x.length;
+    }
+
+    /**
+     * Decodes a raw record into this frame, without allocating.
+     *
+     * @return false (and an empty frame) if the record is malformed or from an
+     *         unknown protocol version
+     */
+    public boolean decode(byte[] raw)
+    {
+        targetCount = 0;
+        if (raw == null || raw.length < kHeaderBytes || raw[0] != kVersion)
+            return false;
+
+        final int count = raw[1] & 0xFF;
+        if (raw.length < kHeaderBytes + count * kTargetBytes)
+            return false;
+
+        frameId = readInt(raw, 2);
+        latency = Float.intBitsToFloat(readInt(raw, 6));
+        final int n = Math.min(count, getCapacity());
+        for (int i = 0, off = kHeaderBytes; i < n; i++, off += kTargetBytes)
+        {
+            x[i] = Float.intBitsToFloat(readInt(raw, off));
+            y[i] = Float.intBitsToFloat(readInt(raw, off + 4));
+            rotationDegrees[i] = Float.intBitsToFloat(readInt(raw, off + 8));
+        }
+        targetCount = n;
+        return true;
+    }
+
+    // Same as ByteBuffer.getInt, but we don't want to wrap the array every frame
+    private static int readInt(byte[] b, int off)
+    {
+        return ((b[off] & 0xFF) << 24) | ((b[off + 1] & 0xFF) << 16) | ((b[off + 2] & 0xFF) << 8) | (b[off + 3] & 0xFF);
+    }
+
+    /**
+     * Reads the legacy double array format: x, y, degrees per target followed
+     * by the latency, so the valid lengths are 1, 4, 7 for 0, 1, 2 targets.
+     * Legacy frames don't have ids, so frameId is set to zero.
+     *
+     * @return false (and an empty frame) if the length doesn't match that layout
+     */
+    public boolean decodeLegacy(double[] values)
+    {
+        targetCount = 0;
+        frameId = 0;
+        final int len = values.length;
+        if (len <= 0 || (len - 1) % 3 != 0)
+            return false;
+
+        latency = values[len - 1];
+        final int n = Math.min((len - 1) / 3, getCapacity());
+        for (int i = 0, j = 0; i < n; i++, j += 3)
+        {
+            x[i] = values[j + 0];
+            y[i] = values[j + 1];
+            rotationDegrees[i] = values[j + 2];
+        }
+        targetCount = n;
+        return true;
+    }
+
+    /**
+     * Produces a raw record for this frame. This is what the coprocessor sends;
+     * it's here for simulation and tests.
+     */
+    public byte[] encode()
+    {
+        ByteBuffer buf = ByteBuffer.allocate(kHeaderBytes + targetCount * kTargetBytes);
+        buf.put(kVersion);
+        buf.put((byte) targetCount);
+        buf.putInt(frameId);
+        buf.putFloat((float) latency);
+        for (int i = 0; i < targetCount; i++)
+        {
+            buf.putFloat((float) x[i]);
+            buf.putFloat((float) y[i]);
+            buf.putFloat((float) rotationDegrees[i]);
+        }
+        return buf.array();
+    }
+}
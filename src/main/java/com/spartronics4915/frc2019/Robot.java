@@ -1,6 +1,7 @@
 package com.spartronics4915.frc2019;
 
 import com.spartronics4915.frc2019.auto.AutoModeExecutor;
+import com.spartronics4915.frc2019.auto.AutoModeLoop;
 import com.spartronics4915.frc2019.loops.Looper;
 import com.spartronics4915.frc2019.paths.TrajectoryGenerator;
 import com.spartronics4915.frc2019.subsystems.*;
@@ -31,8 +32,8 @@ import java.util.jar.Manifest;
 public class Robot extends TimedRobot
 {
 
-    private Looper mEnabledLooper = new Looper();
-    private Looper mDisabledLooper = new Looper();
+    private Looper mEnabledLooper = new Looper("EnabledLooper");
+    private Looper mDisabledLooper = new Looper("DisabledLooper");
     private IControlBoard mControlBoard = null;
     private TrajectoryGenerator mTrajectoryGenerator = TrajectoryGenerator.getInstance();
     private SubsystemManager mSubsystemManager = null;
@@ -44,9 +45,10 @@ public class Robot extends TimedRobot
     private LED mLED = null;
     private AnalogInput mPressureSensor = null;
     private RobotStateEstimator mRobotStateEstimator = null;
+    private JVMMonitor mJVMMonitor = null;
     private Superstructure mSuperstructure = null;
     private AutoModeExecutor mAutoModeExecutor;
-    private Timer mCodeTimer = new Timer();
+    private AutoModeLoop mAutoModeLoop = new AutoModeLoop();
     // private PowerDistributionPanel mPDP = new PowerDistributionPanel(); FIXME
     private double mNextReportDue = 0.0; // see outputToSmartDashboard
     private double mLastTeleopLoopTime; // Seconds
@@ -58,6 +60,17 @@ public class Robot extends TimedRobot
     private static final String kRobotTestMode = "TestMode";
     private static final String kRobotTestVariant = "TestVariant";
 
+    // Profiler spans for periodic code; summaries are logged at each disable
+    private static final int kAutoSpan = Profiler.register("Auto", 0.02);
+    private static final int kTeleopSpan = Profiler.register("Teleop", 0.02);
+    private static final int kTeleopDriveSpan = Profiler.register("Teleop/drive");
+    private static final int kTeleopButtonBoardSpan = Profiler.register("Teleop/buttonBoard");
+    private static final int kTeleopTestButtonBoardSpan = Profiler.register("Teleop/testButtonBoard");
+    private static final int kTelemetrySpan = Profiler.register("Robot/telemetry");
+    private static final int[] kTeleopSectionSpans = {
+            kTeleopDriveSpan, kTeleopButtonBoardSpan, kTeleopTestButtonBoardSpan, kTelemetrySpan
+    };
+
     public Robot()
     {
         Logger.logRobotConstruction();
@@ -70,6 +83,7 @@ public class Robot extends TimedRobot
         {
             SmartDashboard.putString("Robot/GamePhase", "ROBOT INIT");
             Logger.logRobotInit();
+            TelemetryBus.getInstance().start();
 
             try (InputStream manifest =
                     getClass().getClassLoader().getResourceAsStream("META-INF/MANIFEST.MF"))
@@ -116,6 +130,7 @@ public class Robot extends TimedRobot
                 mPressureSensor = new AnalogInput(1);
                 mSuperstructure = Superstructure.getInstance();
                 mRobotStateEstimator = RobotStateEstimator.getInstance();
+                mJVMMonitor = JVMMonitor.getInstance();
 
                 mSubsystemManager = new SubsystemManager(
                         Arrays.asList(
@@ -126,8 +141,10 @@ public class Robot extends TimedRobot
                                 mCargoIntake,
                                 mClimber,
                                 mLED,
-                                mSuperstructure));
+                                mSuperstructure,
+                                mJVMMonitor));
                 mSubsystemManager.registerEnabledLoops(mEnabledLooper);
+                mEnabledLooper.register(mAutoModeLoop); // After the subsystems, so actions see this tick
                 mSubsystemManager.registerDisabledLoops(mDisabledLooper);
                 SmartDashboard.putString(kRobotTestModeOptions,
                    "None,CargoChute,CargoIntake,Climber,PanelHandler,Drive,All");
@@ -163,6 +180,10 @@ public class Robot extends TimedRobot
             Logger.setVerbosity(SmartDashboard.getString(kRobotLogVerbosity, "DEBUG"));
 
             mEnabledLooper.stop();
+            Profiler.logSummary();
+            Profiler.reset();
+            if (mJVMMonitor != null)
+                mJVMMonitor.logSummary();
             if (mAutoModeExecutor != null)
             {
                 mAutoModeExecutor.stop();
@@ -172,7 +193,8 @@ public class Robot extends TimedRobot
             mRobotStateEstimator.resetRobotStateMaps();
 
             // Reset all auto mode state.
-            mAutoModeExecutor = new AutoModeExecutor();
+            mAutoModeExecutor = Constants.kRunAutoInLooper ? new AutoModeExecutor(mAutoModeLoop)
+                    : new AutoModeExecutor();
 
             mDisabledLooper.start();
         }
@@ -232,7 +254,7 @@ public class Robot extends TimedRobot
             mDrive.setVelocity(DriveSignal.NEUTRAL, DriveSignal.NEUTRAL); // Reset velocity setpoints
             mDrive.setOpenLoop(new DriveSignal(0.05, 0.05));
 
-            mLastTeleopLoopTime  = Timer.getFPGATimestamp();
+            mLastTeleopLoopTime  = Clock.getTime();
         }
         catch (Throwable t)
         {
@@ -315,6 +337,7 @@ public class Robot extends TimedRobot
         {
             outputToSmartDashboard();
             VisionUpdateManager.reversePNPVisionManager.clearVisionUpdate();
+            VisionUpdateManager.reverseTargetTracker.clear();
         }
         catch (Throwable t)
         {
@@ -326,7 +349,7 @@ public class Robot extends TimedRobot
     @Override
     public void autonomousPeriodic()
     {
-        try
+        try (Profiler.Span s = Profiler.span(kAutoSpan))
         {
             if (mControlBoard.getReturnToDriverControl() && mAutoModeExecutor.getAutoMode().isActive())
                 mAutoModeExecutor.stop(); // Careful! Teleop init doesn't get called until teleop actually starts
@@ -345,167 +368,156 @@ public class Robot extends TimedRobot
     @Override
     public void teleopPeriodic()
     {
-        double[] codeTimes = new double[20]; // for diagnosing loop time consumption
-        int nctr = 0;
-        mCodeTimer.reset();
-        mCodeTimer.start();
-        try
+        try (Profiler.Span teleop = Profiler.span(kTeleopSpan))
         {
             if (mSuperstructure.isDriverControlled())
             {
-                DriveSignal command = ArcadeDriveHelper.arcadeDrive(mControlBoard.getThrottle() * (mSuperstructure.isDrivingReversed() ? -1 : 1), mControlBoard.getTurn(),
-                        mControlBoard.getSlowMode());
-
-                codeTimes[nctr++] = mCodeTimer.get(); // 0 after arcadeDrive
-
-                // double throttle = mControlBoard.getThrottle() * (mSuperstructure.isDrivingReversed() ? -1 : 1);
-                // throttle = Math.copySign(Math.pow(Math.abs(throttle), 5.0/2.0), throttle) * Constants.kTeleopMaxChassisVel;
-
-                // double turn = mControlBoard.getTurn() * (mSuperstructure.isDrivingReversed() ? -1 : 1);
-                // turn = Math.copySign(Math.pow(Math.abs(turn), 5.0/3.0), turn) * Constants.kTeleopMaxChassisVel;
-
-                // double dt = Timer.getFPGATimestamp() - mLastTeleopLoopTime;
-                // ChassisState vel = new ChassisState(throttle, turn);
-                // ChassisState accel = new ChassisState((throttle - mLastTeleopVelocity.linear) / dt, (turn - mLastTeleopVelocity.angular) / dt);
-
-                // mDrive.setVelocityForChassisState(vel, accel);
-
-                // mLastTeleopLoopTime = Timer.getFPGATimestamp();
-                // mLastTeleopVelocity = new ChassisState(mDrive.getLinearVelocity(), mDrive.getLinearVelocity());
-                
-                mDrive.setOpenLoop(command);
-                // mDrive.setVelocity(command, new DriveSignal(
-                //     command.scale(Constants.kDriveLeftKv * (Constants.kDriveWheelDiameterInches / 2)).getLeft() + Math.copySign(Constants.kDriveLeftVIntercept, command.getLeft()),
-                //     command.scale(Constants.kDriveRightKv * (Constants.kDriveWheelDiameterInches / 2)).getRight() + Math.copySign(Constants.kDriveRightVIntercept, command.getRight())
-                // )); XXX Conversions on Kv are wrong
+                try (Profiler.Span s = Profiler.span(kTeleopDriveSpan))
+                {
+                    DriveSignal command = ArcadeDriveHelper.arcadeDrive(mControlBoard.getThrottle() * (mSuperstructure.isDrivingReversed() ? -1 : 1), mControlBoard.getTurn(),
+                            mControlBoard.getSlowMode());
 
-                codeTimes[nctr++] = mCodeTimer.get(); // 1 after setOpenLoop
+                    // double throttle = mControlBoard.getThrottle() * (mSuperstructure.isDrivingReversed() ? -1 : 1);
+                    // throttle = Math.copySign(Math.pow(Math.abs(throttle), 5.0/2.0), throttle) * Constants.kTeleopMaxChassisVel;
 
+                    // double turn = mControlBoard.getTurn() * (mSuperstructure.isDrivingReversed() ? -1 : 1);
+                    // turn = Math.copySign(Math.pow(Math.abs(turn), 5.0/3.0), turn) * Constants.kTeleopMaxChassisVel;
 
-                // Button Board ----------------------------------------------------------
-                mControlBoard.updatePOV();
+                    // double dt = Timer.getFPGATimestamp() - mLastTeleopLoopTime;
+                    // ChassisState vel = new ChassisState(throttle, turn);
+                    // ChassisState accel = new ChassisState((throttle - mLastTeleopVelocity.linear) / dt, (turn - mLastTeleopVelocity.angular) / dt);
 
-                // CLIMBING
-                if (mControlBoard.getClimb())
-                    mSuperstructure.setWantedState(Superstructure.WantedState.CLIMB);
+                    // mDrive.setVelocityForChassisState(vel, accel);
 
-                codeTimes[nctr++] = mCodeTimer.get(); // 2 after climbing
+                    // mLastTeleopLoopTime = Timer.getFPGATimestamp();
+                    // mLastTeleopVelocity = new ChassisState(mDrive.getLinearVelocity(), mDrive.getLinearVelocity());
 
-                // INTAKE
-                if (mControlBoard.getAssistedIntakeCargo())
-                    mSuperstructure.setWantedState(Superstructure.WantedState.ALIGN_AND_INTAKE_CARGO);
-                else if (mControlBoard.getGroundEjectCargo())
-                {
-                    mCargoIntake.setWantedState(CargoIntake.WantedState.EJECT);
-                    mCargoChute.setWantedState(CargoChute.WantedState.EJECT_BACK);
-                }
-                else if (mControlBoard.getManualIntakeCargo())
-                {
-                    mSuperstructure.setWantedState(Superstructure.WantedState.INTAKE_CARGO);
+                    mDrive.setOpenLoop(command);
+                    // mDrive.setVelocity(command, new DriveSignal(
+                    //     command.scale(Constants.kDriveLeftKv * (Constants.kDriveWheelDiameterInches / 2)).getLeft() + Math.copySign(Constants.kDriveLeftVIntercept, command.getLeft()),
+                    //     command.scale(Constants.kDriveRightKv * (Constants.kDriveWheelDiameterInches / 2)).getRight() + Math.copySign(Constants.kDriveRightVIntercept, command.getRight())
+                    // )); XXX Conversions on Kv are wrong
                 }
-                codeTimes[nctr++] = mCodeTimer.get(); // 3 after intake
 
-                // CARGO RAMP
-                if (mControlBoard.getManualRamp())
-                {
-                    if (!mCargoChute.isRampRunning())
-                        mCargoChute.setWantedState(CargoChute.WantedState.RAMP_MANUAL);
-                    else
-                        mCargoChute.setWantedState(CargoChute.WantedState.HOLD_MANUAL);
-                }
-                else if (mControlBoard.getAssistedShootRocket())
-                    mSuperstructure.setWantedState(Superstructure.WantedState.ALIGN_AND_SHOOT_CARGO_ROCKET);
-                else if (mControlBoard.getAssistedShootBay())
-                    mSuperstructure.setWantedState(Superstructure.WantedState.ALIGN_AND_SHOOT_CARGO_BAY);
-                else if (mControlBoard.getSelectLeftVisionTarget())
-                {
-                    //TODO: add this functionality
-                }
-                else if (mControlBoard.getSelectRightVisionTarget())
-                {
-                    //TODO: add this functionality
-                }
-                else if (mControlBoard.getManualShootCargoBay())
-                    mSuperstructure.setWantedState(Superstructure.WantedState.SHOOT_CARGO_BAY);
-                else if (mControlBoard.getManualShootCargoRocket())
-                    mCargoChute.setWantedState(CargoChute.WantedState.SHOOT_ROCKET);
-                else if (mControlBoard.getManualChuteUp())
-                    mCargoChute.setWantedState(CargoChute.WantedState.RAISE);
-                else if (mControlBoard.getManualChuteDown())
-                    mCargoChute.setWantedState(CargoChute.WantedState.LOWER);
-
-                codeTimes[nctr++] = mCodeTimer.get(); // 4 after cargochute
-
-                // PANEL HANDLER
-                if (mControlBoard.getAssistedIntakePanel())
-                    mSuperstructure.setWantedState(Superstructure.WantedState.ALIGN_AND_INTAKE_PANEL);
-                else if (mControlBoard.getAssistedEjectPanel())
-                    mSuperstructure.setWantedState(Superstructure.WantedState.ALIGN_AND_EJECT_PANEL);
-                else if (mControlBoard.getManualEjectPanel())
-                    mSuperstructure.setWantedState(Superstructure.WantedState.EJECT_PANEL);
-
-                codeTimes[nctr++] = mCodeTimer.get(); // 5 after panelhandler
-
-                // EVERYTHING
-                if (mControlBoard.getInsideFramePerimeter())
-                {
-                    mCargoChute.setWantedState(CargoChute.WantedState.LOWER);
-                    mCargoIntake.setWantedState(CargoIntake.WantedState.HOLD);
-                }
-                if (mControlBoard.getTestButtonOne()) // 2: 5
-                {
-                    // mCargoIntake.setWantedState(CargoIntake.WantedState.HOLD);
-                }
-                if (mControlBoard.getTestButtonTwo())
-                {
-                    // mCargoIntake.setWantedState(CargoIntake.WantedState.CLIMB);
-                }
-                if (mControlBoard.getTestButtonThree()) // 2: 7
+                try (Profiler.Span s = Profiler.span(kTeleopButtonBoardSpan))
                 {
-                    // mCargoIntake.setWantedState(CargoIntake.WantedState.EJECT);
+                    // Button Board ----------------------------------------------------------
+                    mControlBoard.updatePOV();
+
+                    // CLIMBING
+                    if (mControlBoard.getClimb())
+                        mSuperstructure.setWantedState(Superstructure.WantedState.CLIMB);
+
+                    // INTAKE
+                    if (mControlBoard.getAssistedIntakeCargo())
+                        mSuperstructure.setWantedState(Superstructure.WantedState.ALIGN_AND_INTAKE_CARGO);
+                    else if (mControlBoard.getGroundEjectCargo())
+                    {
+                        mCargoIntake.setWantedState(CargoIntake.WantedState.EJECT);
+                        mCargoChute.setWantedState(CargoChute.WantedState.EJECT_BACK);
+                    }
+                    else if (mControlBoard.getManualIntakeCargo())
+                    {
+                        mSuperstructure.setWantedState(Superstructure.WantedState.INTAKE_CARGO);
+                    }
+
+                    // CARGO RAMP
+                    if (mControlBoard.getManualRamp())
+                    {
+                        if (!mCargoChute.isRampRunning())
+                            mCargoChute.setWantedState(CargoChute.WantedState.RAMP_MANUAL);
+                        else
+                            mCargoChute.setWantedState(CargoChute.WantedState.HOLD_MANUAL);
+                    }
+                    else if (mControlBoard.getAssistedShootRocket())
+                        mSuperstructure.setWantedState(Superstructure.WantedState.ALIGN_AND_SHOOT_CARGO_ROCKET);
+                    else if (mControlBoard.getAssistedShootBay())
+                        mSuperstructure.setWantedState(Superstructure.WantedState.ALIGN_AND_SHOOT_CARGO_BAY);
+                    else if (mControlBoard.getSelectLeftVisionTarget())
+                    {
+                        //TODO: add this functionality
+                    }
+                    else if (mControlBoard.getSelectRightVisionTarget())
+                    {
+                        //TODO: add this functionality
+                    }
+                    else if (mControlBoard.getManualShootCargoBay())
+                        mSuperstructure.setWantedState(Superstructure.WantedState.SHOOT_CARGO_BAY);
+                    else if (mControlBoard.getManualShootCargoRocket())
+                        mCargoChute.setWantedState(CargoChute.WantedState.SHOOT_ROCKET);
+                    else if (mControlBoard.getManualChuteUp())
+                        mCargoChute.setWantedState(CargoChute.WantedState.RAISE);
+                    else if (mControlBoard.getManualChuteDown())
+                        mCargoChute.setWantedState(CargoChute.WantedState.LOWER);
+
+                    // PANEL HANDLER
+                    if (mControlBoard.getAssistedIntakePanel())
+                        mSuperstructure.setWantedState(Superstructure.WantedState.ALIGN_AND_INTAKE_PANEL);
+                    else if (mControlBoard.getAssistedEjectPanel())
+                        mSuperstructure.setWantedState(Superstructure.WantedState.ALIGN_AND_EJECT_PANEL);
+                    else if (mControlBoard.getManualEjectPanel())
+                        mSuperstructure.setWantedState(Superstructure.WantedState.EJECT_PANEL);
+
+                    // EVERYTHING
+                    if (mControlBoard.getInsideFramePerimeter())
+                    {
+                        mCargoChute.setWantedState(CargoChute.WantedState.LOWER);
+                        mCargoIntake.setWantedState(CargoIntake.WantedState.HOLD);
+                    }
+                    if (mControlBoard.getTestButtonOne()) // 2: 5
+                    {
+                        // mCargoIntake.setWantedState(CargoIntake.WantedState.HOLD);
+                    }
+                    if (mControlBoard.getTestButtonTwo())
+                    {
+                        // mCargoIntake.setWantedState(CargoIntake.WantedState.CLIMB);
+                    }
+                    if (mControlBoard.getTestButtonThree()) // 2: 7
+                    {
+                        // mCargoIntake.setWantedState(CargoIntake.WantedState.EJECT);
+                    }
+                    if (mControlBoard.getChangeSelectedVisionIndex())
+                    {
+                        int selectedIndex = VisionUpdateManager.getSelectedTargetIndex(-1);
+                        if (++selectedIndex >= Constants.kMaxVisionTargets)
+                            selectedIndex = 0;
+                        VisionUpdateManager.setSelectedTargetIndex(selectedIndex);
+                    }
                 }
-                if (mControlBoard.getChangeSelectedVisionIndex())
-                {
-                    int selectedIndex = (int) SmartDashboard.getNumber(Constants.kVisionSelectedIndexKey, -1);
-                    if (++selectedIndex >= Constants.kMaxVisionTargets)
-                        selectedIndex = 0;
-                    SmartDashboard.putNumber(Constants.kVisionSelectedIndexKey, selectedIndex);
-                }
-                codeTimes[nctr++] = mCodeTimer.get(); // 6 after subsystems
 
-
-                //TEST BUTTONBOARD
-                if (mControlBoard.getClimbExtendAllPneumatics())
-                {
-                    mSuperstructure.setWantedState(Superstructure.WantedState.LOWER_CHUTE_AND_CLIMB);
-                }
-                else if (mControlBoard.getClimbIntake())
-                {
-                    mCargoIntake.setWantedState(CargoIntake.WantedState.CLIMB);
-                }
-                else if (mControlBoard.getClimbRetractFrontPneumatics())
-                {
-                    mClimber.setWantedState(Climber.WantedState.RETRACT_FRONT_STRUTS);
-                }
-                else if (mControlBoard.getClimbRetractBackPneumatics())
-                {
-                    mClimber.setWantedState(Climber.WantedState.RETRACT_REAR_STRUTS);
-                }
-                else if (mControlBoard.getIntakeArmDown())
-                {
-                    mCargoIntake.setWantedState(CargoIntake.WantedState.ARM_DOWN);
-                }
-                else if (mControlBoard.getIntakeHold())
+                try (Profiler.Span s = Profiler.span(kTeleopTestButtonBoardSpan))
                 {
-                    mCargoIntake.setWantedState(CargoIntake.WantedState.HOLD);
-                    mCargoChute.setWantedState(CargoChute.WantedState.HOLD_MANUAL);
-                }
-                else if (mControlBoard.getIntakeStopMotors())
-                {
-                    mCargoIntake.setWantedState(CargoIntake.WantedState.MOTORS_STOP);
+                    //TEST BUTTONBOARD
+                    if (mControlBoard.getClimbExtendAllPneumatics())
+                    {
+                        mSuperstructure.setWantedState(Superstructure.WantedState.LOWER_CHUTE_AND_CLIMB);
+                    }
+                    else if (mControlBoard.getClimbIntake())
+                    {
+                        mCargoIntake.setWantedState(CargoIntake.WantedState.CLIMB);
+                    }
+                    else if (mControlBoard.getClimbRetractFrontPneumatics())
+                    {
+                        mClimber.setWantedState(Climber.WantedState.RETRACT_FRONT_STRUTS);
+                    }
+                    else if (mControlBoard.getClimbRetractBackPneumatics())
+                    {
+                        mClimber.setWantedState(Climber.WantedState.RETRACT_REAR_STRUTS);
+                    }
+                    else if (mControlBoard.getIntakeArmDown())
+                    {
+                        mCargoIntake.setWantedState(CargoIntake.WantedState.ARM_DOWN);
+                    }
+                    else if (mControlBoard.getIntakeHold())
+                    {
+                        mCargoIntake.setWantedState(CargoIntake.WantedState.HOLD);
+                        mCargoChute.setWantedState(CargoChute.WantedState.HOLD_MANUAL);
+                    }
+                    else if (mControlBoard.getIntakeStopMotors())
+                    {
+                        mCargoIntake.setWantedState(CargoIntake.WantedState.MOTORS_STOP);
+                    }
                 }
-                codeTimes[nctr++] = mCodeTimer.get(); // 7 after testbuttonboard
-
 
                 //Driver Joystick-----------------------------------------------------------
                 if (mControlBoard.getReverseDirection())
@@ -517,7 +529,7 @@ public class Robot extends TimedRobot
             else if (mControlBoard.getReturnToDriverControl())
                 mSuperstructure.setWantedState(Superstructure.WantedState.DRIVER_CONTROL);
 
-            codeTimes[nctr++] = mCodeTimer.get(); // 8 at end
+            outputToSmartDashboard();
         }
         catch (Throwable t)
         {
@@ -525,17 +537,13 @@ public class Robot extends TimedRobot
             throw t;
         }
 
-        outputToSmartDashboard();
-        codeTimes[nctr++] = mCodeTimer.get(); // 9 after telemetry
-        double loopTime = codeTimes[nctr-1];
-        if(loopTime > .025)
+        double loopTime = Profiler.getLast(kTeleopSpan);
+        if (loopTime > .025)
         {
-            String str = "looptime overrun, offenders:\n";
-            for(int i=0;i<nctr;i++)
-            {
-                str += "  " + i + " " + codeTimes[i] + "\n";
-            }
-            if(loopTime > .1)
+            String str = "looptime overrun " + loopTime + ", offenders (most recent run of each):\n";
+            for (int id : kTeleopSectionSpans)
+                str += "  " + Profiler.getName(id) + " " + Profiler.getLast(id) + "\n";
+            if (loopTime > .1)
                 Logger.notice("BIG " + str);
             else
                 Logger.debug(str);
@@ -564,16 +572,26 @@ public class Robot extends TimedRobot
     {
         /* need to constrain the amount of network table traffic we
          * produce each loop:
-         *   - outputTelemetry supports round-robin distribution of telemetry
-         *   - slowly varying data is "automatically filtered" by network tables
+         *   - subsystem telemetry goes through TelemetryBus, which publishes
+         *     only changed values, rate limited, from its own thread
          *   - but we impose an update rate max on less important data
          *  NB: it's possible that slow/variable times is actually the result
          *   of multithreaded synchronization locks.
          */
-        mEnabledLooper.outputToSmartDashboard(); // outputs _dt
-        mSubsystemManager.outputToTelemetry(true/*round-robin*/);
+        try (Profiler.Span s = Profiler.span(kTelemetrySpan))
+        {
+            outputTelemetry();
+        }
+        Profiler.outputToSmartDashboard();
+    }
+
+    private void outputTelemetry()
+    {
+        mEnabledLooper.outputToSmartDashboard(); // outputs _dt and loop timings
+        mSubsystemManager.outputLoopTimings();
+        mSubsystemManager.outputToTelemetry();
 
-        double now = Timer.getFPGATimestamp();
+        double now = Clock.getTime();
         if (now > this.mNextReportDue)
         {
             this.mNextReportDue = now + 1.0; // once per second
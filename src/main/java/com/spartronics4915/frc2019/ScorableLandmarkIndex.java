@@ -0,0 +1,236 @@
+package com.spartronics4915.frc2019;
+
+import com.spartronics4915.frc2019.Constants.ScorableLandmark;
+import com.spartronics4915.lib.geometry.Pose2d;
+
+import java.util.Arrays;
+
+/**
+ * Answers "which landmark is closest to this pose" without scanning and
+ * allocating for every landmark on every loop.
+ *
+ * The field is divided into a grid. For each cell we store every landmark
+ * sorted by its minimum possible distance to that cell, so a query walks the
+ * list and stops as soon as the next landmark can't beat the best one found.
+ * In practice that's one or two distance checks. Queries may also filter on
+ * where the camera is pointing and how squarely it faces the target; the
+ * early exit still holds because the bound doesn't depend on the filter.
+ *
+ * Distances are straight-line, in inches. Approach poses are the landmarks'
+ * precomputed robotLengthCorrectedPose, so callers read that directly.
+ */
+public class ScorableLandmarkIndex
+{
+
+    // Field is 54' x 27'; field y is centered on the long axis
+    private static final double kMinX = -12.0;
+    private static final double kMaxX = 660.0;
+    private static final double kMinY = -174.0;
+    private static final double kMaxY = 174.0;
+    private static final double kCellSize = 24.0; // Inches
+    private static final int kCellsX = (int) Math.ceil((kMaxX - kMinX) / kCellSize);
+    private static final int kCellsY = (int) Math.ceil((kMaxY - kMinY) / kCellSize);
+
+    private static ScorableLandmarkIndex sInstance = new ScorableLandmarkIndex();
+
+    public static ScorableLandmarkIndex getInstance()
+    {
+        return sInstance;
+    }
+
+    private final ScorableLandmark[] mLandmarks;
+    // Unpacked so queries don't go through Pose2d
+    private final double[] mX, mY, mFacingCos, mFacingSin;
+    // Per cell: landmark ordinals sorted by lower bound distance, and those bounds
+    private final int[][] mCellOrder;
+    private final double[][] mCellLowerBound;
+
+    private ScorableLandmarkIndex()
+    {
+        mLandmarks = ScorableLandmark.values();
+        final int n = mLandmarks.length;
+        mX = new double[n];
+        mY = new double[n];
+        mFacingCos = new double[n];
+        mFacingSin = new double[n];
+        for (int i = 0; i < n; i++)
+        {
+            final Pose2d p = mLandmarks[i].fieldPose;
+            mX[i] = p.getTranslation().x();
+            mY[i] = p.getTranslation().y();
+            mFacingCos[i] = p.getRotation().cos();
+            mFacingSin[i] = p.getRotation().sin();
+        }
+
+        mCellOrder = new int[kCellsX * kCellsY][];
+        mCellLowerBound = new double[kCellsX * kCellsY][];
+        Integer[] order = new Integer[n];
+        double[] bound = new double[n];
+        for (int cx = 0; cx < kCellsX; cx++)
+        {
+            for (int cy = 0; cy < kCellsY; cy++)
+            {
+                final double x0 = kMinX + cx * kCellSize, y0 = kMinY + cy * kCellSize;
+                for (int i = 0; i < n; i++)
+                {
+                    order[i] = i;
+                    final double dx = Math.max(0.0, Math.max(x0 - mX[i], mX[i] - (x0 + kCellSize)));
+                    final double dy = Math.max(0.0, Math.max(y0 - mY[i], mY[i] - (y0 + kCellSize)));
+                    bound[i] = Math.hypot(dx, dy);
+                }
+                Arrays.sort(order, (a, b) -> Double.compare(bound[a], bound[b]));
+
+                final int cell = cx * kCellsY + cy;
+                mCellOrder[cell] = new int[n];
+                mCellLowerBound[cell] = new double[n];
+                for (int i = 0; i < n; i++)
+                {
+                    mCellOrder[cell][i] = order[i];
+                    mCellLowerBound[cell][i] = bound[order[i]];
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the closest landmark to the given pose, ignoring heading
+     */
+    public ScorableLandmark getClosest(Pose2d pose)
+    {
+        return getClosest(pose, Math.PI, Math.PI);
+    }
+
+    /**
+     * @param viewerPose        field pose of the robot or camera
+     * @param maxBearingRadians only consider landmarks within this angle of the
+     *                          viewer's heading (e.g. half the camera's field of
+     *                          view); pass Math.PI to allow any bearing
+     * @param maxFaceAngleRadians only consider landmarks whose face is within
+     *                          this angle of square to the viewer's heading,
+     *                          looking either way along the face normal; pass
+     *                          Math.PI to ignore landmark orientation
+     * @return the closest landmark satisfying the filters, or the closest
+     *         landmark overall if none do
+     */
+    public ScorableLandmark getClosest(Pose2d viewerPose, double maxBearingRadians, double maxFaceAngleRadians)
+    {
+        final double x = viewerPose.getTranslation().x(), y = viewerPose.getTranslation().y();
+        final double cos = viewerPose.getRotation().cos(), sin = viewerPose.getRotation().sin();
+
+        final double minFaceCos = maxFaceAngleRadians >= Math.PI / 2 ? 0.0 : Math.cos(maxFaceAngleRadians);
+
+        int best = findClosest(x, y, cos, sin, Math.cos(maxBearingRadians), minFaceCos);
+        if (best < 0)
+            best = findClosest(x, y, cos, sin, -1.0, 0.0);
+        return mLandmarks[best];
+    }
+
+    private int findClosest(double x, double y, double cos, double sin, double minBearingCos, double minFaceCos)
+    {
+        final int cell = cellIndex(x, y);
+
+        int best = -1;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (int k = 0; k < mLandmarks.length; k++)
+        {
+            final int i;
+            if (cell >= 0)
+            {
+                if (mCellLowerBound[cell][k] >= bestDistance)
+                    break;
+                i = mCellOrder[cell][k];
+            }
+            else
+            {
+                // Off the field, so just check everything
+                i = k;
+            }
+
+            final double dx = mX[i] - x, dy = mY[i] - y;
+            final double distance = Math.hypot(dx, dy);
+            if (distance >= bestDistance)
+                continue;
+            if (minBearingCos > -1.0 && distance > 0.0 && (dx * cos + dy * sin) / distance < minBearingCos)
+                continue;
+            // Absolute value, so this works whether the landmark points into or out of its face
+            if (minFaceCos > 0.0 && Math.abs(cos * mFacingCos[i] + sin * mFacingSin[i]) < minFaceCos)
+                continue;
+
+            best = i;
+            bestDistance = distance;
+        }
+        return best;
+    }
+
+    /**
+     * Fills dest with up to dest.length landmarks, closest first. Each
+     * landmark's approach pose is its precomputed robotLengthCorrectedPose.
+     *
+     * @return the number of landmarks written
+     */
+    public int getClosestCandidates(Pose2d pose, ScorableLandmark[] dest)
+    {
+        if (dest.length == 0)
+            return 0;
+
+        final double x = pose.getTranslation().x(), y = pose.getTranslation().y();
+        final int cell = cellIndex(x, y);
+
+        int count = 0;
+        for (int k = 0; k < mLandmarks.length; k++)
+        {
+            final int i;
+            if (cell >= 0)
+            {
+                // Once dest is full, stop when nothing left can beat its last entry
+                if (count == dest.length && mCellLowerBound[cell][k] >= distance(dest[count - 1], x, y))
+                    break;
+                i = mCellOrder[cell][k];
+            }
+            else
+            {
+                // Off the field, so just check everything
+                i = k;
+            }
+
+            final double distance = Math.hypot(mX[i] - x, mY[i] - y);
+            // Insertion sort into the (short) destination, dropping its last entry if full
+            int j = count;
+            if (j == dest.length)
+            {
+                if (distance >= distance(dest[j - 1], x, y))
+                    continue;
+                j--;
+            }
+            else
+            {
+                count++;
+            }
+            while (j > 0 && distance(dest[j - 1], x, y) > distance)
+            {
+                dest[j] = dest[j - 1];
+                j--;
+            }
+            dest[j] = mLandmarks[i];
+        }
+        return count;
+    }
+
+    private double distance(ScorableLandmark landmark, double x, double y)
+    {
+        final int i = landmark.ordinal();
+        return Math.hypot(mX[i] - x, mY[i] - y);
+    }
+
+    /**
+     * @return the grid cell containing (x, y), or -1 if it's off the field
+     */
+    private static int cellIndex(double x, double y)
+    {
+        final int cx = (int) Math.floor((x - kMinX) / kCellSize);
+        final int cy = (int) Math.floor((y - kMinY) / kCellSize);
+        if (cx < 0 || cx >= kCellsX || cy < 0 || cy >= kCellsY)
+            return -1;
+        return cx * kCellsY + cy;
+    }
+}
@@ -2,51 +2,236 @@ package com.spartronics4915.frc2019;
 
 import com.spartronics4915.lib.util.ILooper;
 import com.spartronics4915.lib.util.ILoop;
+import com.spartronics4915.lib.util.Logger;
+import com.spartronics4915.lib.util.MultiRateScheduler;
+import com.spartronics4915.lib.util.TimingHistogram;
 import com.spartronics4915.frc2019.subsystems.Subsystem;
+import com.spartronics4915.lib.util.Clock;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Used to reset, start, stop, and update all subsystems at once
+ *
+ * Each subsystem runs at its own getPeriod(), a whole number of Looper ticks.
+ * On a tick where a subsystem is due we call its readPeriodicInputs, the
+ * loops it registered, and its writePeriodicOutputs, in that order as before.
+ * Loops registered from outside a subsystem run every tick.
+ *
+ * With Constants.kParallelInputReads, reads for subsystems that return true
+ * from hasAtomicInputSnapshot are handed to a small thread pool, and the rest
+ * are read here while those run. We wait at most kInputReadDeadline for the
+ * pool. A subsystem that misses the deadline is flagged with setInputsStale
+ * and its loops run on whatever it last finished publishing (Drive and
+ * RobotStateEstimator check areInputsStale and hold still for the cycle); we
+ * don't queue another read for it until the late one completes. Subsystems
+ * that don't opt in are never read off this thread, since their loops and
+ * writePeriodicOutputs would race a late read on their PeriodicIO.
  */
 public class SubsystemManager implements ILooper
 {
 
+    private static final double kTimingReportPeriod = 1.0; // Seconds
+    private static final int kEveryTick = -1;
+
     private final List<Subsystem> mAllSubsystems;
     private List<ILoop> mLoops = new ArrayList<>();
-    private int mTelemetrySelector = 0;
+
+    // Subsystem i is scheduler task i; each loop runs with the subsystem that registered it
+    private final MultiRateScheduler mScheduler = new MultiRateScheduler();
+    private final List<Integer> mLoopTasks = new ArrayList<>();
+    private int mRegisteringTask = kEveryTick;
+
+    // The Looper only sees our EnabledLoop, so we break its time down by subsystem here
+    private final List<TimingHistogram> mSubsystemIOTimings = new ArrayList<>();
+    private final List<TimingHistogram> mLoopTimings = new ArrayList<>();
+    private double mNextTimingReport = 0.0;
+    private final long[] mIONanos;
+
+    private final ExecutorService mInputReaders; // null unless reads are parallel
+    private final long mInputReadDeadlineNanos;
+    private final boolean[] mReadInParallel;
+    // Each returns how long its read took, so the duration comes back through the Future
+    private final List<Callable<Long>> mReadTasks = new ArrayList<>();
+    private final List<Future<Long>> mPendingReads = new ArrayList<>();
+    private final long[] mStaleReads;
 
     public SubsystemManager(List<Subsystem> allSubsystems)
     {
-        mAllSubsystems = allSubsystems;
+        this(allSubsystems, Constants.kParallelInputReads ? Constants.kInputReadThreads : 0,
+                Constants.kInputReadDeadline);
     }
 
-    public void outputToTelemetry(boolean roundRobin)
+    /**
+     * @param inputReadThreads size of the input read pool, or 0 to read
+     *                         everything on the Looper thread
+     */
+    SubsystemManager(List<Subsystem> allSubsystems, int inputReadThreads, double inputReadDeadline)
     {
-        // To reduce looptime spent in telemetry, we optionally round-robin 
-        // telemetry requests to each subystem.  
-        // For 10 sub subsystems with 20ms looptimes, we get updates from
-        // each subsystem every 200ms.
-        int nSys = 0;
-        for(int i=0;i<mAllSubsystems.size();i++)
+        mAllSubsystems = allSubsystems;
+        final int n = mAllSubsystems.size();
+        mIONanos = new long[n];
+        mReadInParallel = new boolean[n];
+        mStaleReads = new long[n];
+        mInputReadDeadlineNanos = (long) (inputReadDeadline * 1e9);
+        for (int i = 0; i < n; i++)
         {
-            Subsystem s = mAllSubsystems.get(i);
-            if (s.isInitialized())
+            final Subsystem subsystem = mAllSubsystems.get(i);
+            mReadInParallel[i] = inputReadThreads > 0 && subsystem.hasAtomicInputSnapshot();
+            mReadTasks.add(() ->
             {
-                if(roundRobin)
-                {
-                    if(nSys++ == this.mTelemetrySelector)
-                        s.outputTelemetry();
-                }
-                else
-                    s.outputTelemetry();
+                final long start = System.nanoTime();
+                subsystem.readPeriodicInputs();
+                return System.nanoTime() - start;
+            });
+            mPendingReads.add(null);
+        }
+        if (inputReadThreads > 0)
+        {
+            mInputReaders = Executors.newFixedThreadPool(inputReadThreads, (r) ->
+            {
+                Thread t = new Thread(r, "SubsystemInputReader");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        else
+        {
+            mInputReaders = null;
+        }
+
+        for (Subsystem s : mAllSubsystems)
+        {
+            mSubsystemIOTimings.add(new TimingHistogram(s.getName() + "/io", Constants.kLooperDt));
+            mScheduler.addTask(MultiRateScheduler.periodToTicks(s.getPeriod(), Constants.kLooperDt), s.getPhase());
+        }
+        mScheduler.assignPhases();
+        for (int i = 0; i < mAllSubsystems.size(); i++)
+        {
+            if (mScheduler.getPeriodTicks(i) > 1)
+                Logger.notice("SubsystemManager " + mAllSubsystems.get(i).getName() + " runs every "
+                        + mScheduler.getPeriodTicks(i) + " ticks, phase " + mScheduler.getPhase(i));
+        }
+    }
+
+    private boolean isDue(int task, long tick)
+    {
+        return task == kEveryTick || mScheduler.isDue(task, tick);
+    }
+
+    private void readInputs(int i)
+    {
+        final long start = System.nanoTime();
+        mAllSubsystems.get(i).readPeriodicInputs();
+        mIONanos[i] = System.nanoTime() - start;
+    }
 
+    private void readAllInputs(long tick)
+    {
+        final long deadline = System.nanoTime() + mInputReadDeadlineNanos;
+        for (int i = 0; i < mAllSubsystems.size(); i++)
+        {
+            if (!isDue(i, tick) || !mReadInParallel[i])
+                continue;
+            // A read that missed an earlier deadline may still be on the bus
+            Future<Long> pending = mPendingReads.get(i);
+            if (pending == null || pending.isDone())
+                mPendingReads.set(i, mInputReaders.submit(mReadTasks.get(i)));
+        }
+
+        // Everything else is read here, overlapping with the pool
+        for (int i = 0; i < mAllSubsystems.size(); i++)
+        {
+            if (isDue(i, tick) && !mReadInParallel[i])
+                readInputs(i);
+        }
+
+        for (int i = 0; i < mAllSubsystems.size(); i++)
+        {
+            if (!isDue(i, tick) || !mReadInParallel[i])
+                continue;
+            boolean fresh = false;
+            mIONanos[i] = 0;
+            try
+            {
+                mIONanos[i] = mPendingReads.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                fresh = true;
             }
+            catch (TimeoutException e)
+            {
+                // Leave it running; we'll pick it up on a later tick
+            }
+            catch (ExecutionException e)
+            {
+                Logger.logThrowableCrash("SubsystemManager " + mAllSubsystems.get(i).getName()
+                        + " readPeriodicInputs failed", e.getCause());
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            if (!fresh)
+                mStaleReads[i]++;
+            mAllSubsystems.get(i).setInputsStale(!fresh);
+        }
+    }
+
+    /**
+     * Publishes the time each subsystem spends in readPeriodicInputs plus
+     * writePeriodicOutputs, and in each of its loops, as
+     * "p50 p99 max overruns/count" in milliseconds.
+     */
+    public void outputLoopTimings()
+    {
+        double now = Clock.getTime();
+        if (now < mNextTimingReport)
+            return;
+        mNextTimingReport = now + kTimingReportPeriod;
+
+        for (TimingHistogram timing : mSubsystemIOTimings)
+            SmartDashboard.putString("SubsystemManager/timing/" + timing.getName(), timing.getSummary());
+        for (TimingHistogram timing : mLoopTimings)
+            SmartDashboard.putString("SubsystemManager/timing/" + timing.getName(), timing.getSummary());
+        if (mInputReaders != null)
+        {
+            for (int i = 0; i < mAllSubsystems.size(); i++)
+                SmartDashboard.putNumber("SubsystemManager/staleReads/" + mAllSubsystems.get(i).getName(), mStaleReads[i]);
+        }
+    }
+
+    private void logLoopTimings()
+    {
+        mSubsystemIOTimings.forEach((t) -> Logger.notice("SubsystemManager " + t));
+        mLoopTimings.forEach((t) -> Logger.notice("SubsystemManager " + t));
+        for (int i = 0; i < mAllSubsystems.size(); i++)
+        {
+            if (mStaleReads[i] > 0)
+                Logger.notice("SubsystemManager " + mAllSubsystems.get(i).getName() + " stale reads: " + mStaleReads[i]);
+        }
+    }
+
+    /**
+     * Cheap enough to call every cycle: subsystems only record values into
+     * TelemetryBus slots, and the bus's thread does the NetworkTables work.
+     */
+    public void outputToTelemetry()
+    {
+        for (int i = 0; i < mAllSubsystems.size(); i++)
+        {
+            Subsystem s = mAllSubsystems.get(i);
+            if (s.isInitialized())
+                s.outputTelemetry();
         }
-        this.mTelemetrySelector++;
-        if(this.mTelemetrySelector == nSys)
-            this.mTelemetrySelector = 0;
     }
 
     public void writeToLog()
@@ -70,29 +255,42 @@ public class SubsystemManager implements ILooper
     private class EnabledLoop implements ILoop
     {
 
+        private long mTick = 0;
+
         @Override
         public void onStart(double timestamp)
         {
+            mTick = 0;
             for (ILoop l : mLoops)
             {
                 l.onStart(timestamp);
             }
+            mSubsystemIOTimings.forEach(TimingHistogram::reset);
+            mLoopTimings.forEach(TimingHistogram::reset);
+            for (int i = 0; i < mStaleReads.length; i++)
+                mStaleReads[i] = 0;
         }
 
         @Override
         public void onLoop(double timestamp)
         {
-            for (Subsystem s : mAllSubsystems)
-            {
-                s.readPeriodicInputs();
-            }
-            for (ILoop l : mLoops)
+            final long tick = mTick++;
+            readAllInputs(tick);
+            for (int i = 0; i < mLoops.size(); i++)
             {
-                l.onLoop(timestamp);
+                if (!isDue(mLoopTasks.get(i), tick))
+                    continue;
+                final long start = System.nanoTime();
+                mLoops.get(i).onLoop(timestamp);
+                mLoopTimings.get(i).record(System.nanoTime() - start);
             }
-            for (Subsystem s : mAllSubsystems)
+            for (int i = 0; i < mAllSubsystems.size(); i++)
             {
-                s.writePeriodicOutputs();
+                if (!isDue(i, tick))
+                    continue;
+                final long start = System.nanoTime();
+                mAllSubsystems.get(i).writePeriodicOutputs();
+                mSubsystemIOTimings.get(i).record(mIONanos[i] + System.nanoTime() - start);
             }
         }
 
@@ -103,28 +301,30 @@ public class SubsystemManager implements ILooper
             {
                 l.onStop(timestamp);
             }
+            logLoopTimings();
         }
     }
 
     private class DisabledLoop implements ILoop
     {
 
+        private long mTick = 0;
+
         @Override
         public void onStart(double timestamp)
         {
-
+            mTick = 0;
         }
 
         @Override
         public void onLoop(double timestamp)
         {
-            for (Subsystem s : mAllSubsystems)
-            {
-                s.readPeriodicInputs();
-            }
-            for (Subsystem s : mAllSubsystems)
+            final long tick = mTick++;
+            readAllInputs(tick);
+            for (int i = 0; i < mAllSubsystems.size(); i++)
             {
-                s.writePeriodicOutputs();
+                if (isDue(i, tick))
+                    mAllSubsystems.get(i).writePeriodicOutputs();
             }
         }
 
@@ -137,11 +337,14 @@ public class SubsystemManager implements ILooper
 
     public void registerEnabledLoops(ILooper enabledLooper)
     {
-        mAllSubsystems.forEach((s) ->
+        for (int i = 0; i < mAllSubsystems.size(); i++)
         {
-            if (s.isInitialized())
-                s.registerEnabledLoops(this);
-        });
+            if (!mAllSubsystems.get(i).isInitialized())
+                continue;
+            mRegisteringTask = i;
+            mAllSubsystems.get(i).registerEnabledLoops(this);
+        }
+        mRegisteringTask = kEveryTick;
         enabledLooper.register(new EnabledLoop());
     }
 
@@ -154,5 +357,8 @@ public class SubsystemManager implements ILooper
     public void register(ILoop loop)
     {
         mLoops.add(loop);
+        mLoopTasks.add(mRegisteringTask);
+        String name = loop.getClass().getName();
+        mLoopTimings.add(new TimingHistogram(name.substring(name.lastIndexOf('.') + 1), Constants.kLooperDt));
     }
 }
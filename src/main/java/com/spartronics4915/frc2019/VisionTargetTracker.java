@@ -0,0 +1,246 @@
+package com.spartronics4915.frc2019;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import com.spartronics4915.lib.geometry.Pose2d;
+import com.spartronics4915.lib.geometry.Rotation2d;
+import com.spartronics4915.lib.util.Clock;
+
+/**
+ * Keeps identities for vision targets across frames.
+ *
+ * Detections are in field coordinates, where real targets don't move, so each
+ * track is a small constant-position Kalman filter on x and y (and a smoothed
+ * heading). Process noise only has to cover odometry drift. Each frame, new
+ * detections are greedily paired with the nearest track inside a gate; anything
+ * left over starts a new track with a fresh ID, and tracks that haven't been
+ * seen for a while are dropped. Queries check a track's age against Clock too,
+ * so a target stops being reported once frames stop arriving, not just on the
+ * next update.
+ *
+ * Track storage is preallocated; the only allocations are the IDs returned by
+ * update and the Pose2d handed back by getTargetPose.
+ */
+public class VisionTargetTracker
+{
+
+    public static final int kNoTrack = -1;
+
+    private static class Track
+    {
+        int id = kNoTrack;
+        double x, y, variance;
+        double headingCos, headingSin, headingVariance;
+        double lastUpdateTime;
+        int hits;
+
+        boolean isActive()
+        {
+            return id != kNoTrack;
+        }
+    }
+
+    private final Track[] mTracks;
+    private final int[] mDetectionTrackIds;
+    private final boolean[] mTrackMatched;
+    private int mNextId = 0;
+
+    public VisionTargetTracker()
+    {
+        this(Constants.kVisionMaxTrackedTargets);
+    }
+
+    public VisionTargetTracker(int maxTracks)
+    {
+        mTracks = new Track[maxTracks];
+        for (int i = 0; i < maxTracks; i++)
+            mTracks[i] = new Track();
+        mDetectionTrackIds = new int[Constants.kMaxVisionTargets];
+        mTrackMatched = new boolean[maxTracks];
+    }
+
+    /**
+     * Incorporates one frame of detections.
+     *
+     * @param timestamp  capture time of the frame
+     * @param detections target poses in field coordinates; only the first
+     *                   Constants.kMaxVisionTargets are used
+     * @return the track ID assigned to each detection used, in order
+     */
+    public synchronized int[] update(double timestamp, Pose2d[] detections)
+    {
+        final int numDetections = Math.min(detections.length, mDetectionTrackIds.length);
+
+        // Grow uncertainty by the time since each track was last seen, and drop stale tracks
+        for (int t = 0; t < mTracks.length; t++)
+        {
+            Track track = mTracks[t];
+            mTrackMatched[t] = false;
+            if (!track.isActive())
+                continue;
+            if (timestamp - track.lastUpdateTime > Constants.kVisionTrackTimeout)
+            {
+                track.id = kNoTrack;
+                continue;
+            }
+            final double dt = Math.max(0.0, timestamp - track.lastUpdateTime);
+            track.variance += Constants.kVisionTrackProcessVariance * dt;
+            track.headingVariance += Constants.kVisionTrackHeadingProcessVariance * dt;
+        }
+
+        // Greedy global nearest neighbour; with two detections this is as good as optimal
+        Arrays.fill(mDetectionTrackIds, kNoTrack);
+        for (int pass = 0; pass < numDetections; pass++)
+        {
+            int bestDetection = -1, bestTrack = -1;
+            double bestDistance = Constants.kVisionTrackGateDistance;
+            for (int d = 0; d < numDetections; d++)
+            {
+                if (mDetectionTrackIds[d] != kNoTrack)
+                    continue;
+                final double x = detections[d].getTranslation().x(), y = detections[d].getTranslation().y();
+                for (int t = 0; t < mTracks.length; t++)
+                {
+                    if (!mTracks[t].isActive() || mTrackMatched[t])
+                        continue;
+                    final double distance = Math.hypot(mTracks[t].x - x, mTracks[t].y - y);
+                    if (distance < bestDistance)
+                    {
+                        bestDistance = distance;
+                        bestDetection = d;
+                        bestTrack = t;
+                    }
+                }
+            }
+            if (bestDetection < 0)
+                break;
+            correct(mTracks[bestTrack], timestamp, detections[bestDetection]);
+            mTrackMatched[bestTrack] = true;
+            mDetectionTrackIds[bestDetection] = mTracks[bestTrack].id;
+        }
+
+        // Anything unmatched is a new target
+        for (int d = 0; d < numDetections; d++)
+        {
+            if (mDetectionTrackIds[d] == kNoTrack)
+                mDetectionTrackIds[d] = startTrack(timestamp, detections[d]);
+        }
+        return Arrays.copyOf(mDetectionTrackIds, numDetections);
+    }
+
+    private void correct(Track track, double timestamp, Pose2d detection)
+    {
+        final double gain = track.variance / (track.variance + Constants.kVisionTrackMeasurementVariance);
+        track.x += gain * (detection.getTranslation().x() - track.x);
+        track.y += gain * (detection.getTranslation().y() - track.y);
+        track.variance *= 1.0 - gain;
+
+        // Blend headings on the unit circle so we don't have to deal with wrapping
+        final double headingGain = track.headingVariance
+                / (track.headingVariance + Constants.kVisionTrackHeadingMeasurementVariance);
+        track.headingCos += headingGain * (detection.getRotation().cos() - track.headingCos);
+        track.headingSin += headingGain * (detection.getRotation().sin() - track.headingSin);
+        track.headingVariance *= 1.0 - headingGain;
+
+        track.lastUpdateTime = timestamp;
+        track.hits++;
+    }
+
+    private int startTrack(double timestamp, Pose2d detection)
+    {
+        // Reuse a free slot, or evict whichever track has gone unseen the longest
+        Track slot = null;
+        for (Track track : mTracks)
+        {
+            if (!track.isActive())
+            {
+                slot = track;
+                break;
+            }
+            if (slot == null || track.lastUpdateTime < slot.lastUpdateTime)
+                slot = track;
+        }
+
+        slot.id = mNextId++;
+        slot.x = detection.getTranslation().x();
+        slot.y = detection.getTranslation().y();
+        slot.variance = Constants.kVisionTrackMeasurementVariance;
+        slot.headingCos = detection.getRotation().cos();
+        slot.headingSin = detection.getRotation().sin();
+        slot.headingVariance = Constants.kVisionTrackHeadingMeasurementVariance;
+        slot.lastUpdateTime = timestamp;
+        slot.hits = 1;
+        return slot.id;
+    }
+
+    private static boolean isLive(Track track, double now)
+    {
+        return track.isActive() && now - track.lastUpdateTime <= Constants.kVisionTrackTimeout;
+    }
+
+    /**
+     * @return the track with this ID, or null if there isn't one or it hasn't
+     *         been seen within the timeout
+     */
+    private Track findTrack(int id)
+    {
+        if (id == kNoTrack)
+            return null;
+        final double now = Clock.getTime();
+        for (Track track : mTracks)
+        {
+            if (track.id == id)
+                return isLive(track, now) ? track : null;
+        }
+        return null;
+    }
+
+    /**
+     * @return the smoothed field pose of a target, or empty if we've lost it
+     */
+    public synchronized Optional<Pose2d> getTargetPose(int id)
+    {
+        Track track = findTrack(id);
+        if (track == null)
+            return Optional.empty();
+        return Optional.of(new Pose2d(track.x, track.y, new Rotation2d(track.headingCos, track.headingSin, true)));
+    }
+
+    /**
+     * @return true if the target has been seen in enough frames to trust its pose
+     */
+    public synchronized boolean isConfirmed(int id)
+    {
+        Track track = findTrack(id);
+        return track != null && track.hits >= Constants.kVisionTrackMinHits;
+    }
+
+    /**
+     * @return the number of frames the target has been seen in, or 0 if it isn't tracked
+     */
+    public synchronized int getHits(int id)
+    {
+        Track track = findTrack(id);
+        return track == null ? 0 : track.hits;
+    }
+
+    public synchronized int getNumTracks()
+    {
+        final double now = Clock.getTime();
+        int count = 0;
+        for (Track track : mTracks)
+        {
+            if (isLive(track, now))
+                count++;
+        }
+        return count;
+    }
+
+    public synchronized void clear()
+    {
+        for (Track track : mTracks)
+            track.id = kNoTrack;
+        Arrays.fill(mDetectionTrackIds, kNoTrack);
+    }
+}
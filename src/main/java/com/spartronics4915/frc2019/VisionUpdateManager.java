@@ -1,34 +1,100 @@
 package com.spartronics4915.frc2019;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
-import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import com.spartronics4915.frc2019.Constants.ScorableLandmark;
+import com.spartronics4915.frc2019.subsystems.RobotStateEstimator;
 import com.spartronics4915.lib.geometry.Pose2d;
 import com.spartronics4915.lib.geometry.Rotation2d;
 import com.spartronics4915.lib.util.Logger;
+import com.spartronics4915.lib.util.NetworkTableEntryCache;
 import com.spartronics4915.lib.util.RobotStateMap;
+import com.spartronics4915.lib.util.Clock;
 
 import edu.wpi.first.networktables.EntryListenerFlags;
 import edu.wpi.first.networktables.EntryNotification;
 import edu.wpi.first.networktables.NetworkTableInstance;
-import edu.wpi.first.wpilibj.Timer;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.networktables.NetworkTableValue;
 
 public class VisionUpdateManager<U extends IVisionUpdate>
 {
+    // More frames back than this is a coprocessor restart rather than a late frame
+    private static final int kMaxFrameReorder = 30;
+
     private static final RuntimeException kEmptyUpdateException = new RuntimeException("VisionUpdate targets is null or doesn't have specified index!");
 
-    public static VisionUpdateManager<PNPUpdate> reversePNPVisionManager = new VisionUpdateManager<>(PNPUpdate::new, "Reverse", "solvePNP", Constants.kReverseVisionCameraOffset);
-    public static VisionUpdateManager<HeadingUpdate> reverseHeadingVisionManager = new VisionUpdateManager<>(HeadingUpdate::new, "Reverse", "heading", Constants.kReverseVisionCameraOffset);
+    // Lazy, because the state estimator (and therefore Drive) shouldn't be built by static init here
+    private static final Supplier<RobotStateMap> kRobotStateMap = () -> RobotStateEstimator.getInstance().getEncoderRobotStateMap();
+
+    // Read on every frame and every target query, so keep the entry handle around
+    private static final NetworkTableEntryCache kDashboardEntries = new NetworkTableEntryCache("");
+
+    public static VisionUpdateManager<PNPUpdate> reversePNPVisionManager = new VisionUpdateManager<>(PNPUpdate::fromNetworkTables, "Reverse", "solvePNP", true, Constants.kReverseVisionCameraOffset);
+    public static VisionUpdateManager<HeadingUpdate> reverseHeadingVisionManager = new VisionUpdateManager<>(
+            (value, cameraOffset, stateMap) -> new HeadingUpdate(value.isDoubleArray() ? value.getDoubleArray() : new double[0], cameraOffset, stateMap),
+            "Reverse", "heading", false, Constants.kReverseVisionCameraOffset);
+
+    public static final VisionTargetTracker reverseTargetTracker = new VisionTargetTracker();
+
+    static
+    {
+        reversePNPVisionManager.addListener((update) -> update.assignTrackIds(reverseTargetTracker));
+    }
+
+    /**
+     * @return which target the driver has picked when there's more than one
+     */
+    public static int getSelectedTargetIndex(int defaultIndex)
+    {
+        return (int) kDashboardEntries.get(Constants.kVisionSelectedIndexKey).getDouble(defaultIndex);
+    }
+
+    public static void setSelectedTargetIndex(int index)
+    {
+        kDashboardEntries.get(Constants.kVisionSelectedIndexKey).setDouble(index);
+    }
+
+    @FunctionalInterface
+    public interface UpdateConstructor<U>
+    {
+        /**
+         * Called on the NetworkTables listener thread when a frame arrives, so
+         * anything that depends on robot state at capture time can be looked up
+         * once here rather than on every query.
+         *
+         * @param value either a double array, or (for managers that take the
+         *              binary format) a raw record from the key with a "Raw"
+         *              suffix
+         */
+        U construct(NetworkTableValue value, Pose2d cameraOffset, RobotStateMap stateMap);
+    }
 
     private final String mNetworkTablesKey;
     private final Pose2d mCameraOffset;
-    private final BiFunction<double[], Pose2d, U> mUpdateConstructor;
+    private final UpdateConstructor<U> mUpdateConstructor;
 
-    private U mLatestVisionUpdate = null;
+    /**
+     * Updates ordered by capture time, oldest first. When full the oldest update
+     * is dropped. This is small enough that insertion by shifting is cheap.
+     */
+    private final IVisionUpdate[] mUpdates = new IVisionUpdate[Constants.kVisionUpdateBufferSize];
+    private int mUpdateCount = 0;
+
+    private final List<Consumer<U>> mListeners = new ArrayList<>();
 
-    private VisionUpdateManager(BiFunction<double[], Pose2d, U> updateConstructor, String coprocessorID, String updateTypeName, Pose2d cameraOffset)
+    // Highest frame ID seen, so repeated or late frames can be dropped; 0 is "none"
+    private int mLastFrameId = 0;
+
+    /**
+     * @param rawFormat true if the coprocessor may also publish this update as a
+     *                  binary record (see PNPFrame)
+     */
+    private VisionUpdateManager(UpdateConstructor<U> updateConstructor, String coprocessorID, String updateTypeName,
+            boolean rawFormat, Pose2d cameraOffset)
     {
         mNetworkTablesKey = "/SmartDashboard/Vision/" + coprocessorID + "/solvePNP";
         mCameraOffset = cameraOffset;
@@ -36,14 +102,28 @@ public class VisionUpdateManager<U extends IVisionUpdate>
 
         NetworkTableInstance.getDefault().addEntryListener(mNetworkTablesKey, (e) -> visionKeyChangedCallback(e),
                 EntryListenerFlags.kNew | EntryListenerFlags.kUpdate);
+        // Coprocessors that speak the binary protocol publish here instead
+        if (rawFormat)
+        {
+            NetworkTableInstance.getDefault().addEntryListener(mNetworkTablesKey + "Raw",
+                    (e) -> visionKeyChangedCallback(e), EntryListenerFlags.kNew | EntryListenerFlags.kUpdate);
+        }
     }
 
     private void visionKeyChangedCallback(EntryNotification entryNotification)
     {
         try
         {
-            double[] rawVisionUpdate = entryNotification.value.getDoubleArray();
-            mLatestVisionUpdate = mUpdateConstructor.apply(rawVisionUpdate, mCameraOffset);
+            U update = mUpdateConstructor.construct(entryNotification.value, mCameraOffset, kRobotStateMap.get());
+            if (!acceptFrameId(update.getFrameId()))
+                return;
+            // An empty frame still goes in the buffer, so getLatestVisionUpdate says the target is lost
+            if (!update.isEmpty())
+            {
+                for (Consumer<U> listener : mListeners)
+                    listener.accept(update);
+            }
+            addVisionUpdate(update);
         }
         catch (Exception e)
         {
@@ -51,105 +131,254 @@ public class VisionUpdateManager<U extends IVisionUpdate>
         }
     }
 
-    public void clearVisionUpdate()
+    /**
+     * Listeners run on the NetworkTables thread for every non-empty update,
+     * before it's visible through getLatestVisionUpdate. Register them during
+     * static init.
+     */
+    public void addListener(Consumer<U> listener)
+    {
+        mListeners.add(listener);
+    }
+
+    /**
+     * @return false if we've already had this frame or a newer one
+     */
+    synchronized boolean acceptFrameId(int frameId)
+    {
+        if (frameId == 0)
+            return true; // The legacy format doesn't number frames
+        // Far behind means the coprocessor restarted and began counting again
+        if (frameId <= mLastFrameId && mLastFrameId - frameId < kMaxFrameReorder)
+            return false;
+        mLastFrameId = frameId;
+        return true;
+    }
+
+    private synchronized void addVisionUpdate(U update)
+    {
+        final double time = update.getFrameCapturedTime();
+
+        // Frames almost always arrive in order, so this loop rarely runs
+        int insertAt = mUpdateCount;
+        while (insertAt > 0 && mUpdates[insertAt - 1].getFrameCapturedTime() > time)
+            insertAt--;
+
+        if (mUpdateCount == mUpdates.length)
+        {
+            if (insertAt == 0)
+                return; // Older than everything we're holding
+            System.arraycopy(mUpdates, 1, mUpdates, 0, insertAt - 1);
+            insertAt--;
+        }
+        else
+        {
+            System.arraycopy(mUpdates, insertAt, mUpdates, insertAt + 1, mUpdateCount - insertAt);
+            mUpdateCount++;
+        }
+        mUpdates[insertAt] = update;
+    }
+
+    public synchronized void clearVisionUpdate()
     {
-        this.mLatestVisionUpdate = null;
+        mLastFrameId = 0;
+        for (int i = 0; i < mUpdateCount; i++)
+            mUpdates[i] = null;
+        mUpdateCount = 0;
     }
 
     /**
-     * @return either empty or contains the latest vision update
+     * @return the latest vision update, or empty if the latest frame had no
+     *         targets (or there's been none since clearVisionUpdate)
      */
-    public Optional<U> getLatestVisionUpdate()
+    @SuppressWarnings("unchecked")
+    public synchronized Optional<U> getLatestVisionUpdate()
     {
-        return (mLatestVisionUpdate == null || mLatestVisionUpdate.isEmpty()) ? Optional.empty() : Optional.ofNullable(mLatestVisionUpdate);
+        if (mUpdateCount <= 0 || mUpdates[mUpdateCount - 1].isEmpty())
+            return Optional.empty();
+        return Optional.of((U) mUpdates[mUpdateCount - 1]);
     }
 
     public static class PNPUpdate implements IVisionUpdate
     {
         public  final double frameCapturedTime;
+        public final int frameId; // Zero from coprocessors using the legacy format
 
         private final Pose2d[] mTargets;
         private final Pose2d mCameraOffset;
+        private final int mSelectedIndex;
+        private final int[] mTrackIds;
+
+        // Robot state at capture time doesn't change, so we look it up once on arrival
+        private final Pose2d mFieldToCamera;
+        private final Pose2d mFieldToVehicleAtCapture;
+        private final Pose2d[] mFieldPositions;
+        private final ScorableLandmark mClosestLandmark;
+        private final Pose2d mCorrectedPoseAtCapture;
+
+        // Reused for every frame; fromNetworkTables is synchronized to protect it
+        private static final PNPFrame sFrame = new PNPFrame();
+
+        /**
+         * Decodes either the raw binary record or the legacy double array
+         * without any intermediate allocation.
+         */
+        public static synchronized PNPUpdate fromNetworkTables(NetworkTableValue value, Pose2d cameraOffset, RobotStateMap stateMap)
+        {
+            boolean valid = value.isRaw() ? sFrame.decode(value.getRaw()) : sFrame.decodeLegacy(value.getDoubleArray());
+            if (!valid)
+            {
+                Logger.warning("Malformed PNP vision update");
+                sFrame.latency = 0.0;
+            }
+            return new PNPUpdate(sFrame, cameraOffset, stateMap);
+        }
 
-        public PNPUpdate(double[] values, Pose2d cameraOffset)
+        /**
+         * @param frame decoded results; this is copied, so the frame can be reused
+         */
+        public PNPUpdate(PNPFrame frame, Pose2d cameraOffset, RobotStateMap stateMap)
         {
-            // a target is 3 numbers, we also expect one time, so
-            // the valid lengths are 1, 4, 7  => 0, 1, 2 targets
-            int len = values.length;
-            int ntargets = (len == 7) ? 2 : (len == 4) ? 1 : 0;
+            int ntargets = frame.targetCount;
             if (ntargets <= 0)
             {
-                Logger.warning("A PNP vision update must have 1, 4, or 7 doubles");
-
-                this.frameCapturedTime = 0;
+                // Ordered like any other frame, so it supersedes the targets before it
+                this.frameCapturedTime = Clock.getTime() - frame.latency;
+                this.frameId = frame.frameId;
                 mTargets = null;
                 mCameraOffset = null;
+                mSelectedIndex = 0;
+                mTrackIds = null;
+                mFieldToCamera = null;
+                mFieldToVehicleAtCapture = null;
+                mFieldPositions = null;
+                mClosestLandmark = null;
+                mCorrectedPoseAtCapture = null;
                 return;
             }
 
-            // last field is timestamp
-            double frameCapTime = values[len - 1];
             Pose2d[] targets = new Pose2d[ntargets];
-            for (int i = 0, j = 0; i < ntargets; i++, j += 3)
+            for (int i = 0; i < ntargets; i++)
             {
                 // We flip by 180 because I assumed that the vector pointed into the target, but they delivered
                 // it so that it points out of the target... Oh well.
-                targets[i] = new Pose2d(values[j + 0], values[j + 1], Rotation2d.fromDegrees(values[j + 2] + 180));
+                targets[i] = new Pose2d(frame.x[i], frame.y[i], Rotation2d.fromDegrees(frame.rotationDegrees[i] + 180));
             }
 
-            this.frameCapturedTime = Timer.getFPGATimestamp() - frameCapTime;
+            this.frameCapturedTime = Clock.getTime() - frame.latency;
+            this.frameId = frame.frameId;
             mTargets = targets;
             mCameraOffset = cameraOffset;
+            mSelectedIndex = Math.min(getSelectedTargetIndex(0), mTargets.length - 1);
+
+            mFieldToVehicleAtCapture = stateMap.getFieldToVehicle(this.frameCapturedTime);
+            mFieldToCamera = mFieldToVehicleAtCapture.transformBy(mCameraOffset);
+            mFieldPositions = new Pose2d[ntargets];
+            mTrackIds = new int[ntargets];
+            for (int i = 0; i < ntargets; i++)
+            {
+                mFieldPositions[i] = mFieldToCamera.transformBy(mTargets[i]);
+                mTrackIds[i] = VisionTargetTracker.kNoTrack;
+            }
+            mClosestLandmark = ScorableLandmarkIndex.getInstance().getClosest(mFieldToCamera,
+                    Constants.kVisionCameraHalfFOV, Constants.kVisionMaxTargetSkew);
+            mCorrectedPoseAtCapture = getCorrectedCameraPose(mClosestLandmark).transformBy(mCameraOffset.inverse());
+        }
+
+        private Pose2d getCorrectedCameraPose(ScorableLandmark landmark)
+        {
+            return mTargets[mSelectedIndex].inverse().transformBy(landmark.fieldPose);
+        }
+
+        @Override
+        public double getFrameCapturedTime()
+        {
+            return this.frameCapturedTime;
+        }
+
+        @Override
+        public int getFrameId()
+        {
+            return this.frameId;
+        }
+
+        void assignTrackIds(VisionTargetTracker tracker)
+        {
+            final int[] ids = tracker.update(this.frameCapturedTime, mFieldPositions);
+            System.arraycopy(ids, 0, mTrackIds, 0, ids.length);
+        }
+
+        public int getTargetCount()
+        {
+            return mTargets == null ? 0 : mTargets.length;
+        }
+
+        /**
+         * @return the selected target in field coordinates, using odometry at capture time
+         */
+        public Pose2d getFieldPosition()
+        {
+            return getFieldPosition(mSelectedIndex);
         }
 
-        public Pose2d getFieldPosition(RobotStateMap stateMap)
+        public Pose2d getFieldPosition(int targetIndex)
         {
-            int index = (int) SmartDashboard.getNumber(Constants.kVisionSelectedIndexKey, 0);
             if (isEmpty())
                 throw kEmptyUpdateException;
 
-            return stateMap.getFieldToVehicle(this.frameCapturedTime).transformBy(mCameraOffset)
-                    .transformBy(mTargets[Math.min(index, mTargets.length - 1)]);
+            return mFieldPositions[targetIndex];
+        }
+
+        /**
+         * @return the tracker ID of the target selected on the dashboard, which
+         *         stays the same across frames as long as the target is in view
+         */
+        public int getSelectedTrackId()
+        {
+            return getTrackId(mSelectedIndex);
+        }
+
+        public int getTrackId(int targetIndex)
+        {
+            return mTrackIds == null ? VisionTargetTracker.kNoTrack : mTrackIds[targetIndex];
         }
 
         public Pose2d getCorrectedRobotPose(ScorableLandmark landmark, RobotStateMap stateMap, double timeToGetAt)
         {
-            int index = (int) SmartDashboard.getNumber(Constants.kVisionSelectedIndexKey, 0);
             if (isEmpty())
                 throw kEmptyUpdateException;
 
-            Pose2d robotPoseRelativeToLastVisionUpdate =
-                    stateMap.get(this.frameCapturedTime).pose.transformBy(mCameraOffset).inverse().transformBy(stateMap.get(timeToGetAt).pose);
-            return mTargets[Math.min(index, mTargets.length - 1)].inverse().transformBy(landmark.fieldPose)
-                    .transformBy(robotPoseRelativeToLastVisionUpdate);
+            Pose2d robotPoseRelativeToLastVisionUpdate = mFieldToCamera.inverse().transformBy(stateMap.get(timeToGetAt).pose);
+            return getCorrectedCameraPose(landmark).transformBy(robotPoseRelativeToLastVisionUpdate);
         }
 
         public Pose2d getCorrectedRobotPoseForClosestTarget(RobotStateMap stateMap, double timeToGetAt)
         {
-            double smallestTargetDistance = Double.POSITIVE_INFINITY;
-            ScorableLandmark closestTargetPose = null;
-            Pose2d robotPose = stateMap.getFieldToVehicle(timeToGetAt);
+            return getCorrectedRobotPose(stateMap.get(timeToGetAt).pose);
+        }
 
-            for (ScorableLandmark l : Constants.ScorableLandmark.class.getEnumConstants())
-            {
-                double distance = robotPose.distance(l.fieldPose);
-                if (distance < smallestTargetDistance)
-                {
-                    closestTargetPose = l;
-                    smallestTargetDistance = distance;
-                }
-            }
+        /**
+         * @param fieldToVehicle current odometry pose (e.g. RobotStateMap.getLatestFieldToVehicle)
+         * @return the vision corrected robot pose, relative to the landmark closest to the robot
+         *         at capture time, advanced by odometry since the capture
+         */
+        public Pose2d getCorrectedRobotPose(Pose2d fieldToVehicle)
+        {
+            if (isEmpty())
+                throw kEmptyUpdateException;
 
-            if (closestTargetPose == null)
-                throw new RuntimeException("No vision targets are close! Is Constants.kVisionTargetLocations empty?");
+            return mCorrectedPoseAtCapture.transformBy(mFieldToVehicleAtCapture.inverse().transformBy(fieldToVehicle));
+        }
 
-            return getCorrectedRobotPose(closestTargetPose, stateMap, timeToGetAt);
+        public ScorableLandmark getClosestLandmark()
+        {
+            return mClosestLandmark;
         }
 
         @Override
         public boolean isEmpty()
         {
-            return mTargets == null || mTargets.length <= 0 || Timer.getFPGATimestamp() - this.frameCapturedTime >= Constants.kVisionTargetMaxStaleTime;
+            return mTargets == null || mTargets.length <= 0 || Clock.getTime() - this.frameCapturedTime >= Constants.kVisionTargetMaxStaleTime;
         }
 
     }
@@ -157,10 +386,14 @@ public class VisionUpdateManager<U extends IVisionUpdate>
     public static class HeadingUpdate implements IVisionUpdate
     {
         private final TargetInfo[] mTargets;
+        private final double mArrivalTime;
 
         // cameraOffset translation is unused
-        public HeadingUpdate(double[] values, Pose2d cameraOffset)
+        public HeadingUpdate(double[] values, Pose2d cameraOffset, RobotStateMap stateMap)
         {
+            // These don't carry a capture time, so order them by arrival instead
+            mArrivalTime = Clock.getTime();
+
             if (values.length <= 0 && values.length % 2 != 0)
             {
                 Logger.warning("A heading vision update must have an even and positive number of doubles");
@@ -179,13 +412,19 @@ public class VisionUpdateManager<U extends IVisionUpdate>
 
         public TargetInfo getTargetInfo()
         {
-            int index = (int) SmartDashboard.getNumber(Constants.kVisionSelectedIndexKey, 0);
+            int index = getSelectedTargetIndex(0);
             if (isEmpty())
                 throw kEmptyUpdateException;
 
             return mTargets[Math.min(index, mTargets.length - 1)];
         }
 
+        @Override
+        public double getFrameCapturedTime()
+        {
+            return mArrivalTime;
+        }
+
         @Override
         public boolean isEmpty()
         {
@@ -1,7 +1,9 @@
 package com.spartronics4915.frc2019.auto;
 
 import com.spartronics4915.frc2019.auto.actions.Action;
+import com.spartronics4915.lib.util.Clock;
 import com.spartronics4915.lib.util.Logger;
+import com.spartronics4915.lib.util.TimingHistogram;
 
 import edu.wpi.first.wpilibj.DriverStation;
 
@@ -15,6 +17,13 @@ public abstract class AutoModeBase
 
     protected double mUpdateRate = 1.0 / 50.0;
     protected boolean mActive = false;
+    private AutoModeStepper mStepper = null;
+
+    // Seconds from one action's last update to the next action's first: how
+    // long the robot carries on with a finished action's last command
+    private final TimingHistogram mHandoffs = new TimingHistogram("action handoff", 0.02, 1_000_000, 100);
+    private double mLastUpdateTime = Double.NaN;
+    private boolean mHandoffPending = false;
 
     protected abstract void routine() throws AutoModeEndedException;
 
@@ -30,10 +39,12 @@ public abstract class AutoModeBase
         {
             mActive = false;
             DriverStation.reportError("AUTO MODE DONE!!!! ENDED EARLY!!!!", false);
+            Logger.notice("Auto mode " + mHandoffs);
             return;
         }
 
         done();
+        Logger.notice("Auto mode " + mHandoffs);
     }
 
     public void done()
@@ -47,6 +58,29 @@ public abstract class AutoModeBase
         mActive = false;
     }
 
+    /**
+     * @return seconds between action updates
+     */
+    public double getUpdateRate()
+    {
+        return mUpdateRate;
+    }
+
+    /**
+     * While a stepper is set, runAction waits for it between updates instead
+     * of sleeping mUpdateRate. AutoModeLoop steps the mode once per Looper
+     * tick, so then actions update at the Looper's rate, not mUpdateRate.
+     */
+    void setStepper(AutoModeStepper stepper)
+    {
+        mStepper = stepper;
+    }
+
+    public TimingHistogram getActionHandoffs()
+    {
+        return mHandoffs;
+    }
+
     public boolean isActive()
     {
         return mActive;
@@ -69,7 +103,19 @@ public abstract class AutoModeBase
 
         while (isActiveWithThrow() && !action.isFinished())
         {
+            final double now = Clock.getTime();
+            if (mHandoffPending)
+            {
+                mHandoffs.record((long) ((now - mLastUpdateTime) * 1e9));
+                mHandoffPending = false;
+            }
             action.update();
+            mLastUpdateTime = now;
+            if (mStepper != null)
+            {
+                mStepper.awaitStep();
+                continue;
+            }
             long waitTime = (long) (mUpdateRate * 1000.0);
 
             try
@@ -83,5 +129,6 @@ public abstract class AutoModeBase
         }
 
         action.done();
+        mHandoffPending = !Double.isNaN(mLastUpdateTime);
     }
 }
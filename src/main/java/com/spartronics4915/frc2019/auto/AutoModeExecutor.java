@@ -1,26 +1,42 @@
 package com.spartronics4915.frc2019.auto;
 
 import com.spartronics4915.lib.util.CrashTrackingRunnable;
+import com.spartronics4915.lib.util.JVMStats;
 
 /**
  * This class selects, runs, and stops (if necessary) a specified autonomous
- * mode.
+ * mode, either on its own thread or, given an AutoModeLoop, in the enabled
+ * Looper's tick.
  */
 public class AutoModeExecutor
 {
 
+    private final AutoModeLoop m_loop; // Null to run modes on their own thread
     private AutoModeBase m_auto_mode;
     private Thread m_thread = null;
 
+    public AutoModeExecutor()
+    {
+        this(null);
+    }
+
+    public AutoModeExecutor(AutoModeLoop loop)
+    {
+        m_loop = loop;
+    }
+
     public void setAutoMode(AutoModeBase new_auto_mode)
     {
         m_auto_mode = new_auto_mode;
+        if (m_loop != null)
+            return;
         m_thread = new Thread(new CrashTrackingRunnable()
         {
 
             @Override
             public void runCrashTracked()
             {
+                JVMStats.registerCurrentThread("Auto");
                 if (m_auto_mode != null)
                 {
                     m_auto_mode.run();
@@ -31,7 +47,12 @@ public class AutoModeExecutor
 
     public void start()
     {
-        if (m_thread != null)
+        if (m_loop != null)
+        {
+            if (m_auto_mode != null)
+                m_loop.setAutoMode(m_auto_mode);
+        }
+        else if (m_thread != null)
         {
             m_thread.start();
         }
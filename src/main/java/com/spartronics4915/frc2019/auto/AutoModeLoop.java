@@ -0,0 +1,122 @@
+package com.spartronics4915.frc2019.auto;
+
+import com.spartronics4915.frc2019.Constants;
+import com.spartronics4915.lib.util.ILoop;
+import com.spartronics4915.lib.util.Logger;
+
+/**
+ * Runs the auto mode inside the enabled Looper's tick, instead of on a thread
+ * of its own that sleeps between action updates. Register it after the
+ * SubsystemManager's loops; each tick then steps the mode through an
+ * AutoModeStepper once the subsystems have run, so an action sees this
+ * tick's state, and a finished action hands off to the next one in the same
+ * tick. The mode still has a thread for routine's stack, but it is parked
+ * except while the Looper thread waits on it.
+ * <p>
+ * Actions read the time with Clock as usual; during a tick that's as good as
+ * the Looper's timestamp.
+ * <p>
+ * The Looper waits at most the step timeout for the mode. If an action or the
+ * routine takes longer (a regression at the end of a characterization, say),
+ * the tick goes on without it and the mode finishes that step alone; later
+ * ticks don't step it again until it has, and the late steps are logged.
+ */
+public class AutoModeLoop implements ILoop
+{
+
+    private final double mStepTimeout;
+    private AutoModeBase mMode = null;
+    private AutoModeStepper mStepper = null; // Null until the mode's first tick
+    private int mLateTicks = 0; // Ticks the current step has run past its timeout
+
+    public AutoModeLoop()
+    {
+        this(Constants.kLooperDt);
+    }
+
+    /**
+     * @param stepTimeout seconds each tick waits for the mode; simulations that
+     *                    must be deterministic pass Double.POSITIVE_INFINITY
+     */
+    public AutoModeLoop(double stepTimeout)
+    {
+        mStepTimeout = stepTimeout;
+    }
+
+    /**
+     * Run mode from the next tick on, stopping any mode that's still running.
+     */
+    public synchronized void setAutoMode(AutoModeBase mode)
+    {
+        finish();
+        mMode = mode;
+    }
+
+    /**
+     * @return true from setAutoMode until the mode finishes or is stopped
+     */
+    public synchronized boolean isRunning()
+    {
+        return mMode != null;
+    }
+
+    @Override
+    public void onStart(double timestamp)
+    {
+    }
+
+    @Override
+    public synchronized void onLoop(double timestamp)
+    {
+        if (mMode == null)
+            return;
+
+        final boolean yielded;
+        if (mStepper == null)
+        {
+            Logger.notice("Starting auto mode " + mMode.getClass().getSimpleName());
+            mStepper = new AutoModeStepper(mMode);
+            yielded = mStepper.tryStart(mStepTimeout);
+        }
+        else
+        {
+            yielded = mStepper.tryStep(mStepTimeout);
+        }
+
+        if (!yielded)
+        {
+            if (mLateTicks++ == 0)
+                Logger.warning("Auto mode step overran " + (int) (mStepTimeout * 1000) + " ms, skipping ticks");
+            return;
+        }
+        if (mLateTicks > 0)
+        {
+            Logger.warning("Auto mode step caught up after " + mLateTicks + " skipped ticks");
+            mLateTicks = 0;
+        }
+
+        if (mStepper.isFinished())
+        {
+            mMode = null;
+            mStepper = null;
+        }
+    }
+
+    @Override
+    public synchronized void onStop(double timestamp)
+    {
+        finish();
+    }
+
+    // A stopped mode only needs stepping to get out of its routine
+    private void finish()
+    {
+        if (mStepper != null)
+            mStepper.stop();
+        else if (mMode != null)
+            mMode.stop();
+        mMode = null;
+        mStepper = null;
+        mLateTicks = 0;
+    }
+}
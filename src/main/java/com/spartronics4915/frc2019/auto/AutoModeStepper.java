@@ -0,0 +1,147 @@
+package com.spartronics4915.frc2019.auto;
+
+import com.spartronics4915.lib.util.CrashTrackingRunnable;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs an auto mode on its own thread, but only lets it advance when step()
+ * is called: each step runs the mode until its next wait between action
+ * updates, and step() doesn't return until it gets there. Only one of the
+ * caller and the mode is ever running, so a simulation can interleave the
+ * mode with its own ticks deterministically, as fast as it likes.
+ * <p>
+ * tryStep bounds the wait instead. A mode that doesn't reach its next wait in
+ * time keeps running alone, and the next step picks it up where it yields
+ * rather than letting it go again.
+ */
+public class AutoModeStepper
+{
+
+    private final AutoModeBase mMode;
+    private final Semaphore mGo = new Semaphore(0);
+    private final Semaphore mYielded = new Semaphore(0);
+    private volatile boolean mFinished = false;
+    private boolean mRunning = false; // Let go by a tryStep that timed out; caller's thread only
+
+    public AutoModeStepper(AutoModeBase mode)
+    {
+        mMode = mode;
+    }
+
+    /**
+     * Start the mode's thread and run it up to its first wait.
+     */
+    public void start()
+    {
+        launch();
+        step();
+    }
+
+    /**
+     * Start the mode's thread and run it up to its first wait, or for at
+     * most timeout seconds; see tryStep.
+     */
+    public boolean tryStart(double timeout)
+    {
+        launch();
+        return tryStep(timeout);
+    }
+
+    private void launch()
+    {
+        mMode.setStepper(this);
+        Thread thread = new Thread(new CrashTrackingRunnable()
+        {
+
+            @Override
+            public void runCrashTracked()
+            {
+                try
+                {
+                    mGo.acquireUninterruptibly();
+                    mMode.run();
+                }
+                finally
+                {
+                    mFinished = true;
+                    mYielded.release();
+                }
+            }
+        }, "AutoModeStepper");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Let the mode run until it next waits.
+     *
+     * @return false once the mode has finished
+     */
+    public boolean step()
+    {
+        if (!mRunning)
+        {
+            if (mFinished)
+                return false;
+            mGo.release();
+        }
+        mYielded.acquireUninterruptibly();
+        mRunning = false;
+        return !mFinished;
+    }
+
+    /**
+     * Let the mode run until it next waits, or for at most timeout seconds.
+     * If it isn't back by then it carries on by itself; the next step or
+     * tryStep waits for it to yield instead of starting another step.
+     *
+     * @return false if the mode is still running when the timeout expires
+     */
+    public boolean tryStep(double timeout)
+    {
+        if (!mRunning)
+        {
+            if (mFinished)
+                return true;
+            mRunning = true;
+            mGo.release();
+        }
+        try
+        {
+            if (!mYielded.tryAcquire((long) (timeout * 1e9), TimeUnit.NANOSECONDS))
+                return false;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        mRunning = false;
+        return true;
+    }
+
+    /**
+     * Stop the mode and step it until its thread is out of the routine.
+     */
+    public void stop()
+    {
+        mMode.stop();
+        while (step())
+        {
+        }
+    }
+
+    public boolean isFinished()
+    {
+        return mFinished;
+    }
+
+    // Called on the mode's thread between action updates
+    void awaitStep()
+    {
+        mYielded.release();
+        mGo.acquireUninterruptibly();
+    }
+}
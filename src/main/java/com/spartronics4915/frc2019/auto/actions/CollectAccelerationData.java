@@ -6,10 +6,11 @@ import com.spartronics4915.frc2019.subsystems.Drive;
 import com.spartronics4915.lib.physics.DriveCharacterization;
 import com.spartronics4915.lib.physics.DriveCharacterization.AccelerationDataPoint;
 import com.spartronics4915.lib.util.DriveSignal;
+import com.spartronics4915.lib.util.KinematicFilter;
 import com.spartronics4915.lib.util.Logger;
-import com.spartronics4915.lib.util.ReflectingCSVWriter;
+import com.spartronics4915.lib.util.BinaryLogWriter;
 import com.spartronics4915.lib.util.Util;
-import edu.wpi.first.wpilibj.Timer;
+import com.spartronics4915.lib.util.Clock;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 import java.nio.file.Paths;
@@ -22,15 +23,16 @@ public class CollectAccelerationData implements Action
     private static final double kTotalTime = 3.0; //how long to run the test for
     private static final Drive mDrive = Drive.getInstance();
 
-    private final ReflectingCSVWriter<DriveCharacterization.AccelerationDataPoint> mCSVWriter;
+    private final BinaryLogWriter<DriveCharacterization.AccelerationDataPoint> mLogWriter;
     private final List<DriveCharacterization.AccelerationDataPoint> mAccelerationData;
     private final boolean mTurn;
     private final boolean mReverse;
     private final SideToCharacterize mSide;
 
+    private final KinematicFilter mVelocityFilter =
+            KinematicFilter.fromSmoothingFactor(Constants.kCharacterizationAccelSmoothing);
+
     private double mStartTime = 0.0;
-    private double mPrevVelocity = 0.0;
-    private double mPrevTime = 0.0;
 
     /**
      * This test collects data about the behavior of the drivetrain in a "dynamic
@@ -55,7 +57,7 @@ public class CollectAccelerationData implements Action
         mReverse = reverse;
         mTurn = turnInPlace;
         mSide = side;
-        mCSVWriter = new ReflectingCSVWriter<>(Paths.get(System.getProperty("user.home"), "ACCEL_DATA.csv").toString(),
+        mLogWriter = new BinaryLogWriter<>(Paths.get(System.getProperty("user.home"), "ACCEL_DATA.bin").toString(),
                 DriveCharacterization.AccelerationDataPoint.class);
     }
 
@@ -65,8 +67,8 @@ public class CollectAccelerationData implements Action
         mDrive.setOpenLoop(new DriveSignal(
                 (mReverse ? -1.0 : 1.0) * kPower,
                 (mReverse ? -1.0 : 1.0) * (mTurn ? -1.0 : 1.0) * kPower));
-        mStartTime = Timer.getFPGATimestamp();
-        mPrevTime = mStartTime;
+        mStartTime = Clock.getTime();
+        mVelocityFilter.reset();
         SmartDashboard.putBoolean("isDone", false);
         Logger.debug("Collecting acceleration data");
     }
@@ -77,43 +79,34 @@ public class CollectAccelerationData implements Action
         // convert to radians/sec
         double currentVelocity =
                 mSide.getVelocityTicksPer100ms(mDrive) / Constants.kDriveEncoderPPR * (2 * Math.PI) * 10;
-        double currentTime = Timer.getFPGATimestamp();
+        double currentTime = Clock.getTime();
 
         SmartDashboard.putNumber("CollectAccelerationData/currentTime", currentTime);
 
-        // don't calculate acceleration until we've populated prevTime and prevVelocity
-        if (mPrevTime == mStartTime)
-        {
-            mPrevTime = currentTime;
-            mPrevVelocity = currentVelocity;
+        // the filter differentiates velocity for us, and needs one sample before it has a rate
+        boolean hasPrevSample = mVelocityFilter.isInitialized();
+        mVelocityFilter.update(currentTime, currentVelocity);
+        if (!hasPrevSample)
             return;
-        }
 
-        double acceleration = (currentVelocity - mPrevVelocity) / (currentTime - mPrevTime);
+        double acceleration = mVelocityFilter.getVelocity();
 
         // ignore accelerations that are effectively 0
         if (acceleration < Util.kEpsilon)
-        {
-            mPrevTime = currentTime;
-            mPrevVelocity = currentVelocity;
             return;
-        }
 
         mAccelerationData.add(new DriveCharacterization.AccelerationDataPoint(
-                currentVelocity, // rads/sec
+                mVelocityFilter.getPosition(), // rads/sec
                 mSide.getVoltage(mDrive), //convert to volts
                 acceleration));
 
-        mCSVWriter.add(mAccelerationData.get(mAccelerationData.size() - 1));
-
-        mPrevTime = currentTime;
-        mPrevVelocity = currentVelocity;
+        mLogWriter.add(mAccelerationData.get(mAccelerationData.size() - 1));
     }
 
     @Override
     public boolean isFinished()
     {
-        return Timer.getFPGATimestamp() - mStartTime > kTotalTime || SmartDashboard.getBoolean("isDone", false);
+        return Clock.getTime() - mStartTime > kTotalTime || SmartDashboard.getBoolean("isDone", false);
     }
 
     @Override
@@ -126,6 +119,6 @@ public class CollectAccelerationData implements Action
         mAccelerationData.subList(0, mAccelerationData.indexOf(maxDataPoint)).clear();
 
         mDrive.setOpenLoop(DriveSignal.BRAKE);
-        mCSVWriter.flush(); // CSV writer will have value around 0 removed, but the max accel trimming will not be applied
+        mLogWriter.close(); // Log will have values around 0 removed, but the max accel trimming will not be applied
     }
 }
@@ -5,8 +5,8 @@ import com.spartronics4915.frc2019.subsystems.Drive;
 import com.spartronics4915.frc2019.subsystems.RobotStateEstimator;
 import com.spartronics4915.lib.physics.DriveCharacterization;
 import com.spartronics4915.lib.util.DriveSignal;
-import com.spartronics4915.lib.util.ReflectingCSVWriter;
-import edu.wpi.first.wpilibj.Timer;
+import com.spartronics4915.lib.util.BinaryLogWriter;
+import com.spartronics4915.lib.util.Clock;
 
 import java.nio.file.Paths;
 import java.util.List;
@@ -21,7 +21,7 @@ public class CollectCurvatureData implements Action
     private static final Drive mDrive = Drive.getInstance();
     private static final RobotStateMap mRobotStateMap = RobotStateEstimator.getInstance().getEncoderRobotStateMap();
 
-    private final ReflectingCSVWriter<DriveCharacterization.CurvatureDataPoint> mCSVWriter;
+    private final BinaryLogWriter<DriveCharacterization.CurvatureDataPoint> mLogWriter;
     private final List<DriveCharacterization.CurvatureDataPoint> mCurvatureData;
     private final boolean mReverse;
 
@@ -38,7 +38,7 @@ public class CollectCurvatureData implements Action
     {
         mCurvatureData = data;
         mReverse = reverse;
-        mCSVWriter = new ReflectingCSVWriter<>(Paths.get(System.getProperty("user.home"), "CURVATURE_DATA.csv").toString(), DriveCharacterization.CurvatureDataPoint.class);
+        mLogWriter = new BinaryLogWriter<>(Paths.get(System.getProperty("user.home"), "CURVATURE_DATA.bin").toString(), DriveCharacterization.CurvatureDataPoint.class);
 
     }
 
@@ -46,13 +46,13 @@ public class CollectCurvatureData implements Action
     public void start()
     {
         mDrive.setOpenLoop(new DriveSignal(kStartPower, kStartPower));
-        mStartTime = Timer.getFPGATimestamp();
+        mStartTime = Clock.getTime();
     }
 
     @Override
     public void update()
     {
-        double t = Timer.getFPGATimestamp() - mStartTime;
+        double t = Clock.getTime() - mStartTime;
         if (t < kStartTime)
         { //give the robot some time to accelerate before recording data
             return;
@@ -68,7 +68,7 @@ public class CollectCurvatureData implements Action
         mCurvatureData.add(new DriveCharacterization.CurvatureDataPoint(
                 state.predictedVelocity.dx, state.predictedVelocity.dtheta,
                 kStartPower, rightPower));
-        mCSVWriter.add(mCurvatureData.get(mCurvatureData.size() - 1));
+        mLogWriter.add(mCurvatureData.get(mCurvatureData.size() - 1));
     }
 
     @Override
@@ -81,6 +81,6 @@ public class CollectCurvatureData implements Action
     public void done()
     {
         mDrive.setOpenLoop(DriveSignal.BRAKE);
-        mCSVWriter.flush();
+        mLogWriter.close();
     }
 }
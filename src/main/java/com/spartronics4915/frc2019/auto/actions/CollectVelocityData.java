@@ -6,10 +6,10 @@ import com.spartronics4915.frc2019.subsystems.Drive;
 import com.spartronics4915.lib.physics.DriveCharacterization;
 import com.spartronics4915.lib.util.DriveSignal;
 import com.spartronics4915.lib.util.Logger;
-import com.spartronics4915.lib.util.ReflectingCSVWriter;
+import com.spartronics4915.lib.util.BinaryLogWriter;
 import com.spartronics4915.lib.util.Util;
+import com.spartronics4915.lib.util.Clock;
 
-import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 import java.nio.file.Paths;
@@ -22,7 +22,7 @@ public class CollectVelocityData implements Action
     private static final double kRampRate = 0.02;
     private static final Drive mDrive = Drive.getInstance();
 
-    private final ReflectingCSVWriter<DriveCharacterization.VelocityDataPoint> mCSVWriter;
+    private final BinaryLogWriter<DriveCharacterization.VelocityDataPoint> mLogWriter;
     private final List<DriveCharacterization.VelocityDataPoint> mVelocityData;
     private final boolean mTurn;
     private final boolean mReverse;
@@ -52,7 +52,7 @@ public class CollectVelocityData implements Action
         mReverse = reverse;
         mTurn = turnInPlace;
         mSide = side;
-        mCSVWriter = new ReflectingCSVWriter<>(Paths.get(System.getProperty("user.home"), "VELOCITY_DATA.csv").toString(),
+        mLogWriter = new BinaryLogWriter<>(Paths.get(System.getProperty("user.home"), "VELOCITY_DATA.bin").toString(),
                 DriveCharacterization.VelocityDataPoint.class);
 
     }
@@ -60,7 +60,7 @@ public class CollectVelocityData implements Action
     @Override
     public void start()
     {
-        mStartTime = Timer.getFPGATimestamp();
+        mStartTime = Clock.getTime();
         SmartDashboard.putBoolean("isDone", false);
         Logger.debug("Collecting velocity data");
     }
@@ -68,7 +68,7 @@ public class CollectVelocityData implements Action
     @Override
     public void update()
     {
-        double percentPower = kRampRate * (Timer.getFPGATimestamp() - mStartTime);
+        double percentPower = kRampRate * (Clock.getTime() - mStartTime);
         if (percentPower > kMaxPower)
         {
             isFinished = true;
@@ -90,7 +90,7 @@ public class CollectVelocityData implements Action
                 velocity, // rads/sec
                 mSide.getVoltage(mDrive) // convert to volts
         ));
-        mCSVWriter.add(mVelocityData.get(mVelocityData.size() - 1));
+        mLogWriter.add(mVelocityData.get(mVelocityData.size() - 1));
 
     }
 
@@ -104,6 +104,6 @@ public class CollectVelocityData implements Action
     public void done()
     {
         mDrive.setOpenLoop(DriveSignal.BRAKE);
-        mCSVWriter.flush();
+        mLogWriter.close();
     }
 }
@@ -5,10 +5,10 @@ import java.nio.file.Paths;
 import com.spartronics4915.frc2019.Constants;
 import com.spartronics4915.frc2019.subsystems.Drive;
 import com.spartronics4915.lib.util.DriveSignal;
-import com.spartronics4915.lib.util.ReflectingCSVWriter;
+import com.spartronics4915.lib.util.BinaryLogWriter;
 import com.spartronics4915.lib.util.Units;
-
-import edu.wpi.first.wpilibj.Timer;
+import com.spartronics4915.lib.util.Stopwatch;
+import com.spartronics4915.lib.util.Clock;
 
 public class DiagnoseDropouts implements Action
 {
@@ -17,12 +17,12 @@ public class DiagnoseDropouts implements Action
     private final double kRunTime = 10.0; // Seconds
 
     private final Drive mDrive = Drive.getInstance();
-    private final Timer mTimer = new Timer();
-    private final ReflectingCSVWriter<VelocityTimeDataPoint> mCSVWriter;
+    private final Stopwatch mTimer = new Stopwatch();
+    private final BinaryLogWriter<VelocityTimeDataPoint> mLogWriter;
 
     public DiagnoseDropouts()
     {
-        mCSVWriter = new ReflectingCSVWriter<>(Paths.get(System.getProperty("user.home"), "DROPOUT_DATAs.csv").toString(), VelocityTimeDataPoint.class);
+        mLogWriter = new BinaryLogWriter<>(Paths.get(System.getProperty("user.home"), "DROPOUT_DATAs.bin").toString(), VelocityTimeDataPoint.class);
         mTimer.start();
         mTimer.reset();
     }
@@ -37,13 +37,13 @@ public class DiagnoseDropouts implements Action
     public void update()
     {
         mDrive.setOpenLoop(kPercentDemand);
-        mCSVWriter.add(new VelocityTimeDataPoint(mDrive.getLeftVelocityTicksPer100ms()));
+        mLogWriter.add(new VelocityTimeDataPoint(mDrive.getLeftVelocityTicksPer100ms()));
     }
 
     @Override
     public void done()
     {
-        mCSVWriter.flush();
+        mLogWriter.close();
     }
 
     @Override
@@ -64,7 +64,7 @@ public class DiagnoseDropouts implements Action
         public VelocityTimeDataPoint(double velocity)
         {
             this.velocity = Units.rads_per_sec_to_rpm(velocity / Constants.kDriveEncoderPPR * (2 * Math.PI) * 10);
-            this.time = Timer.getFPGATimestamp();
+            this.time = Clock.getTime();
         }
     }
 }
@@ -6,11 +6,11 @@ import com.spartronics4915.frc2019.Constants;
 import com.spartronics4915.frc2019.subsystems.Drive;
 import com.spartronics4915.lib.util.DriveSignal;
 import com.spartronics4915.lib.util.Logger;
+import com.spartronics4915.lib.util.Clock;
 
 import edu.wpi.first.networktables.NetworkTableEntry;
 import edu.wpi.first.networktables.NetworkTableInstance;
 import edu.wpi.first.wpilibj.RobotController;
-import edu.wpi.first.wpilibj.Timer;
 
 public class FeedRemoteCharacterization implements Action
 {
@@ -39,7 +39,7 @@ public class FeedRemoteCharacterization implements Action
     @Override
     public void update()
     {
-        double now = Timer.getFPGATimestamp();
+        double now = Clock.getTime();
         
         // The script says to use ft/s, but we use radians because that works better for us
 
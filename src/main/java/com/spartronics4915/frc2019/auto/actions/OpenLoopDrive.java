@@ -2,7 +2,7 @@ package com.spartronics4915.frc2019.auto.actions;
 
 import com.spartronics4915.frc2019.subsystems.Drive;
 import com.spartronics4915.lib.util.DriveSignal;
-import edu.wpi.first.wpilibj.Timer;
+import com.spartronics4915.lib.util.Clock;
 
 public class OpenLoopDrive implements Action
 {
@@ -22,7 +22,7 @@ public class OpenLoopDrive implements Action
     @Override
     public boolean isFinished()
     {
-        return Timer.getFPGATimestamp() - mStartTime > mDuration;
+        return Clock.getTime() - mStartTime > mDuration;
     }
 
     @Override
@@ -40,6 +40,6 @@ public class OpenLoopDrive implements Action
     public void start()
     {
         mDrive.setOpenLoop(new DriveSignal(mLeft, mRight));
-        mStartTime = Timer.getFPGATimestamp();
+        mStartTime = Clock.getTime();
     }
 }
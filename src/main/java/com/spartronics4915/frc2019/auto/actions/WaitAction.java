@@ -1,6 +1,6 @@
 package com.spartronics4915.frc2019.auto.actions;
 
-import edu.wpi.first.wpilibj.Timer;
+import com.spartronics4915.lib.util.Clock;
 
 /**
  * Action to wait for a given amount of time
@@ -20,7 +20,7 @@ public class WaitAction implements Action
     @Override
     public boolean isFinished()
     {
-        return Timer.getFPGATimestamp() - mStartTime >= mTimeToWait;
+        return Clock.getTime() - mStartTime >= mTimeToWait;
     }
 
     @Override
@@ -38,6 +38,6 @@ public class WaitAction implements Action
     @Override
     public void start()
     {
-        mStartTime = Timer.getFPGATimestamp();
+        mStartTime = Clock.getTime();
     }
 }
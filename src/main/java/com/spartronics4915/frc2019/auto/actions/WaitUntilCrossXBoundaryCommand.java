@@ -2,7 +2,7 @@ package com.spartronics4915.frc2019.auto.actions;
 
 import com.spartronics4915.frc2019.subsystems.RobotStateEstimator;
 import com.spartronics4915.lib.util.RobotStateMap;
-import edu.wpi.first.wpilibj.Timer;
+import com.spartronics4915.lib.util.Clock;
 
 public class WaitUntilCrossXBoundaryCommand implements Action
 {
@@ -18,7 +18,7 @@ public class WaitUntilCrossXBoundaryCommand implements Action
     public boolean isFinished()
     {
         return RobotStateEstimator.getInstance().
-            getEncoderRobotStateMap().getFieldToVehicle(Timer.getFPGATimestamp()).getTranslation().x() > mXBoundary;
+            getEncoderRobotStateMap().getFieldToVehicle(Clock.getTime()).getTranslation().x() > mXBoundary;
     }
 
     @Override
@@ -4,7 +4,7 @@ import com.spartronics4915.frc2019.VisionUpdateManager;
 import com.spartronics4915.frc2019.Constants.ScorableLandmark;
 import com.spartronics4915.frc2019.subsystems.RobotStateEstimator;
 import com.spartronics4915.lib.util.RobotStateMap;
-import edu.wpi.first.wpilibj.Timer;
+import com.spartronics4915.lib.util.Clock;
 
 public class ZeroOdometryFromVision implements Action
 {
@@ -37,7 +37,7 @@ public class ZeroOdometryFromVision implements Action
             if (mVisionCaptureTime > mStartTime)
             {
                 mStateEstimator.resetRobotStateMaps(
-                        visionUpdate.getCorrectedRobotPose(kTargetLandmark, mStateEstimator.getEncoderRobotStateMap(), Timer.getFPGATimestamp()));
+                        visionUpdate.getCorrectedRobotPose(kTargetLandmark, mStateEstimator.getEncoderRobotStateMap(), Clock.getTime()));
 
                 mZeroed = true;
             }
@@ -53,7 +53,7 @@ public class ZeroOdometryFromVision implements Action
     @Override
     public void start()
     {
-        mStartTime = Timer.getFPGATimestamp();
+        mStartTime = Clock.getTime();
     }
 
 }
@@ -4,10 +4,13 @@ import com.spartronics4915.lib.util.ILooper;
 import com.spartronics4915.lib.util.ILoop;
 import com.spartronics4915.frc2019.Constants;
 import com.spartronics4915.lib.util.CrashTrackingRunnable;
+import com.spartronics4915.lib.util.JVMStats;
 import com.spartronics4915.lib.util.Logger;
+import com.spartronics4915.lib.util.LoopWatchdog;
+import com.spartronics4915.lib.util.TimingHistogram;
+import com.spartronics4915.lib.util.Clock;
 
 import edu.wpi.first.wpilibj.Notifier;
-import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 import java.util.ArrayList;
@@ -17,19 +20,34 @@ import java.util.List;
  * This code runs all of the robot's loops. Loop objects are stored in a List
  * object. They are started when the robot
  * powers up and stopped after the match.
+ *
+ * Each loop's onLoop, and the cycle as a whole, is timed into a histogram so we
+ * can see who is using up kPeriod. Timings are published to SmartDashboard
+ * about once a second and logged when the looper stops.
+ *
+ * A LoopWatchdog samples the looper thread's stack whenever a cycle runs past
+ * kPeriod, so the log says where overruns spend their time, not just that
+ * they happened.
  */
 public class Looper implements ILooper
 {
 
     public final double kPeriod = Constants.kLooperDt;
+    private static final double kTimingReportPeriod = 1.0; // Seconds
 
     private boolean running_;
 
+    private final String name_;
     private final Notifier notifier_;
     private final List<ILoop> loops_;
+    private final List<TimingHistogram> loopTimings_;
+    private final TimingHistogram cycleTiming_;
+    private final LoopWatchdog watchdog_;
     private final Object taskRunningLock_ = new Object();
     private double timestamp_ = 0;
     private double dt_ = 0;
+    private double nextTimingReport_ = 0;
+    private boolean threadRegistered_ = false;
 
     private final CrashTrackingRunnable runnable_ = new CrashTrackingRunnable()
     {
@@ -41,12 +59,30 @@ public class Looper implements ILooper
             {
                 if (running_)
                 {
-                    double now = Timer.getFPGATimestamp();
+                    if (!threadRegistered_)
+                    {
+                        // The Notifier's thread only exists once it calls us
+                        JVMStats.registerCurrentThread(name_);
+                        threadRegistered_ = true;
+                    }
+                    watchdog_.cycleStarted();
+                    double now = Clock.getTime();
+                    final long cycleStart = System.nanoTime();
 
-                    for (ILoop loop : loops_)
+                    try
+                    {
+                        for (int i = 0; i < loops_.size(); i++)
+                        {
+                            final long loopStart = System.nanoTime();
+                            loops_.get(i).onLoop(now);
+                            loopTimings_.get(i).record(System.nanoTime() - loopStart);
+                        }
+                    }
+                    finally
                     {
-                        loop.onLoop(now);
+                        watchdog_.cycleFinished();
                     }
+                    cycleTiming_.record(System.nanoTime() - cycleStart);
 
                     dt_ = now - timestamp_;
                     timestamp_ = now;
@@ -57,9 +93,21 @@ public class Looper implements ILooper
 
     public Looper()
     {
+        this("Looper");
+    }
+
+    /**
+     * @param name prefix for timing telemetry
+     */
+    public Looper(String name)
+    {
+        name_ = name;
         notifier_ = new Notifier(runnable_);
         running_ = false;
         loops_ = new ArrayList<>();
+        loopTimings_ = new ArrayList<>();
+        cycleTiming_ = new TimingHistogram("cycle", kPeriod);
+        watchdog_ = new LoopWatchdog(name, kPeriod, Constants.kLoopWatchdogSamplePeriod);
     }
 
     @Override
@@ -68,9 +116,17 @@ public class Looper implements ILooper
         synchronized (taskRunningLock_)
         {
             loops_.add(loop);
+            loopTimings_.add(new TimingHistogram(getLoopName(loop), kPeriod));
         }
     }
 
+    // Loops are mostly inner classes, e.g. Drive$EnabledLoop
+    private static String getLoopName(ILoop loop)
+    {
+        String name = loop.getClass().getName();
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
     public synchronized void start()
     {
         if (!running_)
@@ -78,13 +134,16 @@ public class Looper implements ILooper
             Logger.info("Starting loops");
             synchronized (taskRunningLock_)
             {
-                timestamp_ = Timer.getFPGATimestamp();
+                timestamp_ = Clock.getTime();
                 for (ILoop loop : loops_)
                 {
                     loop.onStart(timestamp_);
                 }
+                cycleTiming_.reset();
+                loopTimings_.forEach(TimingHistogram::reset);
                 running_ = true;
             }
+            watchdog_.start();
             notifier_.startPeriodic(kPeriod);
         }
     }
@@ -98,18 +157,37 @@ public class Looper implements ILooper
             synchronized (taskRunningLock_)
             {
                 running_ = false;
-                timestamp_ = Timer.getFPGATimestamp();
+                timestamp_ = Clock.getTime();
                 for (ILoop loop : loops_)
                 {
                     Logger.info("Stopping " + loop);
                     loop.onStop(timestamp_);
                 }
+                logTimings();
             }
         }
     }
 
+    private void logTimings()
+    {
+        Logger.notice(name_ + " " + cycleTiming_);
+        for (TimingHistogram timing : loopTimings_)
+            Logger.notice(name_ + " " + timing);
+        watchdog_.logReport();
+    }
+
     public void outputToSmartDashboard()
     {
         SmartDashboard.putNumber("looper_dt", dt_);
+
+        double now = Clock.getTime();
+        if (now > nextTimingReport_)
+        {
+            nextTimingReport_ = now + kTimingReportPeriod;
+            SmartDashboard.putString(name_ + "/timing/cycle", cycleTiming_.getSummary());
+            SmartDashboard.putNumber(name_ + "/timing/overruns", cycleTiming_.getOverruns());
+            for (int i = 0; i < loopTimings_.size(); i++)
+                SmartDashboard.putString(name_ + "/timing/" + loopTimings_.get(i).getName(), loopTimings_.get(i).getSummary());
+        }
     }
 }
@@ -1,6 +1,7 @@
 package com.spartronics4915.frc2019.planners;
 
 import com.spartronics4915.frc2019.Constants;
+import com.spartronics4915.lib.geometry.MutablePose2d;
 import com.spartronics4915.lib.geometry.Pose2d;
 import com.spartronics4915.lib.geometry.Pose2dWithCurvature;
 import com.spartronics4915.lib.geometry.Rotation2d;
@@ -13,6 +14,7 @@ import com.spartronics4915.lib.trajectory.timing.TimedState;
 import com.spartronics4915.lib.trajectory.timing.TimingConstraint;
 import com.spartronics4915.lib.trajectory.timing.TimingUtil;
 import com.spartronics4915.lib.util.CSVWritable;
+import com.spartronics4915.lib.util.KinematicFilter;
 import com.spartronics4915.lib.util.Logger;
 import com.spartronics4915.lib.util.Units;
 import com.spartronics4915.lib.util.Util;
@@ -51,31 +53,46 @@ public class DriveMotionPlanner implements CSVWritable
     boolean mIsReversed = false;
     double mLastTime = Double.POSITIVE_INFINITY;
     public TimedState<Pose2dWithCurvature> mSetpoint = new TimedState<>(Pose2dWithCurvature.identity());
-    Pose2d mError = Pose2d.identity();
+    // Overwritten every update rather than reallocated
+    final MutablePose2d mError = new MutablePose2d();
     Output mOutput = new Output();
 
-    DifferentialDrive.ChassisState prev_velocity_ = new DifferentialDrive.ChassisState();
+    // Commanded chassis velocity is filtered so its derivative can be used as a feedforward acceleration
+    final KinematicFilter mLinearVelocityFilter = KinematicFilter.fromSmoothingFactor(Constants.kPathFollowerAccelSmoothing);
+    final KinematicFilter mAngularVelocityFilter = KinematicFilter.fromSmoothingFactor(Constants.kPathFollowerAccelSmoothing);
     double mDt = 0.0;
 
     public DriveMotionPlanner()
     {
-        final DCMotorTransmission transmissionLeft = makeTransmission(Constants.kDriveLeftVIntercept, Constants.kDriveLeftKv, Constants.kDriveLeftKa);
-        final DCMotorTransmission transmissionRight =
-                makeTransmission(Constants.kDriveRightVIntercept, Constants.kDriveRightKv, Constants.kDriveRightKa);
-        mModel = new DifferentialDrive(
+        mModel = createModel(Constants.kDriveWheelRadiusInches, Constants.kTrackScrubFactor,
+                Constants.kDriveLeftVIntercept, Constants.kDriveLeftKv, Constants.kDriveLeftKa,
+                Constants.kDriveRightVIntercept, Constants.kDriveRightKv, Constants.kDriveRightKa);
+    }
+
+    /**
+     * The drive model for a set of characterization results. We plan with the
+     * ones in Constants; simulations build robots that differ from them.
+     */
+    public static DifferentialDrive createModel(double wheelRadiusInches, double trackScrubFactor,
+            double leftVIntercept, double leftKv, double leftKa,
+            double rightVIntercept, double rightKv, double rightKa)
+    {
+        return new DifferentialDrive(
                 Constants.kRobotLinearInertia,
                 Constants.kRobotAngularInertia,
                 Constants.kRobotAngularDrag,
-                Units.inches_to_meters(Constants.kDriveWheelDiameterInches / 2.0),
-                Units.inches_to_meters(Constants.kDriveWheelTrackWidthInches / 2.0 * Constants.kTrackScrubFactor),
-                transmissionLeft, transmissionRight);
+                Units.inches_to_meters(wheelRadiusInches),
+                Units.inches_to_meters(Constants.kDriveWheelTrackWidthInches / 2.0 * trackScrubFactor),
+                makeTransmission(wheelRadiusInches, leftVIntercept, leftKv, leftKa),
+                makeTransmission(wheelRadiusInches, rightVIntercept, rightKv, rightKa));
     }
 
-    private DCMotorTransmission makeTransmission(double vIntercept, double kv, double ka)
+    private static DCMotorTransmission makeTransmission(double wheelRadiusInches, double vIntercept, double kv,
+            double ka)
     {
         return new DCMotorTransmission(
                 1.0 / kv,
-                Units.inches_to_meters(Constants.kDriveWheelRadiusInches) * Units.inches_to_meters(Constants.kDriveWheelRadiusInches)
+                Units.inches_to_meters(wheelRadiusInches) * Units.inches_to_meters(wheelRadiusInches)
                         * Constants.kRobotLinearInertia / (2.0 * ka),
                 vIntercept);
     }
@@ -107,9 +124,11 @@ public class DriveMotionPlanner implements CSVWritable
 
     public void reset()
     {
-        mError = Pose2d.identity();
+        mError.setIdentity();
         mOutput = new Output();
         mLastTime = Double.POSITIVE_INFINITY;
+        mLinearVelocityFilter.reset();
+        mAngularVelocityFilter.reset();
     }
 
     public Trajectory<TimedState<Pose2dWithCurvature>> generateTrajectory(
@@ -245,9 +264,9 @@ public class DriveMotionPlanner implements CSVWritable
         final double kPathKX = 5.0;
         final double kPathKY = 1.0;
         final double kPathKTheta = 5.0;
-        adjusted_velocity.linear = dynamics.chassis_velocity.linear + kPathKX * Units.inches_to_meters(mError.getTranslation().x());
+        adjusted_velocity.linear = dynamics.chassis_velocity.linear + kPathKX * Units.inches_to_meters(mError.getX());
         adjusted_velocity.angular = dynamics.chassis_velocity.angular + dynamics.chassis_velocity.linear * kPathKY *
-                Units.inches_to_meters(mError.getTranslation().y()) + kPathKTheta * mError.getRotation().getRadians();
+                Units.inches_to_meters(mError.getY()) + kPathKTheta * mError.getRadians();
 
         double curvature = adjusted_velocity.angular / adjusted_velocity.linear;
         if (Double.isInfinite(curvature))
@@ -292,7 +311,7 @@ public class DriveMotionPlanner implements CSVWritable
 
         DifferentialDrive.ChassisState adjusted_velocity = new DifferentialDrive.ChassisState();
         // Feedback on longitudinal error (distance).
-        adjusted_velocity.linear = dynamics.chassis_velocity.linear + Constants.kPathKX * Units.inches_to_meters(mError.getTranslation().x());
+        adjusted_velocity.linear = dynamics.chassis_velocity.linear + Constants.kPathKX * Units.inches_to_meters(mError.getX());
 
         // Use pure pursuit to peek ahead along the trajectory and generate a new curvature.
         final PurePursuitController.Arc<Pose2dWithCurvature> arc = new PurePursuitController.Arc<>(current_state,
@@ -326,23 +345,22 @@ public class DriveMotionPlanner implements CSVWritable
                 + dynamics.chassis_velocity.angular * dynamics.chassis_velocity.angular);
 
         // Compute error components.
-        final double angle_error_rads = mError.getRotation().getRadians();
-        final double sin_x_over_x = Util.epsilonEquals(angle_error_rads, 0.0, 1E-2) ? 1.0 : mError.getRotation().sin() / angle_error_rads;
+        final double angle_error_rads = mError.getRadians();
+        final double sin_x_over_x = Util.epsilonEquals(angle_error_rads, 0.0, 1E-2) ? 1.0 : mError.sin() / angle_error_rads;
         final DifferentialDrive.ChassisState adjusted_velocity = new DifferentialDrive.ChassisState(
-                dynamics.chassis_velocity.linear * mError.getRotation().cos() +
-                        k * Units.inches_to_meters(mError.getTranslation().x()),
+                dynamics.chassis_velocity.linear * mError.cos() +
+                        k * Units.inches_to_meters(mError.getX()),
                 dynamics.chassis_velocity.angular + k * angle_error_rads +
-                        dynamics.chassis_velocity.linear * kBeta * sin_x_over_x * Units.inches_to_meters(mError
-                                .getTranslation().y()));
+                        dynamics.chassis_velocity.linear * kBeta * sin_x_over_x * Units.inches_to_meters(mError.getY()));
 
         // Compute adjusted left and right wheel velocities.
         dynamics.chassis_velocity = adjusted_velocity;
         dynamics.wheel_velocity = mModel.solveInverseKinematics(adjusted_velocity);
 
-        dynamics.chassis_acceleration.linear = mDt == 0 ? 0.0 : (dynamics.chassis_velocity.linear - prev_velocity_.linear) / mDt;
-        dynamics.chassis_acceleration.angular = mDt == 0 ? 0.0 : (dynamics.chassis_velocity.angular - prev_velocity_.angular) / mDt;
-
-        prev_velocity_ = dynamics.chassis_velocity;
+        mLinearVelocityFilter.update(mLastTime, dynamics.chassis_velocity.linear);
+        mAngularVelocityFilter.update(mLastTime, dynamics.chassis_velocity.angular);
+        dynamics.chassis_acceleration.linear = mLinearVelocityFilter.getVelocity();
+        dynamics.chassis_acceleration.angular = mAngularVelocityFilter.getVelocity();
 
         DifferentialDrive.WheelState feedforward_voltages = mModel.solveInverseDynamics(dynamics.chassis_velocity,
                 dynamics.chassis_acceleration).voltage;
@@ -378,7 +396,7 @@ public class DriveMotionPlanner implements CSVWritable
                     new DifferentialDrive.ChassisState(velocity_m, velocity_m * curvature_m),
                     new DifferentialDrive.ChassisState(acceleration_m,
                             acceleration_m * curvature_m + velocity_m * velocity_m * dcurvature_ds_m));
-            mError = current_state.inverse().transformBy(mSetpoint.state().getPose());
+            mError.setInverseTransformBy(current_state, mSetpoint.state().getPose());
 
             // The tests depend on this file, so we leave this commented out for now. (A wpilib call
             // here breaks the tests). We could get do something hacky, like scan the stack trace for
@@ -420,7 +438,15 @@ public class DriveMotionPlanner implements CSVWritable
 
     public Pose2d error()
     {
-        return mError;
+        return mError.toPose2d();
+    }
+
+    /**
+     * Copies the latest error into out, for callers that poll it every loop.
+     */
+    public MutablePose2d getError(MutablePose2d out)
+    {
+        return out.set(mError);
     }
 
     public TimedState<Pose2dWithCurvature> setpoint()
@@ -0,0 +1,216 @@
+package com.spartronics4915.frc2019.sim;
+
+import com.spartronics4915.frc2019.Constants;
+import com.spartronics4915.frc2019.auto.AutoModeBase;
+import com.spartronics4915.frc2019.auto.AutoModeLoop;
+import com.spartronics4915.frc2019.auto.AutoModeStepper;
+import com.spartronics4915.frc2019.planners.DriveMotionPlanner;
+import com.spartronics4915.frc2019.subsystems.Drive;
+import com.spartronics4915.frc2019.subsystems.RobotStateEstimator;
+import com.spartronics4915.lib.drivers.SimulatedDeviceFactory;
+import com.spartronics4915.lib.geometry.MutablePose2d;
+import com.spartronics4915.lib.geometry.Pose2d;
+import com.spartronics4915.lib.util.TimingHistogram;
+
+/**
+ * Runs auto modes headless on the SimulatedRobot, as fast as the host allows.
+ * Every subsystem runs the same code it would on the robot, down to the Talon
+ * calls, ticked every Constants.kLooperDt of simulated time. The mode runs in
+ * the SimulatedRobot's AutoModeLoop, as on the robot, or with
+ * setRunInLooper(false), is stepped every getUpdateRate() seconds between
+ * ticks as if it were polling from its own thread.
+ * <p>
+ * The SimulatedRobot is one per JVM (or class loader), so simulators share it
+ * and shouldn't run at the same time.
+ */
+public class AutoModeSimulator
+{
+
+    private static final double kSettleTime = 0.25; // Seconds we keep going after the mode finishes
+
+    private final SimulatedRobot mRobot = SimulatedRobot.getInstance();
+    private final SimulatedDrivetrain mDrivetrain = mRobot.getDrivetrain();
+    private final Drive mDrive = Drive.getInstance();
+    private final RobotStateEstimator mStateEstimator = RobotStateEstimator.getInstance();
+    private final MutablePose2d mError = new MutablePose2d();
+    private boolean mRunInLooper = Constants.kRunAutoInLooper;
+
+    public static class Result
+    {
+
+        public final boolean completed; // The mode finished before the timeout
+        public final double duration; // Simulated seconds to finish, or the timeout
+        public final double wallSeconds;
+        public final Pose2d finalPose; // Where the robot really ended up
+        public final Pose2d finalEstimatedPose; // Where it thinks it is
+        public final double finalPoseError; // Inches between finalPose and the end of the last path
+        public final double maxFollowerError; // Inches, DriveMotionPlanner's (estimated) error
+        public final double rmsFollowerError;
+        public final double maxFollowerHeadingError; // Degrees
+        public final double maxTrackingError; // Inches between the real robot and the setpoint
+        public final TimingHistogram loopTiming; // Robot code per tick; excludes the physics
+        public final TimingHistogram actionHandoffs; // Simulated time between actions; see AutoModeBase
+
+        Result(boolean completed, double duration, double wallSeconds, Pose2d finalPose,
+                Pose2d finalEstimatedPose, double finalPoseError, double maxFollowerError,
+                double rmsFollowerError, double maxFollowerHeadingError, double maxTrackingError,
+                TimingHistogram loopTiming, TimingHistogram actionHandoffs)
+        {
+            this.completed = completed;
+            this.duration = duration;
+            this.wallSeconds = wallSeconds;
+            this.finalPose = finalPose;
+            this.finalEstimatedPose = finalEstimatedPose;
+            this.finalPoseError = finalPoseError;
+            this.maxFollowerError = maxFollowerError;
+            this.rmsFollowerError = rmsFollowerError;
+            this.maxFollowerHeadingError = maxFollowerHeadingError;
+            this.maxTrackingError = maxTrackingError;
+            this.loopTiming = loopTiming;
+            this.actionHandoffs = actionHandoffs;
+        }
+
+        /** @return simulated seconds per wall-clock second */
+        public double getRealTimeFactor()
+        {
+            return wallSeconds > 0 ? duration / wallSeconds : Double.POSITIVE_INFINITY;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s in %.2f s (%.0fx real time); final error %.2f in, follower error max %.2f "
+                    + "rms %.2f in, %.2f deg; tracking error max %.2f in; loop %s; %s",
+                    completed ? "finished" : "timed out", duration, getRealTimeFactor(), finalPoseError,
+                    maxFollowerError, rmsFollowerError, maxFollowerHeadingError, maxTrackingError, loopTiming,
+                    actionHandoffs);
+        }
+    }
+
+    /**
+     * Run modes in the AutoModeLoop (the default, as Constants.kRunAutoInLooper
+     * says) or as the old mode thread would.
+     */
+    public void setRunInLooper(boolean runInLooper)
+    {
+        mRunInLooper = runInLooper;
+    }
+
+    public SimulatedDrivetrain getDrivetrain()
+    {
+        return mDrivetrain;
+    }
+
+    public SimulatedDeviceFactory getDevices()
+    {
+        return mRobot.getDevices();
+    }
+
+    /**
+     * Put the robot at startPose, then run mode as autonomousInit would until
+     * it finishes or timeout simulated seconds pass.
+     */
+    public Result run(AutoModeBase mode, Pose2d startPose, double timeout)
+    {
+        return run(mode, startPose, null, timeout);
+    }
+
+    /**
+     * Run a mode that zeroes its own odometry (with ZeroOdometryOnHAB, say),
+     * with the robot really placementError (robot-relative, inches) away from
+     * where the mode believes it starts.
+     */
+    public Result runMisplaced(AutoModeBase mode, Pose2d placementError, double timeout)
+    {
+        return run(mode, Pose2d.identity(), placementError, timeout);
+    }
+
+    private Result run(AutoModeBase mode, Pose2d startPose, Pose2d placementError, double timeout)
+    {
+        mRobot.reset(startPose);
+
+        final DriveMotionPlanner planner = mDrive.getMotionPlanner();
+        final TimingHistogram loopTiming = new TimingHistogram("AutoModeSimulator", Constants.kLooperDt);
+        final int ticksPerUpdate = Math.max(1, (int) Math.round(mode.getUpdateRate() / Constants.kLooperDt));
+        final double start = mRobot.getTime();
+        final long wallStart = System.nanoTime();
+
+        double now = start;
+        double finishedAt = Double.NaN;
+        double maxFollowerError = 0, sumSquaredFollowerError = 0, maxHeadingError = 0, maxTrackingError = 0;
+        long followingTicks = 0;
+
+        // The looper starts before the mode gets going, so onStart can't undo its first action
+        mRobot.start();
+        final AutoModeLoop autoModeLoop = mRobot.getAutoModeLoop();
+        AutoModeStepper stepper = null;
+        if (mRunInLooper)
+        {
+            autoModeLoop.setAutoMode(mode);
+        }
+        else
+        {
+            stepper = new AutoModeStepper(mode);
+            stepper.start();
+            misplace(placementError);
+        }
+
+        for (long tick = 1; now - start < timeout; tick++)
+        {
+            loopTiming.record(mRobot.runLoops());
+            if (mRunInLooper && tick == 1)
+                misplace(placementError);
+
+            if (mDrive.getControlState() == Drive.DriveControlState.PATH_FOLLOWING && !planner.isDone())
+            {
+                planner.getError(mError);
+                final double followerError = Math.hypot(mError.getX(), mError.getY());
+                maxFollowerError = Math.max(maxFollowerError, followerError);
+                sumSquaredFollowerError += followerError * followerError;
+                maxHeadingError = Math.max(maxHeadingError, Math.abs(mError.getDegrees()));
+                maxTrackingError = Math.max(maxTrackingError, distance(mDrivetrain.getPose(),
+                        planner.setpoint().state().getPose()));
+                followingTicks++;
+            }
+
+            if (Double.isNaN(finishedAt))
+            {
+                if (mRunInLooper ? !autoModeLoop.isRunning() : tick % ticksPerUpdate == 0 && !stepper.step())
+                    finishedAt = now;
+            }
+            else if (now - finishedAt >= kSettleTime)
+            {
+                break;
+            }
+
+            now = mRobot.step();
+        }
+
+        if (stepper != null && !stepper.isFinished())
+            stepper.stop();
+        mRobot.stop(); // Stops the AutoModeLoop's mode, if it's still going
+
+        final boolean completed = !Double.isNaN(finishedAt);
+        final Pose2d finalPose = mDrivetrain.getPose();
+        return new Result(completed, (completed ? finishedAt : now) - start, (System.nanoTime() - wallStart) / 1e9,
+                finalPose, mStateEstimator.getEncoderRobotStateMap().getLatestState().pose,
+                distance(finalPose, planner.setpoint().state().getPose()), maxFollowerError,
+                followingTicks > 0 ? Math.sqrt(sumSquaredFollowerError / followingTicks) : 0.0, maxHeadingError,
+                maxTrackingError, loopTiming, mode.getActionHandoffs());
+    }
+
+    // Once the mode has zeroed odometry, but before it's had a tick to move
+    private void misplace(Pose2d placementError)
+    {
+        if (placementError != null)
+        {
+            mDrivetrain.move(mStateEstimator.getEncoderRobotStateMap().getLatestState().pose
+                    .transformBy(placementError));
+        }
+    }
+
+    private static double distance(Pose2d a, Pose2d b)
+    {
+        return a.getTranslation().distance(b.getTranslation());
+    }
+}
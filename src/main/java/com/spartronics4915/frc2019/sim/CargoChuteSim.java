@@ -0,0 +1,96 @@
+package com.spartronics4915.frc2019.sim;
+
+import com.spartronics4915.frc2019.Constants;
+import com.spartronics4915.lib.drivers.ISimulatedMechanism;
+import com.spartronics4915.lib.drivers.SimulatedAnalogInput;
+import com.spartronics4915.lib.drivers.SimulatedDeviceFactory;
+import com.spartronics4915.lib.drivers.SimulatedSolenoid;
+import com.spartronics4915.lib.drivers.SimulatedTalonSRX;
+import com.spartronics4915.lib.physics.RollerSim;
+
+/**
+ * The cargo chute behind CargoChute's devices: the ramp cylinder that raises
+ * the chute for the bay, the ramp rollers that carry the ball up from
+ * SimulatedCargo.kChuteEntry and out the top, and the IR sensor looking
+ * across the chute near the top. The sensor sees the ball's near side when
+ * the ball is in front of it and the far wall otherwise.
+ */
+public class CargoChuteSim implements ISimulatedMechanism
+{
+
+    public static final double kRampSensorPosition = 32.0; // Along the ball's path, inches
+
+    // Guesses; time the real chute and fix these
+    private static final double kRampExtendTime = 0.25; // Seconds
+    private static final double kRampRetractTime = 0.2;
+    private static final double kRollerTimeConstant = 0.05; // Seconds
+    private static final double kRollerSurfaceSpeed = 60.0; // Inches/s at full output
+    private static final double kSensorToBall = 3.0; // Inches to the ball's surface, when centered
+    private static final double kSensorToWall = 16.0; // Inches across the chute
+
+    private final SimulatedSolenoid mRampSolenoid;
+    private final SimulatedTalonSRX mRampMotor;
+    private final SimulatedAnalogInput mRampSensor;
+    private final LoggedCylinder mRamp;
+    private final RollerSim mRollers = new RollerSim(kRollerTimeConstant);
+    private final SimulatedCargo mCargo;
+    private final MechanismEventLog mEvents;
+
+    public CargoChuteSim(SimulatedDeviceFactory devices, SimulatedCargo cargo, MechanismEventLog events)
+    {
+        mRampSolenoid = devices.getSolenoid(Constants.kCargoHatchArmPCMId, Constants.kRampSolenoidId);
+        mRampMotor = devices.getTalon(Constants.kRampMotorId);
+        mRampSensor = devices.getAnalogInput(Constants.kRampSensorId);
+        mRamp = new LoggedCylinder("ramp", kRampExtendTime, kRampRetractTime, events);
+        mCargo = cargo;
+        mEvents = events;
+        devices.addMechanism(this);
+        measure();
+    }
+
+    @Override
+    public synchronized void step(double dt)
+    {
+        mRamp.step(dt, mRampSolenoid.get() == Constants.kRampSolenoidExtend);
+        mRollers.update(dt, mRampMotor.update());
+
+        if (mCargo.isPresent() && mCargo.getPosition() >= SimulatedCargo.kChuteEntry)
+        {
+            mCargo.move(mRollers.getSpeed() * kRollerSurfaceSpeed * dt);
+            if (mCargo.getPosition() > SimulatedCargo.kChuteExit)
+            {
+                mCargo.remove();
+                mEvents.record(mRamp.isExtended() ? "cargo shot high" : "cargo shot low");
+            }
+        }
+        measure();
+    }
+
+    private void measure()
+    {
+        double distance = kSensorToWall;
+        if (mCargo.isPresent())
+        {
+            final double offset = Math.abs(mCargo.getPosition() - kRampSensorPosition);
+            if (offset < SimulatedCargo.kRadius)
+            {
+                // The ball's surface bulges toward the sensor most at its center
+                final double r = SimulatedCargo.kRadius;
+                distance = kSensorToBall + r - Math.sqrt(r * r - offset * offset);
+            }
+        }
+        mRampSensor.setVoltage(IRSensorModel.voltageAt(distance));
+    }
+
+    public synchronized void reset()
+    {
+        mRamp.reset();
+        mRollers.reset();
+        measure();
+    }
+
+    public synchronized boolean isRaised()
+    {
+        return mRamp.isExtended();
+    }
+}
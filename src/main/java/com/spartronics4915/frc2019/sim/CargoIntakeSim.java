@@ -0,0 +1,99 @@
+package com.spartronics4915.frc2019.sim;
+
+import com.spartronics4915.frc2019.Constants;
+import com.spartronics4915.lib.drivers.ISimulatedMechanism;
+import com.spartronics4915.lib.drivers.SimulatedDeviceFactory;
+import com.spartronics4915.lib.drivers.SimulatedSolenoid;
+import com.spartronics4915.lib.drivers.SimulatedTalonSRX;
+import com.spartronics4915.lib.physics.RollerSim;
+
+/**
+ * The cargo intake behind CargoIntake's devices: the arm cylinder, the climb
+ * cylinder that pushes the arm down onto the platform, and the rollers. The
+ * rollers only reach a ball on the floor once the arm is all the way down;
+ * they carry it up to the chute, or back out when ejecting. Negative output
+ * pulls in, as on the robot.
+ */
+public class CargoIntakeSim implements ISimulatedMechanism
+{
+
+    // Guesses; time the real arm and fix these
+    private static final double kArmExtendTime = 0.35; // Seconds
+    private static final double kArmRetractTime = 0.3;
+    private static final double kClimbExtendTime = 0.25;
+    private static final double kClimbRetractTime = 0.2;
+    private static final double kRollerTimeConstant = 0.08; // Seconds
+    private static final double kRollerSurfaceSpeed = 100.0; // Inches/s at full output
+
+    private final SimulatedSolenoid mArmSolenoid;
+    private final SimulatedSolenoid mClimbSolenoid;
+    private final SimulatedTalonSRX mRightMotor;
+    private final SimulatedTalonSRX mLeftMotor;
+    private final LoggedCylinder mArm;
+    private final LoggedCylinder mClimbCylinder;
+    private final RollerSim mRollers = new RollerSim(kRollerTimeConstant);
+    private final SimulatedCargo mCargo;
+    private final MechanismEventLog mEvents;
+
+    public CargoIntakeSim(SimulatedDeviceFactory devices, SimulatedCargo cargo, MechanismEventLog events)
+    {
+        mArmSolenoid = devices.getSolenoid(Constants.kCargoHatchArmPCMId, Constants.kCargoIntakeSolenoid);
+        mClimbSolenoid = devices.getSolenoid(Constants.kCargoHatchArmPCMId, Constants.kCargoIntakeSolenoidClimb);
+        mRightMotor = devices.getTalon(Constants.kCargoIntakeMotorRight);
+        mLeftMotor = devices.getTalon(Constants.kCargoIntakeMotorLeft);
+        mArm = new LoggedCylinder("intake arm", kArmExtendTime, kArmRetractTime, events);
+        mClimbCylinder = new LoggedCylinder("intake climb cylinder", kClimbExtendTime, kClimbRetractTime, events);
+        mCargo = cargo;
+        mEvents = events;
+        devices.addMechanism(this);
+    }
+
+    @Override
+    public synchronized void step(double dt)
+    {
+        mArm.step(dt, mArmSolenoid.get() == Constants.kCargoIntakeSolenoidExtend);
+        mClimbCylinder.step(dt, mClimbSolenoid.get() == Constants.kCargoIntakeSolenoidExtend);
+        mRollers.update(dt, (mRightMotor.update() + mLeftMotor.update()) / 2);
+
+        if (!mCargo.isPresent() || mCargo.getPosition() >= SimulatedCargo.kChuteEntry)
+            return;
+        if (mCargo.getPosition() <= SimulatedCargo.kIntakePosition && !mArm.isExtended())
+            return; // On the floor, out of reach
+        final double before = mCargo.getPosition();
+        mCargo.move(-mRollers.getSpeed() * kRollerSurfaceSpeed * dt);
+        if (before < SimulatedCargo.kChuteEntry && mCargo.getPosition() >= SimulatedCargo.kChuteEntry)
+        {
+            mEvents.record("cargo into chute");
+        }
+        else if (mCargo.getPosition() < SimulatedCargo.kIntakePosition - SimulatedCargo.kRadius)
+        {
+            mCargo.remove();
+            mEvents.record("cargo ejected");
+        }
+    }
+
+    public synchronized void reset()
+    {
+        mArm.reset();
+        mClimbCylinder.reset();
+        mRollers.reset();
+    }
+
+    /** @return the arm is all the way down */
+    public synchronized boolean isArmDown()
+    {
+        return mArm.isExtended();
+    }
+
+    /** @return the arm is down and pushed into the platform, ready to pull */
+    public synchronized boolean isInClimbPosition()
+    {
+        return mArm.isExtended() && mClimbCylinder.isExtended();
+    }
+
+    /** @return inches/s the rollers would pull the robot (or a ball) in */
+    public synchronized double getPullSpeed()
+    {
+        return -mRollers.getSpeed() * kRollerSurfaceSpeed;
+    }
+}
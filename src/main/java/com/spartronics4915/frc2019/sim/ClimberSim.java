@@ -0,0 +1,160 @@
+package com.spartronics4915.frc2019.sim;
+
+import com.spartronics4915.frc2019.Constants;
+import com.spartronics4915.lib.drivers.ISimulatedMechanism;
+import com.spartronics4915.lib.drivers.SimulatedAnalogInput;
+import com.spartronics4915.lib.drivers.SimulatedDeviceFactory;
+import com.spartronics4915.lib.drivers.SimulatedDoubleSolenoid;
+import com.spartronics4915.lib.drivers.SimulatedTalonSRX;
+
+/**
+ * The climb onto the level 3 platform, behind Climber's struts and downward
+ * IR sensors. The robot starts with its front bumper against the platform;
+ * the struts lift each end, the intake rollers (in their climb position)
+ * pull the robot on once its front is high enough, and the drive wheels take
+ * over once they're on the platform. An end that's over the platform rests
+ * on it when its struts come up, and an end can't cross the edge below the
+ * platform's height.
+ * <p>
+ * Only the climb is modelled: the robot doesn't tip, and SimulatedDrivetrain
+ * still moves the robot about the field as if it were on the floor.
+ */
+public class ClimberSim implements ISimulatedMechanism
+{
+
+    private static final double kPlatformHeight = 19.0; // Inches, level 3
+    private static final double kStrutStroke = 21.0; // Inches
+    private static final double kRobotLength = 32.0; // Bumper to bumper, inches
+    private static final double kFrontSensorPosition = -2.0; // From the front bumper, inches
+    private static final double kRearSensorPosition = -30.0;
+    private static final double kSensorHeight = 2.0; // Above the bottom of the chassis, inches
+    private static final double kDriveWheelPosition = -8.0; // Front wheels, from the front bumper
+    private static final double kIntakeReach = 4.0; // Inches below the chassis the arm can pull from
+    private static final double kIntakePullEfficiency = 0.2; // The rollers slip on the carpet
+    private static final double kDriveSurfaceSpeed = 120.0; // Inches/s at full output
+
+    // Guesses; time the real struts and fix these
+    private static final double kStrutExtendTime = 1.2; // Seconds, lifting the robot
+    private static final double kStrutRetractTime = 0.8;
+
+    private final SimulatedDoubleSolenoid mFrontLeftSolenoid, mFrontRightSolenoid;
+    private final SimulatedDoubleSolenoid mRearLeftSolenoid, mRearRightSolenoid;
+    private final SimulatedAnalogInput mFrontSensor, mRearSensor;
+    private final SimulatedTalonSRX mLeftDrive, mRightDrive;
+    private final LoggedCylinder mFrontLeft, mFrontRight, mRearLeft, mRearRight;
+    private final CargoIntakeSim mIntake;
+    private final MechanismEventLog mEvents;
+
+    private double mProgress = 0.0; // Inches the front bumper is past the platform's edge
+    private boolean mClimbed = false;
+
+    public ClimberSim(SimulatedDeviceFactory devices, CargoIntakeSim intake, MechanismEventLog events)
+    {
+        mFrontLeftSolenoid = devices.getDoubleSolenoid(Constants.kClimberPCMId, Constants.kFrontLeftSolenoidId1);
+        mFrontRightSolenoid = devices.getDoubleSolenoid(Constants.kClimberPCMId, Constants.kFrontRightSolenoidId1);
+        mRearLeftSolenoid = devices.getDoubleSolenoid(Constants.kClimberPCMId, Constants.kRearLeftSolenoidId1);
+        mRearRightSolenoid = devices.getDoubleSolenoid(Constants.kClimberPCMId, Constants.kRearRightSolenoidId1);
+        mFrontSensor = devices.getAnalogInput(Constants.kClimberFrontIRSensorID);
+        mRearSensor = devices.getAnalogInput(Constants.kClimberRearIRSensorID);
+        mLeftDrive = devices.getTalon(Constants.kLeftDriveMasterId);
+        mRightDrive = devices.getTalon(Constants.kRightDriveMasterId);
+        mFrontLeft = new LoggedCylinder("front left strut", kStrutExtendTime, kStrutRetractTime, events);
+        mFrontRight = new LoggedCylinder("front right strut", kStrutExtendTime, kStrutRetractTime, events);
+        mRearLeft = new LoggedCylinder("rear left strut", kStrutExtendTime, kStrutRetractTime, events);
+        mRearRight = new LoggedCylinder("rear right strut", kStrutExtendTime, kStrutRetractTime, events);
+        mIntake = intake;
+        mEvents = events;
+        devices.addMechanism(this);
+        measure();
+    }
+
+    @Override
+    public synchronized void step(double dt)
+    {
+        mFrontLeft.step(dt, mFrontLeftSolenoid.get());
+        mFrontRight.step(dt, mFrontRightSolenoid.get());
+        mRearLeft.step(dt, mRearLeftSolenoid.get());
+        mRearRight.step(dt, mRearRightSolenoid.get());
+
+        double speed = 0.0;
+        if (mIntake.isInClimbPosition() && getFrontHeight() >= kPlatformHeight - kIntakeReach)
+            speed += mIntake.getPullSpeed() * kIntakePullEfficiency;
+        if (mProgress + kDriveWheelPosition > 0 && getFrontStrutExtension() <= kPlatformHeight)
+            speed += (mLeftDrive.getMotorOutputPercent() + mRightDrive.getMotorOutputPercent()) / 2
+                    * kDriveSurfaceSpeed;
+
+        final double before = mProgress;
+        mProgress = Math.max(0.0, mProgress + speed * dt);
+        if (before <= 0 && getFrontStrutExtension() < kPlatformHeight)
+            mProgress = 0.0; // Against the platform's face
+        if (before <= kRobotLength && mProgress > kRobotLength && getRearStrutExtension() < kPlatformHeight)
+            mProgress = kRobotLength;
+
+        if (before <= 0 && mProgress > 0)
+            mEvents.record("front over platform");
+        if (before <= kRobotLength && mProgress > kRobotLength)
+            mEvents.record("rear over platform");
+        if (!mClimbed && mProgress > kRobotLength && getRearHeight() <= kPlatformHeight)
+        {
+            mClimbed = true;
+            mEvents.record("on platform");
+        }
+        measure();
+    }
+
+    private double getFrontStrutExtension()
+    {
+        return (mFrontLeft.getPosition() + mFrontRight.getPosition()) / 2 * kStrutStroke;
+    }
+
+    private double getRearStrutExtension()
+    {
+        return (mRearLeft.getPosition() + mRearRight.getPosition()) / 2 * kStrutStroke;
+    }
+
+    /** @return inches from the floor to the bottom of the chassis at the front */
+    public synchronized double getFrontHeight()
+    {
+        return mProgress > 0 ? Math.max(getFrontStrutExtension(), kPlatformHeight) : getFrontStrutExtension();
+    }
+
+    /** @return inches from the floor to the bottom of the chassis at the rear */
+    public synchronized double getRearHeight()
+    {
+        return mProgress > kRobotLength ? Math.max(getRearStrutExtension(), kPlatformHeight)
+                : getRearStrutExtension();
+    }
+
+    /** @return inches the front bumper is past the platform's edge */
+    public synchronized double getProgress()
+    {
+        return mProgress;
+    }
+
+    private void measure()
+    {
+        mFrontSensor.setVoltage(sensorVoltage(kFrontSensorPosition, getFrontHeight()));
+        mRearSensor.setVoltage(sensorVoltage(kRearSensorPosition, getRearHeight()));
+    }
+
+    private double sensorVoltage(double sensorPosition, double chassisHeight)
+    {
+        final double ground = mProgress + sensorPosition > 0 ? kPlatformHeight : 0.0;
+        return IRSensorModel.voltageAt(chassisHeight + kSensorHeight - ground);
+    }
+
+    /**
+     * Struts in, robot on the floor with its front bumper against the
+     * platform.
+     */
+    public synchronized void reset()
+    {
+        mFrontLeft.reset();
+        mFrontRight.reset();
+        mRearLeft.reset();
+        mRearRight.reset();
+        mProgress = 0.0;
+        mClimbed = false;
+        measure();
+    }
+}
@@ -0,0 +1,119 @@
+package com.spartronics4915.frc2019.sim;
+
+import com.spartronics4915.frc2019.Constants;
+import com.spartronics4915.frc2019.planners.DriveMotionPlanner;
+import com.spartronics4915.lib.geometry.Pose2d;
+import com.spartronics4915.lib.geometry.Rotation2d;
+
+import java.util.Random;
+
+/**
+ * One simulated robot that isn't quite the one in Constants: what the wheels,
+ * the scrub, and the motors really are, how stale and noisy the sensors are,
+ * and how far off its starting spot the robot was put. Drive keeps planning
+ * with the constants, so these are the errors it has to ride out.
+ */
+public class DrivetrainPerturbation
+{
+
+    // Default one-sigma errors, as fractions of the constant unless noted
+    public static final double kWheelRadiusSpread = 0.02; // Tread wear, mostly
+    public static final double kTrackScrubSpread = 0.05; // Carpet, and where the weight is
+    public static final double kKvSpread = 0.05;
+    public static final double kKaSpread = 0.10;
+    public static final double kVInterceptSpread = 0.10;
+    public static final double kMaxSensorLatency = 0.020; // Seconds, uniform from 0
+    public static final double kMaxGyroNoise = 0.2; // Degrees, uniform from 0
+    public static final double kMaxEncoderNoise = 2.0; // Ticks, uniform from 0
+    public static final double kPlacementSpread = 1.0; // Inches, and degrees
+
+    public final double wheelRadiusInches;
+    public final double trackScrubFactor;
+    public final double leftVIntercept, leftKv, leftKa;
+    public final double rightVIntercept, rightKv, rightKa;
+    public final double sensorLatency; // Seconds
+    public final double gyroNoise; // Degrees
+    public final double encoderNoise; // Ticks
+    public final Pose2d placementError; // Robot-relative, inches
+
+    public DrivetrainPerturbation(double wheelRadiusInches, double trackScrubFactor,
+            double leftVIntercept, double leftKv, double leftKa,
+            double rightVIntercept, double rightKv, double rightKa,
+            double sensorLatency, double gyroNoise, double encoderNoise, Pose2d placementError)
+    {
+        this.wheelRadiusInches = wheelRadiusInches;
+        this.trackScrubFactor = trackScrubFactor;
+        this.leftVIntercept = leftVIntercept;
+        this.leftKv = leftKv;
+        this.leftKa = leftKa;
+        this.rightVIntercept = rightVIntercept;
+        this.rightKv = rightKv;
+        this.rightKa = rightKa;
+        this.sensorLatency = sensorLatency;
+        this.gyroNoise = gyroNoise;
+        this.encoderNoise = encoderNoise;
+        this.placementError = placementError;
+    }
+
+    /**
+     * The robot exactly as characterized, with perfect sensors, put exactly
+     * where it should be.
+     */
+    public static DrivetrainPerturbation nominal()
+    {
+        return new DrivetrainPerturbation(Constants.kDriveWheelRadiusInches, Constants.kTrackScrubFactor,
+                Constants.kDriveLeftVIntercept, Constants.kDriveLeftKv, Constants.kDriveLeftKa,
+                Constants.kDriveRightVIntercept, Constants.kDriveRightKv, Constants.kDriveRightKa,
+                0.0, 0.0, 0.0, Pose2d.identity());
+    }
+
+    /**
+     * Draw a robot with every default spread scaled by spread (0 gives the
+     * nominal robot). The same random sequence always gives the same robot.
+     */
+    public static DrivetrainPerturbation sample(Random random, double spread)
+    {
+        return new DrivetrainPerturbation(
+                scale(random, Constants.kDriveWheelRadiusInches, kWheelRadiusSpread * spread),
+                scale(random, Constants.kTrackScrubFactor, kTrackScrubSpread * spread),
+                scale(random, Constants.kDriveLeftVIntercept, kVInterceptSpread * spread),
+                scale(random, Constants.kDriveLeftKv, kKvSpread * spread),
+                scale(random, Constants.kDriveLeftKa, kKaSpread * spread),
+                scale(random, Constants.kDriveRightVIntercept, kVInterceptSpread * spread),
+                scale(random, Constants.kDriveRightKv, kKvSpread * spread),
+                scale(random, Constants.kDriveRightKa, kKaSpread * spread),
+                random.nextDouble() * kMaxSensorLatency * spread,
+                random.nextDouble() * kMaxGyroNoise * spread,
+                random.nextDouble() * kMaxEncoderNoise * spread,
+                new Pose2d(random.nextGaussian() * kPlacementSpread * spread,
+                        random.nextGaussian() * kPlacementSpread * spread,
+                        Rotation2d.fromDegrees(random.nextGaussian() * kPlacementSpread * spread)));
+    }
+
+    // Clamped so a wild draw can't make a constant change sign
+    private static double scale(Random random, double value, double sigma)
+    {
+        return value * Math.max(0.5, 1.0 + random.nextGaussian() * sigma);
+    }
+
+    /**
+     * Build drivetrain's physics from this robot and set up its sensors. The
+     * placement error is for AutoModeSimulator.runMisplaced.
+     */
+    public void applyTo(SimulatedDrivetrain drivetrain, Random random)
+    {
+        drivetrain.setModel(DriveMotionPlanner.createModel(wheelRadiusInches, trackScrubFactor,
+                leftVIntercept, leftKv, leftKa, rightVIntercept, rightKv, rightKa));
+        drivetrain.setSensorLatency(sensorLatency);
+        drivetrain.setSensorNoise(gyroNoise, encoderNoise, random);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("wheel %.3f in, scrub %.3f, left %.3f/%.4f/%.4f, right %.3f/%.4f/%.4f, "
+                + "latency %.0f ms, gyro noise %.2f deg, encoder noise %.1f ticks, placed off by %s",
+                wheelRadiusInches, trackScrubFactor, leftVIntercept, leftKv, leftKa,
+                rightVIntercept, rightKv, rightKa, sensorLatency * 1000.0, gyroNoise, encoderNoise, placementError);
+    }
+}
@@ -0,0 +1,26 @@
+package com.spartronics4915.frc2019.sim;
+
+/**
+ * What a Sharp GP2Y0A21 (the A21IRSensor) puts out for a surface at a given
+ * distance, fit to the datasheet curve. The real sensor folds back under
+ * about 7 cm; we just hold the peak, which is how our mountings read anyway.
+ */
+final class IRSensorModel
+{
+
+    private static final double kPeakVoltage = 3.1;
+
+    private IRSensorModel()
+    {
+    }
+
+    /**
+     * @param inches from the sensor to whatever it sees
+     * @return volts
+     */
+    static double voltageAt(double inches)
+    {
+        final double cm = Math.max(0.0, inches * 2.54);
+        return Math.min(kPeakVoltage, 27.0 / (cm + 1.0));
+    }
+}
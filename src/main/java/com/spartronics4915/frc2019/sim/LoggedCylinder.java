@@ -0,0 +1,80 @@
+package com.spartronics4915.frc2019.sim;
+
+import com.spartronics4915.lib.physics.PneumaticCylinderSim;
+
+import edu.wpi.first.wpilibj.DoubleSolenoid.Value;
+
+/**
+ * A PneumaticCylinderSim that logs "<name> extended" and "<name> retracted"
+ * as it reaches each end of its stroke.
+ */
+final class LoggedCylinder
+{
+
+    private final PneumaticCylinderSim mCylinder;
+    private final String mName;
+    private final MechanismEventLog mEvents;
+    private boolean mWasExtended = false;
+    private boolean mWasRetracted = true;
+
+    LoggedCylinder(String name, double extendTime, double retractTime, MechanismEventLog events)
+    {
+        mCylinder = new PneumaticCylinderSim(extendTime, retractTime);
+        mName = name;
+        mEvents = events;
+    }
+
+    /** For a single solenoid: on extends, off retracts. */
+    void step(double dt, boolean extend)
+    {
+        mCylinder.set(extend);
+        update(dt);
+    }
+
+    /** For a double solenoid: off holds wherever the cylinder is. */
+    void step(double dt, Value value)
+    {
+        if (value == Value.kForward)
+            mCylinder.set(true);
+        else if (value == Value.kReverse)
+            mCylinder.set(false);
+        else
+            mCylinder.hold();
+        update(dt);
+    }
+
+    private void update(double dt)
+    {
+        mCylinder.update(dt);
+        final boolean extended = mCylinder.isExtended(), retracted = mCylinder.isRetracted();
+        if (extended && !mWasExtended)
+            mEvents.record(mName + " extended");
+        if (retracted && !mWasRetracted)
+            mEvents.record(mName + " retracted");
+        mWasExtended = extended;
+        mWasRetracted = retracted;
+    }
+
+    void reset()
+    {
+        mCylinder.reset();
+        mWasExtended = false;
+        mWasRetracted = true;
+    }
+
+    /** @return 0 retracted to 1 extended */
+    double getPosition()
+    {
+        return mCylinder.getPosition();
+    }
+
+    boolean isExtended()
+    {
+        return mCylinder.isExtended();
+    }
+
+    boolean isRetracted()
+    {
+        return mCylinder.isRetracted();
+    }
+}
@@ -0,0 +1,69 @@
+package com.spartronics4915.frc2019.sim;
+
+import com.spartronics4915.lib.util.Clock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What the simulated mechanisms physically did and when: a cylinder reaching
+ * the end of its stroke, cargo leaving the chute. Times come from Clock, so
+ * they're to the Looper tick the physics step followed.
+ */
+public class MechanismEventLog
+{
+
+    public static class Event
+    {
+
+        public final double time;
+        public final String description;
+
+        Event(double time, String description)
+        {
+            this.time = time;
+            this.description = description;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%.3f %s", time, description);
+        }
+    }
+
+    private final List<Event> mEvents = new ArrayList<>();
+
+    public synchronized void record(String description)
+    {
+        mEvents.add(new Event(Clock.getTime(), description));
+    }
+
+    public synchronized void clear()
+    {
+        mEvents.clear();
+    }
+
+    public synchronized List<Event> getEvents()
+    {
+        return Collections.unmodifiableList(new ArrayList<>(mEvents));
+    }
+
+    /** @return when description first happened, or NaN */
+    public synchronized double getTime(String description)
+    {
+        for (Event event : mEvents)
+        {
+            if (event.description.equals(description))
+                return event.time;
+        }
+        return Double.NaN;
+    }
+
+    /** @return the time of the latest event, or NaN */
+    public synchronized double getLastTime()
+    {
+        return mEvents.isEmpty() ? Double.NaN : mEvents.get(mEvents.size() - 1).time;
+    }
+}
@@ -0,0 +1,308 @@
+package com.spartronics4915.frc2019.sim;
+
+import com.spartronics4915.frc2019.AutoModeSelector;
+import com.spartronics4915.frc2019.auto.AutoModeBase;
+import com.spartronics4915.frc2019.planners.DriveMotionPlanner.FollowerType;
+import com.spartronics4915.frc2019.subsystems.Drive;
+import com.spartronics4915.lib.util.Logger;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Runs an auto mode hundreds of times against drivetrains drawn from
+ * DrivetrainPerturbation, to see how it holds up when the robot isn't the one
+ * we characterized:
+ *
+ * <pre>
+ * java -cp robot.jar com.spartronics4915.frc2019.sim.MonteCarloRunner "Right: Drive Off Hab and Place Parallel Panel" [trials] [spread]
+ * </pre>
+ *
+ * compares every FollowerType over the same robots. Drive and the clock are
+ * singletons, so the trials are spread over one worker JVM per core rather
+ * than threads; each worker runs a contiguous block of seeds and prints a
+ * line per trial. A seed always gives the same robot, so any bad trial can be
+ * rerun on its own.
+ */
+public class MonteCarloRunner
+{
+
+    private static final String kWorkerFlag = "--worker";
+    private static final String kTrialTag = "TRIAL";
+
+    private final String mModeName;
+    private final double mSpread;
+    private final double mTimeout;
+    private final int mProcesses;
+
+    /**
+     * One run of the mode, as a worker reports it.
+     */
+    public static class Trial
+    {
+
+        public final long seed;
+        public final boolean completed;
+        public final double duration; // Seconds
+        public final double finalPoseError; // Inches
+        public final double maxFollowerError; // Inches
+        public final double rmsFollowerError; // Inches
+        public final double maxTrackingError; // Inches
+
+        public Trial(long seed, boolean completed, double duration, double finalPoseError,
+                double maxFollowerError, double rmsFollowerError, double maxTrackingError)
+        {
+            this.seed = seed;
+            this.completed = completed;
+            this.duration = duration;
+            this.finalPoseError = finalPoseError;
+            this.maxFollowerError = maxFollowerError;
+            this.rmsFollowerError = rmsFollowerError;
+            this.maxTrackingError = maxTrackingError;
+        }
+
+        Trial(long seed, AutoModeSimulator.Result result)
+        {
+            this(seed, result.completed, result.duration, result.finalPoseError, result.maxFollowerError,
+                    result.rmsFollowerError, result.maxTrackingError);
+        }
+
+        String format()
+        {
+            return kTrialTag + " " + seed + " " + completed + " " + duration + " " + finalPoseError + " "
+                    + maxFollowerError + " " + rmsFollowerError + " " + maxTrackingError;
+        }
+
+        // null for anything that isn't a trial line; workers log plenty else
+        static Trial parse(String line)
+        {
+            String[] fields = line.trim().split(" ");
+            if (fields.length != 8 || !fields[0].equals(kTrialTag))
+                return null;
+            return new Trial(Long.parseLong(fields[1]), Boolean.parseBoolean(fields[2]),
+                    Double.parseDouble(fields[3]), Double.parseDouble(fields[4]), Double.parseDouble(fields[5]),
+                    Double.parseDouble(fields[6]), Double.parseDouble(fields[7]));
+        }
+    }
+
+    /**
+     * What a batch of trials came to, for one FollowerType.
+     */
+    public static class Summary
+    {
+
+        public final FollowerType followerType;
+        public final List<Trial> trials;
+        public final int completed;
+        public final Trial worst; // Largest final error among those that finished, or null
+
+        Summary(FollowerType followerType, List<Trial> trials)
+        {
+            this.followerType = followerType;
+            this.trials = Collections.unmodifiableList(trials);
+            int finished = 0;
+            Trial worstTrial = null;
+            for (Trial trial : trials)
+            {
+                if (!trial.completed)
+                    continue;
+                finished++;
+                if (worstTrial == null || trial.finalPoseError > worstTrial.finalPoseError)
+                    worstTrial = trial;
+            }
+            this.completed = finished;
+            this.worst = worstTrial;
+        }
+
+        /** @return per-trial finalPoseError, sorted, over the trials that finished */
+        public double[] getFinalPoseErrors()
+        {
+            return sorted(trials.stream().filter(t -> t.completed).mapToDouble(t -> t.finalPoseError).toArray());
+        }
+
+        /** @return per-trial duration, sorted, over the trials that finished */
+        public double[] getDurations()
+        {
+            return sorted(trials.stream().filter(t -> t.completed).mapToDouble(t -> t.duration).toArray());
+        }
+
+        /** @return per-trial maxFollowerError, sorted, over every trial */
+        public double[] getMaxFollowerErrors()
+        {
+            return sorted(trials.stream().mapToDouble(t -> t.maxFollowerError).toArray());
+        }
+
+        private static double[] sorted(double[] values)
+        {
+            Arrays.sort(values);
+            return values;
+        }
+
+        // Nearest rank
+        public static double percentile(double[] sorted, double p)
+        {
+            if (sorted.length == 0)
+                return Double.NaN;
+            final int rank = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, rank))];
+        }
+
+        private static String describe(double[] sorted)
+        {
+            double sum = 0;
+            for (double value : sorted)
+                sum += value;
+            return String.format("mean %.2f p50 %.2f p95 %.2f max %.2f", sorted.length > 0 ? sum / sorted.length
+                    : Double.NaN, percentile(sorted, 0.5), percentile(sorted, 0.95), percentile(sorted, 1.0));
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s: %d/%d finished%n  final error (in)      %s%n  duration (s)          %s%n"
+                    + "  max follower err (in) %s%n  worst seed %s",
+                    followerType, completed, trials.size(), describe(getFinalPoseErrors()),
+                    describe(getDurations()), describe(getMaxFollowerErrors()),
+                    worst == null ? "none" : Long.toString(worst.seed));
+        }
+    }
+
+    /**
+     * @param modeName an AutoModeSelector dashboard name; the mode must zero
+     *            its own odometry
+     * @param spread scales every DrivetrainPerturbation default (1 is typical)
+     * @param timeout simulated seconds before a trial is called unfinished
+     * @param processes worker JVMs to spread trials over
+     */
+    public MonteCarloRunner(String modeName, double spread, double timeout, int processes)
+    {
+        mModeName = modeName;
+        mSpread = spread;
+        mTimeout = timeout;
+        mProcesses = processes;
+    }
+
+    public MonteCarloRunner(String modeName, double spread)
+    {
+        this(modeName, spread, 15.0, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Run trials seeds, starting at firstSeed, with followerType driving, and
+     * wait for them all.
+     */
+    public Summary run(FollowerType followerType, int trials, long firstSeed)
+            throws IOException, InterruptedException
+    {
+        final int processes = Math.max(1, Math.min(mProcesses, trials));
+        final String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        final List<Process> workers = new ArrayList<>();
+        final List<List<Trial>> results = new ArrayList<>();
+        final List<Thread> readers = new ArrayList<>();
+
+        long seed = firstSeed;
+        for (int i = 0; i < processes; i++)
+        {
+            // Blocks as even as they'll go; the first few get the remainder
+            final int count = trials / processes + (i < trials % processes ? 1 : 0);
+            final Process worker = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    MonteCarloRunner.class.getName(), kWorkerFlag, mModeName, followerType.name(),
+                    Long.toString(seed), Integer.toString(count), Double.toString(mSpread),
+                    Double.toString(mTimeout)).redirectErrorStream(true).start();
+            seed += count;
+
+            final List<Trial> result = new ArrayList<>();
+            final Thread reader = new Thread(() -> collect(worker, result), "MonteCarloReader" + i);
+            reader.start();
+            workers.add(worker);
+            results.add(result);
+            readers.add(reader);
+        }
+
+        final List<Trial> all = new ArrayList<>();
+        for (int i = 0; i < processes; i++)
+        {
+            readers.get(i).join();
+            final int exitCode = workers.get(i).waitFor();
+            if (exitCode != 0)
+                throw new IOException("MonteCarloRunner worker " + i + " exited with " + exitCode);
+            all.addAll(results.get(i));
+        }
+        if (all.size() != trials)
+            throw new IOException("MonteCarloRunner expected " + trials + " trials, got " + all.size());
+        return new Summary(followerType, all);
+    }
+
+    private static void collect(Process worker, List<Trial> result)
+    {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(worker.getInputStream())))
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                Trial trial = Trial.parse(line);
+                if (trial != null)
+                    result.add(trial);
+            }
+        }
+        catch (IOException e)
+        {
+            Logger.exception(e);
+        }
+    }
+
+    // In a worker JVM: one simulator, one follower, a block of seeds
+    private static void runWorker(String modeName, FollowerType followerType, long firstSeed, int count,
+            double spread, double timeout)
+    {
+        Logger.setVerbosity("NOTICE");
+        if (AutoModeSelector.createAutoMode(modeName) == null)
+            throw new IllegalArgumentException("No auto mode named " + modeName);
+
+        AutoModeSimulator simulator = new AutoModeSimulator();
+        Drive.getInstance().getMotionPlanner().setFollowerType(followerType);
+        for (long seed = firstSeed; seed < firstSeed + count; seed++)
+        {
+            Random random = new Random(seed);
+            DrivetrainPerturbation perturbation = DrivetrainPerturbation.sample(random, spread);
+            perturbation.applyTo(simulator.getDrivetrain(), random);
+            AutoModeBase mode = AutoModeSelector.createAutoMode(modeName);
+            AutoModeSimulator.Result result = simulator.runMisplaced(mode, perturbation.placementError, timeout);
+            System.out.println(new Trial(seed, result).format());
+        }
+        System.out.flush();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        if (args.length == 7 && args[0].equals(kWorkerFlag))
+        {
+            runWorker(args[1], FollowerType.valueOf(args[2]), Long.parseLong(args[3]), Integer.parseInt(args[4]),
+                    Double.parseDouble(args[5]), Double.parseDouble(args[6]));
+            System.exit(0); // The mode's and the logger's threads are daemons, but don't wait on anything else
+        }
+        if (args.length < 1 || args.length > 3)
+        {
+            System.err.println("usage: MonteCarloRunner \"auto mode name\" [trials] [spread]");
+            System.exit(1);
+        }
+
+        final int trials = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        final double spread = args.length > 2 ? Double.parseDouble(args[2]) : 1.0;
+        final MonteCarloRunner runner = new MonteCarloRunner(args[0], spread);
+        for (FollowerType followerType : FollowerType.values())
+        {
+            final long start = System.nanoTime();
+            final Summary summary = runner.run(followerType, trials, 0);
+            System.out.println(summary);
+            System.out.printf("  (%.1f s)%n", (System.nanoTime() - start) / 1e9);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.spartronics4915.frc2019.sim;
+
+import com.spartronics4915.frc2019.Constants;
+import com.spartronics4915.lib.drivers.ISimulatedMechanism;
+import com.spartronics4915.lib.drivers.SimulatedDeviceFactory;
+import com.spartronics4915.lib.drivers.SimulatedSolenoid;
+
+/**
+ * The panel pushers behind PanelHandler's solenoid. The panel hangs on
+ * velcro until the pushers are most of the way out, and then it's gone.
+ */
+public class PanelHandlerSim implements ISimulatedMechanism
+{
+
+    // Guesses; time the real pushers and fix these
+    private static final double kExtendTime = 0.15; // Seconds
+    private static final double kRetractTime = 0.12;
+    private static final double kReleasePosition = 0.8; // Fraction of the stroke
+
+    private final SimulatedSolenoid mSolenoid;
+    private final LoggedCylinder mPushers;
+    private final MechanismEventLog mEvents;
+    private boolean mHasPanel = false;
+
+    public PanelHandlerSim(SimulatedDeviceFactory devices, MechanismEventLog events)
+    {
+        mSolenoid = devices.getSolenoid(Constants.kCargoHatchArmPCMId, Constants.kPanelHandlerSolenoid);
+        mPushers = new LoggedCylinder("panel pushers", kExtendTime, kRetractTime, events);
+        mEvents = events;
+        devices.addMechanism(this);
+    }
+
+    @Override
+    public synchronized void step(double dt)
+    {
+        mPushers.step(dt, mSolenoid.get() == Constants.kPanelSolenoidExtend);
+        if (mHasPanel && mPushers.getPosition() >= kReleasePosition)
+        {
+            mHasPanel = false;
+            mEvents.record("panel released");
+        }
+    }
+
+    /**
+     * Pushers in, no panel.
+     */
+    public synchronized void reset()
+    {
+        mPushers.reset();
+        mHasPanel = false;
+    }
+
+    /**
+     * Hang a panel on the velcro.
+     */
+    public synchronized void loadPanel()
+    {
+        mHasPanel = true;
+    }
+
+    public synchronized boolean hasPanel()
+    {
+        return mHasPanel;
+    }
+}
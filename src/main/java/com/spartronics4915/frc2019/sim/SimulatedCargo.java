@@ -0,0 +1,48 @@
+package com.spartronics4915.frc2019.sim;
+
+/**
+ * The one ball the simulated robot might have. Its position is the ball's
+ * center, in inches along its path through the robot: on the floor against
+ * the intake rollers at kIntakePosition, up the chute from kChuteEntry, and
+ * out the top past kChuteExit. The intake and chute sims move it.
+ */
+public class SimulatedCargo
+{
+
+    public static final double kRadius = 6.5; // Inches; cargo is 13 in across
+    public static final double kIntakePosition = 0.0;
+    public static final double kChuteEntry = 12.0;
+    public static final double kChuteExit = 40.0;
+
+    private boolean mPresent = false;
+    private double mPosition = kIntakePosition;
+
+    /**
+     * Put a ball at position, replacing any other.
+     */
+    public synchronized void place(double position)
+    {
+        mPresent = true;
+        mPosition = position;
+    }
+
+    public synchronized void remove()
+    {
+        mPresent = false;
+    }
+
+    public synchronized boolean isPresent()
+    {
+        return mPresent;
+    }
+
+    public synchronized double getPosition()
+    {
+        return mPosition;
+    }
+
+    synchronized void move(double inches)
+    {
+        mPosition += inches;
+    }
+}
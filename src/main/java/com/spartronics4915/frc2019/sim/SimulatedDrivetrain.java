@@ -0,0 +1,155 @@
+package com.spartronics4915.frc2019.sim;
+
+import com.ctre.phoenix.motorcontrol.ControlMode;
+import com.spartronics4915.frc2019.Constants;
+import com.spartronics4915.frc2019.planners.DriveMotionPlanner;
+import com.spartronics4915.lib.drivers.ISimulatedMechanism;
+import com.spartronics4915.lib.drivers.SimulatedDeviceFactory;
+import com.spartronics4915.lib.drivers.SimulatedGyro;
+import com.spartronics4915.lib.drivers.SimulatedTalonSRX;
+import com.spartronics4915.lib.geometry.Pose2d;
+import com.spartronics4915.lib.geometry.Rotation2d;
+import com.spartronics4915.lib.geometry.Translation2d;
+import com.spartronics4915.lib.physics.DifferentialDrive;
+import com.spartronics4915.lib.physics.DifferentialDriveSim;
+import com.spartronics4915.lib.util.Units;
+
+import java.util.Random;
+
+/**
+ * The physical drivetrain behind Drive's simulated master Talons and Pigeon:
+ * every SimulatedDeviceFactory.kControlDt it applies the Talons' outputs to a
+ * DifferentialDriveSim and tells the Talons and the gyro where the wheels and
+ * the robot went. Drive configures and reads the devices exactly as it would
+ * the real ones.
+ * <p>
+ * Both sides count forward as positive, as Drive sees them after the Talons'
+ * inversion and sensor phase. Neutral output always brakes.
+ * <p>
+ * For robustness runs the plant can be swapped for one that differs from the
+ * planner's model, and the devices' readings can be delayed (CAN status
+ * frames) and made noisy. The Talons' own loops see undelayed sensors.
+ */
+public class SimulatedDrivetrain implements ISimulatedMechanism
+{
+
+    private static final double kBusVoltage = 12.0; // We use voltage compensation
+
+    private final DifferentialDriveSim mPlant;
+    private final double mTicksPerRadian = Constants.kDriveEncoderPPR / (2.0 * Math.PI);
+    private final SimulatedTalonSRX mLeft;
+    private final SimulatedTalonSRX mRight;
+    private final SimulatedGyro mGyro;
+    private double mGyroZero = 0.0; // rad
+
+    /**
+     * Drive the master Talons and the Pigeon that devices hands Drive, and
+     * have devices step this.
+     */
+    public SimulatedDrivetrain(DifferentialDrive model, SimulatedDeviceFactory devices)
+    {
+        mPlant = new DifferentialDriveSim(model);
+        mLeft = devices.getTalon(Constants.kLeftDriveMasterId);
+        mRight = devices.getTalon(Constants.kRightDriveMasterId);
+        mGyro = devices.getGyro();
+        devices.addMechanism(this);
+    }
+
+    /**
+     * A drivetrain that matches what Drive's motion planner believes, from the
+     * characterization constants.
+     */
+    public static SimulatedDrivetrain fromConstants(SimulatedDeviceFactory devices)
+    {
+        return new SimulatedDrivetrain(new DriveMotionPlanner().getModel(), devices);
+    }
+
+    /**
+     * Replace the physics with model, keeping the robot's position. Drive keeps
+     * planning with its own model, so this is how a simulated robot can be
+     * worn, mis-measured, or just different.
+     */
+    public synchronized void setModel(DifferentialDrive model)
+    {
+        mPlant.setModel(model);
+    }
+
+    /**
+     * Delay everything Drive reads by latency seconds, to the nearest
+     * millisecond.
+     */
+    public synchronized void setSensorLatency(double latency)
+    {
+        mLeft.setStatusLatency(latency);
+        mRight.setStatusLatency(latency);
+        mGyro.setLatency(latency);
+    }
+
+    /**
+     * Add Gaussian noise to each gyro and encoder position reading.
+     */
+    public synchronized void setSensorNoise(double gyroDegrees, double encoderTicks, Random random)
+    {
+        mLeft.setPositionNoise(encoderTicks, random);
+        mRight.setPositionNoise(encoderTicks, random);
+        mGyro.setNoise(gyroDegrees, random);
+    }
+
+    /**
+     * Put the robot at rest at pose (inches) and zero the gyro there, like
+     * turning the robot on.
+     */
+    public synchronized void reset(Pose2d pose)
+    {
+        mPlant.reset(new Pose2d(new Translation2d(Units.inches_to_meters(pose.getTranslation().x()),
+                Units.inches_to_meters(pose.getTranslation().y())), pose.getRotation()));
+        mGyroZero = mPlant.getHeading();
+        mLeft.set(ControlMode.PercentOutput, 0.0);
+        mRight.set(ControlMode.PercentOutput, 0.0);
+        mLeft.resetMeasurement(mPlant.getLeftPosition() * mTicksPerRadian);
+        mRight.resetMeasurement(mPlant.getRightPosition() * mTicksPerRadian);
+        mGyro.resetMeasurement(0.0);
+    }
+
+    /**
+     * Pick the robot up and set it down at rest at pose (inches) without the
+     * sensors noticing: the gyro and encoders read what they did. This is how
+     * a robot that wasn't put quite where auto thinks it was gets simulated.
+     */
+    public synchronized void move(Pose2d pose)
+    {
+        final double heading = mPlant.getHeading();
+        mPlant.reset(new Pose2d(new Translation2d(Units.inches_to_meters(pose.getTranslation().x()),
+                Units.inches_to_meters(pose.getTranslation().y())), pose.getRotation()));
+        mGyroZero += mPlant.getHeading() - heading;
+    }
+
+    @Override
+    public synchronized void step(double dt)
+    {
+        mPlant.step(dt, mLeft.update() * kBusVoltage, mRight.update() * kBusVoltage);
+        mLeft.measure(mPlant.getLeftPosition() * mTicksPerRadian);
+        mRight.measure(mPlant.getRightPosition() * mTicksPerRadian);
+        mGyro.measure(Math.toDegrees(mPlant.getHeading() - mGyroZero));
+    }
+
+    // Ground truth, for scoring a run
+
+    /** @return where the robot really is, inches */
+    public synchronized Pose2d getPose()
+    {
+        final Pose2d pose = mPlant.getPose();
+        return new Pose2d(new Translation2d(Units.meters_to_inches(pose.getTranslation().x()),
+                Units.meters_to_inches(pose.getTranslation().y())), pose.getRotation());
+    }
+
+    public synchronized Rotation2d getHeading()
+    {
+        return Rotation2d.fromRadians(mPlant.getHeading());
+    }
+
+    public DifferentialDrive getModel()
+    {
+        return mPlant.getModel();
+    }
+}
@@ -0,0 +1,208 @@
+package com.spartronics4915.frc2019.sim;
+
+import com.spartronics4915.frc2019.Constants;
+import com.spartronics4915.frc2019.SubsystemManager;
+import com.spartronics4915.frc2019.auto.AutoModeLoop;
+import com.spartronics4915.frc2019.paths.TrajectoryGenerator;
+import com.spartronics4915.frc2019.subsystems.CargoChute;
+import com.spartronics4915.frc2019.subsystems.CargoIntake;
+import com.spartronics4915.frc2019.subsystems.Climber;
+import com.spartronics4915.frc2019.subsystems.Drive;
+import com.spartronics4915.frc2019.subsystems.PanelHandler;
+import com.spartronics4915.frc2019.subsystems.RobotStateEstimator;
+import com.spartronics4915.frc2019.subsystems.Superstructure;
+import com.spartronics4915.lib.drivers.Devices;
+import com.spartronics4915.lib.drivers.SimulatedDeviceFactory;
+import com.spartronics4915.lib.geometry.Pose2d;
+import com.spartronics4915.lib.util.Clock;
+import com.spartronics4915.lib.util.ILoop;
+import com.spartronics4915.lib.util.ILooper;
+import com.spartronics4915.lib.util.SimulatedClock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The whole robot, headless: the subsystems Robot runs (less the LEDs and
+ * the JVM monitor) through a SubsystemManager, on a SimulatedDeviceFactory
+ * with the drivetrain and each superstructure mechanism modelled behind the
+ * devices, with an AutoModeLoop after them as Robot has. Simulators drive it
+ * a Looper tick at a time: runLoops() runs the robot code for the tick, then
+ * step() moves the physics and the clock on to the next one.
+ * <p>
+ * The subsystems are singletons, so this is too. It installs its
+ * SimulatedClock as the Clock and its devices as the Devices factory, which
+ * has to happen before anything else builds a subsystem.
+ */
+public class SimulatedRobot implements ILooper
+{
+
+    private static SimulatedRobot mInstance = null;
+
+    public static synchronized SimulatedRobot getInstance()
+    {
+        if (mInstance == null)
+        {
+            mInstance = new SimulatedRobot();
+        }
+        return mInstance;
+    }
+
+    private final SimulatedClock mClock = new SimulatedClock();
+    private final SimulatedDeviceFactory mDevices = new SimulatedDeviceFactory();
+    private final MechanismEventLog mEvents = new MechanismEventLog();
+    private final SimulatedCargo mCargo = new SimulatedCargo();
+    private final SimulatedDrivetrain mDrivetrain;
+    private final CargoIntakeSim mCargoIntake;
+    private final CargoChuteSim mCargoChute;
+    private final PanelHandlerSim mPanelHandler;
+    private final ClimberSim mClimber;
+    private final Drive mDrive;
+    private final RobotStateEstimator mStateEstimator;
+    private final Superstructure mSuperstructure;
+    // No step timeout, so runs don't depend on how fast the host is
+    private final AutoModeLoop mAutoModeLoop = new AutoModeLoop(Double.POSITIVE_INFINITY);
+    private final List<ILoop> mLoops = new ArrayList<>();
+
+    private SimulatedRobot()
+    {
+        Clock.setSource(mClock);
+        Devices.setFactory(mDevices);
+
+        // Stepped in this order; the climber reads what the drive and intake are doing
+        mDrivetrain = SimulatedDrivetrain.fromConstants(mDevices);
+        mCargoIntake = new CargoIntakeSim(mDevices, mCargo, mEvents);
+        mCargoChute = new CargoChuteSim(mDevices, mCargo, mEvents);
+        mPanelHandler = new PanelHandlerSim(mDevices, mEvents);
+        mClimber = new ClimberSim(mDevices, mCargoIntake, mEvents);
+
+        mDrive = Drive.getInstance();
+        mStateEstimator = RobotStateEstimator.getInstance();
+        mSuperstructure = Superstructure.getInstance();
+
+        // Same order as Robot
+        SubsystemManager subsystemManager = new SubsystemManager(Arrays.asList(mStateEstimator, mDrive,
+                PanelHandler.getInstance(), CargoChute.getInstance(), CargoIntake.getInstance(),
+                Climber.getInstance(), mSuperstructure));
+        subsystemManager.registerEnabledLoops(this);
+        register(mAutoModeLoop);
+        TrajectoryGenerator.getInstance().generateTrajectories();
+    }
+
+    @Override
+    public void register(ILoop loop)
+    {
+        mLoops.add(loop);
+    }
+
+    /**
+     * Put the robot at rest at pose (inches) with every mechanism in and no
+     * game pieces, in front of the level 3 platform as far as the climber is
+     * concerned, and zero the sensors and odometry as autonomousInit would.
+     */
+    public void reset(Pose2d pose)
+    {
+        mDrivetrain.reset(pose);
+        mCargoIntake.reset();
+        mCargoChute.reset();
+        mPanelHandler.reset();
+        mClimber.reset();
+        mCargo.remove();
+        mEvents.clear();
+        mStateEstimator.resetRobotStateMaps();
+        mDrive.zeroSensors();
+    }
+
+    /**
+     * Start the loops, as the enabled Looper does.
+     */
+    public void start()
+    {
+        final double now = mClock.getTime();
+        for (ILoop loop : mLoops)
+            loop.onStart(now);
+    }
+
+    /**
+     * Run the robot code for this tick.
+     *
+     * @return nanoseconds it took
+     */
+    public long runLoops()
+    {
+        final long start = System.nanoTime();
+        final double now = mClock.getTime();
+        for (ILoop loop : mLoops)
+            loop.onLoop(now);
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Move the physics and the clock on by a Looper period.
+     *
+     * @return the new time
+     */
+    public double step()
+    {
+        mDevices.step(Constants.kLooperDt);
+        return mClock.step(Constants.kLooperDt);
+    }
+
+    public void stop()
+    {
+        final double now = mClock.getTime();
+        for (ILoop loop : mLoops)
+            loop.onStop(now);
+    }
+
+    public double getTime()
+    {
+        return mClock.getTime();
+    }
+
+    public AutoModeLoop getAutoModeLoop()
+    {
+        return mAutoModeLoop;
+    }
+
+    public SimulatedDeviceFactory getDevices()
+    {
+        return mDevices;
+    }
+
+    public MechanismEventLog getEvents()
+    {
+        return mEvents;
+    }
+
+    public SimulatedCargo getCargo()
+    {
+        return mCargo;
+    }
+
+    public SimulatedDrivetrain getDrivetrain()
+    {
+        return mDrivetrain;
+    }
+
+    public CargoIntakeSim getCargoIntake()
+    {
+        return mCargoIntake;
+    }
+
+    public CargoChuteSim getCargoChute()
+    {
+        return mCargoChute;
+    }
+
+    public PanelHandlerSim getPanelHandler()
+    {
+        return mPanelHandler;
+    }
+
+    public ClimberSim getClimber()
+    {
+        return mClimber;
+    }
+}
@@ -0,0 +1,223 @@
+package com.spartronics4915.frc2019.sim;
+
+import com.spartronics4915.frc2019.subsystems.Superstructure;
+import com.spartronics4915.frc2019.subsystems.Superstructure.SystemState;
+import com.spartronics4915.frc2019.subsystems.Superstructure.WantedState;
+import com.spartronics4915.lib.geometry.Pose2d;
+import com.spartronics4915.lib.util.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Runs Superstructure sequences headless on the SimulatedRobot, to see where
+ * a cycle's time goes: each SystemState the superstructure passes through,
+ * and what the mechanisms physically did meanwhile.
+ *
+ * <pre>
+ * java -cp robot.jar com.spartronics4915.frc2019.sim.SuperstructureSimulator
+ * </pre>
+ *
+ * prints the timeline of each sequence below. The mechanisms' timings are
+ * guesses until someone times the real ones; see each sim's constants.
+ */
+public class SuperstructureSimulator
+{
+
+    private static final double kSettleTime = 1.0; // Quiet seconds after the superstructure finishes
+
+    private final SimulatedRobot mRobot = SimulatedRobot.getInstance();
+    private final Superstructure mSuperstructure = Superstructure.getInstance();
+
+    /**
+     * The superstructure entering a state.
+     */
+    public static class Step
+    {
+
+        public final double time; // Seconds since the sequence was asked for
+        public final SystemState state;
+
+        Step(double time, SystemState state)
+        {
+            this.time = time;
+            this.state = state;
+        }
+    }
+
+    public static class Result
+    {
+
+        public final WantedState wanted;
+        public final boolean completed; // Handed back to the driver before the timeout
+        public final double duration; // Seconds until it did, or the timeout
+        public final List<Step> steps;
+        public final List<MechanismEventLog.Event> events; // Times since the sequence was asked for
+
+        Result(WantedState wanted, boolean completed, double duration, List<Step> steps,
+                List<MechanismEventLog.Event> events)
+        {
+            this.wanted = wanted;
+            this.completed = completed;
+            this.duration = duration;
+            this.steps = Collections.unmodifiableList(steps);
+            this.events = Collections.unmodifiableList(events);
+        }
+
+        /** @return seconds spent in state, over the whole sequence */
+        public double getTimeInState(SystemState state)
+        {
+            double total = 0.0;
+            for (int i = 0; i < steps.size(); i++)
+            {
+                if (steps.get(i).state == state)
+                    total += (i + 1 < steps.size() ? steps.get(i + 1).time : duration) - steps.get(i).time;
+            }
+            return total;
+        }
+
+        /** @return seconds until description first happened, or NaN */
+        public double getEventTime(String description)
+        {
+            for (MechanismEventLog.Event event : events)
+            {
+                if (event.description.equals(description))
+                    return event.time;
+            }
+            return Double.NaN;
+        }
+
+        /** @return the last state the superstructure was in */
+        public SystemState getFinalState()
+        {
+            return steps.get(steps.size() - 1).state;
+        }
+
+        @Override
+        public String toString()
+        {
+            final StringBuilder s = new StringBuilder(String.format("%s %s in %.2f s", wanted,
+                    completed ? "finished" : "timed out", duration));
+            int event = 0;
+            for (Step step : steps)
+            {
+                for (; event < events.size() && events.get(event).time < step.time; event++)
+                    s.append(String.format("%n  %6.2f   %s", events.get(event).time, events.get(event).description));
+                s.append(String.format("%n  %6.2f %s", step.time, step.state));
+            }
+            for (; event < events.size(); event++)
+                s.append(String.format("%n  %6.2f   %s", events.get(event).time, events.get(event).description));
+            return s.toString();
+        }
+    }
+
+    public SimulatedRobot getRobot()
+    {
+        return mRobot;
+    }
+
+    /**
+     * Enable the robot as it's been set up (with SimulatedRobot.reset, then
+     * any game pieces), ask the superstructure for wanted, and run until it
+     * hands back to the driver and the mechanisms have been still for a
+     * moment, or timeout simulated seconds pass.
+     */
+    public Result run(WantedState wanted, double timeout)
+    {
+        final MechanismEventLog eventLog = mRobot.getEvents();
+        final List<Step> steps = new ArrayList<>();
+        final double start = mRobot.getTime();
+
+        mRobot.start();
+        mSuperstructure.setWantedState(wanted);
+        SystemState state = mSuperstructure.getSystemState();
+        steps.add(new Step(0.0, state));
+
+        double now = start;
+        double finishedAt = Double.NaN;
+        while (now - start < timeout)
+        {
+            mRobot.runLoops();
+            final SystemState newState = mSuperstructure.getSystemState();
+            if (newState != state)
+            {
+                state = newState;
+                steps.add(new Step(now - start, state));
+                if (state == SystemState.DRIVER_CONTROLLING && Double.isNaN(finishedAt))
+                    finishedAt = now;
+            }
+            if (!Double.isNaN(finishedAt))
+            {
+                final double lastEvent = eventLog.getLastTime();
+                if (now - Math.max(finishedAt, Double.isNaN(lastEvent) ? finishedAt : lastEvent) >= kSettleTime)
+                    break;
+            }
+            now = mRobot.step();
+        }
+        mRobot.stop();
+
+        final List<MechanismEventLog.Event> events = new ArrayList<>();
+        for (MechanismEventLog.Event event : eventLog.getEvents())
+        {
+            if (event.time >= start)
+                events.add(new MechanismEventLog.Event(event.time - start, event.description));
+        }
+        final boolean completed = !Double.isNaN(finishedAt);
+        return new Result(wanted, completed, (completed ? finishedAt : now) - start, steps, events);
+    }
+
+    /**
+     * From a ball against the intake to holding it at the top of the chute.
+     */
+    public Result intakeCargo()
+    {
+        mRobot.reset(Pose2d.identity());
+        mRobot.getCargo().place(SimulatedCargo.kIntakePosition);
+        return run(WantedState.INTAKE_CARGO, 10.0);
+    }
+
+    /**
+     * Back away from the bay and shoot the ball that's at the top of the chute.
+     */
+    public Result shootCargoIntoBay()
+    {
+        mRobot.reset(Pose2d.identity());
+        mRobot.getCargo().place(CargoChuteSim.kRampSensorPosition);
+        return run(WantedState.SHOOT_CARGO_BAY, 10.0);
+    }
+
+    /**
+     * Push off the panel on the velcro.
+     */
+    public Result ejectPanel()
+    {
+        mRobot.reset(Pose2d.identity());
+        mRobot.getPanelHandler().loadPanel();
+        return run(WantedState.EJECT_PANEL, 10.0);
+    }
+
+    /**
+     * Climb onto level 3 from the floor, front bumper against the platform.
+     * This currently times out: Climber reports atTarget as soon as the struts
+     * are commanded, and the front sensor reads in range on the floor, so the
+     * sequence runs ahead of the struts. ClimberSim itself can be climbed by
+     * hand; see SuperstructureSimulatorTest.testClimbModel.
+     */
+    public Result climb()
+    {
+        mRobot.reset(Pose2d.identity());
+        return run(WantedState.CLIMB, 15.0);
+    }
+
+    public static void main(String[] args)
+    {
+        Logger.setVerbosity("NOTICE");
+        final SuperstructureSimulator simulator = new SuperstructureSimulator();
+        System.out.println(simulator.intakeCargo());
+        System.out.println(simulator.shootCargoIntoBay());
+        System.out.println(simulator.ejectPanel());
+        System.out.println(simulator.climb());
+        System.exit(0); // The logger's thread is a daemon, but don't wait on anything else
+    }
+}
@@ -1,20 +1,23 @@
 package com.spartronics4915.frc2019.subsystems;
 
 import com.spartronics4915.frc2019.Constants;
-import com.spartronics4915.lib.util.CANProbe;
+import com.spartronics4915.lib.util.Clock;
 import com.spartronics4915.lib.util.ILoop;
 import com.spartronics4915.lib.util.ILooper;
 import com.spartronics4915.lib.util.Logger;
-import com.spartronics4915.lib.drivers.TalonSRXFactory;
+import com.spartronics4915.lib.util.StateMachine;
+import com.spartronics4915.lib.util.TelemetryBus;
 import com.spartronics4915.lib.drivers.A21IRSensor;
+import com.spartronics4915.lib.drivers.Devices;
+import com.spartronics4915.lib.drivers.IDeviceFactory;
+import com.spartronics4915.lib.drivers.ISolenoid;
+import com.spartronics4915.lib.drivers.ITalonSRX;
+import com.spartronics4915.lib.util.Stopwatch;
 
 import com.ctre.phoenix.ErrorCode;
 import com.ctre.phoenix.motorcontrol.ControlMode;
-import com.ctre.phoenix.motorcontrol.can.TalonSRX;
 
 import edu.wpi.first.wpilibj.Timer;
-import edu.wpi.first.wpilibj.AnalogInput;
-import edu.wpi.first.wpilibj.Solenoid;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 public class CargoChute extends Subsystem
@@ -42,27 +45,33 @@ public class CargoChute extends Subsystem
     }
 
     private WantedState mWantedState = WantedState.LOWER;
-    private SystemState mSystemState = SystemState.LOWERING;
+    private final StateMachine<SystemState> mMachine = new StateMachine<>(getName(), SystemState.LOWERING);
 
-    private TalonSRX mRampMotor = null;
-    private Solenoid mRampSolenoid = null;
+    private ITalonSRX mRampMotor = null;
+    private ISolenoid mRampSolenoid = null;
     private A21IRSensor mRampSensor = null;
+    private volatile boolean mBallInPosition = false; // Read in readPeriodicInputs
 
-    private Timer mCargoTimer = new Timer();
+    private Stopwatch mCargoTimer = new Stopwatch();
     private boolean mIsShootingBay;
 
-    private boolean mStateChanged;
+    // Telemetry slots, resolved once so outputTelemetry doesn't look them up
+    private final TelemetryBus.BooleanSlot mRampExtendedSlot = dashboardBooleanSlot("mRampSolenoid extended: ");
+    private final TelemetryBus.NumberSlot mRampSpeedSlot = dashboardNumberSlot("mRampMotor speed: ");
+    private final TelemetryBus.NumberSlot mRampVoltageSlot = dashboardNumberSlot("mRampSensor voltage: ");
+    private final TelemetryBus.BooleanSlot mBallInPositionSlot = dashboardBooleanSlot("Ball in position: ");
 
     private CargoChute()
     {
         boolean success = false;
         try
         {
-            if (!CANProbe.getInstance().validatePCMId(Constants.kCargoHatchArmPCMId))
+            IDeviceFactory devices = Devices.getFactory();
+            if (!devices.isPCMPresent(Constants.kCargoHatchArmPCMId))
                 throw new RuntimeException("CargoChute PCM isn't on the CAN bus!");
 
-            mRampMotor = TalonSRXFactory.createDefaultTalon(Constants.kRampMotorId);
-            mRampSolenoid = new Solenoid(Constants.kCargoHatchArmPCMId, Constants.kRampSolenoidId);
+            mRampMotor = devices.createTalon(Constants.kRampMotorId);
+            mRampSolenoid = devices.createSolenoid(Constants.kCargoHatchArmPCMId, Constants.kRampSolenoidId);
             mRampSensor = new A21IRSensor(Constants.kRampSensorId);
             success = true;
         }
@@ -83,68 +92,71 @@ public class CargoChute extends Subsystem
         {
             synchronized (CargoChute.this)
             {
-                mStateChanged = true;
                 mWantedState = WantedState.LOWER;
-                mSystemState = SystemState.LOWERING;
+                mMachine.reset(SystemState.LOWERING, timestamp);
             }
         }
 
         @Override
         public void onLoop(double timestamp)
         {
+            // Runs on wanted state changes, ball sensor edges, and while shooting
+            if (!mMachine.startRun(timestamp))
+                return;
             synchronized (CargoChute.this)
             {
                 SystemState newState = defaultStateTransfer();
-                switch (mSystemState)
+                switch (mMachine.getState())
                 {
                     case RAMPING:
-                        if (mStateChanged)
+                        if (mMachine.isStateChanged())
                             mRampMotor.set(ControlMode.PercentOutput, Constants.kRampSpeed);
-                        if (ballInPosition() && !isInManual() && newState == mSystemState)
+                        if (ballInPosition() && !isInManual() && newState == mMachine.getState())
                         {
                             newState = SystemState.HOLDING;
                             logNotice("Got a ball");
                         }
                         break;
                     case HOLDING:
-                        if (mStateChanged)
+                        if (mMachine.isStateChanged())
                             mRampMotor.set(ControlMode.PercentOutput, 0.0);
-                        if (!ballInPosition() && !isInManual() && newState == mSystemState)
+                        if (!ballInPosition() && !isInManual() && newState == mMachine.getState())
                         {
                             newState = SystemState.RAMPING;
                             logNotice("No more ball");
                         }
                         break;
                     case EJECTING:
-                        if (mStateChanged)
+                        if (mMachine.isStateChanged())
                             mRampMotor.set(ControlMode.PercentOutput, -Constants.kRampSpeed);
                         break;
                     case LOWERING:
-                        if (mStateChanged)
+                        if (mMachine.isStateChanged())
                         {
                             mRampSolenoid.set(Constants.kRampSolenoidRetract);
                             mRampMotor.set(ControlMode.PercentOutput, 0.0);
                         }
                         break;
                     case RAISING:
-                        if (mStateChanged)
+                        if (mMachine.isStateChanged())
                         {
                             mRampSolenoid.set(Constants.kRampSolenoidExtend);
                             mRampMotor.set(ControlMode.PercentOutput, 0.0);
                         }
                         break;
                     case SHOOTING_ROCKET:
-                        if (mStateChanged)
+                        if (mMachine.isStateChanged())
                         {
                             mRampSolenoid.set(Constants.kRampSolenoidRetract);
                             mCargoTimer.start();
                             mRampMotor.set(ControlMode.PercentOutput, Constants.kRampSpeed);
                         }
-                        if (mCargoTimer.hasPeriodPassed(Constants.kShootTime) && newState == mSystemState)
+                        if (mCargoTimer.hasPeriodPassed(Constants.kShootTime) && newState == mMachine.getState())
                             newState = SystemState.HOLDING;
+                        mMachine.poll(); // The timer's quirks are easier to poll than to predict
                         break;
                     case SHOOTING_BAY:
-                        if (mStateChanged)
+                        if (mMachine.isStateChanged())
                         {
                             mIsShootingBay = false;
                             mRampSolenoid.set(Constants.kRampSolenoidExtend);
@@ -157,23 +169,20 @@ public class CargoChute extends Subsystem
                             mRampMotor.set(ControlMode.PercentOutput, Constants.kRampSpeed);
                             mIsShootingBay = true;
                         }
-                        if (mCargoTimer.hasPeriodPassed(Constants.kShootTime) && newState == mSystemState)
+                        if (mCargoTimer.hasPeriodPassed(Constants.kShootTime) && newState == mMachine.getState())
                             newState = SystemState.HOLDING;
+                        mMachine.poll();
                         break;
                     default:
                         logError("Unhandled system state!");
                 }
-                if (newState != mSystemState)
+                if (mMachine.endRun(newState))
                 {
                     mCargoTimer.stop();
                     mCargoTimer.reset();
-                    mStateChanged = true;
                 }
-                else
-                    mStateChanged = false;
-
-                mSystemState = newState;
             }
+            signalListeners(mMachine.getStateDescription());
         }
 
         @Override
@@ -183,6 +192,7 @@ public class CargoChute extends Subsystem
             {
                 stop();
             }
+            logNotice(mMachine.getLatency().toString());
         }
     };
 
@@ -193,20 +203,20 @@ public class CargoChute extends Subsystem
 
     private boolean ballInPosition()
     {
-        return mRampSensor.getVoltage() >= Constants.kMinBallInChuteVoltage;
+        return mBallInPosition;
     }
 
     public boolean isRampRunning()
     {
-        return mSystemState == SystemState.RAMPING
-                || mSystemState == SystemState.EJECTING
-                || mSystemState == SystemState.SHOOTING_BAY
-                || mSystemState == SystemState.SHOOTING_ROCKET;
+        return mMachine.getState() == SystemState.RAMPING
+                || mMachine.getState() == SystemState.EJECTING
+                || mMachine.getState() == SystemState.SHOOTING_BAY
+                || mMachine.getState() == SystemState.SHOOTING_ROCKET;
     }
 
     private SystemState defaultStateTransfer()
     {
-        SystemState newState = mSystemState;
+        SystemState newState = mMachine.getState();
         switch (mWantedState)
         {
             case RAMP_MANUAL:
@@ -219,7 +229,7 @@ public class CargoChute extends Subsystem
                 newState = SystemState.EJECTING;
                 break;
             case BRING_BALL_TO_TOP:
-                if (mSystemState != SystemState.RAMPING || mSystemState != SystemState.HOLDING)
+                if (mMachine.getState() != SystemState.RAMPING || mMachine.getState() != SystemState.HOLDING)
                     newState = SystemState.HOLDING;
                 break;
             case LOWER:
@@ -243,7 +253,11 @@ public class CargoChute extends Subsystem
 
     public synchronized void setWantedState(WantedState wantedState)
     {
-        mWantedState = wantedState;
+        if (wantedState != mWantedState)
+        {
+            mWantedState = wantedState;
+            mMachine.signal("CargoChute wanted state");
+        }
     }
 
     public synchronized boolean atTarget()
@@ -251,27 +265,38 @@ public class CargoChute extends Subsystem
         switch (mWantedState)
         {
             case RAMP_MANUAL:
-                return mSystemState == SystemState.RAMPING;
+                return mMachine.getState() == SystemState.RAMPING;
             case HOLD_MANUAL:
-                return mSystemState == SystemState.HOLDING;
+                return mMachine.getState() == SystemState.HOLDING;
             case EJECT_BACK:
-                return mSystemState == SystemState.EJECTING && !ballInPosition(); // i'm slightly unclear on how atTarget works but it seems like this should check the CargoIntake sensor
+                return mMachine.getState() == SystemState.EJECTING && !ballInPosition(); // i'm slightly unclear on how atTarget works but it seems like this should check the CargoIntake sensor
             case BRING_BALL_TO_TOP:
-                return mSystemState == SystemState.HOLDING && ballInPosition();
+                return mMachine.getState() == SystemState.HOLDING && ballInPosition();
             case LOWER:
-                return mSystemState == SystemState.LOWERING;
+                return mMachine.getState() == SystemState.LOWERING;
             case RAISE:
-                return mSystemState == SystemState.RAISING;
+                return mMachine.getState() == SystemState.RAISING;
             case SHOOT_ROCKET:
-                return mSystemState == SystemState.SHOOTING_ROCKET && mCargoTimer.hasPeriodPassed(Constants.kShootTime);
+                return mMachine.getState() == SystemState.SHOOTING_ROCKET && mCargoTimer.hasPeriodPassed(Constants.kShootTime);
             case SHOOT_BAY:
-                return mSystemState == SystemState.SHOOTING_BAY && mCargoTimer.hasPeriodPassed(Constants.kShootTime);
+                return mMachine.getState() == SystemState.SHOOTING_BAY && mCargoTimer.hasPeriodPassed(Constants.kShootTime);
             default:
                 logError("CargoChute atTarget for unknown WantedState: " + mWantedState);
                 return false;
         }
     }
 
+    @Override
+    public void readPeriodicInputs()
+    {
+        final boolean ballInPosition = mRampSensor.getVoltage() >= Constants.kMinBallInChuteVoltage;
+        if (ballInPosition != mBallInPosition)
+        {
+            mBallInPosition = ballInPosition;
+            mMachine.signal("CargoChute ball sensor");
+        }
+    }
+
     @Override
     public void registerEnabledLoops(ILooper enabledLooper)
     {
@@ -341,12 +366,12 @@ public class CargoChute extends Subsystem
     @Override
     public void outputTelemetry()
     {
-        dashboardPutState(mSystemState.toString());
+        dashboardPutState(mMachine.getState().toString());
         dashboardPutWantedState(mWantedState.toString());
-        dashboardPutBoolean("mRampSolenoid extended: ", mRampSolenoid.get());
-        dashboardPutNumber("mRampMotor speed: ", mRampMotor.getMotorOutputPercent());
-        dashboardPutNumber("mRampSensor voltage: ", mRampSensor.getVoltage());
-        dashboardPutBoolean("Ball in position: ", ballInPosition());
+        mRampExtendedSlot.set(mRampSolenoid.get());
+        mRampSpeedSlot.set(mRampMotor.getMotorOutputPercent());
+        mRampVoltageSlot.set(mRampSensor.getVoltage());
+        mBallInPositionSlot.set(ballInPosition());
     }
 
     @Override
@@ -354,7 +379,7 @@ public class CargoChute extends Subsystem
     {
         // Stop your hardware here
         mWantedState = WantedState.LOWER;
-        mSystemState = SystemState.HOLDING;
+        mMachine.reset(SystemState.HOLDING, Clock.getTime());
         mRampMotor.set(ControlMode.PercentOutput, 0.0);
         mRampSolenoid.set(Constants.kRampSolenoidRetract);
     }
@@ -6,16 +6,18 @@
 package com.spartronics4915.frc2019.subsystems;
 
 import com.spartronics4915.frc2019.Constants;
-import com.spartronics4915.lib.drivers.TalonSRXFactory;
-import com.spartronics4915.lib.util.CANProbe;
+import com.spartronics4915.lib.drivers.Devices;
+import com.spartronics4915.lib.drivers.IDeviceFactory;
+import com.spartronics4915.lib.drivers.ISolenoid;
+import com.spartronics4915.lib.drivers.ITalonSRX;
 import com.spartronics4915.lib.util.ILoop;
 import com.spartronics4915.lib.util.ILooper;
+import com.spartronics4915.lib.util.StateMachine;
+import com.spartronics4915.lib.util.TelemetryBus;
 
-import edu.wpi.first.wpilibj.Solenoid;
 import edu.wpi.first.wpilibj.Timer;
 
 import com.ctre.phoenix.motorcontrol.ControlMode;
-import com.ctre.phoenix.motorcontrol.can.TalonSRX;
 
 public class CargoIntake extends Subsystem
 {
@@ -42,27 +44,32 @@ public class CargoIntake extends Subsystem
     }
 
     private WantedState mWantedState = WantedState.HOLD;
-    private SystemState mSystemState = SystemState.HOLDING;
+    private final StateMachine<SystemState> mMachine = new StateMachine<>(getName(), SystemState.HOLDING);
 
-    private Solenoid mSolenoid = null;
-    private Solenoid mSolenoidClimb = null;
-    private TalonSRX mMotorRight = null; // right and left are switched?
-    private TalonSRX mMotorLeft = null;
+    private ISolenoid mSolenoid = null;
+    private ISolenoid mSolenoidClimb = null;
+    private ITalonSRX mMotorRight = null; // right and left are switched?
+    private ITalonSRX mMotorLeft = null;
 
-    private boolean mStateChanged;
+    // Telemetry slots, resolved once so outputTelemetry doesn't look them up
+    private final TelemetryBus.BooleanSlot mSolenoidExtendedSlot = dashboardBooleanSlot("mSolenoid Extended");
+    private final TelemetryBus.BooleanSlot mSolenoidClimbExtendedSlot = dashboardBooleanSlot("mSolenoidClimb Extended");
+    private final TelemetryBus.NumberSlot mMotorRightSpeedSlot = dashboardNumberSlot("mMotor1 Speed");
+    private final TelemetryBus.NumberSlot mMotorLeftSpeedSlot = dashboardNumberSlot("mMotor2 Speed");
 
     private CargoIntake()
     {
         boolean success = false; // IR sensor anolog port 6 to detect cargo going into chute. Used by chute as well.
         try
         {
-            if (!CANProbe.getInstance().validatePCMId(Constants.kCargoHatchArmPCMId))
+            IDeviceFactory devices = Devices.getFactory();
+            if (!devices.isPCMPresent(Constants.kCargoHatchArmPCMId))
                 throw new RuntimeException("CargoIntake PCM isn't on the CAN bus!");
 
-            mMotorRight = TalonSRXFactory.createDefaultTalon(Constants.kCargoIntakeMotorRight);
-            mMotorLeft = TalonSRXFactory.createDefaultTalon(Constants.kCargoIntakeMotorLeft);
-            mSolenoid = new Solenoid(Constants.kCargoHatchArmPCMId, Constants.kCargoIntakeSolenoid);
-            mSolenoidClimb = new Solenoid(Constants.kCargoHatchArmPCMId, Constants.kCargoIntakeSolenoidClimb);
+            mMotorRight = devices.createTalon(Constants.kCargoIntakeMotorRight);
+            mMotorLeft = devices.createTalon(Constants.kCargoIntakeMotorLeft);
+            mSolenoid = devices.createSolenoid(Constants.kCargoHatchArmPCMId, Constants.kCargoIntakeSolenoid);
+            mSolenoidClimb = devices.createSolenoid(Constants.kCargoHatchArmPCMId, Constants.kCargoIntakeSolenoidClimb);
             success = true;
         }
         catch (Exception e)
@@ -82,22 +89,24 @@ public class CargoIntake extends Subsystem
         {
             synchronized (CargoIntake.this)
             {
-                mStateChanged = true;
                 mWantedState = WantedState.HOLD;
-                mSystemState = SystemState.HOLDING;
+                mMachine.reset(SystemState.HOLDING, timestamp);
             }
         }
 
         @Override
         public void onLoop(double timestamp)
         {
+            // Nothing changes unless someone changes the wanted state
+            if (!mMachine.startRun(timestamp))
+                return;
             synchronized (CargoIntake.this)
             {
                 SystemState newState = defaultStateTransfer();
-                switch (mSystemState)
+                switch (mMachine.getState())
                 {
                     case HOLDING://DS5
-                        if (mStateChanged)
+                        if (mMachine.isStateChanged())
                         {
                             mMotorRight.set(ControlMode.PercentOutput, 0.0);
                             mMotorLeft.set(ControlMode.PercentOutput, 0.0);
@@ -105,14 +114,14 @@ public class CargoIntake extends Subsystem
                         }
                         break;
                     case MOTORS_STOPPING:
-                        if (mStateChanged)
+                        if (mMachine.isStateChanged())
                         {
                             mMotorRight.set(ControlMode.PercentOutput, 0.0);
                             mMotorLeft.set(ControlMode.PercentOutput, 0.0);
                         }
                         break;
                     case ARM_DOWNING:
-                        if (mStateChanged)
+                        if (mMachine.isStateChanged())
                         {
                             setSolenoidsToDown();
                             mMotorRight.set(ControlMode.PercentOutput, 0.0);
@@ -120,7 +129,7 @@ public class CargoIntake extends Subsystem
                         }
                         break;
                     case INTAKING://BB2
-                        if (mStateChanged)
+                        if (mMachine.isStateChanged())
                         {
                             setSolenoidsToDown();
                             mMotorRight.set(ControlMode.PercentOutput, Constants.kCargoIntakeSpeed);
@@ -128,7 +137,7 @@ public class CargoIntake extends Subsystem
                         }
                         break;
                     case EJECTING://BB3
-                        if (mStateChanged)
+                        if (mMachine.isStateChanged())
                         {
                             setSolenoidsToDown();
                             mMotorRight.set(ControlMode.PercentOutput, Constants.kCargoEjectSpeed);
@@ -136,7 +145,7 @@ public class CargoIntake extends Subsystem
                         }
                         break;
                     case CLIMBING:
-                        if (mStateChanged)
+                        if (mMachine.isStateChanged())
                         {
                             mMotorRight.set(ControlMode.PercentOutput, Constants.kCargoIntakeClimbSpeed);
                             mMotorLeft.set(ControlMode.PercentOutput, Constants.kCargoIntakeClimbSpeed);
@@ -147,12 +156,9 @@ public class CargoIntake extends Subsystem
                     default:
                         logError("Unhandled system state!");
                 }
-                if (newState != mSystemState)
-                    mStateChanged = true;
-                else
-                    mStateChanged = false;
-                mSystemState = newState;
+                mMachine.endRun(newState);
             }
+            signalListeners(mMachine.getStateDescription());
         }
 
         @Override
@@ -162,6 +168,7 @@ public class CargoIntake extends Subsystem
             {
                 stop();
             }
+            logNotice(mMachine.getLatency().toString());
         }
     };
 
@@ -179,7 +186,7 @@ public class CargoIntake extends Subsystem
 
     private SystemState defaultStateTransfer()
     {
-        SystemState newState = mSystemState;
+        SystemState newState = mMachine.getState();
         switch (mWantedState)
         {
             case HOLD:
@@ -209,7 +216,11 @@ public class CargoIntake extends Subsystem
 
     public synchronized void setWantedState(WantedState wantedState)
     {
-        mWantedState = wantedState;
+        if (wantedState != mWantedState)
+        {
+            mWantedState = wantedState;
+            mMachine.signal("CargoIntake wanted state");
+        }
     }
 
     public synchronized boolean atTarget()
@@ -217,17 +228,17 @@ public class CargoIntake extends Subsystem
         switch (mWantedState)
         {
             case HOLD:
-                return mSystemState == SystemState.HOLDING;
+                return mMachine.getState() == SystemState.HOLDING;
             case MOTORS_STOP:
-                return mSystemState == SystemState.MOTORS_STOPPING;
+                return mMachine.getState() == SystemState.MOTORS_STOPPING;
             case ARM_DOWN:
-                return mSystemState == SystemState.ARM_DOWNING;
+                return mMachine.getState() == SystemState.ARM_DOWNING;
             case INTAKE:
-                return mSystemState == SystemState.INTAKING;
+                return mMachine.getState() == SystemState.INTAKING;
             case EJECT:
-                return mSystemState == SystemState.EJECTING;
+                return mMachine.getState() == SystemState.EJECTING;
             case CLIMB:
-                return mSystemState == SystemState.CLIMBING;
+                return mMachine.getState() == SystemState.CLIMBING;
             default:
                 logError("atTarget for unknown wanted state " + mWantedState);
                 return false;
@@ -281,12 +292,12 @@ public class CargoIntake extends Subsystem
     @Override
     public void outputTelemetry()
     {
-        dashboardPutState(mSystemState.toString());
+        dashboardPutState(mMachine.getState().toString());
         dashboardPutWantedState(mWantedState.toString());
-        dashboardPutBoolean("mSolenoid Extended", mSolenoid.get());
-        dashboardPutBoolean("mSolenoidClimb Extended", mSolenoidClimb.get());
-        dashboardPutNumber("mMotor1 Speed", mMotorRight.getMotorOutputPercent());
-        dashboardPutNumber("mMotor2 Speed", mMotorLeft.getMotorOutputPercent());
+        mSolenoidExtendedSlot.set(mSolenoid.get());
+        mSolenoidClimbExtendedSlot.set(mSolenoidClimb.get());
+        mMotorRightSpeedSlot.set(mMotorRight.getMotorOutputPercent());
+        mMotorLeftSpeedSlot.set(mMotorLeft.getMotorOutputPercent());
     }
 
     @Override
@@ -3,13 +3,16 @@ package com.spartronics4915.frc2019.subsystems;
 import com.spartronics4915.frc2019.Constants;
 import com.spartronics4915.frc2019.ControlBoard;
 import com.spartronics4915.lib.drivers.A21IRSensor;
+import com.spartronics4915.lib.drivers.Devices;
+import com.spartronics4915.lib.drivers.IDeviceFactory;
+import com.spartronics4915.lib.drivers.IDoubleSolenoid;
 import com.spartronics4915.lib.drivers.IRSensor;
-import com.spartronics4915.lib.util.CANProbe;
 import com.spartronics4915.lib.util.ILoop;
 import com.spartronics4915.lib.util.ILooper;
+import com.spartronics4915.lib.util.StateMachine;
+import com.spartronics4915.lib.util.TelemetryBus;
 
 import edu.wpi.first.hal.sim.mockdata.PCMDataJNI;
-import edu.wpi.first.wpilibj.DoubleSolenoid;
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.DoubleSolenoid.Value;
 
@@ -38,29 +41,39 @@ public class Climber extends Subsystem
     }
 
     private WantedState mWantedState = WantedState.DISABLE;
-    private SystemState mSystemState = SystemState.DISABLING;
-    private DoubleSolenoid mFrontLeftClimberSolenoid = null;
-    private DoubleSolenoid mFrontRightClimberSolenoid = null;
-    private DoubleSolenoid mRearLeftClimberSolenoid = null;
-    private DoubleSolenoid mRearRightClimberSolenoid = null;
+    private final StateMachine<SystemState> mMachine = new StateMachine<>(getName(), SystemState.DISABLING);
+    private IDoubleSolenoid mFrontLeftClimberSolenoid = null;
+    private IDoubleSolenoid mFrontRightClimberSolenoid = null;
+    private IDoubleSolenoid mRearLeftClimberSolenoid = null;
+    private IDoubleSolenoid mRearRightClimberSolenoid = null;
     public IRSensor mClimberFrontIRSensor = null;
     public IRSensor mClimberRearIRSensor = null;
 
+    // Telemetry slots, resolved once so outputTelemetry doesn't look them up
+    private final TelemetryBus.NumberSlot mFrontVoltageSlot = dashboardNumberSlot("Forward sensor voltage: ");
+    private final TelemetryBus.BooleanSlot mFrontInRangeSlot = dashboardBooleanSlot("Forward sensor in range: ");
+    private final TelemetryBus.NumberSlot mRearVoltageSlot = dashboardNumberSlot("Rear sensor voltage: ");
+    private final TelemetryBus.BooleanSlot mRearInRangeSlot = dashboardBooleanSlot("Rear sensor in range: ");
+    // Read in readPeriodicInputs
+    private volatile boolean mFrontSensorsInRange = false;
+    private volatile boolean mRearSensorsInRange = false;
+
     private Climber()
     {
         boolean success = false;
         try
         {
-            if (!CANProbe.getInstance().validatePCMId(Constants.kClimberPCMId))
+            IDeviceFactory devices = Devices.getFactory();
+            if (!devices.isPCMPresent(Constants.kClimberPCMId))
                 throw new RuntimeException("Climber PCM isn't on the CAN bus!");
 
-            mFrontLeftClimberSolenoid = new DoubleSolenoid(Constants.kClimberPCMId, Constants.kFrontLeftSolenoidId1,
+            mFrontLeftClimberSolenoid = devices.createDoubleSolenoid(Constants.kClimberPCMId, Constants.kFrontLeftSolenoidId1,
                     Constants.kFrontLeftSolenoidId2);
-            mFrontRightClimberSolenoid = new DoubleSolenoid(Constants.kClimberPCMId, Constants.kFrontRightSolenoidId1,
+            mFrontRightClimberSolenoid = devices.createDoubleSolenoid(Constants.kClimberPCMId, Constants.kFrontRightSolenoidId1,
                     Constants.kFrontRightSolenoidId2);
-            mRearLeftClimberSolenoid = new DoubleSolenoid(Constants.kClimberPCMId, Constants.kRearLeftSolenoidId1,
+            mRearLeftClimberSolenoid = devices.createDoubleSolenoid(Constants.kClimberPCMId, Constants.kRearLeftSolenoidId1,
                     Constants.kRearLeftSolenoid2);
-            mRearRightClimberSolenoid = new DoubleSolenoid(Constants.kClimberPCMId, Constants.kRearRightSolenoidId1,
+            mRearRightClimberSolenoid = devices.createDoubleSolenoid(Constants.kClimberPCMId, Constants.kRearRightSolenoidId1,
                     Constants.kRearRightSolenoidId2);
             mClimberFrontIRSensor = new A21IRSensor(Constants.kClimberFrontIRSensorID);
             mClimberRearIRSensor = new A21IRSensor(Constants.kClimberRearIRSensorID);
@@ -78,32 +91,31 @@ public class Climber extends Subsystem
     private final ILoop mLoop = new ILoop()
     {
 
-        private boolean mStateChanged = true;
-        private Timer mStateChangedTimer = new Timer();
+        private boolean mFrontStrutsWaiting = false;
 
         @Override
         public void onStart(double timestamp)
         {
             synchronized (Climber.this)
             {
-                mStateChanged = true;
                 mWantedState = WantedState.DISABLE;
-                mSystemState = SystemState.DISABLING;
-                mStateChangedTimer.reset();
-                mStateChangedTimer.start();
+                mMachine.reset(SystemState.DISABLING, timestamp);
             }
         }
 
         @Override
         public void onLoop(double timestamp)
         {
+            // The IR sensors only matter to atTarget, so they signal our listeners directly
+            if (!mMachine.startRun(timestamp))
+                return;
             synchronized (Climber.this)
             {
                 SystemState newState = defaultStateTransfer();
-                switch (mSystemState)
+                switch (mMachine.getState())
                 {
                     case DISABLING: // Only used when starting, cannot be transitioned into
-                        if (mStateChanged)
+                        if (mMachine.isStateChanged())
                         {
                             mFrontLeftClimberSolenoid.set(Value.kReverse);
                             mFrontRightClimberSolenoid.set(Value.kReverse);
@@ -115,25 +127,27 @@ public class Climber extends Subsystem
                     case CLIMBING:
                         // Struts will extend from their dormant position to allow the robot to reach the height required to get to L3
                         // Must be done when robot is flushed with L3 (Done with distance sensors and a backup encoder reading)
-                        if (mStateChanged)
+                        if (mMachine.isStateChanged())
                         {
                             mRearLeftClimberSolenoid.set(Value.kForward);
                             mRearRightClimberSolenoid.set(Value.kForward);
+                            mFrontStrutsWaiting = true;
                         }
-                        if (mStateChangedTimer.hasPeriodPassed(Constants.kClimberFrontSolenoidDelay))
+                        if (mFrontStrutsWaiting)
                         {
-                            mFrontLeftClimberSolenoid.set(Value.kForward);
-                            mFrontRightClimberSolenoid.set(Value.kForward);
-
-                            mStateChangedTimer.stop();
-                            mStateChangedTimer.reset();
+                            if (mMachine.hasStateTimePassed(Constants.kClimberFrontSolenoidDelay, timestamp))
+                            {
+                                mFrontLeftClimberSolenoid.set(Value.kForward);
+                                mFrontRightClimberSolenoid.set(Value.kForward);
+                                mFrontStrutsWaiting = false;
+                            }
                         }
                         break;
 
                     case RETRACTING_FRONT_STRUTS:
                         // Solenoids from the front struts will retract when they become flushed with L3
                         // Done with distance sensors and backup driver vision
-                        if (mStateChanged)
+                        if (mMachine.isStateChanged())
                         {
                             mFrontLeftClimberSolenoid.set(Value.kReverse);
                             mFrontRightClimberSolenoid.set(Value.kReverse);
@@ -143,7 +157,7 @@ public class Climber extends Subsystem
                     case RETRACTING_REAR_STRUTS:
                         // Solenoids from the rear struts will retract when the robot can support its own weight on L3
                         // Done primarily with driver vision, but distance sensor might be used
-                        if (mStateChanged)
+                        if (mMachine.isStateChanged())
                         {
                             mRearLeftClimberSolenoid.set(Value.kReverse);
                             mRearRightClimberSolenoid.set(Value.kReverse);
@@ -153,17 +167,9 @@ public class Climber extends Subsystem
                     default:
                         logError("Unhandled system state!");
                 }
-                if (newState != mSystemState)
-                {
-                    mStateChanged = true;
-
-                    mStateChangedTimer.reset();
-                    mStateChangedTimer.start();
-                }
-                else
-                    mStateChanged = false;
-                mSystemState = newState;
+                mMachine.endRun(newState);
             }
+            signalListeners(mMachine.getStateDescription());
         }
 
         @Override
@@ -173,12 +179,13 @@ public class Climber extends Subsystem
             {
                 stop();
             }
+            logNotice(mMachine.getLatency().toString());
         }
     };
 
     private SystemState defaultStateTransfer()
     {
-        SystemState newState = mSystemState;
+        SystemState newState = mMachine.getState();
         switch (mWantedState)
         {
             case DISABLE:
@@ -203,7 +210,11 @@ public class Climber extends Subsystem
 
     public synchronized void setWantedState(WantedState wantedState)
     {
-        mWantedState = wantedState;
+        if (wantedState != mWantedState)
+        {
+            mWantedState = wantedState;
+            mMachine.signal("Climber wanted state");
+        }
     }
 
     public boolean isClimbing()
@@ -213,14 +224,12 @@ public class Climber extends Subsystem
 
     public boolean frontSensorsInRange()
     {
-        return mClimberFrontIRSensor.isTargetInVoltageRange(Constants.kClimberSensorFrontMinVoltage,
-            Constants.kClimberSensorFrontMinVoltage+1);
+        return mFrontSensorsInRange;
     }
 
     public boolean rearSensorsInRange()
     {
-        return mClimberRearIRSensor.isTargetInVoltageRange(Constants.kClimberSensorRearMinVoltage,
-            Constants.kClimberSensorRearMinVoltage+1);
+        return mRearSensorsInRange;
     }
 
     public synchronized boolean atTarget()
@@ -228,17 +237,17 @@ public class Climber extends Subsystem
         switch (mWantedState)
         {
             case DISABLE:
-                return mSystemState == SystemState.DISABLING;
+                return mMachine.getState() == SystemState.DISABLING;
             case CLIMB:
-                return mSystemState == SystemState.CLIMBING;
+                return mMachine.getState() == SystemState.CLIMBING;
             case RETRACT_FRONT_STRUTS:
                 if (frontSensorsInRange())
-                    return mSystemState == SystemState.RETRACTING_FRONT_STRUTS;
+                    return mMachine.getState() == SystemState.RETRACTING_FRONT_STRUTS;
                 else
                     return false;
             case RETRACT_REAR_STRUTS:
                 if (rearSensorsInRange())
-                    return mSystemState == SystemState.RETRACTING_REAR_STRUTS;
+                    return mMachine.getState() == SystemState.RETRACTING_REAR_STRUTS;
                 else
                     return false;
             default:
@@ -247,6 +256,27 @@ public class Climber extends Subsystem
         }
     }
 
+    @Override
+    public void readPeriodicInputs()
+    {
+        final boolean front = mClimberFrontIRSensor.isTargetInVoltageRange(Constants.kClimberSensorFrontMinVoltage,
+            Constants.kClimberSensorFrontMinVoltage+1);
+        final boolean rear = mClimberRearIRSensor.isTargetInVoltageRange(Constants.kClimberSensorRearMinVoltage,
+            Constants.kClimberSensorRearMinVoltage+1);
+        if (front != mFrontSensorsInRange || rear != mRearSensorsInRange)
+        {
+            mFrontSensorsInRange = front;
+            mRearSensorsInRange = rear;
+            signalListeners("Climber IR sensors");
+        }
+    }
+
+    @Override
+    public double getPeriod()
+    {
+        return 0.02; // Solenoids and IR sensors don't need the drive's rate
+    }
+
     @Override
     public void registerEnabledLoops(ILooper enabledLooper)
     {
@@ -298,12 +328,12 @@ public class Climber extends Subsystem
     @Override
     public void outputTelemetry()
     {
-        dashboardPutState(mSystemState.toString());
+        dashboardPutState(mMachine.getState().toString());
         dashboardPutWantedState(mWantedState.toString());
-        dashboardPutNumber("Forward sensor voltage: ", mClimberFrontIRSensor.getVoltage());
-        dashboardPutBoolean("Forward sensor in range: ", frontSensorsInRange());
-        dashboardPutNumber("Rear sensor voltage: ", mClimberRearIRSensor.getVoltage());
-        dashboardPutBoolean("Rear sensor in range: ", rearSensorsInRange());
+        mFrontVoltageSlot.set(mClimberFrontIRSensor.getVoltage());
+        mFrontInRangeSlot.set(frontSensorsInRange());
+        mRearVoltageSlot.set(mClimberRearIRSensor.getVoltage());
+        mRearInRangeSlot.set(rearSensorsInRange());
     }
 
     @Override
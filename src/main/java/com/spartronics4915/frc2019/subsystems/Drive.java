@@ -3,15 +3,19 @@ package com.spartronics4915.frc2019.subsystems;
 import com.ctre.phoenix.ErrorCode;
 import com.ctre.phoenix.motorcontrol.*;
 import com.ctre.phoenix.motorcontrol.can.TalonSRX;
-import com.ctre.phoenix.sensors.PigeonIMU;
 import com.spartronics4915.frc2019.Constants;
 import com.spartronics4915.frc2019.VisionUpdateManager.HeadingUpdate;
 import com.spartronics4915.frc2019.paths.TrajectoryGenerator;
 import com.spartronics4915.lib.util.ILooper;
 import com.spartronics4915.lib.util.ILoop;
+import com.spartronics4915.lib.util.TelemetryBus;
 import com.spartronics4915.frc2019.planners.DriveMotionPlanner;
+import com.spartronics4915.lib.drivers.Devices;
+import com.spartronics4915.lib.drivers.IDeviceFactory;
+import com.spartronics4915.lib.drivers.IGyro;
+import com.spartronics4915.lib.drivers.ITalonSRX;
 import com.spartronics4915.lib.drivers.TalonSRXChecker;
-import com.spartronics4915.lib.drivers.TalonSRXFactory;
+import com.spartronics4915.lib.geometry.MutablePose2d;
 import com.spartronics4915.lib.geometry.Pose2d;
 import com.spartronics4915.lib.geometry.Pose2dWithCurvature;
 import com.spartronics4915.lib.geometry.Rotation2d;
@@ -21,8 +25,9 @@ import com.spartronics4915.lib.physics.DifferentialDrive.WheelState;
 import com.spartronics4915.lib.trajectory.TrajectoryIterator;
 import com.spartronics4915.lib.trajectory.timing.TimedState;
 import com.spartronics4915.lib.util.DriveSignal;
-import com.spartronics4915.lib.util.ReflectingCSVWriter;
+import com.spartronics4915.lib.util.BinaryLogWriter;
 import com.spartronics4915.lib.util.Units;
+import com.spartronics4915.lib.util.Clock;
 
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.Timer;
@@ -34,23 +39,45 @@ import java.util.ArrayList;
 public class Drive extends Subsystem
 {
 
-    private static Drive mInstance = new Drive();
+    private static Drive mInstance = null;
 
     // Hardware
     // (By setting these to null, on failure, we end up with a null pointer for now, but if we need to handle hardware
     // absence later we will be able to look at super.isInitialized() to know when to not consume these objects)
-    private TalonSRX mLeftMaster = null, mRightMaster = null, mLeftSlave = null, mRightSlave = null;
-    private PigeonIMU mPigeon;
+    private ITalonSRX mLeftMaster = null, mRightMaster = null, mLeftSlave = null, mRightSlave = null;
+    private IGyro mPigeon;
     // Control states
     private DriveControlState mDriveControlState;
     // Hardware states
     private PeriodicIO mPeriodicIO;
+    private final double[] mGyroYPRAccumScratch = new double[3];
     private boolean mIsBrakeMode;
-    private ReflectingCSVWriter<PeriodicIO> mCSVWriter = null;
+    private BinaryLogWriter<LogRecord> mLogWriter = null;
+    private final LogRecord mLogRecord = new LogRecord();
     private DriveMotionPlanner mMotionPlanner;
     private Rotation2d mGyroOffset = Rotation2d.identity();
     private boolean mOverrideTrajectory = false;
     private double mTargetHeading = 0; // Degrees, for closed-loop turning
+    private boolean mSignalledDone = false; // Listeners know the trajectory or turn is done
+
+    // Telemetry slots, resolved once so outputTelemetry doesn't look them up
+    private final TelemetryBus.NumberSlot mRightDistanceSlot = dashboardNumberSlot("rightDistance");
+    private final TelemetryBus.NumberSlot mRightPositionTicksSlot = dashboardNumberSlot("rightPositionTicks");
+    private final TelemetryBus.NumberSlot mLeftPositionTicksSlot = dashboardNumberSlot("leftPositionTicks");
+    private final TelemetryBus.NumberSlot mLeftDistanceSlot = dashboardNumberSlot("leftDistance");
+    private final TelemetryBus.NumberSlot mRightSpeedSlot = dashboardNumberSlot("rightSpeed");
+    private final TelemetryBus.NumberSlot mLeftSpeedSlot = dashboardNumberSlot("leftSpeed");
+    private final TelemetryBus.NumberSlot mXErrorSlot = dashboardNumberSlot("xError");
+    private final TelemetryBus.NumberSlot mYErrorSlot = dashboardNumberSlot("yError");
+    private final TelemetryBus.NumberSlot mThetaErrorSlot = dashboardNumberSlot("thetaError");
+    private final TelemetryBus.NumberSlot mPitchSlot = dashboardNumberSlot("pitch");
+    private final TelemetryBus.NumberSlot mImuHeadingSlot = dashboardNumberSlot("imuHeading");
+    private final TelemetryBus.NumberSlot mLeftDemandSlot = dashboardNumberSlot("leftDemand");
+    private final TelemetryBus.NumberSlot mRightDemandSlot = dashboardNumberSlot("rightDemand");
+    private final TelemetryBus.NumberSlot mLeftSpeedTargetSlot = dashboardNumberSlot("leftSpeedTarget");
+    private final TelemetryBus.NumberSlot mRightSpeedTargetSlot = dashboardNumberSlot("rightSpeedTarget");
+    private final TelemetryBus.NumberSlot mLeftFeedforwardSlot = dashboardNumberSlot("leftFeedforward");
+    private final TelemetryBus.NumberSlot mRightFeedforwardSlot = dashboardNumberSlot("rightFeedforward");
 
     private final ILoop mLoop = new ILoop()
     {
@@ -76,12 +103,25 @@ public class Drive extends Subsystem
                     case OPEN_LOOP:
                         break;
                     case PATH_FOLLOWING:
-                        updatePathFollower();
+                        // Stale inputs mean the estimator didn't move us this
+                        // cycle; hold the last command rather than chase that
+                        if (!areInputsStale())
+                            updatePathFollower();
+                        if (!mSignalledDone && isDoneWithTrajectory())
+                        {
+                            mSignalledDone = true;
+                            signalListeners("Drive trajectory done");
+                        }
                         break;
                     case VELOCITY:
                         updateVelocity();
                         break;
                     case TURN:
+                        if (!mSignalledDone && isDoneTurning())
+                        {
+                            mSignalledDone = true;
+                            signalListeners("Drive turn done");
+                        }
                         break;
                     default:
                         logError("Unexpected drive control state: " + mDriveControlState);
@@ -98,8 +138,14 @@ public class Drive extends Subsystem
         }
     };
 
-    private void configureMaster(TalonSRX talon, boolean left)
+    private void configureMaster(ITalonSRX master, boolean left)
     {
+        master.configVelocityMeasurementPeriod(VelocityMeasPeriod.Period_50Ms, Constants.kLongCANTimeoutMs);
+        final TalonSRX talon = master.getTalon();
+        if (talon == null)
+        {
+            return; // Simulated; it has its encoder, and is always compensated
+        }
         talon.setStatusFramePeriod(StatusFrameEnhanced.Status_2_Feedback0, 5, 100);
         final ErrorCode sensorPresent = talon.configSelectedFeedbackSensor(FeedbackDevice.QuadEncoder, 0, 100); //primary closed-loop, 100 ms timeout
         if (sensorPresent != ErrorCode.OK)
@@ -110,43 +156,59 @@ public class Drive extends Subsystem
         talon.setSensorPhase(!Constants.kIsTestChassis);
         talon.enableVoltageCompensation(true);
         talon.configVoltageCompSaturation(12.0, Constants.kLongCANTimeoutMs);
-        talon.configVelocityMeasurementPeriod(VelocityMeasPeriod.Period_50Ms, Constants.kLongCANTimeoutMs);
         talon.configVelocityMeasurementWindow(1, Constants.kLongCANTimeoutMs);
         talon.configClosedloopRamp(Constants.kDriveVoltageRampRate, Constants.kLongCANTimeoutMs);
         talon.configNeutralDeadband(0.04, 0);
 
     }
 
-    private Drive()
+    private void configureSlave(ITalonSRX slave, boolean inverted)
     {
-        mPeriodicIO = new PeriodicIO();
-
-        boolean success = true;
-        try
+        final TalonSRX talon = slave.getTalon();
+        if (talon != null)
         {
-            // Start all Talons in open loop mode.
-            mLeftMaster = TalonSRXFactory.createDefaultTalon(Constants.kLeftDriveMasterId);
-            configureMaster(mLeftMaster, true);
+            talon.setInverted(inverted);
+        }
+    }
+
+    private void createHardware()
+    {
+        IDeviceFactory devices = Devices.getFactory();
+
+        // Start all Talons in open loop mode.
+        mLeftMaster = devices.createTalon(Constants.kLeftDriveMasterId);
+        configureMaster(mLeftMaster, true);
 
-            mLeftSlave = TalonSRXFactory.createPermanentSlaveTalon(Constants.kLeftDriveSlaveAId,
-                    Constants.kLeftDriveMasterId);
-            mLeftSlave.setInverted(false);
+        mLeftSlave = devices.createPermanentSlaveTalon(Constants.kLeftDriveSlaveAId,
+                Constants.kLeftDriveMasterId);
+        configureSlave(mLeftSlave, false);
 
-            mRightMaster = TalonSRXFactory.createDefaultTalon(Constants.kRightDriveMasterId);
-            configureMaster(mRightMaster, false);
+        mRightMaster = devices.createTalon(Constants.kRightDriveMasterId);
+        configureMaster(mRightMaster, false);
 
-            mRightSlave = TalonSRXFactory.createPermanentSlaveTalon(Constants.kRightDriveSlaveAId,
-                    Constants.kRightDriveMasterId);
-            mRightSlave.setInverted(true);
+        mRightSlave = devices.createPermanentSlaveTalon(Constants.kRightDriveSlaveAId,
+                Constants.kRightDriveMasterId);
+        configureSlave(mRightSlave, true);
 
-            reloadGains(mRightMaster);
-            reloadGains(mLeftMaster);
+        reloadGains(mRightMaster);
+        reloadGains(mLeftMaster);
 
-            mLeftMaster.configNeutralDeadband(Constants.kDriveLeftDeadband, 0);
-            mRightMaster.configNeutralDeadband(Constants.kDriveRightDeadband, 0);
+        mLeftMaster.configNeutralDeadband(Constants.kDriveLeftDeadband, 0);
+        mRightMaster.configNeutralDeadband(Constants.kDriveRightDeadband, 0);
 
-            mPigeon = Constants.kIsTestChassis ? new PigeonIMU(mLeftSlave) : new PigeonIMU(Constants.kPidgeonId);
-            mLeftSlave.setStatusFramePeriod(StatusFrameEnhanced.Status_11_UartGadgeteer, 10, 10);
+        mPigeon = Constants.kIsTestChassis ? devices.createPigeon(mLeftSlave) : devices.createPigeon(Constants.kPidgeonId);
+        if (mLeftSlave.getTalon() != null)
+            mLeftSlave.getTalon().setStatusFramePeriod(StatusFrameEnhanced.Status_11_UartGadgeteer, 10, 10);
+    }
+
+    private Drive()
+    {
+        mPeriodicIO = new PeriodicIO();
+
+        boolean success = true;
+        try
+        {
+            createHardware();
 
             setOpenLoop(DriveSignal.NEUTRAL);
 
@@ -165,8 +227,12 @@ public class Drive extends Subsystem
         logInitialized(success);
     }
 
-    public static Drive getInstance()
+    public static synchronized Drive getInstance()
     {
+        if (mInstance == null)
+        {
+            mInstance = new Drive();
+        }
         return mInstance;
     }
 
@@ -215,6 +281,7 @@ public class Drive extends Subsystem
             updateTalonsForPosition();
         }
         mTargetHeading = heading.getDegrees();
+        mSignalledDone = false;
 
         WheelState w = mMotionPlanner.getModel().solveInverseKinematics(new ChassisState(0.0, heading.getRadians()));
         mPeriodicIO.leftDemand = (getLeftEncoderRotations() + inchesToRotations(Units.meters_to_inches(w.left / 10))) * Constants.kDriveEncoderPPR;
@@ -298,15 +365,19 @@ public class Drive extends Subsystem
     private void updateTalonsForVelocity()
     {
         setBrakeMode(true);
-        mLeftMaster.selectProfileSlot(Constants.kVelocityPIDSlot, 0);
-        mRightMaster.selectProfileSlot(Constants.kVelocityPIDSlot, 0);
+        selectProfileSlot(Constants.kVelocityPIDSlot);
     }
 
     private void updateTalonsForPosition()
     {
         setBrakeMode(true);
-        mLeftMaster.selectProfileSlot(Constants.kPositionPIDSlot, 0);
-        mRightMaster.selectProfileSlot(Constants.kPositionPIDSlot, 0);
+        selectProfileSlot(Constants.kPositionPIDSlot);
+    }
+
+    private void selectProfileSlot(int slot)
+    {
+        mLeftMaster.selectProfileSlot(slot, 0);
+        mRightMaster.selectProfileSlot(slot, 0);
     }
 
     public synchronized void setTrajectory(TrajectoryIterator<TimedState<Pose2dWithCurvature>> trajectory)
@@ -314,6 +385,7 @@ public class Drive extends Subsystem
         if (mMotionPlanner != null)
         {
             mOverrideTrajectory = false;
+            mSignalledDone = false;
             mMotionPlanner.reset();
             mMotionPlanner.setTrajectory(trajectory);
             mDriveControlState = DriveControlState.PATH_FOLLOWING;
@@ -371,12 +443,17 @@ public class Drive extends Subsystem
     {
         logDebug("SET HEADING: " + heading.getDegrees());
 
-        mGyroOffset = heading.rotateBy(Rotation2d.fromDegrees(mPigeon.getFusedHeading()).inverse());
+        mGyroOffset = heading.rotateBy(Rotation2d.fromDegrees(getFusedHeading()).inverse());
         logDebug("Gyro offset: " + mGyroOffset.getDegrees());
 
         mPeriodicIO.gyroHeading = heading;
     }
 
+    private double getFusedHeading()
+    {
+        return mPigeon.getFusedHeading();
+    }
+
     @Override
     public synchronized void stop()
     {
@@ -386,34 +463,38 @@ public class Drive extends Subsystem
     @Override
     public void outputTelemetry()
     {
-        dashboardPutNumber("rightDistance", mPeriodicIO.rightDistance);
-        dashboardPutNumber("rightPositionTicks", mPeriodicIO.rightPositionTicks);
-        dashboardPutNumber("leftPositionTicks", mPeriodicIO.leftPositionTicks);
-        dashboardPutNumber("leftDistance", mPeriodicIO.leftDistance);
-        dashboardPutNumber("rightSpeed", getRightLinearVelocity()); // Inches per second
-        dashboardPutNumber("leftSpeed", getLeftLinearVelocity()); // Inches per second
-
-        dashboardPutNumber("xError", mPeriodicIO.error.getTranslation().x());
-        dashboardPutNumber("yError", mPeriodicIO.error.getTranslation().y());
-        dashboardPutNumber("thetaError", mPeriodicIO.error.getRotation().getDegrees());
-        dashboardPutNumber("pitch", mPeriodicIO.gyroYPRAccum[2]);
-        if (getHeading() != null)
+        mRightDistanceSlot.set(mPeriodicIO.rightDistance);
+        mRightPositionTicksSlot.set(mPeriodicIO.rightPositionTicks);
+        mLeftPositionTicksSlot.set(mPeriodicIO.leftPositionTicks);
+        mLeftDistanceSlot.set(mPeriodicIO.leftDistance);
+        mRightSpeedSlot.set(getRightLinearVelocity()); // Inches per second
+        mLeftSpeedSlot.set(getLeftLinearVelocity()); // Inches per second
+
+        // error and gyroYPRAccum are updated in place, so copy them out under the lock
+        final double xError, yError, thetaError, pitch;
+        synchronized (mPeriodicIO)
         {
-            dashboardPutNumber("imuHeading", getHeading().getDegrees());
+            xError = mPeriodicIO.error.getX();
+            yError = mPeriodicIO.error.getY();
+            thetaError = mPeriodicIO.error.getDegrees();
+            pitch = mPeriodicIO.gyroYPRAccum[2];
         }
-        if (mCSVWriter != null)
+        mXErrorSlot.set(xError);
+        mYErrorSlot.set(yError);
+        mThetaErrorSlot.set(thetaError);
+        mPitchSlot.set(pitch);
+        if (getHeading() != null)
         {
-            mCSVWriter.write();
+            mImuHeadingSlot.set(getHeading().getDegrees());
         }
-
-        dashboardPutNumber("leftDemand", mPeriodicIO.leftDemand);
-        dashboardPutNumber("rightDemand", mPeriodicIO.rightDemand);
+        mLeftDemandSlot.set(mPeriodicIO.leftDemand);
+        mRightDemandSlot.set(mPeriodicIO.rightDemand);
         if (mDriveControlState == DriveControlState.VELOCITY || mDriveControlState == DriveControlState.PATH_FOLLOWING)
         {
-            dashboardPutNumber("leftSpeedTarget", ticksPer100msToInchesPerSecond(mPeriodicIO.leftDemand));
-            dashboardPutNumber("rightSpeedTarget", ticksPer100msToInchesPerSecond(mPeriodicIO.rightDemand));
-            dashboardPutNumber("leftFeedforward", mPeriodicIO.leftFeedforward);
-            dashboardPutNumber("rightFeedforward", mPeriodicIO.rightFeedforward);
+            mLeftSpeedTargetSlot.set(ticksPer100msToInchesPerSecond(mPeriodicIO.leftDemand));
+            mRightSpeedTargetSlot.set(ticksPer100msToInchesPerSecond(mPeriodicIO.rightDemand));
+            mLeftFeedforwardSlot.set(mPeriodicIO.leftFeedforward);
+            mRightFeedforwardSlot.set(mPeriodicIO.rightFeedforward);
         }
 
         dashboardPutState(mDriveControlState.toString());
@@ -495,6 +576,16 @@ public class Drive extends Subsystem
         return (getRightLinearVelocity() - getLeftLinearVelocity()) / Constants.kDriveWheelTrackWidthInches;
     }
 
+    public DriveMotionPlanner getMotionPlanner()
+    {
+        return mMotionPlanner;
+    }
+
+    public synchronized DriveControlState getControlState()
+    {
+        return mDriveControlState;
+    }
+
     public void overrideTrajectory(boolean value)
     {
         mOverrideTrajectory = value;
@@ -504,15 +595,19 @@ public class Drive extends Subsystem
     {
         if (mDriveControlState == DriveControlState.PATH_FOLLOWING)
         {
-            final double now = Timer.getFPGATimestamp();
+            final double now = Clock.getTime();
 
             DriveMotionPlanner.Output output =
                     mMotionPlanner.update(now, RobotStateEstimator.getInstance().getEncoderRobotStateMap().getFieldToVehicle(now));
 
             // DriveSignal signal = new DriveSignal(demand.left_feedforward_voltage / 12.0, demand.right_feedforward_voltage / 12.0);
 
-            mPeriodicIO.error = mMotionPlanner.error();
-            mPeriodicIO.pathSetpoint = mMotionPlanner.setpoint();
+            // Telemetry and the log read these from other threads under the same lock
+            synchronized (mPeriodicIO)
+            {
+                mMotionPlanner.getError(mPeriodicIO.error);
+                mPeriodicIO.pathSetpoint = mMotionPlanner.setpoint();
+            }
 
             if (!mOverrideTrajectory)
             {
@@ -550,7 +645,7 @@ public class Drive extends Subsystem
 
     }
 
-    public synchronized void reloadGains(TalonSRX talon)
+    public synchronized void reloadGains(ITalonSRX talon)
     {
         talon.config_kP(Constants.kVelocityPIDSlot, Constants.kDriveVelocityKp, Constants.kLongCANTimeoutMs);
         talon.config_kI(Constants.kVelocityPIDSlot, Constants.kDriveVelocityKi, Constants.kLongCANTimeoutMs);
@@ -570,21 +665,40 @@ public class Drive extends Subsystem
     {
     }
 
+    @Override
+    public boolean hasAtomicInputSnapshot()
+    {
+        return true;
+    }
+
     @Override
     public void readPeriodicInputs()
     {
+        // Talk to the hardware outside the lock, then publish everything at once.
+        // SubsystemManager may run this on another thread and stop waiting for it,
+        // in which case the loops keep seeing the previous, complete snapshot.
+        final int leftPositionTicks = mLeftMaster.getSelectedSensorPosition(0);
+        final int rightPositionTicks = mRightMaster.getSelectedSensorPosition(0);
+        final int leftVelocityTicksPer100ms = mLeftMaster.getSelectedSensorVelocity(0);
+        final int rightVelocityTicksPer100ms = mRightMaster.getSelectedSensorVelocity(0);
+        mPigeon.getAccumGyro(mGyroYPRAccumScratch);
+        final double leftVoltage = mLeftMaster.getMotorOutputVoltage();
+        final double rightVoltage = mRightMaster.getMotorOutputVoltage();
+        final Rotation2d gyroHeading = Rotation2d.fromDegrees(getFusedHeading()).rotateBy(mGyroOffset);
+        final BinaryLogWriter<LogRecord> logWriter = mLogWriter; // stopLogging may clear it
+
         synchronized (mPeriodicIO)
         {
             double prevLeftTicks = mPeriodicIO.leftPositionTicks;
             double prevRightTicks = mPeriodicIO.rightPositionTicks;
-            mPeriodicIO.leftPositionTicks = mLeftMaster.getSelectedSensorPosition(0);
-            mPeriodicIO.rightPositionTicks = mRightMaster.getSelectedSensorPosition(0);
-            mPeriodicIO.leftVelocityTicksPer100ms = mLeftMaster.getSelectedSensorVelocity(0);
-            mPeriodicIO.rightVelocityTicksPer100ms = mRightMaster.getSelectedSensorVelocity(0);
-            mPeriodicIO.gyroHeading = Rotation2d.fromDegrees(mPigeon.getFusedHeading()).rotateBy(mGyroOffset);
-            mPigeon.getAccumGyro(mPeriodicIO.gyroYPRAccum);
-            mPeriodicIO.leftVoltage = mLeftMaster.getMotorOutputVoltage();
-            mPeriodicIO.rightVoltage = mRightMaster.getMotorOutputVoltage();
+            mPeriodicIO.leftPositionTicks = leftPositionTicks;
+            mPeriodicIO.rightPositionTicks = rightPositionTicks;
+            mPeriodicIO.leftVelocityTicksPer100ms = leftVelocityTicksPer100ms;
+            mPeriodicIO.rightVelocityTicksPer100ms = rightVelocityTicksPer100ms;
+            mPeriodicIO.gyroHeading = gyroHeading;
+            System.arraycopy(mGyroYPRAccumScratch, 0, mPeriodicIO.gyroYPRAccum, 0, mGyroYPRAccumScratch.length);
+            mPeriodicIO.leftVoltage = leftVoltage;
+            mPeriodicIO.rightVoltage = rightVoltage;
             double deltaLeftTicks = ((mPeriodicIO.leftPositionTicks - prevLeftTicks) / Constants.kDriveEncoderPPR) * Math.PI;
 
             if (deltaLeftTicks > 0.0) // XXX: Why do we have this if statement? (And the corresponding one for the right side)
@@ -605,13 +719,14 @@ public class Drive extends Subsystem
             {
                 mPeriodicIO.rightDistance += deltaRightTicks * Constants.kDriveWheelDiameterInches;
             }
-        }
 
-        if (mCSVWriter != null)
-        {
-            mCSVWriter.add(mPeriodicIO);
+            if (logWriter != null)
+                mLogRecord.copyFrom(mPeriodicIO);
         }
 
+        if (logWriter != null)
+            logWriter.add(mLogRecord);
+
         // System.out.println("control state: " + mDriveControlState + ", left: " + mPeriodicIO.left_demand + ", right: " + mPeriodicIO.right_demand);
     }
 
@@ -630,14 +745,12 @@ public class Drive extends Subsystem
              */
             if (mDriveControlState == DriveControlState.OPEN_LOOP)
             {
-                mLeftMaster.set(ControlMode.PercentOutput, mPeriodicIO.leftDemand, DemandType.ArbitraryFeedForward, 0.0);
-                mRightMaster.set(ControlMode.PercentOutput, mPeriodicIO.rightDemand, DemandType.ArbitraryFeedForward, 0.0);
+                setMasters(ControlMode.PercentOutput, mPeriodicIO.leftDemand, 0.0, mPeriodicIO.rightDemand, 0.0);
             }
 
             else if (mDriveControlState == DriveControlState.TURN)
             {
-                mLeftMaster.set(ControlMode.Position, mPeriodicIO.leftDemand);
-                mRightMaster.set(ControlMode.Position, mPeriodicIO.rightDemand);
+                setMasters(ControlMode.Position, mPeriodicIO.leftDemand, 0.0, mPeriodicIO.rightDemand, 0.0);
             }
             else
             {
@@ -651,14 +764,11 @@ public class Drive extends Subsystem
                 //  atop this call and that in that context the term feedfwd
                 //  controller refers to an open-loop path follower.
                 //  (fair warning).
-                mLeftMaster.set(ControlMode.Velocity,
+                setMasters(ControlMode.Velocity,
                         mPeriodicIO.leftDemand,
-                        DemandType.ArbitraryFeedForward,
                         mPeriodicIO.leftFeedforward +
-                                Constants.kDriveVelocityKd * mPeriodicIO.leftAccel / 1023.0);
-                mRightMaster.set(ControlMode.Velocity,
+                                Constants.kDriveVelocityKd * mPeriodicIO.leftAccel / 1023.0,
                         mPeriodicIO.rightDemand,
-                        DemandType.ArbitraryFeedForward,
                         mPeriodicIO.rightFeedforward +
                                 Constants.kDriveVelocityKd * mPeriodicIO.rightAccel / 1023.0);
                 //
@@ -673,6 +783,13 @@ public class Drive extends Subsystem
         }
     }
 
+    private void setMasters(ControlMode mode, double leftDemand, double leftFeedforward, double rightDemand,
+            double rightFeedforward)
+    {
+        mLeftMaster.set(mode, leftDemand, DemandType.ArbitraryFeedForward, leftFeedforward);
+        mRightMaster.set(mode, rightDemand, DemandType.ArbitraryFeedForward, rightFeedforward);
+    }
+
     @Override
     public boolean checkSystem(String variant)
     {
@@ -681,6 +798,11 @@ public class Drive extends Subsystem
             logWarning("can't check uninitialized system");
             return false;
         }
+        if (mLeftMaster.getTalon() == null)
+        {
+            logWarning("can't check a simulated drivetrain");
+            return false;
+        }
         boolean success = true;
         DriveSignal zero = new DriveSignal(0, 0);
         DriveSignal feedfwd = zero;
@@ -792,8 +914,8 @@ public class Drive extends Subsystem
                     {
 
                         {
-                            add(new TalonSRXChecker.TalonSRXConfig("left_master", mLeftMaster));
-                            add(new TalonSRXChecker.TalonSRXConfig("left_slave", mLeftSlave));
+                            add(new TalonSRXChecker.TalonSRXConfig("left_master", mLeftMaster.getTalon()));
+                            add(new TalonSRXChecker.TalonSRXConfig("left_slave", mLeftSlave.getTalon()));
                         }
                     }, new TalonSRXChecker.CheckerConfig()
                     {
@@ -811,8 +933,8 @@ public class Drive extends Subsystem
                     {
 
                         {
-                            add(new TalonSRXChecker.TalonSRXConfig("right_master", mRightMaster));
-                            add(new TalonSRXChecker.TalonSRXConfig("right_slave", mRightSlave));
+                            add(new TalonSRXChecker.TalonSRXConfig("right_master", mRightMaster.getTalon()));
+                            add(new TalonSRXChecker.TalonSRXConfig("right_slave", mRightSlave.getTalon()));
                         }
                     }, new TalonSRXChecker.CheckerConfig()
                     {
@@ -832,18 +954,19 @@ public class Drive extends Subsystem
 
     public synchronized void startLogging()
     {
-        if (mCSVWriter == null)
+        if (mLogWriter == null)
         {
-            mCSVWriter = new ReflectingCSVWriter<>(Paths.get(System.getProperty("user.home"), "DRIVE-LOGS.csv").toString(), PeriodicIO.class);
+            // Convert with BinaryLogToCSV
+            mLogWriter = new BinaryLogWriter<>(Paths.get(System.getProperty("user.home"), "DRIVE-LOGS.bin").toString(), LogRecord.class);
         }
     }
 
     public synchronized void stopLogging()
     {
-        if (mCSVWriter != null)
+        if (mLogWriter != null)
         {
-            mCSVWriter.flush();
-            mCSVWriter = null;
+            mLogWriter.close();
+            mLogWriter = null;
         }
     }
 
@@ -869,7 +992,7 @@ public class Drive extends Subsystem
         public double leftVoltage;
         public double rightVoltage;
         public Rotation2d gyroHeading = Rotation2d.identity();
-        public Pose2d error = Pose2d.identity();
+        public final MutablePose2d error = new MutablePose2d();
         public double[] gyroYPRAccum = new double[3];
 
         // OUTPUTS
@@ -881,4 +1004,77 @@ public class Drive extends Subsystem
         public double rightFeedforward;
         public TimedState<Pose2dWithCurvature> pathSetpoint = new TimedState<Pose2dWithCurvature>(Pose2dWithCurvature.identity());
     }
+
+    /**
+     * PeriodicIO flattened into primitives for BinaryLogWriter, so the log
+     * keeps the path tracking error and setpoint. Call copyFrom while holding
+     * the PeriodicIO's lock.
+     */
+    public static class LogRecord
+    {
+
+        public int leftPositionTicks;
+        public int rightPositionTicks;
+        public double leftDistance;
+        public double rightDistance;
+        public int leftVelocityTicksPer100ms;
+        public int rightVelocityTicksPer100ms;
+        public double leftVoltage;
+        public double rightVoltage;
+        public double gyroHeadingDegrees;
+        public double errorX;
+        public double errorY;
+        public double errorDegrees;
+        public double gyroAccumX;
+        public double gyroAccumY;
+        public double gyroAccumZ;
+
+        public double leftDemand;
+        public double rightDemand;
+        public double leftAccel;
+        public double rightAccel;
+        public double leftFeedforward;
+        public double rightFeedforward;
+        public double setpointX;
+        public double setpointY;
+        public double setpointDegrees;
+        public double setpointCurvature;
+        public double setpointT;
+        public double setpointVelocity;
+        public double setpointAcceleration;
+
+        void copyFrom(PeriodicIO io)
+        {
+            leftPositionTicks = io.leftPositionTicks;
+            rightPositionTicks = io.rightPositionTicks;
+            leftDistance = io.leftDistance;
+            rightDistance = io.rightDistance;
+            leftVelocityTicksPer100ms = io.leftVelocityTicksPer100ms;
+            rightVelocityTicksPer100ms = io.rightVelocityTicksPer100ms;
+            leftVoltage = io.leftVoltage;
+            rightVoltage = io.rightVoltage;
+            gyroHeadingDegrees = io.gyroHeading.getDegrees();
+            errorX = io.error.getX();
+            errorY = io.error.getY();
+            errorDegrees = io.error.getDegrees();
+            gyroAccumX = io.gyroYPRAccum[0];
+            gyroAccumY = io.gyroYPRAccum[1];
+            gyroAccumZ = io.gyroYPRAccum[2];
+
+            leftDemand = io.leftDemand;
+            rightDemand = io.rightDemand;
+            leftAccel = io.leftAccel;
+            rightAccel = io.rightAccel;
+            leftFeedforward = io.leftFeedforward;
+            rightFeedforward = io.rightFeedforward;
+            final Pose2dWithCurvature setpoint = io.pathSetpoint.state();
+            setpointX = setpoint.getTranslation().x();
+            setpointY = setpoint.getTranslation().y();
+            setpointDegrees = setpoint.getRotation().getDegrees();
+            setpointCurvature = setpoint.getCurvature();
+            setpointT = io.pathSetpoint.t();
+            setpointVelocity = io.pathSetpoint.velocity();
+            setpointAcceleration = io.pathSetpoint.acceleration();
+        }
+    }
 }
@@ -0,0 +1,145 @@
+package com.spartronics4915.frc2019.subsystems;
+
+import com.spartronics4915.frc2019.Constants;
+import com.spartronics4915.lib.util.JVMStats;
+import com.spartronics4915.lib.util.TelemetryBus;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Watches the JVM rather than hardware: GC pauses, heap use, and how much the
+ * loop threads allocate. Allocation is shown per Constants.kLooperDt cycle, so
+ * e.g. "JVMMonitor/alloc/EnabledLooper" is roughly the garbage one control
+ * cycle leaves behind. Threads show up here once they call
+ * JVMStats.registerCurrentThread.
+ *
+ * Numbers cover the last getPeriod() seconds. logSummary covers everything
+ * since it was last called, which is the number to compare between builds.
+ */
+public class JVMMonitor extends Subsystem
+{
+
+    private static JVMMonitor sInstance = null;
+
+    public static JVMMonitor getInstance()
+    {
+        if (sInstance == null)
+        {
+            sInstance = new JVMMonitor();
+        }
+        return sInstance;
+    }
+
+    private JVMStats mStats = null;
+
+    // Since the last logSummary()
+    private long mTotalGCCount = 0;
+    private long mTotalGCMillis = 0;
+    private long mMaxGCMillis = 0;
+    private double mTotalSeconds = 0;
+    private final Map<String, long[]> mTotalAllocated = new HashMap<>();
+    private final Map<String, TelemetryBus.NumberSlot> mAllocSlots = new HashMap<>();
+    private final TelemetryBus.NumberSlot mGCCountSlot = dashboardNumberSlot("gcCount");
+    private final TelemetryBus.NumberSlot mGCMillisSlot = dashboardNumberSlot("gcMillis");
+    private final TelemetryBus.NumberSlot mHeapSlot = dashboardNumberSlot("heapMB");
+
+    private JVMMonitor()
+    {
+        boolean success = true;
+        try
+        {
+            mStats = new JVMStats();
+        }
+        catch (Exception e)
+        {
+            success = false;
+            logException("Couldn't get JVM management beans", e);
+        }
+
+        logInitialized(success);
+    }
+
+    @Override
+    public double getPeriod()
+    {
+        return 0.5;
+    }
+
+    @Override
+    public synchronized void readPeriodicInputs()
+    {
+        if (mStats == null)
+            return;
+        mStats.sample();
+
+        final long gcMillis = mStats.getGCMillis();
+        mTotalGCCount += mStats.getGCCount();
+        mTotalGCMillis += gcMillis;
+        mMaxGCMillis = Math.max(mMaxGCMillis, gcMillis);
+        mTotalSeconds += mStats.getSeconds();
+        // Collection time is only reported per sample, so this is an upper
+        // bound on a single pause, but it's enough to line up with overruns
+        if (gcMillis > Constants.kLooperDt * 1000)
+            logWarning("GC took " + gcMillis + " ms over " + mStats.getGCCount() + " collections");
+
+        List<String> labels = mStats.getThreadLabels();
+        for (int i = 0; i < labels.size(); i++)
+        {
+            long[] total = mTotalAllocated.get(labels.get(i));
+            if (total == null)
+                mTotalAllocated.put(labels.get(i), total = new long[1]);
+            total[0] += mStats.getAllocatedBytes(labels.get(i));
+        }
+    }
+
+    @Override
+    public boolean checkSystem(String variant)
+    {
+        return true;
+    }
+
+    @Override
+    public synchronized void outputTelemetry()
+    {
+        if (mStats == null)
+            return;
+        final double cycles = Math.max(1, mStats.getSeconds() / Constants.kLooperDt);
+        mGCCountSlot.set(mStats.getGCCount());
+        mGCMillisSlot.set(mStats.getGCMillis());
+        mHeapSlot.set(mStats.getHeapUsedBytes() / 1e6);
+        List<String> labels = mStats.getThreadLabels();
+        for (int i = 0; i < labels.size(); i++)
+        {
+            final String label = labels.get(i);
+            TelemetryBus.NumberSlot slot = mAllocSlots.get(label);
+            if (slot == null)
+                mAllocSlots.put(label, slot = dashboardNumberSlot("alloc/" + label));
+            slot.set(Math.round(mStats.getAllocatedBytes(label) / cycles));
+        }
+    }
+
+    @Override
+    public void stop()
+    {
+    }
+
+    public synchronized void logSummary()
+    {
+        if (mTotalSeconds <= 0)
+            return;
+
+        final double cycles = mTotalSeconds / Constants.kLooperDt;
+        logNotice(String.format("%.0f s: %d GCs, %d ms total, worst sample %d ms", mTotalSeconds, mTotalGCCount,
+                mTotalGCMillis, mMaxGCMillis));
+        for (Map.Entry<String, long[]> e : mTotalAllocated.entrySet())
+            logNotice(String.format("%s allocated %.0f bytes/cycle", e.getKey(), e.getValue()[0] / cycles));
+
+        mTotalGCCount = 0;
+        mTotalGCMillis = 0;
+        mMaxGCMillis = 0;
+        mTotalSeconds = 0;
+        mTotalAllocated.clear();
+    }
+}
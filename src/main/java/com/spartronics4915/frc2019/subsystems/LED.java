@@ -112,6 +112,12 @@ public class LED extends Subsystem
         mWantedState = wantedState;
     }
 
+    @Override
+    public double getPeriod()
+    {
+        return 0.05; // Nobody can see LEDs change faster than this
+    }
+
     @Override
     public void registerEnabledLoops(ILooper enabledLooper)
     {
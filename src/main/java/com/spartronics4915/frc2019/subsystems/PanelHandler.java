@@ -1,11 +1,14 @@
 package com.spartronics4915.frc2019.subsystems;
 
 import com.spartronics4915.frc2019.Constants;
-import com.spartronics4915.lib.util.CANProbe;
+import com.spartronics4915.lib.drivers.Devices;
+import com.spartronics4915.lib.drivers.ISolenoid;
 import com.spartronics4915.lib.util.ILoop;
 import com.spartronics4915.lib.util.ILooper;
+import com.spartronics4915.lib.util.Clock;
+import com.spartronics4915.lib.util.StateMachine;
+import com.spartronics4915.lib.util.TelemetryBus;
 
-import edu.wpi.first.wpilibj.Solenoid;
 import edu.wpi.first.wpilibj.Timer;
 //import edu.wpi.first.wpilibj.DigitalInput;
 
@@ -37,22 +40,23 @@ public class PanelHandler extends Subsystem
     }
 
     private WantedState mWantedState = WantedState.RETRACT;
-    private SystemState mSystemState = SystemState.RETRACTING;
+    private final StateMachine<SystemState> mMachine = new StateMachine<>(getName(), SystemState.RETRACTING);
 
-    private Solenoid mSolenoid = null;
+    private ISolenoid mSolenoid = null;
 
-    //private DigitalInput mLimitSwitch = null;
+    // Telemetry slots, resolved once so outputTelemetry doesn't look them up
+    private final TelemetryBus.BooleanSlot mSolenoidExtendedSlot = dashboardBooleanSlot("mSolenoid1 Extended");
 
-    private boolean mStateChanged;
+    //private DigitalInput mLimitSwitch = null;
 
     private PanelHandler()
     {
         boolean success = false;
         try
         {
-            if (!CANProbe.getInstance().validatePCMId(Constants.kCargoHatchArmPCMId)) throw new RuntimeException("PanelHandler PCM isn't on the CAN bus!");
+            if (!Devices.getFactory().isPCMPresent(Constants.kCargoHatchArmPCMId)) throw new RuntimeException("PanelHandler PCM isn't on the CAN bus!");
 
-            mSolenoid = new Solenoid(Constants.kCargoHatchArmPCMId, Constants.kPanelHandlerSolenoid);
+            mSolenoid = Devices.getFactory().createSolenoid(Constants.kCargoHatchArmPCMId, Constants.kPanelHandlerSolenoid);
             success = true;
         }
         catch (Exception e)
@@ -74,47 +78,45 @@ public class PanelHandler extends Subsystem
             synchronized (PanelHandler.this)
             {
                 mSolenoid.set(Constants.kPanelSolenoidRetract);
-                mStateChanged = true;
                 mWantedState = WantedState.RETRACT;
-                mSystemState = SystemState.RETRACTING;
+                mMachine.reset(SystemState.RETRACTING, timestamp);
             }
         }
 
         @Override
         public void onLoop(double timestamp)
         {
+            if (!mMachine.startRun(timestamp))
+                return;
             synchronized (PanelHandler.this)
             {
                 SystemState newState = defaultStateTransfer();
-                switch (mSystemState)
+                switch (mMachine.getState())
                 {
                     case RETRACTING:
-                        if (mStateChanged)
+                        if (mMachine.isStateChanged())
                         {
                             mSolenoid.set(Constants.kPanelSolenoidRetract);
                         }
                         break;
                     case EJECTING://BB6
-                        if (mStateChanged)
+                        if (mMachine.isStateChanged())
                         {
                             mSolenoid.set(Constants.kPanelSolenoidExtend);
-                            mEjectTime = Timer.getFPGATimestamp();
+                            mEjectTime = Clock.getTime();
                         }
-                        else if (Timer.getFPGATimestamp() > mEjectTime + Constants.kPanelEjectTime && newState == mSystemState)
+                        else if (Clock.getTime() > mEjectTime + Constants.kPanelEjectTime && newState == mMachine.getState())
                             setWantedState(WantedState.RETRACT);
+                        if (mWantedState == WantedState.EJECT)
+                            mMachine.wakeAt(mEjectTime + Constants.kPanelEjectTime);
                         break;
                     default:
                         logError("Unhandled system state!");
                 }
-                if (newState != mSystemState)
-                {
-                    mStateChanged = true;
+                if (mMachine.endRun(newState))
                     logNotice("System state to " + newState);
-                }
-                else
-                    mStateChanged = false;
-                mSystemState = newState;
             }
+            signalListeners(mMachine.getStateDescription());
         }
 
         @Override
@@ -124,12 +126,13 @@ public class PanelHandler extends Subsystem
             {
                 stop();
             }
+            logNotice(mMachine.getLatency().toString());
         }
     };
 
     private SystemState defaultStateTransfer() //Eject -timer-> Retract
     {
-        SystemState newState = mSystemState;
+        SystemState newState = mMachine.getState();
         switch (mWantedState)
         {
             case RETRACT:
@@ -144,12 +147,16 @@ public class PanelHandler extends Subsystem
 
     public synchronized void setWantedState(WantedState wantedState)
     {
-        mWantedState = wantedState;
+        if (wantedState != mWantedState)
+        {
+            mWantedState = wantedState;
+            mMachine.signal("PanelHandler wanted state");
+        }
     }
 
     public synchronized boolean atTarget()
     {
-        return mSystemState == SystemState.RETRACTING && mWantedState == WantedState.RETRACT;
+        return mMachine.getState() == SystemState.RETRACTING && mWantedState == WantedState.RETRACT;
     }
 
     @Override
@@ -182,9 +189,9 @@ public class PanelHandler extends Subsystem
     @Override
     public void outputTelemetry()
     {
-        dashboardPutState(mSystemState.toString());
+        dashboardPutState(mMachine.getState().toString());
         dashboardPutWantedState(mWantedState.toString());
-        dashboardPutBoolean("mSolenoid1 Extended", mSolenoid.get());
+        mSolenoidExtendedSlot.set(mSolenoid.get());
         //dashboardPutBoolean("Is a Panel aquired?", mLimitSwitch.get());
     }
 
@@ -2,17 +2,19 @@ package com.spartronics4915.frc2019.subsystems;
 
 import com.spartronics4915.frc2019.Constants;
 import com.spartronics4915.frc2019.Kinematics;
+import com.spartronics4915.lib.geometry.MutablePose2d;
 import com.spartronics4915.lib.geometry.Pose2d;
 import com.spartronics4915.lib.util.RobotStateMap;
 import com.spartronics4915.lib.util.ILooper;
+import com.spartronics4915.lib.util.KinematicFilter;
+import com.spartronics4915.lib.util.TelemetryBus;
 
-import edu.wpi.first.wpilibj.Timer;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 import com.spartronics4915.lib.util.ILoop;
 import com.spartronics4915.lib.geometry.Rotation2d;
 import com.spartronics4915.lib.geometry.Twist2d;
 import com.spartronics4915.lib.lidar.LidarProcessor;
+import com.spartronics4915.lib.util.Clock;
 
 public class RobotStateEstimator extends Subsystem
 {
@@ -36,8 +38,36 @@ public class RobotStateEstimator extends Subsystem
     private double mLeftPrevDist = 0.0;
     private double mRightPrevDist = 0.0;
 
+    /**
+     * Smoothed velocity and acceleration, estimated from wheel distance
+     * (inches) and accumulated gyro heading (radians). These are less noisy
+     * than the per-loop deltas in the RobotStateMap.
+     */
+    private final KinematicFilter mLeftFilter =
+            KinematicFilter.fromSmoothingFactor(Constants.kStateEstimatorSmoothing);
+    private final KinematicFilter mRightFilter =
+            KinematicFilter.fromSmoothingFactor(Constants.kStateEstimatorSmoothing);
+    private final KinematicFilter mLinearFilter =
+            KinematicFilter.fromSmoothingFactor(Constants.kStateEstimatorSmoothing);
+    private final KinematicFilter mAngularFilter =
+            KinematicFilter.fromSmoothingFactor(Constants.kStateEstimatorSmoothing);
+    private double mHeadingAccum = 0.0;
+
     private static final Pose2d kZeroPose = Pose2d.identity();
 
+    // Odometry scratch; only the Pose2d we record in the map is allocated
+    private final MutablePose2d mNextPose = new MutablePose2d();
+
+    // These predate the subsystem-name convention, so they get their own keys
+    private final TelemetryBus.StringSlot mPoseSlot = TelemetryBus.getInstance().string("RobotState/pose");
+    private final TelemetryBus.NumberSlot mVelocitySlot = TelemetryBus.getInstance().number("RobotState/velocity");
+    private final TelemetryBus.NumberSlot mFilteredVelocitySlot =
+            TelemetryBus.getInstance().number("RobotState/filteredVelocity");
+    private final TelemetryBus.NumberSlot mFilteredAccelerationSlot =
+            TelemetryBus.getInstance().number("RobotState/filteredAcceleration");
+    private final TelemetryBus.NumberSlot mFilteredAngularVelocitySlot =
+            TelemetryBus.getInstance().number("RobotState/filteredAngularVelocity");
+
     RobotStateEstimator()
     {
         mDrive = Drive.getInstance();
@@ -73,6 +103,30 @@ public class RobotStateEstimator extends Subsystem
         return mLidarRobotState;
     }
 
+    /** @return filtered left wheel distance, inches/sec, and inches/sec^2 */
+    public KinematicFilter getLeftWheelFilter()
+    {
+        return mLeftFilter;
+    }
+
+    /** @return filtered right wheel distance, inches/sec, and inches/sec^2 */
+    public KinematicFilter getRightWheelFilter()
+    {
+        return mRightFilter;
+    }
+
+    /** @return filtered chassis distance driven, inches/sec, and inches/sec^2 */
+    public KinematicFilter getChassisLinearFilter()
+    {
+        return mLinearFilter;
+    }
+
+    /** @return filtered unwrapped heading, rad/sec, and rad/sec^2 */
+    public KinematicFilter getChassisAngularFilter()
+    {
+        return mAngularFilter;
+    }
+
     public void resetRobotStateMaps()
     {
         resetRobotStateMaps(kZeroPose);
@@ -80,7 +134,7 @@ public class RobotStateEstimator extends Subsystem
 
     public void resetRobotStateMaps(Pose2d pose)
     {
-        double time = Timer.getFPGATimestamp();
+        double time = Clock.getTime();
         mEncoderRobotState.reset(time, pose);
         mLidarRobotState.reset(time, pose);
         mDrive.setHeading(pose.getRotation());
@@ -97,12 +151,18 @@ public class RobotStateEstimator extends Subsystem
     {
         final RobotStateMap.State estate = mEncoderRobotState.getLatestState();
         Pose2d epose = estate.pose;
-        SmartDashboard.putString("RobotState/pose",
-                epose.getTranslation().x() +
-                        " " + epose.getTranslation().y() +
-                        " " + epose.getRotation().getDegrees());
+        // Only build the string when the bus would publish it
+        if (mPoseSlot.isDue())
+        {
+            mPoseSlot.set(epose.getTranslation().x() +
+                    " " + epose.getTranslation().y() +
+                    " " + epose.getRotation().getDegrees());
+        }
         Twist2d pVel = estate.predictedVelocity;
-        SmartDashboard.putNumber("RobotState/velocity", pVel.dx);
+        mVelocitySlot.set(pVel.dx);
+        mFilteredVelocitySlot.set(mLinearFilter.getVelocity());
+        mFilteredAccelerationSlot.set(mLinearFilter.getAcceleration());
+        mFilteredAngularVelocitySlot.set(mAngularFilter.getVelocity());
         // SmartDashboard.putNumber("RobotState/field_degrees", epose.getRotation().getDegrees());
 
         // final RobotStateMap.State lstate = mLidarRobotState.getLatestState();
@@ -135,11 +195,22 @@ public class RobotStateEstimator extends Subsystem
         {
             mLeftPrevDist = mDrive.getLeftEncoderDistance();
             mRightPrevDist = mDrive.getRightEncoderDistance();
+            mHeadingAccum = 0.0;
+            mLeftFilter.reset(timestamp, mLeftPrevDist);
+            mRightFilter.reset(timestamp, mRightPrevDist);
+            mLinearFilter.reset(timestamp, (mLeftPrevDist + mRightPrevDist) / 2.0);
+            mAngularFilter.reset(timestamp, mHeadingAccum);
         }
 
         @Override
         public synchronized void onLoop(double timestamp)
         {
+            // Drive is still showing last cycle's encoders and gyro. Recording
+            // them at this timestamp would read as the robot stopping; skip it
+            // and the next fresh read's deltas cover both cycles.
+            if (mDrive.areInputsStale())
+                return;
+
             final RobotStateMap.State last = mEncoderRobotState.getLatestState();
             final Pose2d lastPose = last.pose;
 
@@ -187,10 +258,21 @@ public class RobotStateEstimator extends Subsystem
              * integrateForward: given a last state and a current velocity,
              * estimate a new state (P2 = P1 + dPdt * dt)
              */
-            final Pose2d nextP = Kinematics.integrateForwardKinematics(last.pose, iVal);
+            final Pose2d nextP = Kinematics.integrateForwardKinematics(mNextPose.set(last.pose), iVal).toPose2d();
 
             /* record the new state estimate */
             mEncoderRobotState.addObservations(timestamp, nextP, iVal, pVal);
+
+            /*
+             * method 3, filtered
+             * Track wheel distance and (unwrapped) heading with alpha-beta-gamma
+             * filters, which take dt from the timestamp and yield acceleration too.
+             */
+            mHeadingAccum += iVal.dtheta;
+            mLeftFilter.update(timestamp, leftDist);
+            mRightFilter.update(timestamp, rightDist);
+            mLinearFilter.update(timestamp, (leftDist + rightDist) / 2.0);
+            mAngularFilter.update(timestamp, mHeadingAccum);
         }
 
         @Override
@@ -1,8 +1,16 @@
 package com.spartronics4915.frc2019.subsystems;
 
+import com.spartronics4915.frc2019.Constants;
 import com.spartronics4915.lib.util.Logger;
 import com.spartronics4915.lib.util.ILooper;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import com.spartronics4915.lib.util.MultiRateScheduler;
+import com.spartronics4915.lib.util.NetworkTableEntryCache;
+import com.spartronics4915.lib.util.StateMachine;
+import com.spartronics4915.lib.util.TelemetryBus;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The Subsystem abstract class, which serves as a basic framework for all robot
@@ -25,6 +33,19 @@ public abstract class Subsystem
     // all subsystems should set mInitialized upon successful init.
     private boolean mInitialized = false;
     private String mName = null;
+    private volatile boolean mInputsStale = false;
+
+    // Telemetry slots by short name, so we only build "mName/nm" keys once.
+    // Subclasses should keep the slots they set every cycle in fields.
+    private final Map<String, TelemetryBus.NumberSlot> mNumberSlots = new ConcurrentHashMap<>();
+    private final Map<String, TelemetryBus.StringSlot> mStringSlots = new ConcurrentHashMap<>();
+    private final Map<String, TelemetryBus.BooleanSlot> mBooleanSlots = new ConcurrentHashMap<>();
+    private final TelemetryBus.StringSlot mStateSlot;
+    private final TelemetryBus.StringSlot mWantedStateSlot;
+    private final NetworkTableEntryCache mEntries;
+
+    // Woken by signalListeners
+    private final List<StateMachine<?>> mListeners = new ArrayList<>();
 
     public boolean isInitialized()
     {
@@ -43,6 +64,9 @@ public abstract class Subsystem
         {
             mName = classname.substring(tail + 1);
         }
+        mEntries = new NetworkTableEntryCache(mName + "/");
+        mStateSlot = dashboardStringSlot("State");
+        mWantedStateSlot = dashboardStringSlot("WantedState");
     }
 
     public String getName()
@@ -57,48 +81,96 @@ public abstract class Subsystem
             this.logNotice("init SUCCEEDED");
         else
             this.logWarning("init FAILED");
-        SmartDashboard.putString(mName + "/Status", mInitialized ? "OK" : "ERROR");
+        dashboardPutString("Status", mInitialized ? "OK" : "ERROR");
     }
 
-    // broadcast methods are for smartdashboard with conventionalized keys
+    // broadcast methods are for smartdashboard with conventionalized keys.
+    // They only record the value; TelemetryBus publishes it if it changed.
     public void dashboardPutState(String state)
     {
-        SmartDashboard.putString(mName + "/State", state);
+        mStateSlot.set(state);
     }
 
     public void dashboardPutWantedState(String state)
     {
-        SmartDashboard.putString(mName + "/WantedState", state);
+        mWantedStateSlot.set(state);
+    }
+
+    // Lookups of an existing slot don't lock; only creating one does
+    public TelemetryBus.StringSlot dashboardStringSlot(String nm)
+    {
+        TelemetryBus.StringSlot slot = mStringSlots.get(nm);
+        if (slot == null)
+            slot = mStringSlots.computeIfAbsent(nm, (k) -> TelemetryBus.getInstance().string(mName + "/" + k));
+        return slot;
+    }
+
+    public TelemetryBus.NumberSlot dashboardNumberSlot(String nm)
+    {
+        TelemetryBus.NumberSlot slot = mNumberSlots.get(nm);
+        if (slot == null)
+            slot = mNumberSlots.computeIfAbsent(nm, (k) -> TelemetryBus.getInstance().number(mName + "/" + k));
+        return slot;
+    }
+
+    public TelemetryBus.BooleanSlot dashboardBooleanSlot(String nm)
+    {
+        TelemetryBus.BooleanSlot slot = mBooleanSlots.get(nm);
+        if (slot == null)
+            slot = mBooleanSlots.computeIfAbsent(nm, (k) -> TelemetryBus.getInstance().bool(mName + "/" + k));
+        return slot;
     }
 
     public void dashboardPutString(String nm, String value)
     {
-        SmartDashboard.putString(mName + "/" + nm, value);
+        dashboardStringSlot(nm).set(value);
     }
 
     public String dashboardGetString(String nm, String defValue)
     {
-        return SmartDashboard.getString(mName + "/" + nm, defValue);
+        return mEntries.get(nm).getString(defValue);
     }
 
     public void dashboardPutNumber(String nm, Number value)
     {
-        SmartDashboard.putNumber(mName + "/" + nm, value.doubleValue());
+        dashboardNumberSlot(nm).set(value.doubleValue());
     }
 
     public Number dashboardGetNumber(String nm, Number defaultValue)
     {
-        return SmartDashboard.getNumber(mName + "/" + nm, defaultValue.doubleValue());
+        return dashboardGetDouble(nm, defaultValue.doubleValue());
+    }
+
+    // Same as dashboardGetNumber, without boxing
+    public double dashboardGetDouble(String nm, double defaultValue)
+    {
+        return mEntries.get(nm).getDouble(defaultValue);
     }
 
     public void dashboardPutBoolean(String nm, Boolean value)
     {
-        SmartDashboard.putBoolean(mName + "/" + nm, value);
+        dashboardBooleanSlot(nm).set(value);
     }
 
     public boolean dashboardGetBoolean(String nm, Boolean defValue)
     {
-        return SmartDashboard.getBoolean(mName + "/" + nm, defValue);
+        return mEntries.get(nm).getBoolean(defValue);
+    }
+
+    /**
+     * Wake listener whenever this subsystem signals that something another
+     * subsystem might be waiting on has changed (its state, a sensor, a
+     * trajectory finishing...). Add listeners before the loops start.
+     */
+    public void addListener(StateMachine<?> listener)
+    {
+        mListeners.add(listener);
+    }
+
+    protected void signalListeners(String cause)
+    {
+        for (int i = 0; i < mListeners.size(); i++)
+            mListeners.get(i).signal(cause);
     }
 
     // log methods are for conventionalizing format across subsystems 
@@ -146,6 +218,53 @@ public abstract class Subsystem
     {
     }
 
+    /**
+     * How often, in seconds, SubsystemManager runs this subsystem's
+     * readPeriodicInputs, enabled loops, and writePeriodicOutputs. This is
+     * rounded to a whole number of Looper periods, and can't be faster than
+     * Constants.kLooperDt.
+     */
+    public double getPeriod()
+    {
+        return Constants.kLooperDt;
+    }
+
+    /**
+     * Which Looper tick within getPeriod() this subsystem runs on. Leave this
+     * as MultiRateScheduler.kAutoPhase unless it matters; automatic phases are
+     * chosen to keep slow subsystems from piling up on the same tick.
+     */
+    public int getPhase()
+    {
+        return MultiRateScheduler.kAutoPhase;
+    }
+
+    /**
+     * True when SubsystemManager gave up waiting for the last
+     * readPeriodicInputs, so the cached inputs are from an earlier cycle.
+     */
+    public boolean areInputsStale()
+    {
+        return mInputsStale;
+    }
+
+    public void setInputsStale(boolean stale)
+    {
+        mInputsStale = stale;
+    }
+
+    /**
+     * Return true to let SubsystemManager read this subsystem's inputs on
+     * another thread. Only do so if readPeriodicInputs talks to the hardware
+     * without touching anything the loops use, then publishes its results in
+     * one block under the lock writePeriodicOutputs takes, and loops that use
+     * the inputs check areInputsStale; a late read keeps running while they do.
+     */
+    public boolean hasAtomicInputSnapshot()
+    {
+        return false;
+    }
+
     // Optional design pattern for caching periodic reads to avoid hammering the HAL/CAN.
     public void readPeriodicInputs()
     {
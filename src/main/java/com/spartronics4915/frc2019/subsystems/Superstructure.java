@@ -3,12 +3,14 @@ package com.spartronics4915.frc2019.subsystems;
 import com.spartronics4915.lib.util.ILooper;
 import com.spartronics4915.lib.util.Logger;
 import com.spartronics4915.lib.util.RobotStateMap;
+import com.spartronics4915.lib.util.TelemetryBus;
 
 import java.util.ArrayList;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
 import com.spartronics4915.frc2019.Constants;
+import com.spartronics4915.frc2019.VisionTargetTracker;
 import com.spartronics4915.frc2019.VisionUpdateManager;
 import com.spartronics4915.frc2019.VisionUpdateManager.HeadingUpdate;
 import com.spartronics4915.frc2019.VisionUpdateManager.PNPUpdate;
@@ -21,9 +23,8 @@ import com.spartronics4915.lib.trajectory.TrajectoryIterator;
 import com.spartronics4915.lib.trajectory.timing.TimedState;
 import com.spartronics4915.lib.util.DriveSignal;
 import com.spartronics4915.lib.util.ILoop;
-
-import edu.wpi.first.wpilibj.Timer;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import com.spartronics4915.lib.util.StateMachine;
+import com.spartronics4915.lib.util.Clock;
 
 /**
  * The superstructure subsystem is the overarching superclass containing all
@@ -41,6 +42,11 @@ import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
  * The superstructure also coordinates actions between different subsystems like
  * the feeder and shooter.
  *
+ * The state machine only runs when something it could be waiting on happens:
+ * a wanted state change, any of the subsystems it coordinates running or
+ * signalling (trajectory done, an IR sensor changing...), a vision update
+ * while aligning, or a timeout. When nothing's happening it costs nothing.
+ *
  * @see LED
  * @see Subsystem
  */
@@ -145,32 +151,45 @@ public class Superstructure extends Subsystem
     private static final double kMaxPathVoltage = 9.0; // volts
 
     private WantedState mWantedState = WantedState.DRIVER_CONTROL;
-    private SystemState mSystemState = SystemState.DRIVER_CONTROLLING;
+    private final StateMachine<SystemState> mMachine = new StateMachine<>(getName(), SystemState.DRIVER_CONTROLLING);
     // We don't have a DRIVER_CONTROL_FORWARD and ..._REVERSE becase we need to persist driving direction across state changes
     private boolean mIsReversed = false;
+    private final TelemetryBus.StringSlot mVideoStreamSlot = TelemetryBus.getInstance().string("Driver/VideoStream");
     private boolean mGotVisionUpdate = false;
+    private final VisionTargetTracker mTargetTracker = VisionUpdateManager.reverseTargetTracker;
+    private int mTargetTrackId = VisionTargetTracker.kNoTrack;
+
+    // Telemetry slots, resolved once so outputTelemetry doesn't look them up
+    private final TelemetryBus.StringSlot mTargetPoseSlot = dashboardStringSlot("TargetPose");
+    private final TelemetryBus.NumberSlot mTargetIdSlot = dashboardNumberSlot("TargetId");
+    private final TelemetryBus.BooleanSlot mReverseSlot = dashboardBooleanSlot("Reverse");
 
     private Superstructure()
     {
+        mDrive.addListener(mMachine);
+        mCargoChute.addListener(mMachine);
+        mCargoIntake.addListener(mMachine);
+        mClimber.addListener(mMachine);
+        mPanelHandler.addListener(mMachine);
+        VisionUpdateManager.reversePNPVisionManager.addListener((update) ->
+        {
+            if (mMachine.getState() == SystemState.ALIGNING_CLOSEST_REVERSE_TARGET)
+                mMachine.signal("Vision update");
+        });
+
         logInitialized(true);
     }
 
     private ILoop mLoop = new ILoop()
     {
 
-        private Timer mStateChangedTimer = new Timer();
-        private boolean mStateChanged;
-
         @Override
         public void onStart(double timestamp)
         {
             synchronized (Superstructure.this)
             {
                 mWantedState = WantedState.DRIVER_CONTROL;
-                mSystemState = SystemState.DRIVER_CONTROLLING;
-                mStateChangedTimer.reset();
-                mStateChangedTimer.start();
-                mStateChanged = true;
+                mMachine.reset(SystemState.DRIVER_CONTROLLING, timestamp);
 
                 updateCameraDirection();
             }
@@ -179,10 +198,12 @@ public class Superstructure extends Subsystem
         @Override
         public void onLoop(double timestamp)
         {
+            if (!mMachine.startRun(timestamp))
+                return;
             synchronized (Superstructure.this)
             {
                 SystemState newState = defaultStateTransfer();
-                switch (mSystemState)
+                switch (mMachine.getState())
                 {
                     /* Regular driver control */
                     case DRIVER_CONTROLLING:
@@ -192,22 +213,22 @@ public class Superstructure extends Subsystem
                     /* Climbing */
                     case LIFTING_TO_THREE:
                         mClimber.setWantedState(Climber.WantedState.CLIMB);
-                        if (mClimber.atTarget() && newState == mSystemState)
+                        if (mClimber.atTarget() && newState == mMachine.getState())
                             newState = SystemState.RUNNING_INTAKE_UNTIL_PLATFORM_CONTACT;
                         break;
                     case RUNNING_INTAKE_UNTIL_PLATFORM_CONTACT:
                         mCargoIntake.setWantedState(CargoIntake.WantedState.CLIMB);
-                        if (mClimber.atTarget() && newState == mSystemState)
+                        if (mClimber.atTarget() && newState == mMachine.getState())
                             newState = SystemState.RETRACTING_FORWARD_STRUTS;
                         break;
                     case RETRACTING_FORWARD_STRUTS:
                         mClimber.setWantedState(Climber.WantedState.RETRACT_FRONT_STRUTS);
-                        if (mClimber.atTarget() && newState == mSystemState)
+                        if (mClimber.atTarget() && newState == mMachine.getState())
                             newState = SystemState.DRIVING_UNTIL_PLATFORM_FULL_SUPPORT;
                         break;
                     case DRIVING_UNTIL_PLATFORM_FULL_SUPPORT:
                         mDrive.setOpenLoop(kPlatformDriveSpeed);
-                        if (mClimber.atTarget() && newState == mSystemState)
+                        if (mClimber.atTarget() && newState == mMachine.getState())
                             newState = SystemState.RETRACTING_REAR_STRUTS;
                         break;
                     case RETRACTING_REAR_STRUTS:
@@ -224,9 +245,9 @@ public class Superstructure extends Subsystem
 
                     /* Manual climbing */
                     case LOWERING_CHUTE_AND_CLIMBING:
-                        if (mStateChanged)
+                        if (mMachine.isStateChanged())
                             mCargoChute.setWantedState(CargoChute.WantedState.LOWER);
-                        if (mCargoChute.atTarget() && mStateChangedTimer.hasPeriodPassed(Constants.kChuteLowRetractTime)
+                        if (mCargoChute.atTarget() && mMachine.hasStateTimePassed(Constants.kChuteLowRetractTime, timestamp)
                                 && mWantedState == WantedState.LOWER_CHUTE_AND_CLIMB)
                         {
                             mClimber.setWantedState(Climber.WantedState.CLIMB);
@@ -238,7 +259,7 @@ public class Superstructure extends Subsystem
                     case INTAKING_AND_ALIGNING_CLOSEST_FORWARD_TARGET:
                         mCargoIntake.setWantedState(CargoIntake.WantedState.INTAKE);
                         mCargoChute.setWantedState(CargoChute.WantedState.BRING_BALL_TO_TOP);
-                        if (mStateChanged)
+                        if (mMachine.isStateChanged())
                             makeAndDrivePath(Pose2d.identity(), false);
                         // TODO: Target selection/vision integration
                         // VisionUpdateManager.forwardVisionManager.getLatestVisionUpdate()
@@ -256,28 +277,33 @@ public class Superstructure extends Subsystem
                     case ALIGNING_CLOSEST_REVERSE_TARGET:
                         mCargoIntake.setWantedState(CargoIntake.WantedState.HOLD);
                         mCargoChute.setWantedState(CargoChute.WantedState.LOWER);
-                        if (mStateChanged || !mGotVisionUpdate)
+                        if (mMachine.isStateChanged() || !mGotVisionUpdate)
                         {
                             // Optional<HeadingUpdate> visionUpdate = VisionUpdateManager.reverseHeadingVisionManager.getLatestVisionUpdate();
 
                             // mGotVisionUpdate = visionUpdate.isPresent();
                             // visionUpdate.ifPresent(v -> mDrive.curveTowardsVisionTarget(v.getTargetInfo()));
 
-                            Optional<PNPUpdate> visionUpdate = VisionUpdateManager.reversePNPVisionManager.getLatestVisionUpdate();
+                            // Lock on to one target, then wait until it's been seen enough to trust its smoothed pose
+                            if (mMachine.isStateChanged() || !mTargetTracker.getTargetPose(mTargetTrackId).isPresent())
+                            {
+                                mTargetTrackId = VisionUpdateManager.reversePNPVisionManager.getLatestVisionUpdate()
+                                        .map(PNPUpdate::getSelectedTrackId).orElse(VisionTargetTracker.kNoTrack);
+                            }
 
-                            mGotVisionUpdate = visionUpdate.isPresent();
-                            visionUpdate.ifPresent(
-                                    v ->
-                                    {
-                                        makeAndDrivePath(v.getFieldPosition(mRobotStateMap).transformBy(-Constants.kRobotCenterToForward), true);
+                            mGotVisionUpdate = mTargetTracker.isConfirmed(mTargetTrackId);
+                            if (mGotVisionUpdate)
+                            {
+                                Pose2d targetPose = mTargetTracker.getTargetPose(mTargetTrackId).get()
+                                        .transformBy(-Constants.kRobotCenterToForward);
+                                makeAndDrivePath(targetPose, true);
 
-                                        dashboardPutString("TargetPose",
-                                                v.getFieldPosition(mRobotStateMap).transformBy(-Constants.kRobotCenterToForward).toString());
-                                        dashboardPutNumber("CapTime", v.frameCapturedTime);
-                                    });
+                                mTargetPoseSlot.set(targetPose.toString());
+                                mTargetIdSlot.set(mTargetTrackId);
+                            }
                         }
 
-                        if (mDrive.isDoneWithTrajectory() && newState == mSystemState)
+                        if (mDrive.isDoneWithTrajectory() && newState == mMachine.getState())
                         {
                             if (mWantedState == WantedState.ALIGN_AND_EJECT_PANEL)
                                 newState = SystemState.MOVING_CHUTE_TO_EJECT_PANEL;
@@ -296,17 +322,18 @@ public class Superstructure extends Subsystem
                     case INTAKING_PANEL:
                         mCargoChute.setWantedState(CargoChute.WantedState.LOWER);
 
-                        if (newState == mSystemState && mStateChangedTimer.hasPeriodPassed(kPanelHandlingDuration))
+                        if (newState == mMachine.getState() && mMachine.hasStateTimePassed(kPanelHandlingDuration, timestamp))
                             newState = SystemState.BACKING_OUT_FROM_LOADING;
                         break;
                     case MOVING_CHUTE_TO_EJECT_PANEL:
                         mCargoChute.setWantedState(CargoChute.WantedState.LOWER);
 
-                        if (newState == mSystemState && mStateChangedTimer.hasPeriodPassed(kPanelHandlingDuration) && mCargoChute.atTarget())
+                        if (newState == mMachine.getState() && mMachine.hasStateTimePassed(kPanelHandlingDuration, timestamp)
+                                && mCargoChute.atTarget())
                             newState = SystemState.EJECTING_PANEL;
                         break;
                     case EJECTING_PANEL:
-                        if (mStateChanged)
+                        if (mMachine.isStateChanged())
                         {
                             mCargoChute.setWantedState(CargoChute.WantedState.LOWER);
                             mPanelHandler.setWantedState(PanelHandler.WantedState.EJECT);
@@ -336,14 +363,14 @@ public class Superstructure extends Subsystem
                         }
                         break;
                     case BACKING_OUT_FROM_LOADING:
-                        if (mStateChanged)
-                            makeAndDrivePath(mRobotStateMap.getFieldToVehicle(Timer.getFPGATimestamp()).transformBy(kBackOutOffset), false);
+                        if (mMachine.isStateChanged())
+                            makeAndDrivePath(mRobotStateMap.getFieldToVehicle(Clock.getTime()).transformBy(kBackOutOffset), false);
 
-                        if (newState == mSystemState && mDrive.isDoneWithTrajectory())
+                        if (newState == mMachine.getState() && mDrive.isDoneWithTrajectory())
                             newState = SystemState.TURNING_AROUND;
                         break;
                     case TURNING_AROUND:
-                        if (mStateChanged)
+                        if (mMachine.isStateChanged())
                             mDrive.setWantTurn(mDrive.getHeading().rotateBy(Rotation2d.fromDegrees(180)));
 
                         if (mWantedState == WantedState.ALIGN_AND_INTAKE_PANEL && mDrive.isDoneTurning())
@@ -355,7 +382,7 @@ public class Superstructure extends Subsystem
 
                     /* Intaking cargo */
                     case INTAKING_CARGO:
-                        if (mStateChanged)
+                        if (mMachine.isStateChanged())
                         {
                             mCargoIntake.setWantedState(CargoIntake.WantedState.INTAKE);
                             mCargoChute.setWantedState(CargoChute.WantedState.BRING_BALL_TO_TOP);
@@ -371,10 +398,10 @@ public class Superstructure extends Subsystem
 
                     /* Ejecting cargo into the bay after backing up */
                     case SHOOTING_CARGO_AND_BACKING:
-                        if (mStateChanged)
+                        if (mMachine.isStateChanged())
                         {
                             makeAndDrivePath(
-                                    mRobotStateMap.getFieldToVehicle(Timer.getFPGATimestamp()).transformBy(Constants.kShootIntoBayBackupDistance),
+                                    mRobotStateMap.getFieldToVehicle(Clock.getTime()).transformBy(Constants.kShootIntoBayBackupDistance),
                                     false);
                             // mRobotStateMap.reset(Timer.getFPGATimestamp(), new Pose2d());
                             // mDrive.setHeading(Rotation2d.identity());
@@ -392,16 +419,11 @@ public class Superstructure extends Subsystem
                         break;
                 }
 
-                if (newState != mSystemState)
+                if (mMachine.endRun(newState))
                 {
-                    mStateChanged = true;
-                    mStateChangedTimer.reset();
-                    logNotice("System state to " + newState);
+                    logNotice(String.format("System state to %s on %s after %.0f ms", newState, mMachine.getLastCause(),
+                            mMachine.getLastLatency() * 1e3));
                 }
-                else
-                    mStateChanged = false;
-
-                mSystemState = newState;
             }
         }
 
@@ -410,6 +432,7 @@ public class Superstructure extends Subsystem
         {
             stop();
             mGotVisionUpdate = false;
+            logNotice(mMachine.getLatency().toString());
         }
     };
 
@@ -418,16 +441,16 @@ public class Superstructure extends Subsystem
         try
         {
             ArrayList<Pose2d> waypoints = new ArrayList<>();
-            waypoints.add(mRobotStateMap.getFieldToVehicle(Timer.getFPGATimestamp()));
+            waypoints.add(mRobotStateMap.getFieldToVehicle(Clock.getTime()));
             waypoints.add(goalPose);
 
             // logNotice(waypoints.stream().map(Object::toString).collect(Collectors.joining(", ")));
 
-            double startTime = Timer.getFPGATimestamp();
+            double startTime = Clock.getTime();
             TrajectoryIterator<TimedState<Pose2dWithCurvature>> t =
                     new TrajectoryIterator<>(new TimedView<>((mTrajectoryGenerator.generateTrajectory(reversed, waypoints))));
             // TODO: Maybe plug in our current velocity as the start velocity of the path?
-            logNotice("Path generated; took " + (Timer.getFPGATimestamp() - startTime) + " seconds.");
+            logNotice("Path generated; took " + (Clock.getTime() - startTime) + " seconds.");
 
             mDrive.setTrajectory(t);
         }
@@ -439,7 +462,8 @@ public class Superstructure extends Subsystem
 
     private SystemState defaultStateTransfer()
     {
-        SystemState newState = mSystemState;
+        final SystemState systemState = mMachine.getState();
+        SystemState newState = systemState;
         switch (mWantedState)
         {
             case DRIVER_CONTROL:
@@ -447,16 +471,16 @@ public class Superstructure extends Subsystem
                 break;
             case ALIGN_AND_INTAKE_CARGO:
                 // Assumes cargo is on the forward side
-                if (mSystemState == SystemState.INTAKING_AND_ALIGNING_CLOSEST_FORWARD_TARGET)
+                if (systemState == SystemState.INTAKING_AND_ALIGNING_CLOSEST_FORWARD_TARGET)
                     break;
                 newState = SystemState.INTAKING_AND_ALIGNING_CLOSEST_FORWARD_TARGET;
                 break;
             case ALIGN_AND_INTAKE_PANEL:
                 // Assumes PANEL intake is on the reverse side
-                if (mSystemState == SystemState.ALIGNING_CLOSEST_REVERSE_TARGET ||
-                        mSystemState == SystemState.INTAKING_PANEL ||
-                        mSystemState == SystemState.BACKING_OUT_FROM_LOADING ||
-                        mSystemState == SystemState.TURNING_AROUND)
+                if (systemState == SystemState.ALIGNING_CLOSEST_REVERSE_TARGET ||
+                        systemState == SystemState.INTAKING_PANEL ||
+                        systemState == SystemState.BACKING_OUT_FROM_LOADING ||
+                        systemState == SystemState.TURNING_AROUND)
                     break;
                 newState = SystemState.ALIGNING_CLOSEST_REVERSE_TARGET;
                 break;
@@ -471,23 +495,23 @@ public class Superstructure extends Subsystem
                 newState = SystemState.ALIGNING_CLOSEST_REVERSE_TARGET;
                 break;
             case ALIGN_AND_EJECT_PANEL:
-                if (mSystemState == SystemState.ALIGNING_CLOSEST_REVERSE_TARGET ||
-                        mSystemState == SystemState.MOVING_CHUTE_TO_EJECT_PANEL ||
-                        mSystemState == SystemState.EJECTING_PANEL)
+                if (systemState == SystemState.ALIGNING_CLOSEST_REVERSE_TARGET ||
+                        systemState == SystemState.MOVING_CHUTE_TO_EJECT_PANEL ||
+                        systemState == SystemState.EJECTING_PANEL)
                     break;
                 newState = SystemState.ALIGNING_CLOSEST_REVERSE_TARGET;
                 break;
             case ALIGN_CLOSEST_REVERSE_TARGET:
-                if (mSystemState == SystemState.ALIGNING_CLOSEST_REVERSE_TARGET)
+                if (systemState == SystemState.ALIGNING_CLOSEST_REVERSE_TARGET)
                     break;
                 newState = SystemState.ALIGNING_CLOSEST_REVERSE_TARGET;
                 break;
             case CLIMB:
-                if (mSystemState == SystemState.LIFTING_TO_THREE ||
-                        mSystemState == SystemState.RUNNING_INTAKE_UNTIL_PLATFORM_CONTACT ||
-                        mSystemState == SystemState.RETRACTING_FORWARD_STRUTS ||
-                        mSystemState == SystemState.DRIVING_UNTIL_PLATFORM_FULL_SUPPORT ||
-                        mSystemState == SystemState.RETRACTING_REAR_STRUTS)
+                if (systemState == SystemState.LIFTING_TO_THREE ||
+                        systemState == SystemState.RUNNING_INTAKE_UNTIL_PLATFORM_CONTACT ||
+                        systemState == SystemState.RETRACTING_FORWARD_STRUTS ||
+                        systemState == SystemState.DRIVING_UNTIL_PLATFORM_FULL_SUPPORT ||
+                        systemState == SystemState.RETRACTING_REAR_STRUTS)
                     break;
                 newState = SystemState.LIFTING_TO_THREE;
                 break;
@@ -495,17 +519,17 @@ public class Superstructure extends Subsystem
                 newState = SystemState.LOWERING_CHUTE_AND_CLIMBING;
                 break;
             case EJECT_PANEL:
-                if (mSystemState == SystemState.MOVING_CHUTE_TO_EJECT_PANEL || mSystemState == SystemState.EJECTING_PANEL)
+                if (systemState == SystemState.MOVING_CHUTE_TO_EJECT_PANEL || systemState == SystemState.EJECTING_PANEL)
                     break;
                 newState = SystemState.MOVING_CHUTE_TO_EJECT_PANEL;
                 break;
             case INTAKE_CARGO:
-                if (mSystemState == SystemState.INTAKING_CARGO)
+                if (systemState == SystemState.INTAKING_CARGO)
                     break;
                 newState = SystemState.INTAKING_CARGO;
                 break;
             case SHOOT_CARGO_BAY:
-                if (mSystemState == SystemState.SHOOTING_CARGO_AND_BACKING)
+                if (systemState == SystemState.SHOOTING_CARGO_AND_BACKING)
                     break;
                 newState = SystemState.SHOOTING_CARGO_AND_BACKING;
                 break;
@@ -519,14 +543,18 @@ public class Superstructure extends Subsystem
 
     private boolean isInAlignAndEjectCargoSystemState()
     {
-        return mSystemState == SystemState.INTAKING_AND_ALIGNING_CLOSEST_FORWARD_TARGET ||
-                mSystemState == SystemState.EJECTING_CARGO;
+        return mMachine.getState() == SystemState.INTAKING_AND_ALIGNING_CLOSEST_FORWARD_TARGET ||
+                mMachine.getState() == SystemState.EJECTING_CARGO;
     }
 
     public synchronized void setWantedState(WantedState wantedState)
     {
         logNotice("Wanted state to " + wantedState.toString());
-        mWantedState = wantedState;
+        if (wantedState != mWantedState)
+        {
+            mWantedState = wantedState;
+            mMachine.signal("Superstructure wanted state");
+        }
     }
 
     public synchronized void reverseDrivingDirection()
@@ -541,6 +569,11 @@ public class Superstructure extends Subsystem
         return mIsReversed;
     }
 
+    public synchronized SystemState getSystemState()
+    {
+        return mMachine.getState();
+    }
+
     public synchronized boolean isDriverControlled()
     {
         return mWantedState == WantedState.INTAKE_CARGO || mWantedState == WantedState.EJECT_PANEL || mWantedState == WantedState.DRIVER_CONTROL
@@ -549,7 +582,7 @@ public class Superstructure extends Subsystem
 
     private void updateCameraDirection()
     {
-        SmartDashboard.putString("Driver/VideoStream", mIsReversed ? "Back" : "Front");
+        mVideoStreamSlot.set(mIsReversed ? "Back" : "Front");
     }
 
     @Override
@@ -557,7 +590,7 @@ public class Superstructure extends Subsystem
     {
         // Subsystem manager stops these, we don't
         mWantedState = WantedState.DRIVER_CONTROL;
-        mSystemState = SystemState.DRIVER_CONTROLLING;
+        mMachine.reset(SystemState.DRIVER_CONTROLLING, Clock.getTime());
     }
 
     @Override
@@ -582,8 +615,8 @@ public class Superstructure extends Subsystem
     @Override
     public void outputTelemetry()
     {
-        dashboardPutState(mSystemState.toString());
+        dashboardPutState(mMachine.getState().toString());
         dashboardPutWantedState(mWantedState.toString());
-        dashboardPutBoolean("Reverse", mIsReversed);
+        mReverseSlot.set(mIsReversed);
     }
 }
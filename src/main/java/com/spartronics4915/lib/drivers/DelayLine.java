@@ -0,0 +1,39 @@
+package com.spartronics4915.lib.drivers;
+
+import java.util.Arrays;
+
+/**
+ * Holds a simulated reading back by a whole number of steps, the way a CAN
+ * status frame arrives some time after it was measured.
+ */
+class DelayLine
+{
+
+    private double[] mValues = new double[1];
+    private int mNewest = 0;
+
+    /**
+     * Delay by steps pushes from now on, as if value had been read all along.
+     */
+    void setDelay(int steps, double value)
+    {
+        mValues = new double[steps + 1];
+        fill(value);
+    }
+
+    void fill(double value)
+    {
+        Arrays.fill(mValues, value);
+    }
+
+    void push(double value)
+    {
+        mNewest = (mNewest + 1) % mValues.length;
+        mValues[mNewest] = value;
+    }
+
+    double get()
+    {
+        return mValues[(mNewest + 1) % mValues.length];
+    }
+}
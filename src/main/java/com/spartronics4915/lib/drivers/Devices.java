@@ -0,0 +1,22 @@
+package com.spartronics4915.lib.drivers;
+
+/**
+ * Where subsystems get their devices. This is the real hardware unless a
+ * simulation or test has installed another IDeviceFactory with setFactory,
+ * which has to happen before the subsystems are constructed.
+ */
+public class Devices
+{
+
+    private static volatile IDeviceFactory sFactory = new HardwareDeviceFactory();
+
+    public static IDeviceFactory getFactory()
+    {
+        return sFactory;
+    }
+
+    public static void setFactory(IDeviceFactory factory)
+    {
+        sFactory = factory;
+    }
+}
@@ -0,0 +1,107 @@
+package com.spartronics4915.lib.drivers;
+
+import com.ctre.phoenix.sensors.PigeonIMU;
+import com.spartronics4915.lib.util.CANProbe;
+
+import edu.wpi.first.wpilibj.AnalogInput;
+import edu.wpi.first.wpilibj.DoubleSolenoid;
+import edu.wpi.first.wpilibj.Solenoid;
+
+/**
+ * The devices on the robot. Talons come from TalonSRXFactory; everything else
+ * is its wpilib or CTRE class, extended just enough to implement our
+ * interfaces.
+ */
+public class HardwareDeviceFactory implements IDeviceFactory
+{
+
+    private static class HardwarePigeon extends PigeonIMU implements IGyro
+    {
+
+        HardwarePigeon(int canId)
+        {
+            super(canId);
+        }
+
+        HardwarePigeon(ITalonSRX host)
+        {
+            super(host.getTalon());
+        }
+    }
+
+    private static class HardwareSolenoid extends Solenoid implements ISolenoid
+    {
+
+        HardwareSolenoid(int pcmId, int channel)
+        {
+            super(pcmId, channel);
+        }
+    }
+
+    private static class HardwareDoubleSolenoid extends DoubleSolenoid implements IDoubleSolenoid
+    {
+
+        HardwareDoubleSolenoid(int pcmId, int forwardChannel, int reverseChannel)
+        {
+            super(pcmId, forwardChannel, reverseChannel);
+        }
+    }
+
+    private static class HardwareAnalogInput extends AnalogInput implements IAnalogInput
+    {
+
+        HardwareAnalogInput(int channel)
+        {
+            super(channel);
+            setAverageBits(6); // Our analog inputs are all IR sensors, which are noisy
+        }
+    }
+
+    @Override
+    public ITalonSRX createTalon(int canId)
+    {
+        return TalonSRXFactory.createDefaultTalon(canId);
+    }
+
+    @Override
+    public ITalonSRX createPermanentSlaveTalon(int canId, int masterId)
+    {
+        return TalonSRXFactory.createPermanentSlaveTalon(canId, masterId);
+    }
+
+    @Override
+    public IGyro createPigeon(int canId)
+    {
+        return new HardwarePigeon(canId);
+    }
+
+    @Override
+    public IGyro createPigeon(ITalonSRX host)
+    {
+        return new HardwarePigeon(host);
+    }
+
+    @Override
+    public ISolenoid createSolenoid(int pcmId, int channel)
+    {
+        return new HardwareSolenoid(pcmId, channel);
+    }
+
+    @Override
+    public IDoubleSolenoid createDoubleSolenoid(int pcmId, int forwardChannel, int reverseChannel)
+    {
+        return new HardwareDoubleSolenoid(pcmId, forwardChannel, reverseChannel);
+    }
+
+    @Override
+    public IAnalogInput createAnalogInput(int channel)
+    {
+        return new HardwareAnalogInput(channel);
+    }
+
+    @Override
+    public boolean isPCMPresent(int pcmId)
+    {
+        return CANProbe.getInstance().validatePCMId(pcmId);
+    }
+}
@@ -0,0 +1,11 @@
+package com.spartronics4915.lib.drivers;
+
+/**
+ * An analog input on the roboRIO, as IRSensor reads it.
+ */
+public interface IAnalogInput
+{
+
+    /** @return volts, oversampled and averaged */
+    public double getAverageVoltage();
+}
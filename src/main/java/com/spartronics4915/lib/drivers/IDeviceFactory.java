@@ -0,0 +1,29 @@
+package com.spartronics4915.lib.drivers;
+
+/**
+ * Makes the devices subsystems talk to. HardwareDeviceFactory makes the real
+ * ones; SimulatedDeviceFactory makes in-memory ones that mechanism models
+ * drive, so subsystems can run without the JNI.
+ */
+public interface IDeviceFactory
+{
+
+    /** @return a Talon with TalonSRXFactory's default configuration */
+    public ITalonSRX createTalon(int canId);
+
+    public ITalonSRX createPermanentSlaveTalon(int canId, int masterId);
+
+    public IGyro createPigeon(int canId);
+
+    /** @return a Pigeon wired to host's gadgeteer port */
+    public IGyro createPigeon(ITalonSRX host);
+
+    public ISolenoid createSolenoid(int pcmId, int channel);
+
+    public IDoubleSolenoid createDoubleSolenoid(int pcmId, int forwardChannel, int reverseChannel);
+
+    public IAnalogInput createAnalogInput(int channel);
+
+    /** @return whether the PCM with pcmId answered on the CAN bus */
+    public boolean isPCMPresent(int pcmId);
+}
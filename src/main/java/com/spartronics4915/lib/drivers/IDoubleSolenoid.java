@@ -0,0 +1,14 @@
+package com.spartronics4915.lib.drivers;
+
+import edu.wpi.first.wpilibj.DoubleSolenoid.Value;
+
+/**
+ * A double-acting solenoid on a pair of PCM channels.
+ */
+public interface IDoubleSolenoid
+{
+
+    public void set(Value value);
+
+    public Value get();
+}
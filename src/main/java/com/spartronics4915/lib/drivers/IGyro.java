@@ -0,0 +1,20 @@
+package com.spartronics4915.lib.drivers;
+
+import com.ctre.phoenix.ErrorCode;
+
+/**
+ * What we read from the Pigeon IMU.
+ */
+public interface IGyro
+{
+
+    /** @return degrees, counterclockwise positive, not wrapped */
+    public double getFusedHeading();
+
+    /**
+     * Fill xyzAccum with the rotation accumulated about the x, y, and z axes,
+     * in degrees. These are raw gyro axes, not yaw/pitch/roll; z is yaw when
+     * the Pigeon is mounted flat.
+     */
+    public ErrorCode getAccumGyro(double[] xyzAccum);
+}
@@ -1,15 +1,17 @@
 package com.spartronics4915.lib.drivers;
 
-import edu.wpi.first.wpilibj.AnalogInput;
-
 public abstract class IRSensor
 {
-    AnalogInput mAnalogInput;
+    IAnalogInput mAnalogInput;
 
     public IRSensor(int port)
     {
-        mAnalogInput = new AnalogInput(port);
-        mAnalogInput.setAverageBits(6);
+        this(Devices.getFactory().createAnalogInput(port));
+    }
+
+    public IRSensor(IAnalogInput analogInput)
+    {
+        mAnalogInput = analogInput;
     }
 
     public double getVoltage()
@@ -0,0 +1,12 @@
+package com.spartronics4915.lib.drivers;
+
+/**
+ * The physics behind some simulated devices. Each step it reads what the
+ * devices are commanding (stepping Talons' control loops), moves, and tells
+ * the devices' sensors where things are now.
+ */
+public interface ISimulatedMechanism
+{
+
+    public void step(double dt);
+}
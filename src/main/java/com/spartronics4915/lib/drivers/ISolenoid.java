@@ -0,0 +1,12 @@
+package com.spartronics4915.lib.drivers;
+
+/**
+ * A single-acting solenoid on a PCM channel.
+ */
+public interface ISolenoid
+{
+
+    public void set(boolean on);
+
+    public boolean get();
+}
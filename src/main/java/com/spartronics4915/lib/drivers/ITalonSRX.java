@@ -0,0 +1,57 @@
+package com.spartronics4915.lib.drivers;
+
+import com.ctre.phoenix.ErrorCode;
+import com.ctre.phoenix.motorcontrol.ControlMode;
+import com.ctre.phoenix.motorcontrol.DemandType;
+import com.ctre.phoenix.motorcontrol.NeutralMode;
+import com.ctre.phoenix.motorcontrol.VelocityMeasPeriod;
+import com.ctre.phoenix.motorcontrol.can.TalonSRX;
+
+/**
+ * The part of a Talon SRX that subsystems use while running, with CTRE's
+ * signatures so LazyTalonSRX implements it as is. SimulatedTalonSRX is the
+ * other implementation; get one or the other from Devices.getFactory().
+ */
+public interface ITalonSRX
+{
+
+    public void set(ControlMode mode, double value);
+
+    public void set(ControlMode mode, double demand0, DemandType demand1Type, double demand1);
+
+    public void selectProfileSlot(int slotIdx, int pidIdx);
+
+    public int getSelectedSensorPosition(int pidIdx);
+
+    /** @return ticks per 100 ms */
+    public int getSelectedSensorVelocity(int pidIdx);
+
+    public ErrorCode setSelectedSensorPosition(int sensorPos, int pidIdx, int timeoutMs);
+
+    public double getMotorOutputPercent();
+
+    public double getMotorOutputVoltage();
+
+    public void setNeutralMode(NeutralMode neutralMode);
+
+    public ErrorCode config_kP(int slotIdx, double value, int timeoutMs);
+
+    public ErrorCode config_kI(int slotIdx, double value, int timeoutMs);
+
+    public ErrorCode config_kD(int slotIdx, double value, int timeoutMs);
+
+    public ErrorCode config_kF(int slotIdx, double value, int timeoutMs);
+
+    public ErrorCode config_IntegralZone(int slotIdx, int izone, int timeoutMs);
+
+    public ErrorCode configNeutralDeadband(double percentDeadband, int timeoutMs);
+
+    public ErrorCode configVelocityMeasurementPeriod(VelocityMeasPeriod period, int timeoutMs);
+
+    /**
+     * @return the Talon itself, for configuration the simulation doesn't
+     *         model (status frames, sensor setup, TalonSRXChecker), or null if
+     *         this is simulated
+     */
+    public TalonSRX getTalon();
+}
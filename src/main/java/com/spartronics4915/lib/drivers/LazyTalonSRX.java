@@ -8,7 +8,7 @@ import com.ctre.phoenix.motorcontrol.can.TalonSRX;
  * overhead by skipping duplicate set
  * commands. (By default the Talon flushes the Tx buffer on every set call).
  */
-public class LazyTalonSRX extends TalonSRX
+public class LazyTalonSRX extends TalonSRX implements ITalonSRX
 {
 
     protected double mLastSet = Double.NaN;
@@ -34,4 +34,10 @@ public class LazyTalonSRX extends TalonSRX
             super.set(mode, value);
         }
     }
+
+    @Override
+    public TalonSRX getTalon()
+    {
+        return this;
+    }
 }
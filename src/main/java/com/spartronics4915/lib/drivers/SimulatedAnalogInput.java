@@ -0,0 +1,21 @@
+package com.spartronics4915.lib.drivers;
+
+/**
+ * An in-memory analog input that reads whatever a mechanism model last set.
+ */
+public class SimulatedAnalogInput implements IAnalogInput
+{
+
+    private volatile double mVoltage = 0.0;
+
+    public void setVoltage(double volts)
+    {
+        mVoltage = volts;
+    }
+
+    @Override
+    public double getAverageVoltage()
+    {
+        return mVoltage;
+    }
+}
@@ -0,0 +1,135 @@
+package com.spartronics4915.lib.drivers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Makes in-memory devices instead of talking to the JNI. Asking twice for
+ * the same CAN id, PCM channel, or analog channel gives the same device, as
+ * the real bus would, so a mechanism model can get hold of the devices a
+ * subsystem made (or make them first). There's only one Pigeon.
+ * <p>
+ * step() advances every added mechanism in kControlDt steps; nothing moves
+ * otherwise.
+ */
+public class SimulatedDeviceFactory implements IDeviceFactory
+{
+
+    public static final double kControlDt = 0.001; // The Talons' loop period
+
+    private final Map<Integer, SimulatedTalonSRX> mTalons = new HashMap<>();
+    private final Map<Integer, SimulatedSolenoid> mSolenoids = new HashMap<>();
+    private final Map<Integer, SimulatedDoubleSolenoid> mDoubleSolenoids = new HashMap<>();
+    private final Map<Integer, SimulatedAnalogInput> mAnalogInputs = new HashMap<>();
+    private final SimulatedGyro mGyro = new SimulatedGyro();
+    private final List<ISimulatedMechanism> mMechanisms = new ArrayList<>();
+    private double mTime = 0.0;
+
+    // PCMs have 8 channels
+    private static int pcmKey(int pcmId, int channel)
+    {
+        return pcmId * 8 + channel;
+    }
+
+    public synchronized SimulatedTalonSRX getTalon(int canId)
+    {
+        return mTalons.computeIfAbsent(canId, SimulatedTalonSRX::new);
+    }
+
+    public synchronized SimulatedSolenoid getSolenoid(int pcmId, int channel)
+    {
+        return mSolenoids.computeIfAbsent(pcmKey(pcmId, channel), k -> new SimulatedSolenoid());
+    }
+
+    /**
+     * @param forwardChannel identifies the solenoid; the reverse channel
+     *            doesn't matter here
+     */
+    public synchronized SimulatedDoubleSolenoid getDoubleSolenoid(int pcmId, int forwardChannel)
+    {
+        return mDoubleSolenoids.computeIfAbsent(pcmKey(pcmId, forwardChannel), k -> new SimulatedDoubleSolenoid());
+    }
+
+    public synchronized SimulatedAnalogInput getAnalogInput(int channel)
+    {
+        return mAnalogInputs.computeIfAbsent(channel, k -> new SimulatedAnalogInput());
+    }
+
+    public SimulatedGyro getGyro()
+    {
+        return mGyro;
+    }
+
+    public synchronized void addMechanism(ISimulatedMechanism mechanism)
+    {
+        mMechanisms.add(mechanism);
+    }
+
+    /**
+     * Advance every mechanism by dt seconds, in kControlDt steps.
+     */
+    public synchronized void step(double dt)
+    {
+        final double end = mTime + dt - kControlDt / 2;
+        while (mTime < end)
+        {
+            for (ISimulatedMechanism mechanism : mMechanisms)
+                mechanism.step(kControlDt);
+            mTime += kControlDt;
+        }
+    }
+
+    // IDeviceFactory
+
+    @Override
+    public ITalonSRX createTalon(int canId)
+    {
+        return getTalon(canId);
+    }
+
+    @Override
+    public synchronized ITalonSRX createPermanentSlaveTalon(int canId, int masterId)
+    {
+        final SimulatedTalonSRX talon = getTalon(canId);
+        talon.follow(getTalon(masterId));
+        return talon;
+    }
+
+    @Override
+    public IGyro createPigeon(int canId)
+    {
+        return mGyro;
+    }
+
+    @Override
+    public IGyro createPigeon(ITalonSRX host)
+    {
+        return mGyro;
+    }
+
+    @Override
+    public ISolenoid createSolenoid(int pcmId, int channel)
+    {
+        return getSolenoid(pcmId, channel);
+    }
+
+    @Override
+    public IDoubleSolenoid createDoubleSolenoid(int pcmId, int forwardChannel, int reverseChannel)
+    {
+        return getDoubleSolenoid(pcmId, forwardChannel);
+    }
+
+    @Override
+    public IAnalogInput createAnalogInput(int channel)
+    {
+        return getAnalogInput(channel);
+    }
+
+    @Override
+    public boolean isPCMPresent(int pcmId)
+    {
+        return true;
+    }
+}
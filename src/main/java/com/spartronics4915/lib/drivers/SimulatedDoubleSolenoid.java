@@ -0,0 +1,24 @@
+package com.spartronics4915.lib.drivers;
+
+import edu.wpi.first.wpilibj.DoubleSolenoid.Value;
+
+/**
+ * An in-memory double solenoid valve; see SimulatedSolenoid.
+ */
+public class SimulatedDoubleSolenoid implements IDoubleSolenoid
+{
+
+    private volatile Value mValue = Value.kOff;
+
+    @Override
+    public void set(Value value)
+    {
+        mValue = value;
+    }
+
+    @Override
+    public Value get()
+    {
+        return mValue;
+    }
+}
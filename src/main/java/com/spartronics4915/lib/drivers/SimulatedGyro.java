@@ -0,0 +1,69 @@
+package com.spartronics4915.lib.drivers;
+
+import com.ctre.phoenix.ErrorCode;
+
+import java.util.Random;
+
+/**
+ * An in-memory Pigeon that only turns about z. A mechanism model tells it the
+ * heading every SimulatedDeviceFactory.kControlDt; subsystems read it back,
+ * optionally late and noisy.
+ */
+public class SimulatedGyro implements IGyro
+{
+
+    private final DelayLine mReportedHeading = new DelayLine();
+    private double mHeading = 0.0; // Degrees
+    private double mNoise = 0.0; // Degrees, standard deviation
+    private Random mRandom = new Random(0);
+
+    /**
+     * Tell the gyro its heading now, in degrees.
+     */
+    public synchronized void measure(double degrees)
+    {
+        mHeading = degrees;
+        mReportedHeading.push(degrees + (mNoise > 0 ? mRandom.nextGaussian() * mNoise : 0.0));
+    }
+
+    /**
+     * Tell the gyro it has been at degrees all along.
+     */
+    public synchronized void resetMeasurement(double degrees)
+    {
+        mHeading = degrees;
+        mReportedHeading.fill(degrees);
+    }
+
+    /**
+     * Delay what subsystems read by latency seconds, to the nearest step.
+     */
+    public synchronized void setLatency(double latency)
+    {
+        mReportedHeading.setDelay((int) Math.round(latency / SimulatedDeviceFactory.kControlDt), mHeading);
+    }
+
+    /**
+     * Add Gaussian noise to each heading reading.
+     */
+    public synchronized void setNoise(double degrees, Random random)
+    {
+        mNoise = degrees;
+        mRandom = random;
+    }
+
+    @Override
+    public synchronized double getFusedHeading()
+    {
+        return mReportedHeading.get();
+    }
+
+    // Flat on a flat floor, so only z turns
+    @Override
+    public synchronized ErrorCode getAccumGyro(double[] xyzAccum)
+    {
+        xyzAccum[0] = xyzAccum[1] = 0.0;
+        xyzAccum[2] = getFusedHeading();
+        return ErrorCode.OK;
+    }
+}
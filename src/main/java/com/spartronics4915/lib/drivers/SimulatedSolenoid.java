@@ -0,0 +1,23 @@
+package com.spartronics4915.lib.drivers;
+
+/**
+ * An in-memory solenoid valve. It only remembers what it was told; a
+ * mechanism model decides what the cylinder does about it.
+ */
+public class SimulatedSolenoid implements ISolenoid
+{
+
+    private volatile boolean mOn = false;
+
+    @Override
+    public void set(boolean on)
+    {
+        mOn = on;
+    }
+
+    @Override
+    public boolean get()
+    {
+        return mOn;
+    }
+}
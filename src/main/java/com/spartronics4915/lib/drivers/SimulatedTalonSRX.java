@@ -0,0 +1,305 @@
+package com.spartronics4915.lib.drivers;
+
+import com.ctre.phoenix.ErrorCode;
+import com.ctre.phoenix.motorcontrol.ControlMode;
+import com.ctre.phoenix.motorcontrol.DemandType;
+import com.ctre.phoenix.motorcontrol.NeutralMode;
+import com.ctre.phoenix.motorcontrol.VelocityMeasPeriod;
+import com.ctre.phoenix.motorcontrol.can.TalonSRX;
+import com.spartronics4915.lib.util.Util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * An in-memory Talon SRX. It emulates the parts of the firmware we use:
+ * percent output, position and velocity PID in native units with kF and
+ * arbitrary feedforward (output in 1023ths, as the firmware does), following,
+ * the neutral deadband, and velocity measured over a window.
+ * <p>
+ * A mechanism model steps it every SimulatedDeviceFactory.kControlDt: update()
+ * for the output the Talon applies, then measure() with where its sensor
+ * really is. What subsystems read back can be delayed, like status frames on
+ * the CAN bus, and made noisy; the Talon's own loop sees the sensor as it is.
+ */
+public class SimulatedTalonSRX implements ITalonSRX
+{
+
+    private static final int kSlots = 4;
+    private static final double kBusVoltage = 12.0; // As if voltage compensated
+
+    private final int mDeviceId;
+
+    // Indexed by profile slot
+    private final double[] mKp = new double[kSlots];
+    private final double[] mKi = new double[kSlots];
+    private final double[] mKd = new double[kSlots];
+    private final double[] mKf = new double[kSlots];
+    private final double[] mIZone = new double[kSlots];
+    private int mSlot = 0;
+    private double mDeadband = 0.04; // Factory default
+    private NeutralMode mNeutralMode = NeutralMode.Coast;
+    private SimulatedTalonSRX mMaster = null;
+
+    private ControlMode mMode = ControlMode.PercentOutput;
+    private double mDemand = 0.0;
+    private double mFeedforward = 0.0;
+    private double mIntegral = 0.0;
+    private double mLastError = 0.0;
+    private double mOutput = 0.0; // Fraction of the bus
+
+    private double mSensorOffset = 0.0; // ticks
+    private double[] mPositionHistory = new double[VelocityMeasPeriod.Period_100Ms.value]; // Raw ticks, one per step
+    private int mHistoryIndex = 0;
+    private double mPosition = 0.0; // ticks, net of mSensorOffset
+    private double mVelocity = 0.0; // ticks/100ms, as measured
+
+    private final DelayLine mReportedPosition = new DelayLine();
+    private final DelayLine mReportedVelocity = new DelayLine();
+    private double mPositionNoise = 0.0; // ticks, standard deviation
+    private Random mRandom = new Random(0);
+
+    public SimulatedTalonSRX(int deviceId)
+    {
+        mDeviceId = deviceId;
+    }
+
+    public int getDeviceID()
+    {
+        return mDeviceId;
+    }
+
+    // Stepped by a mechanism
+
+    /**
+     * Run the Talon's control loop once.
+     *
+     * @return the output it applies, as a fraction of the bus voltage
+     */
+    public synchronized double update()
+    {
+        double output;
+        switch (mMode)
+        {
+            case Velocity:
+                output = closedLoop(mDemand, mVelocity) + mFeedforward;
+                break;
+            case Position:
+                output = closedLoop(mDemand, mPosition) + mFeedforward;
+                break;
+            case PercentOutput:
+                output = mDemand + mFeedforward;
+                break;
+            case Follower:
+                output = mMaster != null ? mMaster.getMotorOutputPercent() : 0.0;
+                break;
+            default:
+                output = 0.0;
+                break;
+        }
+        output = Util.limit(output, 1.0);
+        if (Math.abs(output) < mDeadband)
+            output = 0.0;
+        mOutput = output;
+        return mOutput;
+    }
+
+    private double closedLoop(double target, double measured)
+    {
+        final double error = target - measured;
+        if (mIZone[mSlot] == 0 || Math.abs(error) < mIZone[mSlot])
+            mIntegral += error;
+        else
+            mIntegral = 0.0;
+        final double out = mKf[mSlot] * target + mKp[mSlot] * error + mKi[mSlot] * mIntegral
+                + mKd[mSlot] * (error - mLastError);
+        mLastError = error;
+        return out / 1023.0;
+    }
+
+    /**
+     * Tell the Talon where its sensor is now, in ticks.
+     */
+    public synchronized void measure(double sensorTicks)
+    {
+        final double windowStart = mPositionHistory[mHistoryIndex];
+        mPositionHistory[mHistoryIndex] = sensorTicks;
+        mHistoryIndex = (mHistoryIndex + 1) % mPositionHistory.length;
+        mVelocity = (sensorTicks - windowStart) * (0.1 / (mPositionHistory.length * SimulatedDeviceFactory.kControlDt));
+        mPosition = sensorTicks - mSensorOffset;
+        mReportedPosition.push(mPosition + (mPositionNoise > 0 ? mRandom.nextGaussian() * mPositionNoise : 0.0));
+        mReportedVelocity.push(mVelocity);
+    }
+
+    /**
+     * Tell the Talon its sensor is at sensorTicks and has been sitting still.
+     */
+    public synchronized void resetMeasurement(double sensorTicks)
+    {
+        Arrays.fill(mPositionHistory, sensorTicks);
+        mVelocity = 0.0;
+        mPosition = sensorTicks - mSensorOffset;
+        mReportedPosition.fill(mPosition);
+        mReportedVelocity.fill(mVelocity);
+    }
+
+    /**
+     * Delay what subsystems read by latency seconds, to the nearest step.
+     */
+    public synchronized void setStatusLatency(double latency)
+    {
+        final int steps = (int) Math.round(latency / SimulatedDeviceFactory.kControlDt);
+        mReportedPosition.setDelay(steps, mPosition);
+        mReportedVelocity.setDelay(steps, mVelocity);
+    }
+
+    /**
+     * Add Gaussian noise to each position reading.
+     */
+    public synchronized void setPositionNoise(double ticks, Random random)
+    {
+        mPositionNoise = ticks;
+        mRandom = random;
+    }
+
+    void follow(SimulatedTalonSRX master)
+    {
+        mMaster = master;
+        set(ControlMode.Follower, master.getDeviceID());
+    }
+
+    public synchronized ControlMode getControlMode()
+    {
+        return mMode;
+    }
+
+    public synchronized NeutralMode getNeutralMode()
+    {
+        return mNeutralMode;
+    }
+
+    // ITalonSRX
+
+    @Override
+    public synchronized void set(ControlMode mode, double value)
+    {
+        set(mode, value, DemandType.Neutral, 0.0);
+    }
+
+    @Override
+    public synchronized void set(ControlMode mode, double demand0, DemandType demand1Type, double demand1)
+    {
+        if (mode != mMode)
+        {
+            mIntegral = 0.0;
+            mLastError = 0.0;
+        }
+        mMode = mode;
+        mDemand = demand0;
+        mFeedforward = demand1Type == DemandType.ArbitraryFeedForward ? demand1 : 0.0;
+    }
+
+    @Override
+    public synchronized void selectProfileSlot(int slotIdx, int pidIdx)
+    {
+        mSlot = slotIdx;
+    }
+
+    @Override
+    public synchronized int getSelectedSensorPosition(int pidIdx)
+    {
+        return (int) Math.round(mReportedPosition.get());
+    }
+
+    @Override
+    public synchronized int getSelectedSensorVelocity(int pidIdx)
+    {
+        return (int) Math.round(mReportedVelocity.get());
+    }
+
+    @Override
+    public synchronized ErrorCode setSelectedSensorPosition(int sensorPos, int pidIdx, int timeoutMs)
+    {
+        mSensorOffset += mPosition - sensorPos;
+        mPosition = sensorPos;
+        mReportedPosition.fill(mPosition); // The next read sees it, as callers expect
+        return ErrorCode.OK;
+    }
+
+    @Override
+    public synchronized double getMotorOutputPercent()
+    {
+        return mOutput;
+    }
+
+    @Override
+    public synchronized double getMotorOutputVoltage()
+    {
+        return mOutput * kBusVoltage;
+    }
+
+    @Override
+    public synchronized void setNeutralMode(NeutralMode neutralMode)
+    {
+        mNeutralMode = neutralMode;
+    }
+
+    @Override
+    public synchronized ErrorCode config_kP(int slotIdx, double value, int timeoutMs)
+    {
+        mKp[slotIdx] = value;
+        return ErrorCode.OK;
+    }
+
+    @Override
+    public synchronized ErrorCode config_kI(int slotIdx, double value, int timeoutMs)
+    {
+        mKi[slotIdx] = value;
+        return ErrorCode.OK;
+    }
+
+    @Override
+    public synchronized ErrorCode config_kD(int slotIdx, double value, int timeoutMs)
+    {
+        mKd[slotIdx] = value;
+        return ErrorCode.OK;
+    }
+
+    @Override
+    public synchronized ErrorCode config_kF(int slotIdx, double value, int timeoutMs)
+    {
+        mKf[slotIdx] = value;
+        return ErrorCode.OK;
+    }
+
+    @Override
+    public synchronized ErrorCode config_IntegralZone(int slotIdx, int izone, int timeoutMs)
+    {
+        mIZone[slotIdx] = izone;
+        return ErrorCode.OK;
+    }
+
+    @Override
+    public synchronized ErrorCode configNeutralDeadband(double percentDeadband, int timeoutMs)
+    {
+        mDeadband = percentDeadband;
+        return ErrorCode.OK;
+    }
+
+    @Override
+    public synchronized ErrorCode configVelocityMeasurementPeriod(VelocityMeasPeriod period, int timeoutMs)
+    {
+        final double sensorTicks = mPosition + mSensorOffset;
+        mPositionHistory = new double[Math.max(1, (int) Math.round(period.value * 0.001
+                / SimulatedDeviceFactory.kControlDt))];
+        mHistoryIndex = 0;
+        Arrays.fill(mPositionHistory, sensorTicks);
+        return ErrorCode.OK;
+    }
+
+    @Override
+    public TalonSRX getTalon()
+    {
+        return null;
+    }
+}
@@ -64,21 +64,21 @@ public class TalonSRXFactory
         }
 
         // Create a CANTalon with the default (out of the box) configuration.
-        public static TalonSRX createDefaultTalon(int id)
+        public static LazyTalonSRX createDefaultTalon(int id)
         {
                 return createTalon(id, kDefaultConfiguration);
         }
 
-        public static TalonSRX createPermanentSlaveTalon(int id, int master_id)
+        public static LazyTalonSRX createPermanentSlaveTalon(int id, int master_id)
         {
-                final TalonSRX talon = createTalon(id, kSlaveConfiguration);
+                final LazyTalonSRX talon = createTalon(id, kSlaveConfiguration);
                 talon.set(ControlMode.Follower, master_id);
                 return talon;
         }
 
-        public static TalonSRX createTalon(int id, Configuration config)
+        public static LazyTalonSRX createTalon(int id, Configuration config)
         {
-                TalonSRX talon = new LazyTalonSRX(id);
+                LazyTalonSRX talon = new LazyTalonSRX(id);
                 talon.set(ControlMode.PercentOutput, 0.0);
 
                 // This is pretty bad
@@ -0,0 +1,217 @@
+package com.spartronics4915.lib.geometry;
+
+import static com.spartronics4915.lib.util.Util.kEpsilon;
+
+import java.text.DecimalFormat;
+
+/**
+ * A Pose2d that can be overwritten in place, for loops that would otherwise
+ * build several Pose2d/Translation2d/Rotation2d objects per step (odometry,
+ * path following error, ICP). The set* methods compute the same thing as the
+ * Pose2d method of the same name, to within rounding, without allocating;
+ * arguments may alias this.
+ * <p>
+ * Keep these as fields and reuse them. Anything that gets stored or handed to
+ * other code should still be a Pose2d (see toPose2d).
+ */
+public class MutablePose2d
+{
+
+    private final static double kExpEps = 1E-9;
+
+    private double mX = 0;
+    private double mY = 0;
+    private double mCos = 1;
+    private double mSin = 0;
+
+    public MutablePose2d()
+    {
+    }
+
+    public MutablePose2d(final Pose2d other)
+    {
+        set(other);
+    }
+
+    public MutablePose2d setIdentity()
+    {
+        return set(0, 0, 1, 0);
+    }
+
+    /**
+     * @param cos, sin should be on the unit circle; we don't normalize them
+     */
+    public MutablePose2d set(double x, double y, double cos, double sin)
+    {
+        mX = x;
+        mY = y;
+        mCos = cos;
+        mSin = sin;
+        return this;
+    }
+
+    public MutablePose2d set(final Pose2d other)
+    {
+        return set(other.getTranslation().x(), other.getTranslation().y(), other.getRotation().cos(),
+                other.getRotation().sin());
+    }
+
+    public MutablePose2d set(final MutablePose2d other)
+    {
+        return set(other.mX, other.mY, other.mCos, other.mSin);
+    }
+
+    /**
+     * this = a.transformBy(b)
+     */
+    public MutablePose2d setTransformBy(final MutablePose2d a, final MutablePose2d b)
+    {
+        return compose(a.mX, a.mY, a.mCos, a.mSin, b.mX, b.mY, b.mCos, b.mSin);
+    }
+
+    public MutablePose2d setTransformBy(final Pose2d a, final Pose2d b)
+    {
+        return compose(a.getTranslation().x(), a.getTranslation().y(), a.getRotation().cos(), a.getRotation().sin(),
+                b.getTranslation().x(), b.getTranslation().y(), b.getRotation().cos(), b.getRotation().sin());
+    }
+
+    /**
+     * this = this.transformBy(other)
+     */
+    public MutablePose2d transformBy(final MutablePose2d other)
+    {
+        return setTransformBy(this, other);
+    }
+
+    public MutablePose2d transformBy(final Pose2d other)
+    {
+        return compose(mX, mY, mCos, mSin, other.getTranslation().x(), other.getTranslation().y(),
+                other.getRotation().cos(), other.getRotation().sin());
+    }
+
+    private MutablePose2d compose(double ax, double ay, double ac, double as, double bx, double by, double bc,
+            double bs)
+    {
+        // Translation2d.rotateBy then translateBy, then Rotation2d.rotateBy
+        final double x = ax + (bx * ac - by * as);
+        final double y = ay + (bx * as + by * ac);
+        return setNormalized(x, y, ac * bc - as * bs, ac * bs + as * bc);
+    }
+
+    /**
+     * this = a.inverse().transformBy(b), i.e. b as seen from a
+     */
+    public MutablePose2d setInverseTransformBy(final Pose2d a, final Pose2d b)
+    {
+        return relative(a.getTranslation().x(), a.getTranslation().y(), a.getRotation().cos(), a.getRotation().sin(),
+                b.getTranslation().x(), b.getTranslation().y(), b.getRotation().cos(), b.getRotation().sin());
+    }
+
+    public MutablePose2d setInverseTransformBy(final MutablePose2d a, final MutablePose2d b)
+    {
+        return relative(a.mX, a.mY, a.mCos, a.mSin, b.mX, b.mY, b.mCos, b.mSin);
+    }
+
+    private MutablePose2d relative(double ax, double ay, double ac, double as, double bx, double by, double bc,
+            double bs)
+    {
+        final double dx = bx - ax;
+        final double dy = by - ay;
+        return setNormalized(dx * ac + dy * as, -dx * as + dy * ac, ac * bc + as * bs, ac * bs - as * bc);
+    }
+
+    /**
+     * this = this.inverse()
+     */
+    public MutablePose2d invert()
+    {
+        return set(-mX * mCos - mY * mSin, mX * mSin - mY * mCos, mCos, -mSin);
+    }
+
+    /**
+     * this = Pose2d.exp(new Twist2d(dx, dy, dtheta))
+     */
+    public MutablePose2d setExp(double dx, double dy, double dtheta)
+    {
+        final double sin_theta = Math.sin(dtheta);
+        final double cos_theta = Math.cos(dtheta);
+        double s, c;
+        if (Math.abs(dtheta) < kExpEps)
+        {
+            s = 1.0 - 1.0 / 6.0 * dtheta * dtheta;
+            c = .5 * dtheta;
+        }
+        else
+        {
+            s = sin_theta / dtheta;
+            c = (1.0 - cos_theta) / dtheta;
+        }
+        return set(dx * s - dy * c, dx * c + dy * s, cos_theta, sin_theta);
+    }
+
+    public MutablePose2d setExp(final Twist2d delta)
+    {
+        return setExp(delta.dx, delta.dy, delta.dtheta);
+    }
+
+    /**
+     * this = this.transformBy(Pose2d.exp(twist)), the odometry step
+     */
+    public MutablePose2d transformByExp(double dx, double dy, double dtheta)
+    {
+        final double x = mX, y = mY, c = mCos, s = mSin;
+        setExp(dx, dy, dtheta);
+        return compose(x, y, c, s, mX, mY, mCos, mSin);
+    }
+
+    private MutablePose2d setNormalized(double x, double y, double cos, double sin)
+    {
+        // Same as Rotation2d(cos, sin, true)
+        final double magnitude = Math.hypot(cos, sin);
+        if (magnitude > kEpsilon)
+            return set(x, y, cos / magnitude, sin / magnitude);
+        return set(x, y, 1, 0);
+    }
+
+    public double getX()
+    {
+        return mX;
+    }
+
+    public double getY()
+    {
+        return mY;
+    }
+
+    public double cos()
+    {
+        return mCos;
+    }
+
+    public double sin()
+    {
+        return mSin;
+    }
+
+    public double getRadians()
+    {
+        return Math.atan2(mSin, mCos);
+    }
+
+    public double getDegrees()
+    {
+        return Math.toDegrees(getRadians());
+    }
+
+    public Pose2d toPose2d()
+    {
+        return new Pose2d(new Translation2d(mX, mY), new Rotation2d(mCos, mSin, false));
+    }
+
+    @Override
+    public String toString()
+    {
+        final DecimalFormat fmt = new DecimalFormat("#0.000");
+        return "T:(" + fmt.format(mX) + "," + fmt.format(mY) + "), R:(" + fmt.format(getDegrees()) + " deg)";
+    }
+}
@@ -0,0 +1,38 @@
+package com.spartronics4915.lib.geometry;
+
+/**
+ * Pose2d math over parallel primitive arrays, for transforming a whole point
+ * cloud at once instead of an object per point. A point i is (xs[i], ys[i]);
+ * a rotation is given as its cos and sin, like Rotation2d.
+ * <p>
+ * The loops are plain counted loops with no branches or calls so the JIT can
+ * unroll and vectorize them. Output arrays may be the input arrays.
+ */
+public class SE2Batch
+{
+
+    /**
+     * out = R(cos, sin) * p + (tx, ty) for the first n points, which is what
+     * ICP's Transform.apply(Point) does.
+     */
+    public static void transformPoints(double cos, double sin, double tx, double ty, double[] xs, double[] ys,
+            double[] outXs, double[] outYs, int n)
+    {
+        for (int i = 0; i < n; i++)
+        {
+            final double x = xs[i];
+            final double y = ys[i];
+            outXs[i] = x * cos - y * sin + tx;
+            outYs[i] = x * sin + y * cos + ty;
+        }
+    }
+
+    /**
+     * Rotates direction vectors; no translation.
+     */
+    public static void rotateVectors(double cos, double sin, double[] xs, double[] ys, double[] outXs,
+            double[] outYs, int n)
+    {
+        transformPoints(cos, sin, 0, 0, xs, ys, outXs, outYs, n);
+    }
+}
@@ -36,13 +36,18 @@ class LidarPoint
     {
         // convert the polar coords to cartesian coords
         double radians = Math.toRadians(this.angle);
-        Translation2d x2d = new Translation2d(Math.cos(radians) * this.distance, 
-                                              Math.sin(radians) * this.distance);
+        final double x = Math.cos(radians) * this.distance;
+        final double y = Math.sin(radians) * this.distance;
         if(robotPose != null)
         {
-            return robotPose.transformBy(Pose2d.fromTranslation(x2d)).getTranslation();
+            // robotPose.transformBy(Pose2d.fromTranslation(x2d)).getTranslation(),
+            // without the intermediate poses
+            final double c = robotPose.getRotation().cos();
+            final double s = robotPose.getRotation().sin();
+            return new Translation2d(x * c - y * s + robotPose.getTranslation().x(),
+                                     x * s + y * c + robotPose.getTranslation().y());
         }
         else
-            return x2d;
+            return new Translation2d(x, y);
     }
 }
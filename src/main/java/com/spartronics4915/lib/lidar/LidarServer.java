@@ -1,6 +1,7 @@
 package com.spartronics4915.lib.lidar;
 
 import com.spartronics4915.lib.LibConstants;
+import com.spartronics4915.lib.util.JVMStats;
 import com.spartronics4915.lib.util.Logger;
 
 import java.io.BufferedReader;
@@ -201,6 +202,7 @@ public class LidarServer
         @Override
         public void run() 
         {
+            JVMStats.registerCurrentThread("LidarReader");
             while (isRunning())
             {
                 try 
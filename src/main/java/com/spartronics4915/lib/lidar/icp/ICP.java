@@ -12,6 +12,8 @@ public class ICP
     public long timeoutNs = 0; // used during normal operation, usually nonzero
     public long maxIterations = 0; // used by test, usually 0
 
+    private final double[] mClosest = new double[2]; // getClosestPoint output
+
     public ICP(long timeoutMs)
     {
         timeoutNs = timeoutMs * 1000000;
@@ -49,10 +51,12 @@ public class ICP
             int N = 0;
             for (Point p : points)
             {
-                // get pairs of corresponding points
-                Point p2 = transInv.apply(p);
-                Point rp = reference.getClosestPoint(p2);
-                double dist = p2.getDistance(rp);
+                // get pairs of corresponding points, without a Point per pair
+                final double p2x = transInv.applyX(p.x, p.y);
+                final double p2y = transInv.applyY(p.x, p.y);
+                reference.getClosestPoint(p2x, p2y, mClosest);
+                final double rpx = mClosest[0], rpy = mClosest[1];
+                final double dist = Math.sqrt((p2x - rpx) * (p2x - rpx) + (p2y - rpy) * (p2y - rpy));
                 if (dist > threshold)
                     continue;
                 sumDists += dist;
@@ -62,13 +66,13 @@ public class ICP
                 SumXa += p.x;
                 SumYa += p.y;
 
-                SumXb += rp.x;
-                SumYb += rp.y;
+                SumXb += rpx;
+                SumYb += rpy;
 
-                Sxx += p.x * rp.x;
-                Sxy += p.x * rp.y;
-                Syx += p.y * rp.x;
-                Syy += p.y * rp.y;
+                Sxx += p.x * rpx;
+                Sxy += p.x * rpy;
+                Syx += p.y * rpx;
+                Syy += p.y * rpy;
             }
 
             lastMeanDist = sumDists / N;
@@ -5,5 +5,17 @@ public interface IReferenceModel
 
     public Point getClosestPoint(Point p);
 
+    /**
+     * Like getClosestPoint(Point), but writes the closest point's x and y to
+     * out[0] and out[1]. ICP calls this once per scan point per iteration, so
+     * models should override it to avoid allocating.
+     */
+    public default void getClosestPoint(double x, double y, double[] out)
+    {
+        Point closest = getClosestPoint(new Point(x, y));
+        out[0] = closest.x;
+        out[1] = closest.y;
+    }
+
     public void transformBy(Transform t);
 }
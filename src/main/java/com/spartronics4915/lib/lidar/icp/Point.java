@@ -25,7 +25,12 @@ public class Point
 
     public double getDistanceSq(Point p)
     {
-        double dx = x - p.x, dy = y - p.y;
+        return getDistanceSq(p.x, p.y);
+    }
+
+    public double getDistanceSq(double px, double py)
+    {
+        double dx = x - px, dy = y - py;
         return dx * dx + dy * dy;
     }
 
@@ -1,43 +1,74 @@
 package com.spartronics4915.lib.lidar.icp;
 
 import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * A reference model made of the points of an earlier scan. The points are
+ * kept as x and y arrays, which is what the closest-point search and
+ * transformBy actually loop over.
+ */
 public class PointCloudReferenceModel implements IReferenceModel
 {
 
-    private Iterable<Point> mPointCloud;
+    private final double[] mXs;
+    private final double[] mYs;
+    private final int mNumPoints;
 
     public PointCloudReferenceModel(Iterable<Point> pointCloud)
     {
-        mPointCloud = pointCloud;
+        List<Point> points = new ArrayList<>();
+        for (Point p : pointCloud)
+            points.add(p);
+        mNumPoints = points.size();
+        mXs = new double[mNumPoints];
+        mYs = new double[mNumPoints];
+        for (int i = 0; i < mNumPoints; i++)
+        {
+            mXs[i] = points.get(i).x;
+            mYs[i] = points.get(i).y;
+        }
     }
 
-    @Override
-    public Point getClosestPoint(Point refPnt)
+    private int getClosestIndex(double x, double y)
     {
         double minDist = Double.MAX_VALUE;
-        Point minPnt = null;
-        for (Point testPnt : mPointCloud)
+        int minIndex = -1;
+        for (int i = 0; i < mNumPoints; i++)
         {
-            double dist = refPnt.getDistanceSq(testPnt);
+            final double dx = mXs[i] - x, dy = mYs[i] - y;
+            final double dist = dx * dx + dy * dy;
             if (dist < minDist)
             {
-                minPnt = testPnt;
+                minIndex = i;
                 minDist = dist;
             }
         }
-        return minPnt;
+        return minIndex;
     }
 
     @Override
-    public void transformBy(Transform t)
+    public Point getClosestPoint(Point refPnt)
     {
-        ArrayList<Point> transformedPoints = new ArrayList<Point>();
-        for (Point p : mPointCloud)
+        final int i = getClosestIndex(refPnt.x, refPnt.y);
+        return i < 0 ? null : new Point(mXs[i], mYs[i]);
+    }
+
+    @Override
+    public void getClosestPoint(double x, double y, double[] out)
+    {
+        final int i = getClosestIndex(x, y);
+        if (i >= 0)
         {
-            transformedPoints.add(t.apply(p));
+            out[0] = mXs[i];
+            out[1] = mYs[i];
         }
-        mPointCloud = transformedPoints;
+    }
+
+    @Override
+    public void transformBy(Transform t)
+    {
+        t.apply(mXs, mYs, mXs, mYs, mNumPoints);
     }
 
 }
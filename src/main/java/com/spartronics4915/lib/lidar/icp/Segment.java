@@ -44,12 +44,17 @@ public class Segment
 
     public double getDistanceSq(Point p)
     {
-        double t = line.getT(p);
+        return getDistanceSq(p.x, p.y);
+    }
+
+    public double getDistanceSq(double x, double y)
+    {
+        double t = line.getT(x, y);
         if (t <= tMin)
-            return pMin.getDistanceSq(p);
+            return pMin.getDistanceSq(x, y);
         if (t >= tMax)
-            return pMax.getDistanceSq(p);
-        double d = line.getDistance(p);
+            return pMax.getDistanceSq(x, y);
+        double d = line.getDistance(x, y);
         return d * d;
     }
 
@@ -63,6 +68,29 @@ public class Segment
         return line.getPoint(t);
     }
 
+    /**
+     * Allocation-free getClosestPoint; the result goes in out[0], out[1].
+     */
+    public void getClosestPoint(double x, double y, double[] out)
+    {
+        double t = line.getT(x, y);
+        if (t <= tMin)
+        {
+            out[0] = pMin.x;
+            out[1] = pMin.y;
+        }
+        else if (t >= tMax)
+        {
+            out[0] = pMax.x;
+            out[1] = pMax.y;
+        }
+        else
+        {
+            out[0] = line.x0 + line.vx * t;
+            out[1] = line.y0 + line.vy * t;
+        }
+    }
+
     public Point getMidpoint()
     {
         return line.getPoint((tMin + tMax) / 2);
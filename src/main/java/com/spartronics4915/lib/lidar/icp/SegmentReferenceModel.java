@@ -7,15 +7,58 @@ import com.spartronics4915.lib.lidar.icp.Transform;
 
 import java.util.Collection;
 
+/**
+ * A reference model made of line segments (e.g. field walls).
+ * <p>
+ * Besides the Segment objects, each segment's line and end points are kept
+ * in parallel arrays. ICP's closest-point search and transformBy run over
+ * those; the Segments are rebuilt from them after a transform.
+ */
 public class SegmentReferenceModel implements IReferenceModel
 {
     public final Segment[] segments;
 
+    // Line direction, a point on the line, and r = vy*x0 - vx*y0. The
+    // direction is normalized here (scaling r and t to match), so |vy*x - vx*y - r|
+    // is the distance to the line even for a Segment built from a raw Line.
+    private final double[] mVx, mVy, mX0, mY0, mR;
+    private final double[] mTMin, mTMax;
+    private final double[] mMinX, mMinY, mMaxX, mMaxY;
+
     public SegmentReferenceModel(Segment... ss)
     {
         if (ss.length == 0)
             throw new IllegalArgumentException("zero Segments passed to ReferenceModel");
         segments = ss;
+
+        final int n = ss.length;
+        mVx = new double[n];
+        mVy = new double[n];
+        mX0 = new double[n];
+        mY0 = new double[n];
+        mR = new double[n];
+        mTMin = new double[n];
+        mTMax = new double[n];
+        mMinX = new double[n];
+        mMinY = new double[n];
+        mMaxX = new double[n];
+        mMaxY = new double[n];
+        for (int i = 0; i < n; i++)
+        {
+            final Segment s = ss[i];
+            final double m = Math.hypot(s.line.vx, s.line.vy);
+            mVx[i] = s.line.vx / m;
+            mVy[i] = s.line.vy / m;
+            mX0[i] = s.line.x0;
+            mY0[i] = s.line.y0;
+            mR[i] = s.line.r / m;
+            mTMin[i] = s.tMin * m;
+            mTMax[i] = s.tMax * m;
+            mMinX[i] = s.pMin.x;
+            mMinY[i] = s.pMin.y;
+            mMaxX[i] = s.pMax.x;
+            mMaxY[i] = s.pMax.y;
+        }
     }
 
     public SegmentReferenceModel(Collection<Segment> ss)
@@ -23,27 +66,81 @@ public class SegmentReferenceModel implements IReferenceModel
         this(ss.toArray(new Segment[ss.size()]));
     }
 
-    public Point getClosestPoint(Point p)
+    // Segment.getDistanceSq, over the arrays
+    private int getClosestIndex(double x, double y)
     {
         double minDist = Double.MAX_VALUE;
-        Segment minSeg = null;
-        for (Segment s : segments)
+        int minIndex = 0;
+        for (int i = 0; i < segments.length; i++)
         {
-            double dist = s.getDistanceSq(p);
+            final double t = mVx[i] * (x - mX0[i]) + mVy[i] * (y - mY0[i]);
+            final double dist;
+            if (t <= mTMin[i])
+            {
+                final double dx = mMinX[i] - x, dy = mMinY[i] - y;
+                dist = dx * dx + dy * dy;
+            }
+            else if (t >= mTMax[i])
+            {
+                final double dx = mMaxX[i] - x, dy = mMaxY[i] - y;
+                dist = dx * dx + dy * dy;
+            }
+            else
+            {
+                final double d = mVy[i] * x - mVx[i] * y - mR[i];
+                dist = d * d;
+            }
             if (dist < minDist)
             {
                 minDist = dist;
-                minSeg = s;
+                minIndex = i;
             }
         }
-        return minSeg.getClosestPoint(p);
+        return minIndex;
+    }
+
+    public Point getClosestPoint(Point p)
+    {
+        double[] out = new double[2];
+        getClosestPoint(p.x, p.y, out);
+        return new Point(out[0], out[1]);
+    }
+
+    // Segment.getClosestPoint, over the arrays
+    @Override
+    public void getClosestPoint(double x, double y, double[] out)
+    {
+        final int i = getClosestIndex(x, y);
+        final double t = mVx[i] * (x - mX0[i]) + mVy[i] * (y - mY0[i]);
+        if (t <= mTMin[i])
+        {
+            out[0] = mMinX[i];
+            out[1] = mMinY[i];
+        }
+        else if (t >= mTMax[i])
+        {
+            out[0] = mMaxX[i];
+            out[1] = mMaxY[i];
+        }
+        else
+        {
+            out[0] = mX0[i] + mVx[i] * t;
+            out[1] = mY0[i] + mVy[i] * t;
+        }
     }
 
     public void transformBy(Transform t)
     {
-        for (int i = 0; i < segments.length; i++)
+        final int n = segments.length;
+        t.rotate(mVx, mVy, mVx, mVy, n);
+        t.apply(mX0, mY0, mX0, mY0, n);
+        t.apply(mMinX, mMinY, mMinX, mMinY, n);
+        t.apply(mMaxX, mMaxY, mMaxX, mMaxY, n);
+        for (int i = 0; i < n; i++)
         {
-            segments[i] = t.apply(segments[i]);
+            // Same as the Line(vx, vy, x0, y0) constructor
+            mR[i] = mVy[i] * mX0[i] - mVx[i] * mY0[i];
+            segments[i] = new Segment(new Line(mVx[i], mVy[i], mX0[i], mY0[i]), mTMin[i], mTMax[i]);
         }
     }
 
@@ -2,6 +2,7 @@ package com.spartronics4915.lib.lidar.icp;
 
 import com.spartronics4915.lib.geometry.Pose2d;
 import com.spartronics4915.lib.geometry.Rotation2d;
+import com.spartronics4915.lib.geometry.SE2Batch;
 import com.spartronics4915.lib.geometry.Translation2d;
 
 public class Transform
@@ -55,6 +56,34 @@ public class Transform
                 p.x * sin + p.y * cos + ty);
     }
 
+    // apply(Point), a coordinate at a time, for loops that can't allocate
+    public double applyX(double x, double y)
+    {
+        return x * cos - y * sin + tx;
+    }
+
+    public double applyY(double x, double y)
+    {
+        return x * sin + y * cos + ty;
+    }
+
+    /**
+     * apply(Point) for the first n points of xs/ys at once; out may be the
+     * input arrays.
+     */
+    public void apply(double[] xs, double[] ys, double[] outXs, double[] outYs, int n)
+    {
+        SE2Batch.transformPoints(cos, sin, tx, ty, xs, ys, outXs, outYs, n);
+    }
+
+    /**
+     * The direction part of apply(Line): rotation only.
+     */
+    public void rotate(double[] xs, double[] ys, double[] outXs, double[] outYs, int n)
+    {
+        SE2Batch.rotateVectors(cos, sin, xs, ys, outXs, outYs, n);
+    }
+
     public Line apply(Line l)
     {
         return new Line(l.vx * cos - l.vy * sin,
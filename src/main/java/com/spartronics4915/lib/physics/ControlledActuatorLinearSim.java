@@ -1,5 +1,10 @@
-package com.spartronics4915.util.test;
+package com.spartronics4915.lib.physics;
 
+/**
+ * Something that moves at a constant speed toward where it was last told to
+ * go, between two limits: a pneumatic cylinder, or a motor-driven mechanism
+ * that's either running or not. Units are whatever the caller likes.
+ */
 public class ControlledActuatorLinearSim
 {
 
@@ -42,6 +47,16 @@ public class ControlledActuatorLinearSim
         return mCurrentPosition;
     }
 
+    public double getPosition()
+    {
+        return mCurrentPosition;
+    }
+
+    public double getCommandedPosition()
+    {
+        return mCommandedPosition;
+    }
+
     public void reset()
     {
         reset(mMinPosition);
@@ -0,0 +1,163 @@
+package com.spartronics4915.lib.physics;
+
+import com.spartronics4915.lib.geometry.MutablePose2d;
+import com.spartronics4915.lib.geometry.Pose2d;
+import com.spartronics4915.lib.physics.DifferentialDrive.DriveDynamics;
+
+/**
+ * Integrates a DifferentialDrive forward in time from applied voltages: the
+ * "real" robot for a simulation. Wheel angles and speeds are tracked per side
+ * and the chassis pose is integrated from the wheel motion, so whatever the
+ * model says about the wheelbase (scrub included) is what the robot does.
+ * <p>
+ * All units are SI, as in DifferentialDrive. Step with a small dt (a
+ * millisecond, like a Talon's control loop); this is semi-implicit Euler.
+ */
+public class DifferentialDriveSim
+{
+
+    private DifferentialDrive mModel;
+    private final DriveDynamics mDynamics = new DriveDynamics(); // Reused every step
+
+    private double mLeftPosition = 0; // rad
+    private double mRightPosition = 0; // rad
+    private double mLeftVelocity = 0; // rad/s
+    private double mRightVelocity = 0; // rad/s
+    private double mLeftVoltage = 0;
+    private double mRightVoltage = 0;
+    private double mHeading = 0; // rad, unwrapped
+    private final MutablePose2d mPose = new MutablePose2d(); // m
+
+    public DifferentialDriveSim(DifferentialDrive model)
+    {
+        mModel = model;
+    }
+
+    public DifferentialDrive getModel()
+    {
+        return mModel;
+    }
+
+    /**
+     * Carry on with a different model from where the robot is now.
+     */
+    public void setModel(DifferentialDrive model)
+    {
+        mModel = model;
+    }
+
+    /**
+     * Put the robot at rest at pose (meters). Wheel angles are left alone, like
+     * picking the robot up and setting it down.
+     */
+    public void reset(Pose2d pose)
+    {
+        mPose.set(pose);
+        mHeading = pose.getRotation().getRadians();
+        mLeftVelocity = mRightVelocity = 0;
+        mLeftVoltage = mRightVoltage = 0;
+    }
+
+    /**
+     * Apply leftVoltage and rightVoltage for dt seconds.
+     */
+    public void step(double dt, double leftVoltage, double rightVoltage)
+    {
+        mLeftVoltage = leftVoltage;
+        mRightVoltage = rightVoltage;
+
+        final double r = mModel.wheel_radius();
+        final double wheelbase = mModel.effective_wheelbase_radius();
+        mDynamics.wheel_velocity.left = mLeftVelocity;
+        mDynamics.wheel_velocity.right = mRightVelocity;
+        mDynamics.chassis_velocity.linear = r * (mRightVelocity + mLeftVelocity) / 2.0;
+        mDynamics.chassis_velocity.angular = r * (mRightVelocity - mLeftVelocity) / (2.0 * wheelbase);
+        mDynamics.curvature = 0.0; // Only used for dcurvature, which we don't need
+        mDynamics.voltage.left = leftVoltage;
+        mDynamics.voltage.right = rightVoltage;
+        mModel.solveForwardDynamics(mDynamics);
+
+        // DriveDynamics.wheel_acceleration is really a linear acceleration at the
+        // wheel, so we resolve the chassis accelerations to wheel rad/s^2 here
+        final double linear = mDynamics.chassis_acceleration.linear;
+        final double angular = mDynamics.chassis_acceleration.angular * wheelbase;
+        final double leftVelocity = stickTo0(mLeftVelocity, mLeftVelocity + (linear - angular) / r * dt, leftVoltage,
+                mModel.left_transmission());
+        final double rightVelocity = stickTo0(mRightVelocity, mRightVelocity + (linear + angular) / r * dt,
+                rightVoltage, mModel.right_transmission());
+
+        final double dLeft = leftVelocity * dt;
+        final double dRight = rightVelocity * dt;
+        mLeftPosition += dLeft;
+        mRightPosition += dRight;
+        mLeftVelocity = leftVelocity;
+        mRightVelocity = rightVelocity;
+
+        final double dtheta = r * (dRight - dLeft) / (2.0 * wheelbase);
+        mHeading += dtheta;
+        mPose.transformByExp(r * (dLeft + dRight) / 2.0, 0.0, dtheta);
+    }
+
+    // Rolling friction can't push a wheel through zero; explicit integration
+    // would have it chatter around zero instead of stopping
+    private static double stickTo0(double before, double after, double voltage, DCMotorTransmission transmission)
+    {
+        if (Math.signum(before) * Math.signum(after) < 0 && Math.abs(voltage) < transmission.friction_voltage())
+            return 0.0;
+        return after;
+    }
+
+    /** @return rad */
+    public double getLeftPosition()
+    {
+        return mLeftPosition;
+    }
+
+    /** @return rad */
+    public double getRightPosition()
+    {
+        return mRightPosition;
+    }
+
+    /** @return rad/s */
+    public double getLeftVelocity()
+    {
+        return mLeftVelocity;
+    }
+
+    /** @return rad/s */
+    public double getRightVelocity()
+    {
+        return mRightVelocity;
+    }
+
+    public double getLeftVoltage()
+    {
+        return mLeftVoltage;
+    }
+
+    public double getRightVoltage()
+    {
+        return mRightVoltage;
+    }
+
+    /**
+     * @return rad, counterclockwise positive, without wrapping (like a gyro's
+     *         accumulated yaw)
+     */
+    public double getHeading()
+    {
+        return mHeading;
+    }
+
+    /** @return true chassis pose, meters */
+    public Pose2d getPose()
+    {
+        return mPose.toPose2d();
+    }
+
+    public void getPose(MutablePose2d out)
+    {
+        out.set(mPose);
+    }
+}
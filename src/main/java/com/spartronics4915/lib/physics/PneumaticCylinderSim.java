@@ -0,0 +1,45 @@
+package com.spartronics4915.lib.physics;
+
+/**
+ * A pneumatic cylinder that strokes at a constant speed, with its own time
+ * for each direction (retracting is usually quicker, with the rod taking up
+ * part of that side). Position runs from 0, retracted, to 1, extended. A
+ * double solenoid that's turned off traps the air, so the cylinder holds.
+ */
+public class PneumaticCylinderSim extends ControlledActuatorLinearSim
+{
+
+    private final double mExtendVelocity, mRetractVelocity;
+
+    /**
+     * @param extendTime seconds for a full stroke out
+     * @param retractTime seconds for a full stroke in
+     */
+    public PneumaticCylinderSim(double extendTime, double retractTime)
+    {
+        super(0, 1, 1 / extendTime);
+        mExtendVelocity = 1 / extendTime;
+        mRetractVelocity = 1 / retractTime;
+    }
+
+    public void set(boolean extend)
+    {
+        mVelocity = extend ? mExtendVelocity : mRetractVelocity;
+        setCommandedPosition(extend ? mMaxPosition : mMinPosition);
+    }
+
+    public void hold()
+    {
+        setCommandedPosition(mCurrentPosition);
+    }
+
+    public boolean isExtended()
+    {
+        return mCurrentPosition >= mMaxPosition;
+    }
+
+    public boolean isRetracted()
+    {
+        return mCurrentPosition <= mMinPosition;
+    }
+}
@@ -0,0 +1,39 @@
+package com.spartronics4915.lib.physics;
+
+/**
+ * A roller on a motor with no load to speak of: its speed approaches the
+ * applied output with a single time constant, set by the roller's inertia
+ * and the motor. Speed is a fraction of free speed, so multiplying by the
+ * free surface speed gives how fast it moves whatever it's touching.
+ */
+public class RollerSim
+{
+
+    private final double mTimeConstant; // Seconds to get ~63% of the way
+    private double mSpeed = 0; // Fraction of free speed
+
+    public RollerSim(double timeConstant)
+    {
+        mTimeConstant = timeConstant;
+    }
+
+    /**
+     * @param output fraction of full voltage applied
+     * @return the new speed
+     */
+    public double update(double timeStep, double output)
+    {
+        mSpeed += (output - mSpeed) * (1 - Math.exp(-timeStep / mTimeConstant));
+        return mSpeed;
+    }
+
+    public double getSpeed()
+    {
+        return mSpeed;
+    }
+
+    public void reset()
+    {
+        mSpeed = 0;
+    }
+}
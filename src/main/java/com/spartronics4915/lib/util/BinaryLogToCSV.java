@@ -0,0 +1,128 @@
+package com.spartronics4915.lib.util;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Converts a BinaryLogWriter file to CSV, off the robot:
+ *
+ * <pre>
+ * java -cp robot.jar com.spartronics4915.lib.util.BinaryLogToCSV DRIVE-LOGS.bin [DRIVE-LOGS.csv]
+ * </pre>
+ *
+ * The output has the same layout as ReflectingCSVWriter's. Like that writer,
+ * each column's decoder is picked once from the header, so rows don't switch
+ * on the column type.
+ */
+public class BinaryLogToCSV
+{
+
+    @FunctionalInterface
+    private interface Column
+    {
+        void append(DataInputStream data, StringBuilder line) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 1 || args.length > 2)
+        {
+            System.err.println("usage: BinaryLogToCSV input.bin [output.csv]");
+            System.exit(1);
+        }
+        Path in = Paths.get(args[0]);
+        Path out = args.length > 1 ? Paths.get(args[1])
+                : in.resolveSibling(in.getFileName().toString().replaceFirst("\\.bin$", "") + ".csv");
+        int records = convert(in, out);
+        System.out.println("Wrote " + records + " records to " + out);
+    }
+
+    /**
+     * @return the number of records converted
+     */
+    public static int convert(Path in, Path out) throws IOException
+    {
+        try (InputStream fileIn = Files.newInputStream(in);
+                DataInputStream data = new DataInputStream(new BufferedInputStream(fileIn));
+                PrintWriter writer = new PrintWriter(Files.newBufferedWriter(out)))
+        {
+            if (data.readInt() != BinaryLogWriter.kMagic)
+                throw new IOException(in + " isn't a binary log");
+            final short version = data.readShort();
+            if (version != BinaryLogWriter.kVersion)
+                throw new IOException(in + " has unsupported version " + version);
+            data.readUTF(); // Class name, for humans
+
+            final int columns = data.readShort();
+            final Column[] decoders = new Column[columns];
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < columns; i++)
+            {
+                decoders[i] = compileColumn((char) data.readByte());
+                if (i > 0)
+                    line.append(", ");
+                line.append(data.readUTF());
+            }
+            data.readInt(); // Record size; we know it from the types
+            writer.println(line);
+
+            int records = 0;
+            while (true)
+            {
+                final int marker = data.read();
+                // Zeroes mean we've reached space that was mapped but never written
+                if (marker != BinaryLogWriter.kRecordMarker)
+                    break;
+                line.setLength(0);
+                try
+                {
+                    for (int i = 0; i < columns; i++)
+                    {
+                        if (i > 0)
+                            line.append(", ");
+                        decoders[i].append(data, line);
+                    }
+                }
+                catch (EOFException e)
+                {
+                    break; // Partial last record
+                }
+                writer.println(line);
+                records++;
+            }
+            return records;
+        }
+    }
+
+    private static Column compileColumn(char type) throws IOException
+    {
+        switch (type)
+        {
+            case 'D':
+                return (data, line) -> line.append(data.readDouble());
+            case 'F':
+                return (data, line) -> line.append(data.readFloat());
+            case 'J':
+                return (data, line) -> line.append(data.readLong());
+            case 'I':
+                return (data, line) -> line.append(data.readInt());
+            case 'S':
+                return (data, line) -> line.append(data.readShort());
+            case 'B':
+                return (data, line) -> line.append(data.readByte());
+            case 'Z':
+                return (data, line) -> line.append(data.readByte() != 0);
+            case 'C':
+                return (data, line) -> line.append(data.readChar());
+            default:
+                throw new IOException("Unknown column type " + type);
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.spartronics4915.lib.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Logs objects as fixed-width binary records, cheaply enough to call every
+ * loop. BinaryLogToCSV turns the file into the same CSV that
+ * ReflectingCSVWriter would have produced.
+ *
+ * The schema comes from the public fields of the class, once, and each field
+ * gets a typed MethodHandle getter then, so add doesn't reflect. Every public
+ * instance field has to be a primitive; the constructor throws otherwise, so
+ * flatten anything else into a plain data point before logging it. Records
+ * are written straight into a memory-mapped
+ * region of the file; the OS writes the pages back, so add never waits on
+ * flash unless it has to map the next region.
+ *
+ * <pre>
+ * header: int magic, short version, UTF class name, short column count,
+ *         then per column a type byte (JVM descriptor: D F J I S B Z C)
+ *         and a UTF name, then int record size
+ * record: byte kRecordMarker, then each column big-endian
+ * </pre>
+ *
+ * A file that wasn't closed properly ends with zeroed space rather than
+ * records, which readers stop at because there's no record marker.
+ */
+public class BinaryLogWriter<T>
+{
+
+    public static final int kMagic = 0x53344C47; // "S4LG"
+    public static final short kVersion = 1;
+    public static final byte kRecordMarker = 'R';
+
+    private static final int kRegionBytes = 1 << 20;
+
+    @FunctionalInterface
+    private interface Column
+    {
+        void put(Object row, ByteBuffer buf) throws Throwable;
+    }
+
+    private final Field[] mFields;
+    private final char[] mTypes;
+    private final Column[] mColumns;
+    private final int mRecordBytes;
+    private FileChannel mChannel = null;
+    private MappedByteBuffer mRegion = null;
+    private long mRegionStart;
+
+    /**
+     * @throws IllegalArgumentException if typeClass has a public instance
+     *                                  field that isn't a primitive
+     */
+    public BinaryLogWriter(String fileName, Class<T> typeClass)
+    {
+        List<Field> fields = new ArrayList<>();
+        for (Field field : typeClass.getFields())
+        {
+            if (Modifier.isStatic(field.getModifiers()))
+                continue;
+            if (!field.getType().isPrimitive())
+            {
+                throw new IllegalArgumentException("BinaryLogWriter can't log " + typeClass.getSimpleName() + "."
+                        + field.getName() + " (" + field.getType().getSimpleName() + "); flatten it into primitives");
+            }
+            fields.add(field);
+        }
+
+        mFields = fields.toArray(new Field[0]);
+        mTypes = new char[mFields.length];
+        mColumns = new Column[mFields.length];
+        int recordBytes = 1;
+        for (int i = 0; i < mFields.length; i++)
+        {
+            mTypes[i] = typeCode(mFields[i].getType());
+            mColumns[i] = compileColumn(mFields[i], mTypes[i]);
+            recordBytes += typeSize(mTypes[i]);
+        }
+        mRecordBytes = recordBytes;
+
+        try
+        {
+            byte[] header = buildHeader(typeClass.getName());
+            mChannel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            ByteBuffer buf = ByteBuffer.wrap(header);
+            while (buf.hasRemaining())
+                mChannel.write(buf);
+            mapRegion(header.length);
+        }
+        catch (IOException e)
+        {
+            Logger.warning("BinaryLogWriter couldn't open " + fileName + ": " + e);
+            close();
+        }
+    }
+
+    private byte[] buildHeader(String typeName) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(kMagic);
+        out.writeShort(kVersion);
+        out.writeUTF(typeName);
+        out.writeShort(mFields.length);
+        for (int i = 0; i < mFields.length; i++)
+        {
+            out.writeByte(mTypes[i]);
+            out.writeUTF(mFields[i].getName());
+        }
+        out.writeInt(mRecordBytes);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static Column compileColumn(Field field, char type)
+    {
+        final MethodHandle getter;
+        try
+        {
+            getter = MethodHandles.lookup().unreflectGetter(field);
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new IllegalArgumentException("BinaryLogWriter can't read " + field, e);
+        }
+
+        switch (type)
+        {
+            case 'D':
+            {
+                final MethodHandle h = getter.asType(MethodType.methodType(double.class, Object.class));
+                return (row, buf) -> buf.putDouble((double) h.invokeExact(row));
+            }
+            case 'F':
+            {
+                final MethodHandle h = getter.asType(MethodType.methodType(float.class, Object.class));
+                return (row, buf) -> buf.putFloat((float) h.invokeExact(row));
+            }
+            case 'J':
+            {
+                final MethodHandle h = getter.asType(MethodType.methodType(long.class, Object.class));
+                return (row, buf) -> buf.putLong((long) h.invokeExact(row));
+            }
+            case 'I':
+            {
+                final MethodHandle h = getter.asType(MethodType.methodType(int.class, Object.class));
+                return (row, buf) -> buf.putInt((int) h.invokeExact(row));
+            }
+            case 'S':
+            {
+                final MethodHandle h = getter.asType(MethodType.methodType(short.class, Object.class));
+                return (row, buf) -> buf.putShort((short) h.invokeExact(row));
+            }
+            case 'B':
+            {
+                final MethodHandle h = getter.asType(MethodType.methodType(byte.class, Object.class));
+                return (row, buf) -> buf.put((byte) h.invokeExact(row));
+            }
+            case 'Z':
+            {
+                final MethodHandle h = getter.asType(MethodType.methodType(boolean.class, Object.class));
+                return (row, buf) -> buf.put((byte) ((boolean) h.invokeExact(row) ? 1 : 0));
+            }
+            default:
+            {
+                final MethodHandle h = getter.asType(MethodType.methodType(char.class, Object.class));
+                return (row, buf) -> buf.putChar((char) h.invokeExact(row));
+            }
+        }
+    }
+
+    private void mapRegion(long start) throws IOException
+    {
+        mRegionStart = start;
+        mRegion = mChannel.map(FileChannel.MapMode.READ_WRITE, start, kRegionBytes);
+    }
+
+    public synchronized void add(T value)
+    {
+        if (mRegion == null)
+            return;
+        try
+        {
+            if (mRegion.remaining() < mRecordBytes)
+                mapRegion(mRegionStart + mRegion.position());
+
+            mRegion.put(kRecordMarker);
+            for (Column column : mColumns)
+                column.put(value, mRegion);
+        }
+        catch (Throwable t)
+        {
+            Logger.warning("BinaryLogWriter stopped logging: " + t);
+            close();
+        }
+    }
+
+    /**
+     * Asks the OS to write out what's been logged so far.
+     */
+    public synchronized void flush()
+    {
+        if (mRegion != null)
+            mRegion.force();
+    }
+
+    /**
+     * Flushes and trims the file to the records actually written. The writer
+     * ignores adds afterwards.
+     */
+    public synchronized void close()
+    {
+        try
+        {
+            if (mRegion != null)
+            {
+                mRegion.force();
+                mChannel.truncate(mRegionStart + mRegion.position());
+            }
+            if (mChannel != null)
+                mChannel.close();
+        }
+        catch (IOException e)
+        {
+            Logger.warning("BinaryLogWriter couldn't close: " + e);
+        }
+        mRegion = null;
+        mChannel = null;
+    }
+
+    public int getRecordBytes()
+    {
+        return mRecordBytes;
+    }
+
+    static char typeCode(Class<?> type)
+    {
+        if (type == double.class)
+            return 'D';
+        if (type == float.class)
+            return 'F';
+        if (type == long.class)
+            return 'J';
+        if (type == int.class)
+            return 'I';
+        if (type == short.class)
+            return 'S';
+        if (type == byte.class)
+            return 'B';
+        if (type == boolean.class)
+            return 'Z';
+        return 'C';
+    }
+
+    static int typeSize(char code)
+    {
+        switch (code)
+        {
+            case 'D':
+            case 'J':
+                return 8;
+            case 'F':
+            case 'I':
+                return 4;
+            case 'S':
+            case 'C':
+                return 2;
+            default:
+                return 1;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.spartronics4915.lib.util;
+
+/**
+ * Where robot code gets the time. This is FPGA time unless a simulation or
+ * test has installed another IClock with setSource; use Clock.getTime()
+ * rather than Timer.getFPGATimestamp() so that works everywhere.
+ *
+ * This is for timestamps and timeouts. Measuring how long our own code takes
+ * (TimingHistogram, Profiler) should keep using System.nanoTime.
+ */
+public class Clock
+{
+
+    private static volatile IClock sSource = new FPGAClock();
+
+    public static double getTime()
+    {
+        return sSource.getTime();
+    }
+
+    public static IClock getSource()
+    {
+        return sSource;
+    }
+
+    /**
+     * Install source as the clock for everything. Do this before starting
+     * loops; switching clocks mid-run makes time jump.
+     */
+    public static void setSource(IClock source)
+    {
+        sSource = source;
+    }
+}
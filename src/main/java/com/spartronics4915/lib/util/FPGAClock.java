@@ -0,0 +1,16 @@
+package com.spartronics4915.lib.util;
+
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * The real thing: seconds since the FPGA started.
+ */
+public class FPGAClock implements IClock
+{
+
+    @Override
+    public double getTime()
+    {
+        return Timer.getFPGATimestamp();
+    }
+}
@@ -0,0 +1,12 @@
+package com.spartronics4915.lib.util;
+
+/**
+ * A source of time, in seconds. Robot code reads it through Clock.getTime so
+ * a simulation can swap in a SimulatedClock and run the same loops faster
+ * (or slower) than real time.
+ */
+public interface IClock
+{
+
+    public double getTime();
+}
@@ -0,0 +1,205 @@
+package com.spartronics4915.lib.util;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Garbage collection and per-thread allocation, as deltas between calls to
+ * sample().
+ *
+ * Threads we care about call registerCurrentThread with a label ("Auto",
+ * "LidarReader", ...), and each sample reports how many bytes each of them
+ * allocated since the last one. Registering a label again (say, a new auto
+ * thread) replaces the old thread. Allocation counts need HotSpot's
+ * com.sun.management.ThreadMXBean; on a JVM without it they read as zero and
+ * only GC numbers are reported.
+ */
+public class JVMStats
+{
+
+    private static final Map<String, Thread> sThreads = new LinkedHashMap<>();
+
+    public static void registerCurrentThread(String label)
+    {
+        synchronized (sThreads)
+        {
+            sThreads.put(label, Thread.currentThread());
+        }
+    }
+
+    private static class ThreadSample
+    {
+
+        long mThreadId = -1;
+        long mLastBytes = 0;
+        long mDeltaBytes = 0;
+    }
+
+    private final List<GarbageCollectorMXBean> mCollectors = ManagementFactory.getGarbageCollectorMXBeans();
+    private final MemoryMXBean mMemory = ManagementFactory.getMemoryMXBean();
+    private final com.sun.management.ThreadMXBean mThreadBean;
+    private final Map<String, ThreadSample> mSamples = new LinkedHashMap<>();
+    private final List<Thread> mThreadScratch = new ArrayList<>();
+    private final List<String> mLabelScratch = new ArrayList<>();
+    private final List<String> mLabels = new ArrayList<>(); // mSamples' keys, only added to
+    private final List<String> mLabelsView = Collections.unmodifiableList(mLabels);
+
+    private long mLastSampleNanos;
+    private long mLastGCCount;
+    private long mLastGCMillis;
+    private double mSeconds = 0;
+    private long mGCCount = 0;
+    private long mGCMillis = 0;
+
+    public JVMStats()
+    {
+        com.sun.management.ThreadMXBean threadBean = null;
+        try
+        {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean)
+            {
+                threadBean = (com.sun.management.ThreadMXBean) bean;
+                if (threadBean.isThreadAllocatedMemorySupported())
+                    threadBean.setThreadAllocatedMemoryEnabled(true);
+                else
+                    threadBean = null;
+            }
+        }
+        catch (UnsupportedOperationException | SecurityException e)
+        {
+            threadBean = null;
+        }
+        if (threadBean == null)
+            Logger.notice("JVMStats: per-thread allocation counts aren't available on this JVM");
+        mThreadBean = threadBean;
+
+        mLastSampleNanos = System.nanoTime();
+        mLastGCCount = totalGCCount();
+        mLastGCMillis = totalGCMillis();
+    }
+
+    public synchronized void sample()
+    {
+        final long now = System.nanoTime();
+        mSeconds = (now - mLastSampleNanos) / 1e9;
+        mLastSampleNanos = now;
+
+        final long count = totalGCCount();
+        final long millis = totalGCMillis();
+        mGCCount = count - mLastGCCount;
+        mGCMillis = millis - mLastGCMillis;
+        mLastGCCount = count;
+        mLastGCMillis = millis;
+
+        mThreadScratch.clear();
+        mLabelScratch.clear();
+        synchronized (sThreads)
+        {
+            for (Map.Entry<String, Thread> e : sThreads.entrySet())
+            {
+                mLabelScratch.add(e.getKey());
+                mThreadScratch.add(e.getValue());
+            }
+        }
+        for (int i = 0; i < mLabelScratch.size(); i++)
+        {
+            ThreadSample s = mSamples.get(mLabelScratch.get(i));
+            if (s == null)
+            {
+                mSamples.put(mLabelScratch.get(i), s = new ThreadSample());
+                mLabels.add(mLabelScratch.get(i));
+            }
+            final long id = mThreadScratch.get(i).getId();
+            // -1 once the thread has exited
+            final long bytes = mThreadBean == null ? -1 : mThreadBean.getThreadAllocatedBytes(id);
+            if (bytes < 0)
+            {
+                s.mDeltaBytes = 0;
+            }
+            else if (id != s.mThreadId)
+            {
+                // New thread under this label; start counting from here
+                s.mDeltaBytes = 0;
+                s.mLastBytes = bytes;
+            }
+            else
+            {
+                s.mDeltaBytes = bytes - s.mLastBytes;
+                s.mLastBytes = bytes;
+            }
+            s.mThreadId = id;
+        }
+    }
+
+    private long totalGCCount()
+    {
+        long total = 0;
+        for (int i = 0; i < mCollectors.size(); i++)
+            total += Math.max(0, mCollectors.get(i).getCollectionCount());
+        return total;
+    }
+
+    private long totalGCMillis()
+    {
+        long total = 0;
+        for (int i = 0; i < mCollectors.size(); i++)
+            total += Math.max(0, mCollectors.get(i).getCollectionTime());
+        return total;
+    }
+
+    /**
+     * @return seconds covered by the last sample
+     */
+    public synchronized double getSeconds()
+    {
+        return mSeconds;
+    }
+
+    /**
+     * @return collections that finished during the last sample
+     */
+    public synchronized long getGCCount()
+    {
+        return mGCCount;
+    }
+
+    /**
+     * @return milliseconds spent collecting during the last sample, summed
+     *         across collectors
+     */
+    public synchronized long getGCMillis()
+    {
+        return mGCMillis;
+    }
+
+    public long getHeapUsedBytes()
+    {
+        return mMemory.getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * @return labels of registered threads, in registration order. This is
+     *         a read-only view that sample() adds to when a new label turns
+     *         up, so don't read it while another thread may be sampling
+     */
+    public synchronized List<String> getThreadLabels()
+    {
+        return mLabelsView;
+    }
+
+    /**
+     * @return bytes the labelled thread allocated during the last sample
+     */
+    public synchronized long getAllocatedBytes(String label)
+    {
+        ThreadSample s = mSamples.get(label);
+        return s == null ? 0 : s.mDeltaBytes;
+    }
+}
@@ -0,0 +1,138 @@
+package com.spartronics4915.lib.util;
+
+/**
+ * A streaming alpha-beta-gamma filter that tracks a measured quantity along
+ * with its first and second time derivatives. We call these position, velocity
+ * and acceleration, but the filter doesn't care what the measurement is: feed
+ * it a velocity and getVelocity() returns a smoothed acceleration.
+ *
+ * Each update predicts forward under constant acceleration, then corrects each
+ * term by a fixed fraction of the residual. Compared to finite differencing
+ * this trades a little lag for a lot less noise, and it handles an irregular
+ * loop period because dt is taken from the timestamps.
+ *
+ * This is meant to be called from loops, so update() doesn't allocate.
+ */
+public class KinematicFilter
+{
+
+    private final double mAlpha;
+    private final double mBeta;
+    private final double mGamma;
+
+    private double mPosition = 0.0;
+    private double mVelocity = 0.0;
+    private double mAcceleration = 0.0;
+    private double mLastTimestamp = 0.0;
+    private boolean mInitialized = false;
+
+    /**
+     * @param alpha position correction gain, (0, 1]
+     * @param beta  velocity correction gain, (0, 2)
+     * @param gamma acceleration correction gain; pass 0 for a plain alpha-beta
+     *              filter that assumes constant velocity
+     */
+    public KinematicFilter(double alpha, double beta, double gamma)
+    {
+        if (alpha <= 0.0 || alpha > 1.0 || beta <= 0.0 || beta >= 2.0 || gamma < 0.0)
+            throw new IllegalArgumentException("Unstable filter gains: " + alpha + ", " + beta + ", " + gamma);
+        mAlpha = alpha;
+        mBeta = beta;
+        mGamma = gamma;
+    }
+
+    /**
+     * Builds a critically damped (fading memory) filter from a single
+     * smoothing factor. Larger values put more weight on past samples, so
+     * 0.5 is fairly responsive and 0.9 is very smooth.
+     *
+     * @param theta smoothing factor, [0, 1)
+     */
+    public static KinematicFilter fromSmoothingFactor(double theta)
+    {
+        final double oneMinus = 1.0 - theta;
+        return new KinematicFilter(
+                1.0 - theta * theta * theta,
+                1.5 * oneMinus * oneMinus * (1.0 + theta),
+                0.5 * oneMinus * oneMinus * oneMinus);
+    }
+
+    /**
+     * Forgets all state. The next update will be taken as the initial position,
+     * with zero velocity and acceleration.
+     */
+    public void reset()
+    {
+        mPosition = 0.0;
+        mVelocity = 0.0;
+        mAcceleration = 0.0;
+        mInitialized = false;
+    }
+
+    /**
+     * Seeds the filter with a known position at rest.
+     */
+    public void reset(double timestamp, double position)
+    {
+        reset();
+        mPosition = position;
+        mLastTimestamp = timestamp;
+        mInitialized = true;
+    }
+
+    /**
+     * Incorporates a new measurement. Samples that are not newer than the last
+     * one are ignored.
+     *
+     * @param timestamp   time of the measurement in seconds
+     * @param measurement measured position
+     */
+    public void update(double timestamp, double measurement)
+    {
+        if (!mInitialized)
+        {
+            reset(timestamp, measurement);
+            return;
+        }
+
+        final double dt = timestamp - mLastTimestamp;
+        if (dt <= Util.kEpsilon)
+            return;
+        mLastTimestamp = timestamp;
+
+        // Predict
+        final double predictedPosition = mPosition + mVelocity * dt + 0.5 * mAcceleration * dt * dt;
+        final double predictedVelocity = mVelocity + mAcceleration * dt;
+
+        // Correct
+        final double residual = measurement - predictedPosition;
+        mPosition = predictedPosition + mAlpha * residual;
+        mVelocity = predictedVelocity + mBeta * residual / dt;
+        mAcceleration = mAcceleration + 2.0 * mGamma * residual / (dt * dt);
+    }
+
+    public boolean isInitialized()
+    {
+        return mInitialized;
+    }
+
+    public double getPosition()
+    {
+        return mPosition;
+    }
+
+    public double getVelocity()
+    {
+        return mVelocity;
+    }
+
+    public double getAcceleration()
+    {
+        return mAcceleration;
+    }
+
+    public double getLastTimestamp()
+    {
+        return mLastTimestamp;
+    }
+}
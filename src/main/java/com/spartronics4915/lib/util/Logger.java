@@ -1,25 +1,57 @@
 package com.spartronics4915.lib.util;
 
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
 import java.util.UUID;
 
 /**
- * Tracks start-up and caught crash events, logging them to a file which dosn't
- * roll over
+ * Tracks start-up and caught crash events, logging them to a file which rolls
+ * over to crash_tracking.1.txt (and so on) when it gets large.
+ *
+ * Notices, warnings and errors are queued in a fixed-size ring and written by
+ * a background thread, so logging from a loop never waits on flash. The
+ * thread and a shutdown hook that flushes the ring start with the first
+ * queued entry. If the ring fills, entries are dropped and the drop is noted
+ * in the file. Crashes
+ * (logThrowableCrash, exception) are written and synced before returning,
+ * after anything already queued, since we may not get another chance.
  */
 public class Logger
 {
 
     private static final UUID RUN_INSTANCE_UUID = UUID.randomUUID();
     public static int sVerbosity = 2; // 0: notices and above,  1: info and above, 2: all
-    private static final DateFormat s_dateFormat = new SimpleDateFormat("hh:mm:ss");
+    private static final DateTimeFormatter kTimeFormat = DateTimeFormatter.ofPattern("hh:mm:ss");
+
+    private static Path sLogPath = Paths.get(System.getProperty("user.home"), "crash_tracking.txt");
+    private static final long kMaxLogBytes = 1024 * 1024;
+    private static final int kMaxRotatedLogs = 3;
+    private static final int kRingSize = 1024;
+    private static final long kWriterPeriodMillis = 250;
+
+    // Pending lines; sHead and sTail only increase, and everything here is guarded by sRing
+    private static final String[] sRing = new String[kRingSize];
+    private static long sHead = 0;
+    private static long sTail = 0;
+    private static long sWritten = 0; // Lines before this have been written out
+    private static long sDropped = 0;
+    private static Thread sWriter = null;
+
+    // The file, its path and the batch being written are guarded by sFileLock
+    private static final Object sFileLock = new Object();
+    private static final StringBuilder sBatch = new StringBuilder();
+    private static FileChannel sChannel = null;
 
     public static void setVerbosity(String nm)
     {
@@ -82,8 +114,10 @@ public class Logger
     {
         StringWriter sw = new StringWriter();
         e.printStackTrace(new PrintWriter(sw));
-        logMarker("EXCEPT  " + e.getMessage() + 
-            " trace:\n" + sw.toString());
+        String mark = "EXCEPT  " + e.getMessage() +
+            " trace:\n" + sw.toString();
+        printMarker(mark);
+        writeSynchronously(RUN_INSTANCE_UUID.toString() + ", " + mark + System.lineSeparator());
     }
 
     public static void error(String m)
@@ -119,9 +153,7 @@ public class Logger
 
     private static String getTimeStamp()
     {
-        Date now = new Date();
-        String nowstr = s_dateFormat.format(now) + " ";
-        return nowstr;
+        return kTimeFormat.format(LocalTime.now()) + " ";
     }
 
     private static void logMarker(String mark)
@@ -137,23 +169,216 @@ public class Logger
     private static void logMarker(String mark, Throwable nullableException)
     {
         printMarker(mark);
-        if (nullableException != null)
-            nullableException.printStackTrace();
-        try (PrintWriter writer = new PrintWriter(new FileWriter(Paths.get(System.getProperty("user.home"), "crash_tracking.txt").toString(), true)))
+        if (nullableException == null)
+        {
+            enqueue(RUN_INSTANCE_UUID.toString() + ", " + mark + System.lineSeparator());
+            return;
+        }
+
+        nullableException.printStackTrace();
+        StringWriter sw = new StringWriter();
+        nullableException.printStackTrace(new PrintWriter(sw));
+        writeSynchronously(RUN_INSTANCE_UUID.toString() + ", " + mark + ", " + sw.toString() + System.lineSeparator());
+    }
+
+    private static void enqueue(String line)
+    {
+        synchronized (sRing)
         {
-            writer.print(RUN_INSTANCE_UUID.toString());
-            writer.print(", ");
-            writer.print(mark);
-            if (nullableException != null)
+            if (sWriter == null)
+                startWriter();
+            if (sHead - sTail >= kRingSize)
+            {
+                sDropped++;
+                return;
+            }
+            sRing[(int) (sHead % kRingSize)] = line;
+            sHead++;
+            sRing.notifyAll();
+        }
+    }
+
+    // Caller holds sRing
+    private static void startWriter()
+    {
+        sWriter = new Thread(Logger::runWriter, "LoggerWriter");
+        sWriter.setDaemon(true);
+        sWriter.setPriority(Thread.MIN_PRIORITY);
+        sWriter.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Logger::flush, "LoggerFlush"));
+    }
+
+    /**
+     * Writes out everything queued so far, and waits until it's on disk.
+     */
+    public static void flush()
+    {
+        writeSynchronously(null);
+    }
+
+    /**
+     * Waits until the writer thread has written out everything queued before
+     * this call. Unlike flush, this leaves the writing to the writer thread,
+     * so tests can check that path without sleeping.
+     */
+    static void awaitWritten() throws InterruptedException
+    {
+        synchronized (sRing)
+        {
+            final long target = sHead;
+            sRing.notifyAll(); // Wake the writer, rather than waiting out its period
+            while (sWritten < target)
+                sRing.wait();
+        }
+    }
+
+    /**
+     * Flushes and closes the current log, then logs to path (and its rotated
+     * siblings) from now on. Lets tests log somewhere other than home.
+     */
+    static void setLogPath(Path path)
+    {
+        synchronized (sFileLock)
+        {
+            flush();
+            closeChannel();
+            sLogPath = path;
+        }
+    }
+
+    private static void writeSynchronously(String line)
+    {
+        synchronized (sFileLock)
+        {
+            sBatch.setLength(0);
+            final long drained = drainTo(sBatch);
+            if (line != null)
+                sBatch.append(line);
+            write(sBatch, true);
+            markWritten(drained);
+        }
+    }
+
+    /**
+     * @return the ring position drained up to
+     */
+    private static long drainTo(StringBuilder batch)
+    {
+        synchronized (sRing)
+        {
+            while (sTail < sHead)
+            {
+                final int i = (int) (sTail % kRingSize);
+                batch.append(sRing[i]);
+                sRing[i] = null;
+                sTail++;
+            }
+            if (sDropped > 0)
             {
-                writer.print(", ");
-                nullableException.printStackTrace(writer);
+                batch.append(RUN_INSTANCE_UUID.toString()).append(", WARNING Logger dropped ").append(sDropped)
+                        .append(" entries").append(System.lineSeparator());
+                sDropped = 0;
             }
-            writer.println();
+            return sTail;
+        }
+    }
+
+    // Even if the write failed; awaitWritten shouldn't hang on a bad disk
+    private static void markWritten(long drained)
+    {
+        synchronized (sRing)
+        {
+            if (drained > sWritten)
+                sWritten = drained;
+            sRing.notifyAll();
+        }
+    }
+
+    private static void runWriter()
+    {
+        while (true)
+        {
+            try
+            {
+                synchronized (sRing)
+                {
+                    if (sHead == sTail && sDropped == 0)
+                        sRing.wait(kWriterPeriodMillis);
+                }
+                // Let a burst of lines collect before we touch the file
+                Thread.sleep(kWriterPeriodMillis / 5);
+            }
+            catch (InterruptedException e)
+            {
+                return;
+            }
+
+            synchronized (sFileLock)
+            {
+                sBatch.setLength(0);
+                final long drained = drainTo(sBatch);
+                write(sBatch, false);
+                markWritten(drained);
+            }
+        }
+    }
+
+    // Caller holds sFileLock
+    private static void write(StringBuilder batch, boolean sync)
+    {
+        if (batch.length() == 0 && !sync)
+            return;
+        try
+        {
+            if (sChannel == null)
+                sChannel = FileChannel.open(sLogPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND);
+
+            ByteBuffer buf = ByteBuffer.wrap(batch.toString().getBytes(StandardCharsets.UTF_8));
+            while (buf.hasRemaining())
+                sChannel.write(buf);
+            if (sync)
+                sChannel.force(false);
+            if (sChannel.size() >= kMaxLogBytes)
+                rotate();
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+            closeChannel(); // Try again from scratch next time
+        }
+    }
+
+    // Caller holds sFileLock
+    private static void rotate() throws IOException
+    {
+        closeChannel();
+        for (int i = kMaxRotatedLogs - 1; i >= 1; i--)
+        {
+            Path from = rotatedPath(i);
+            if (Files.exists(from))
+                Files.move(from, rotatedPath(i + 1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.move(sLogPath, rotatedPath(1), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static Path rotatedPath(int n)
+    {
+        return sLogPath.resolveSibling("crash_tracking." + n + ".txt");
+    }
+
+    private static void closeChannel()
+    {
+        if (sChannel == null)
+            return;
+        try
+        {
+            sChannel.close();
         }
         catch (IOException e)
         {
             e.printStackTrace();
         }
+        sChannel = null;
     }
 }
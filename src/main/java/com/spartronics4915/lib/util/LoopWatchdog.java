@@ -0,0 +1,254 @@
+package com.spartronics4915.lib.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * A sampling profiler for a periodic loop that only wakes up when the loop is
+ * late. The loop brackets each cycle with cycleStarted/cycleFinished. A
+ * daemon thread sleeps until the running cycle's deadline (and indefinitely
+ * between cycles), and while a cycle has been running longer than the
+ * threshold it grabs the loop thread's stack every samplePeriod.
+ *
+ * Each sample is counted against the frame it was in, plus the innermost
+ * robot-code frame if that's different (so time in a WPILib or CTRE call
+ * still points back at whoever made it). Every overrun gets a one-line note
+ * in the log, at most once a second, and logReport dumps the busiest sites.
+ *
+ * On time, all this costs is a few volatile writes and an unpark per cycle,
+ * and the watch thread waking once at each cycle's start and deadline.
+ */
+public class LoopWatchdog
+{
+
+    private static final String kOurPackage = "com.spartronics4915.";
+    private static final double kOverrunLogPeriod = 1.0; // Seconds
+    private static final int kReportSites = 10;
+
+    private final String mName;
+    private final long mThresholdNanos;
+    private final long mSampleNanos;
+    private final LongSupplier mNanoTime;
+
+    private volatile Thread mLoopThread = null;
+    private volatile long mCycleStart = 0;
+    private volatile long mCycle = 0;
+    private volatile Thread mWatchThread = null;
+
+    // Only touched by the watch thread, apart from reads under mSites' lock
+    private final Map<String, int[]> mSites = new HashMap<>();
+    private int mTotalSamples = 0;
+    private int mOverruns = 0;
+
+    // The overrun being sampled, if any; watch thread only
+    private long mOverrunCycle = -1;
+    private long mOverrunStart = 0;
+    private int mOverrunSamples = 0;
+    private String mOverrunSite = null;
+    private long mNextLog;
+
+    /**
+     * @param name         shown in log lines
+     * @param threshold    seconds a cycle may run before we start sampling it
+     * @param samplePeriod seconds between samples while it's overrunning
+     */
+    public LoopWatchdog(String name, double threshold, double samplePeriod)
+    {
+        this(name, threshold, samplePeriod, System::nanoTime);
+    }
+
+    // For tests, which call sample() themselves with a fake time
+    LoopWatchdog(String name, double threshold, double samplePeriod, LongSupplier nanoTime)
+    {
+        mName = name;
+        mThresholdNanos = (long) (threshold * 1e9);
+        mSampleNanos = (long) (samplePeriod * 1e9);
+        mNanoTime = nanoTime;
+        mNextLog = nanoTime.getAsLong();
+    }
+
+    /**
+     * Call from the loop thread at the top of each cycle.
+     */
+    public void cycleStarted()
+    {
+        mLoopThread = Thread.currentThread();
+        mCycle++;
+        mCycleStart = mNanoTime.getAsLong();
+        final Thread watchThread = mWatchThread;
+        if (watchThread != null)
+            LockSupport.unpark(watchThread); // Sleeping until a cycle starts
+    }
+
+    /**
+     * Call from the loop thread once the cycle's work is done.
+     */
+    public void cycleFinished()
+    {
+        mCycleStart = 0;
+    }
+
+    public synchronized void start()
+    {
+        if (mWatchThread != null)
+            return;
+        mWatchThread = new Thread(new CrashTrackingRunnable()
+        {
+
+            @Override
+            public void runCrashTracked()
+            {
+                watch();
+            }
+        }, mName + "Watchdog");
+        mWatchThread.setDaemon(true);
+        mWatchThread.start();
+    }
+
+    private void watch()
+    {
+        while (true)
+        {
+            final long wait = sample();
+            if (wait < 0)
+                LockSupport.park(this);
+            else
+                LockSupport.parkNanos(this, wait);
+        }
+    }
+
+    /**
+     * Checks on the loop once, as the watch thread does each time it wakes:
+     * takes a stack sample if the cycle is late, and counts the overrun once
+     * it's over.
+     *
+     * @return nanoseconds until the next check is due, or -1 if there's no
+     *         cycle running and nothing to do until one starts
+     */
+    long sample()
+    {
+        final long start = mCycleStart;
+        final long cycle = mCycle;
+        final long now = mNanoTime.getAsLong();
+        final boolean late = start != 0 && now - start > mThresholdNanos;
+
+        // The overrun we were sampling has ended
+        if (mOverrunCycle >= 0 && (!late || cycle != mOverrunCycle))
+        {
+            synchronized (mSites)
+            {
+                mOverruns++;
+            }
+            if (now - mNextLog >= 0)
+            {
+                mNextLog = now + (long) (kOverrunLogPeriod * 1e9);
+                Logger.warning(mName + " overran, at least " + String.format("%.1f", (now - mOverrunStart) / 1e6)
+                        + " ms, " + mOverrunSamples + " samples, last in " + mOverrunSite);
+            }
+            mOverrunCycle = -1;
+        }
+        if (start == 0)
+            return -1;
+        if (!late)
+            return start + mThresholdNanos - now + 1; // Just past the deadline
+
+        final Thread thread = mLoopThread;
+        final StackTraceElement[] stack = thread.getStackTrace();
+        // Throw the sample away if the cycle finished while we were
+        // walking the stack; it'd be from the next cycle or from idle
+        if (mCycleStart != start || stack.length == 0)
+            return mSampleNanos;
+
+        if (mOverrunCycle < 0)
+        {
+            mOverrunCycle = cycle;
+            mOverrunStart = start;
+            mOverrunSamples = 0;
+        }
+        mOverrunSamples++;
+        mOverrunSite = siteOf(stack);
+        synchronized (mSites)
+        {
+            int[] count = mSites.get(mOverrunSite);
+            if (count == null)
+                mSites.put(mOverrunSite, count = new int[1]);
+            count[0]++;
+            mTotalSamples++;
+        }
+        return mSampleNanos;
+    }
+
+    private static String siteOf(StackTraceElement[] stack)
+    {
+        final String top = frameName(stack[0]);
+        for (StackTraceElement frame : stack)
+        {
+            if (frame.getClassName().startsWith(kOurPackage))
+            {
+                if (frame == stack[0])
+                    return top;
+                return top + " <- " + frameName(frame);
+            }
+        }
+        return top;
+    }
+
+    private static String frameName(StackTraceElement frame)
+    {
+        String cls = frame.getClassName();
+        return cls.substring(cls.lastIndexOf('.') + 1) + "." + frame.getMethodName() + ":" + frame.getLineNumber();
+    }
+
+    public int getOverruns()
+    {
+        synchronized (mSites)
+        {
+            return mOverruns;
+        }
+    }
+
+    /**
+     * @return sample count per site, busiest first
+     */
+    public List<Map.Entry<String, Integer>> getSites()
+    {
+        List<Map.Entry<String, Integer>> sites = new ArrayList<>();
+        synchronized (mSites)
+        {
+            for (Map.Entry<String, int[]> e : mSites.entrySet())
+                sites.add(new HashMap.SimpleEntry<>(e.getKey(), e.getValue()[0]));
+        }
+        sites.sort((a, b) -> b.getValue() - a.getValue());
+        return sites;
+    }
+
+    /**
+     * Logs the sites we caught the loop in most often, then starts over.
+     */
+    public void logReport()
+    {
+        final List<Map.Entry<String, Integer>> sites = getSites();
+        final int total, overruns;
+        synchronized (mSites)
+        {
+            total = mTotalSamples;
+            overruns = mOverruns;
+            mSites.clear();
+            mTotalSamples = 0;
+            mOverruns = 0;
+        }
+        if (total == 0)
+            return;
+
+        Logger.notice(mName + " watchdog: " + overruns + " overruns, " + total + " samples");
+        for (int i = 0; i < sites.size() && i < kReportSites; i++)
+        {
+            Map.Entry<String, Integer> site = sites.get(i);
+            Logger.notice(String.format("  %5.1f%% %s", 100.0 * site.getValue() / total, site.getKey()));
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.spartronics4915.lib.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decides which tasks run on which tick of a fixed-rate loop. Each task runs
+ * every periodTicks ticks, on ticks where (tick % periodTicks) == phase.
+ *
+ * Tasks that don't care about their phase are given one that spreads slow
+ * work across ticks, so a 50 ms task and a 20 ms task don't both land on the
+ * same 10 ms tick every time.
+ *
+ * Add all tasks, call assignPhases once, then query isDue from the loop.
+ */
+public class MultiRateScheduler
+{
+
+    public static final int kAutoPhase = -1;
+
+    private final List<int[]> mTasks = new ArrayList<>(); // {period, phase}
+    private int[] mPeriods = new int[0];
+    private int[] mPhases = new int[0];
+
+    /**
+     * @param period     desired period in seconds
+     * @param basePeriod period of the loop this runs in, in seconds
+     * @return the period in whole ticks, at least 1
+     */
+    public static int periodToTicks(double period, double basePeriod)
+    {
+        return Math.max(1, (int) Math.round(period / basePeriod));
+    }
+
+    /**
+     * @param periodTicks run every this many ticks
+     * @param phase       which tick within the period to run on, or kAutoPhase
+     * @return an index for isDue
+     */
+    public int addTask(int periodTicks, int phase)
+    {
+        if (periodTicks < 1)
+            throw new IllegalArgumentException("Period must be at least one tick, not " + periodTicks);
+        if (phase != kAutoPhase && (phase < 0 || phase >= periodTicks))
+            throw new IllegalArgumentException("Phase " + phase + " doesn't fit in period " + periodTicks);
+
+        mTasks.add(new int[] { periodTicks, phase });
+        return mTasks.size() - 1;
+    }
+
+    /**
+     * Gives every kAutoPhase task the phase with the least work already
+     * scheduled on it. Slowest tasks are placed first, since they have the
+     * most phases to choose from and faster tasks fill in around them.
+     */
+    public void assignPhases()
+    {
+        final int n = mTasks.size();
+        mPeriods = new int[n];
+        mPhases = new int[n];
+
+        int horizon = 1;
+        for (int i = 0; i < n; i++)
+        {
+            mPeriods[i] = mTasks.get(i)[0];
+            mPhases[i] = mTasks.get(i)[1];
+            horizon = lcm(horizon, mPeriods[i]);
+        }
+
+        // Tasks per tick over one full cycle of all the periods
+        final int[] load = new int[horizon];
+        for (int i = 0; i < n; i++)
+        {
+            if (mPhases[i] != kAutoPhase)
+                addLoad(load, mPeriods[i], mPhases[i]);
+        }
+
+        final boolean[] placed = new boolean[n];
+        for (int count = 0; count < n; count++)
+        {
+            // Pick the slowest unplaced auto task
+            int next = -1;
+            for (int i = 0; i < n; i++)
+            {
+                if (mPhases[i] == kAutoPhase && !placed[i] && (next < 0 || mPeriods[i] > mPeriods[next]))
+                    next = i;
+            }
+            if (next < 0)
+                break;
+
+            int bestPhase = 0, bestLoad = Integer.MAX_VALUE;
+            for (int phase = 0; phase < mPeriods[next]; phase++)
+            {
+                int worst = 0;
+                for (int t = phase; t < horizon; t += mPeriods[next])
+                    worst = Math.max(worst, load[t]);
+                if (worst < bestLoad)
+                {
+                    bestLoad = worst;
+                    bestPhase = phase;
+                }
+            }
+            mPhases[next] = bestPhase;
+            placed[next] = true;
+            addLoad(load, mPeriods[next], bestPhase);
+        }
+    }
+
+    private static void addLoad(int[] load, int period, int phase)
+    {
+        for (int t = phase; t < load.length; t += period)
+            load[t]++;
+    }
+
+    private static int lcm(int a, int b)
+    {
+        int x = a, y = b;
+        while (y != 0)
+        {
+            int r = x % y;
+            x = y;
+            y = r;
+        }
+        return a / x * b;
+    }
+
+    public boolean isDue(int task, long tick)
+    {
+        return tick % mPeriods[task] == mPhases[task];
+    }
+
+    public int getPeriodTicks(int task)
+    {
+        return mPeriods[task];
+    }
+
+    public int getPhase(int task)
+    {
+        return mPhases[task];
+    }
+
+    public int getNumTasks()
+    {
+        return mPeriods.length;
+    }
+}
@@ -0,0 +1,39 @@
+package com.spartronics4915.lib.util;
+
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Resolves SmartDashboard entries under a common prefix once and hands back
+ * the same NetworkTableEntry afterwards. Looking up by a string constant is a
+ * hash lookup with no allocation, where SmartDashboard.getNumber(prefix + nm)
+ * builds a key and walks NetworkTables' own tables on every call.
+ */
+public class NetworkTableEntryCache
+{
+
+    private final String mPrefix;
+    private final Map<String, NetworkTableEntry> mEntries = new HashMap<>();
+
+    /**
+     * @param prefix prepended to every name, e.g. "Drive/"; may be empty
+     */
+    public NetworkTableEntryCache(String prefix)
+    {
+        mPrefix = prefix;
+    }
+
+    public synchronized NetworkTableEntry get(String name)
+    {
+        NetworkTableEntry entry = mEntries.get(name);
+        if (entry == null)
+        {
+            entry = SmartDashboard.getEntry(mPrefix + name);
+            mEntries.put(name, entry);
+        }
+        return entry;
+    }
+}
@@ -0,0 +1,158 @@
+package com.spartronics4915.lib.util;
+
+/**
+ * Named timing spans for periodic code:
+ *
+ * <pre>
+ * private static final int kDriveSpan = Profiler.register("Teleop/drive");
+ * ...
+ * try (Profiler.Span s = Profiler.span(kDriveSpan))
+ * {
+ *     ...
+ * }
+ * </pre>
+ *
+ * Register IDs once (static finals are easiest); after that, opening and
+ * closing a span doesn't allocate. Each ID has a single preallocated Span, so
+ * a given ID must only be used from one thread and can't be nested inside
+ * itself. Different IDs nest fine.
+ *
+ * Min, mean, max and p99 per span are kept in TimingHistograms, published to
+ * the dashboard about once a second, and logged by logSummary.
+ */
+public class Profiler
+{
+
+    public static final int kMaxSpans = 64;
+    private static final double kReportPeriod = 1.0; // Seconds
+
+    public static class Span implements AutoCloseable
+    {
+
+        private final TimingHistogram mTiming;
+        private long mStart;
+        private long mLastNanos;
+
+        private Span(TimingHistogram timing)
+        {
+            mTiming = timing;
+        }
+
+        private Span open()
+        {
+            mStart = System.nanoTime();
+            return this;
+        }
+
+        @Override
+        public void close()
+        {
+            mLastNanos = System.nanoTime() - mStart;
+            mTiming.record(mLastNanos);
+        }
+    }
+
+    private static final Span[] sSpans = new Span[kMaxSpans];
+    private static final TelemetryBus.StringSlot[] sSlots = new TelemetryBus.StringSlot[kMaxSpans];
+    private static volatile int sNumSpans = 0;
+    private static long sNextReportNanos = 0;
+
+    /**
+     * @param name shown in reports, e.g. "Teleop/drive"
+     * @return the ID to pass to span
+     */
+    public static int register(String name)
+    {
+        return register(name, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * @param overrunPeriod spans longer than this many seconds are counted as
+     *                      overruns
+     */
+    public static synchronized int register(String name, double overrunPeriod)
+    {
+        for (int i = 0; i < sNumSpans; i++)
+        {
+            if (sSpans[i].mTiming.getName().equals(name))
+                return i;
+        }
+        if (sNumSpans >= kMaxSpans)
+            throw new IllegalStateException("Too many profiler spans; raise Profiler.kMaxSpans");
+
+        final int id = sNumSpans++;
+        sSpans[id] = new Span(new TimingHistogram(name, overrunPeriod));
+        sSlots[id] = TelemetryBus.getInstance().string("Profiler/" + name);
+        return id;
+    }
+
+    public static Span span(int id)
+    {
+        return sSpans[id].open();
+    }
+
+    /**
+     * @return the duration of the most recently closed span with this ID, in
+     *         seconds
+     */
+    public static double getLast(int id)
+    {
+        return sSpans[id].mLastNanos / 1e9;
+    }
+
+    public static TimingHistogram getTiming(int id)
+    {
+        return sSpans[id].mTiming;
+    }
+
+    public static String getName(int id)
+    {
+        return sSpans[id].mTiming.getName();
+    }
+
+    public static int getNumSpans()
+    {
+        return sNumSpans;
+    }
+
+    /**
+     * Publishes "min mean p99 max" in milliseconds for every span, at most
+     * once per second, so it's fine to call every loop.
+     */
+    public static void outputToSmartDashboard()
+    {
+        final long now = System.nanoTime();
+        if (now - sNextReportNanos < 0)
+            return;
+        sNextReportNanos = now + (long) (kReportPeriod * 1e9);
+
+        final int n = sNumSpans;
+        for (int i = 0; i < n; i++)
+            sSlots[i].set(summarize(sSpans[i].mTiming));
+    }
+
+    public static void logSummary()
+    {
+        final int n = sNumSpans;
+        for (int i = 0; i < n; i++)
+        {
+            TimingHistogram t = sSpans[i].mTiming;
+            if (t.getCount() > 0)
+                Logger.notice("Profiler " + t.getName() + " (ms min mean p99 max, overruns/count): "
+                        + summarize(t) + ", " + t.getOverruns() + "/" + t.getCount());
+        }
+    }
+
+    public static void reset()
+    {
+        final int n = sNumSpans;
+        for (int i = 0; i < n; i++)
+            sSpans[i].mTiming.reset();
+    }
+
+    private static String summarize(TimingHistogram t)
+    {
+        return String.format("%.2f %.2f %.2f %.2f", t.getMin() * 1e3, t.getMean() * 1e3, t.getPercentile(0.99) * 1e3,
+                t.getMax() * 1e3);
+    }
+}
@@ -2,22 +2,57 @@ package com.spartronics4915.lib.util;
 
 import java.io.FileNotFoundException;
 import java.io.PrintWriter;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Writes data to a CSV file
+ *
+ * Each public field gets a MethodHandle getter when the writer is built, typed
+ * so primitives are appended without boxing. Rows wait in a bounded queue for
+ * write(); if nobody calls write() often enough, new rows are dropped and
+ * counted rather than piling up in memory. BinaryLogToCSV produces the same
+ * layout from a BinaryLogWriter file.
  */
 public class ReflectingCSVWriter<T>
 {
 
-    ConcurrentLinkedDeque<String> mLinesToWrite = new ConcurrentLinkedDeque<>();
+    private static final int kDefaultQueueCapacity = 1024;
+
+    @FunctionalInterface
+    private interface Column
+    {
+        void append(Object row, StringBuilder line) throws Throwable;
+    }
+
+    private final ArrayBlockingQueue<String> mLinesToWrite;
+    private final AtomicLong mDroppedLines = new AtomicLong();
+    private final StringBuilder mLine = new StringBuilder();
+    private final Column[] mColumns;
     PrintWriter mOutput = null;
     Field[] mFields;
 
     public ReflectingCSVWriter(String fileName, Class<T> typeClass)
     {
+        this(fileName, typeClass, kDefaultQueueCapacity);
+    }
+
+    /**
+     * @param queueCapacity rows that can wait for write() before we start
+     *                      dropping them
+     */
+    public ReflectingCSVWriter(String fileName, Class<T> typeClass, int queueCapacity)
+    {
+        mLinesToWrite = new ArrayBlockingQueue<>(queueCapacity);
         mFields = typeClass.getFields();
+        mColumns = new Column[mFields.length];
+        for (int i = 0; i < mFields.length; i++)
+            mColumns[i] = compileColumn(mFields[i]);
         try
         {
             mOutput = new PrintWriter(fileName);
@@ -39,36 +74,113 @@ public class ReflectingCSVWriter<T>
         writeLine(line.toString());
     }
 
-    public void add(T value)
+    private static Column compileColumn(Field field)
     {
-        StringBuffer line = new StringBuffer();
-        for (Field field : mFields)
+        MethodHandle getter;
+        try
         {
-            if (line.length() != 0)
+            getter = MethodHandles.lookup().unreflectGetter(field);
+        }
+        catch (IllegalAccessException e)
+        {
+            e.printStackTrace();
+            return (row, line) -> line.append("?");
+        }
+        if (Modifier.isStatic(field.getModifiers()))
+        {
+            // Static getters take no row; give them one to ignore
+            getter = MethodHandles.dropArguments(getter, 0, Object.class);
+        }
+
+        final Class<?> type = field.getType();
+        if (type == double.class)
+        {
+            final MethodHandle h = getter.asType(MethodType.methodType(double.class, Object.class));
+            return (row, line) -> line.append((double) h.invokeExact(row));
+        }
+        if (type == int.class)
+        {
+            final MethodHandle h = getter.asType(MethodType.methodType(int.class, Object.class));
+            return (row, line) -> line.append((int) h.invokeExact(row));
+        }
+        if (type == long.class)
+        {
+            final MethodHandle h = getter.asType(MethodType.methodType(long.class, Object.class));
+            return (row, line) -> line.append((long) h.invokeExact(row));
+        }
+        if (type == float.class)
+        {
+            final MethodHandle h = getter.asType(MethodType.methodType(float.class, Object.class));
+            return (row, line) -> line.append((float) h.invokeExact(row));
+        }
+        if (type == boolean.class)
+        {
+            final MethodHandle h = getter.asType(MethodType.methodType(boolean.class, Object.class));
+            return (row, line) -> line.append((boolean) h.invokeExact(row));
+        }
+        if (type == short.class || type == byte.class)
+        {
+            // Widening to int prints the same digits
+            final MethodHandle h = getter.asType(MethodType.methodType(int.class, Object.class));
+            return (row, line) -> line.append((int) h.invokeExact(row));
+        }
+        if (type == char.class)
+        {
+            final MethodHandle h = getter.asType(MethodType.methodType(char.class, Object.class));
+            return (row, line) -> line.append((char) h.invokeExact(row));
+        }
+
+        final MethodHandle h = getter.asType(MethodType.methodType(Object.class, Object.class));
+        if (CSVWritable.class.isAssignableFrom(type))
+        {
+            return (row, line) ->
             {
-                line.append(", ");
-            }
-            try
+                final Object o = (Object) h.invokeExact(row);
+                line.append(((CSVWritable) o).toCSV());
+            };
+        }
+        return (row, line) ->
+        {
+            final Object o = (Object) h.invokeExact(row);
+            line.append(o.toString());
+        };
+    }
+
+    public void add(T value)
+    {
+        final String row;
+        synchronized (mLine)
+        {
+            mLine.setLength(0);
+            for (int i = 0; i < mColumns.length; i++)
             {
-                if (CSVWritable.class.isAssignableFrom(field.getType()))
+                if (i != 0)
                 {
-                    line.append(((CSVWritable) field.get(value)).toCSV());
+                    mLine.append(", ");
                 }
-                else
+                try
                 {
-                    line.append(field.get(value).toString());
+                    mColumns[i].append(value, mLine);
+                }
+                catch (Throwable t)
+                {
+                    t.printStackTrace();
                 }
             }
-            catch (IllegalArgumentException e)
-            {
-                e.printStackTrace();
-            }
-            catch (IllegalAccessException e)
-            {
-                e.printStackTrace();
-            }
+            row = mLine.toString();
+        }
+        if (!mLinesToWrite.offer(row))
+        {
+            mDroppedLines.incrementAndGet();
         }
-        mLinesToWrite.add(line.toString());
+    }
+
+    /**
+     * @return rows thrown away because the queue was full, since the last flush
+     */
+    public long getDroppedLines()
+    {
+        return mDroppedLines.get();
     }
 
     protected synchronized void writeLine(String line)
@@ -84,7 +196,7 @@ public class ReflectingCSVWriter<T>
     {
         while (true)
         {
-            String val = mLinesToWrite.pollFirst();
+            String val = mLinesToWrite.poll();
             if (val == null)
             {
                 break;
@@ -99,6 +211,11 @@ public class ReflectingCSVWriter<T>
         {
             write();
             mOutput.flush();
+            long dropped = mDroppedLines.getAndSet(0);
+            if (dropped > 0)
+            {
+                Logger.warning("ReflectingCSVWriter dropped " + dropped + " rows; call write() more often");
+            }
         }
     }
 }
@@ -0,0 +1,43 @@
+package com.spartronics4915.lib.util;
+
+/**
+ * A clock that only moves when told to. Simulations step it by the loop
+ * period between ticks, so results don't depend on how fast the host is.
+ */
+public class SimulatedClock implements IClock
+{
+
+    private volatile double mTime;
+
+    public SimulatedClock()
+    {
+        this(0.0);
+    }
+
+    public SimulatedClock(double startTime)
+    {
+        mTime = startTime;
+    }
+
+    @Override
+    public double getTime()
+    {
+        return mTime;
+    }
+
+    /**
+     * @return the new time
+     */
+    public synchronized double step(double dt)
+    {
+        if (dt < 0)
+            throw new IllegalArgumentException("SimulatedClock can't go backwards: " + dt);
+        mTime += dt;
+        return mTime;
+    }
+
+    public synchronized void setTime(double time)
+    {
+        mTime = time;
+    }
+}
@@ -0,0 +1,258 @@
+package com.spartronics4915.lib.util;
+
+/**
+ * The system state half of a subsystem's state machine, for machines that
+ * only need to run when there's something to react to rather than every
+ * loop. Something to react to is:
+ * <ul>
+ * <li>a signal: anything, on any thread, calling signal(cause); a wanted
+ * state change, a sensor edge, another subsystem's transition...
+ * <li>a deadline set with wakeAt or wakeAfter passing,
+ * <li>a state that asked to poll() last run, or
+ * <li>having just entered a state, so its entry actions run.
+ * </ul>
+ * The owning loop calls startRun first and returns straight away if it says
+ * there's nothing to do, so an idle machine costs a volatile read. Otherwise
+ * the loop works out the new state as usual and hands it to endRun.
+ * <p>
+ * Every transition's latency, from the earliest thing the run was reacting
+ * to until endRun, goes into a histogram. Signals are stamped with Clock, so
+ * under a SimulatedClock the latencies are whole Looper ticks.
+ * <p>
+ * Everything but signal and getState belongs to the loop thread.
+ */
+public class StateMachine<S extends Enum<S>>
+{
+
+    private static final long kLatencyBucketNanos = 1_000_000; // 1 ms
+    private static final int kLatencyBuckets = 100;
+    private static final double kTimeEpsilon = 1e-6; // Timestamps don't subtract exactly
+
+    private final String[] mStateDescriptions; // "<name> <state>", so signalling transitions doesn't build strings
+    private final TimingHistogram mLatency;
+
+    private volatile S mState;
+    private double mStateTime; // When mState was entered
+    private boolean mStateChanged = true;
+    private boolean mPolling = false;
+    private double mWakeTime = Double.POSITIVE_INFINITY;
+
+    // Set by signal, cleared by startRun
+    private volatile boolean mSignalled = false;
+    private double mSignalTime;
+    private String mSignalCause;
+
+    // What this run is reacting to
+    private double mRunTime;
+    private double mCauseTime;
+    private String mCause = "";
+
+    private double mLastLatency = 0.0;
+    private String mLastCause = "";
+
+    public StateMachine(String name, S initialState)
+    {
+        final S[] states = initialState.getDeclaringClass().getEnumConstants();
+        mStateDescriptions = new String[states.length];
+        for (S state : states)
+            mStateDescriptions[state.ordinal()] = name + " " + state;
+        mLatency = new TimingHistogram("transition latency", 0.02, kLatencyBucketNanos, kLatencyBuckets);
+        reset(initialState, 0.0);
+    }
+
+    /**
+     * Run the machine next loop. Safe from any thread; if several signals
+     * arrive before then, the run is blamed on the first.
+     *
+     * @param cause for the latency log; pass a constant, this is called often
+     */
+    public synchronized void signal(String cause)
+    {
+        if (!mSignalled)
+        {
+            mSignalTime = Clock.getTime();
+            mSignalCause = cause;
+            mSignalled = true;
+        }
+    }
+
+    /**
+     * Run the machine at the first loop at or after time. Deadlines are
+     * dropped when they fire and when the state changes, so a state that is
+     * still waiting should ask again each run.
+     */
+    public void wakeAt(double time)
+    {
+        if (time < mWakeTime)
+            mWakeTime = time;
+    }
+
+    /**
+     * wakeAt, seconds after the current state was entered.
+     */
+    public void wakeAfter(double seconds)
+    {
+        wakeAt(mStateTime + seconds);
+    }
+
+    /**
+     * For states that wait a while: true once the state is seconds old, and
+     * until then, a deadline to run again when it will be.
+     */
+    public boolean hasStateTimePassed(double seconds, double now)
+    {
+        if (now - mStateTime >= seconds - kTimeEpsilon)
+            return true;
+        wakeAfter(seconds);
+        return false;
+    }
+
+    /**
+     * Run again next loop, for a state waiting on something nobody signals.
+     */
+    public void poll()
+    {
+        mPolling = true;
+    }
+
+    /**
+     * Call at the top of every loop.
+     *
+     * @return false if nothing has happened, in which case skip the rest of
+     *         the loop and don't call endRun
+     */
+    public boolean startRun(double now)
+    {
+        final boolean timedOut = now >= mWakeTime - kTimeEpsilon;
+        if (!mSignalled && !mStateChanged && !mPolling && !timedOut)
+            return false;
+
+        mRunTime = now;
+        mCause = null;
+        mCauseTime = Double.POSITIVE_INFINITY;
+        if (mSignalled)
+        {
+            synchronized (this)
+            {
+                // Clear before the loop reads whatever the signaller changed
+                mSignalled = false;
+                blame(mSignalCause, mSignalTime);
+            }
+        }
+        if (mStateChanged)
+            blame(mStateDescriptions[mState.ordinal()], mStateTime);
+        if (timedOut)
+        {
+            blame("timeout", mWakeTime);
+            mWakeTime = Double.POSITIVE_INFINITY;
+        }
+        if (mCause == null)
+            blame("poll", now);
+        mPolling = false;
+        return true;
+    }
+
+    // The earliest cause wins; ties go to the first blamed
+    private void blame(String cause, double time)
+    {
+        if (time < mCauseTime)
+        {
+            mCause = cause;
+            mCauseTime = time;
+        }
+    }
+
+    /**
+     * Call at the end of a run that startRun allowed.
+     *
+     * @return true if this was a transition
+     */
+    public boolean endRun(S newState)
+    {
+        if (newState == mState)
+        {
+            mStateChanged = false;
+            return false;
+        }
+
+        mLastLatency = Math.max(0.0, Clock.getTime() - mCauseTime);
+        mLastCause = mCause;
+        mLatency.record((long) (mLastLatency * 1e9));
+
+        mState = newState;
+        mStateTime = mRunTime;
+        mStateChanged = true;
+        mWakeTime = Double.POSITIVE_INFINITY;
+        return true;
+    }
+
+    /**
+     * Go straight to state, as if it had just been entered; for onStart and
+     * stop. This isn't a transition, so no latency is recorded.
+     */
+    public void reset(S state, double now)
+    {
+        mState = state;
+        mStateTime = now;
+        mStateChanged = true;
+        mPolling = false;
+        mWakeTime = Double.POSITIVE_INFINITY;
+        synchronized (this)
+        {
+            mSignalled = false;
+        }
+    }
+
+    public S getState()
+    {
+        return mState;
+    }
+
+    /**
+     * @return "name STATE", without building a string
+     */
+    public String getStateDescription()
+    {
+        return mStateDescriptions[mState.ordinal()];
+    }
+
+    /**
+     * @return true during the first run in a state
+     */
+    public boolean isStateChanged()
+    {
+        return mStateChanged;
+    }
+
+    public double getTimeInState(double now)
+    {
+        return now - mStateTime;
+    }
+
+    /**
+     * @return what woke this run
+     */
+    public String getCause()
+    {
+        return mCause;
+    }
+
+    /**
+     * @return seconds from the cause of the last transition to the
+     *         transition
+     */
+    public double getLastLatency()
+    {
+        return mLastLatency;
+    }
+
+    public String getLastCause()
+    {
+        return mLastCause;
+    }
+
+    public TimingHistogram getLatency()
+    {
+        return mLatency;
+    }
+}
@@ -0,0 +1,57 @@
+package com.spartronics4915.lib.util;
+
+/**
+ * Drop-in for wpilibj Timer that reads Clock, so timeouts follow simulated
+ * time too. The behaviour matches Timer's, including hasPeriodPassed moving
+ * the start forward by one period each time it returns true.
+ */
+public class Stopwatch
+{
+
+    private double mStartTime;
+    private double mAccumulatedTime;
+    private boolean mRunning = false;
+
+    public Stopwatch()
+    {
+        reset();
+    }
+
+    /**
+     * @return seconds accumulated while running
+     */
+    public synchronized double get()
+    {
+        if (mRunning)
+            return mAccumulatedTime + (Clock.getTime() - mStartTime);
+        return mAccumulatedTime;
+    }
+
+    public synchronized void reset()
+    {
+        mAccumulatedTime = 0;
+        mStartTime = Clock.getTime();
+    }
+
+    public synchronized void start()
+    {
+        mStartTime = Clock.getTime();
+        mRunning = true;
+    }
+
+    public synchronized void stop()
+    {
+        mAccumulatedTime = get();
+        mRunning = false;
+    }
+
+    public synchronized boolean hasPeriodPassed(double period)
+    {
+        if (get() > period)
+        {
+            mStartTime += period;
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,362 @@
+package com.spartronics4915.lib.util;
+
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * Moves SmartDashboard publishing off the robot thread.
+ *
+ * Callers look up a typed slot for a key once and keep it; setting a slot
+ * just stores the value and marks it dirty if it changed. A background thread
+ * walks the slots and publishes dirty ones, no more often than each slot's
+ * minimum period. A value that changes faster than that is coalesced, and the
+ * latest value is always published eventually.
+ *
+ * Slots are safe to set from any thread. Publishing may lag a set by up to
+ * one publisher period plus the slot's minimum period. Minimum periods are
+ * measured on Clock, so they follow simulated time.
+ */
+public class TelemetryBus
+{
+
+    private static TelemetryBus sInstance = null;
+
+    public static synchronized TelemetryBus getInstance()
+    {
+        if (sInstance == null)
+            sInstance = new TelemetryBus();
+        return sInstance;
+    }
+
+    /**
+     * Where published values go. This is NetworkTables except in tests.
+     */
+    interface Sink
+    {
+        void putNumber(String key, double value);
+
+        void putString(String key, String value);
+
+        void putBoolean(String key, boolean value);
+    }
+
+    public static abstract class Slot
+    {
+
+        protected final String mKey;
+        private volatile double mMinPeriod;
+        private volatile boolean mDirty = true;
+        private volatile double mLastPublishTime = Double.NEGATIVE_INFINITY;
+        private NetworkTableEntry mEntry = null; // Only touched by the publisher
+
+        private Slot(String key, double minPeriod)
+        {
+            mKey = key;
+            setMinPeriod(minPeriod);
+        }
+
+        public String getKey()
+        {
+            return mKey;
+        }
+
+        /**
+         * @param minPeriod seconds between publishes of this key, at least
+         */
+        public void setMinPeriod(double minPeriod)
+        {
+            mMinPeriod = minPeriod;
+        }
+
+        /**
+         * @return true if a value set now would go out on the next pass; lets
+         *         callers skip building values that would only be coalesced
+         */
+        public boolean isDue()
+        {
+            return Clock.getTime() - mLastPublishTime >= mMinPeriod;
+        }
+
+        protected void markDirty()
+        {
+            mDirty = true;
+        }
+
+        private void publishIfDue(double now, Sink sink)
+        {
+            if (!mDirty || now - mLastPublishTime < mMinPeriod)
+                return;
+            // Clear before reading, so a set that races with us is published next time
+            mDirty = false;
+            mLastPublishTime = now;
+            if (sink == null)
+                publish();
+            else
+                publishTo(sink);
+        }
+
+        protected NetworkTableEntry getEntry()
+        {
+            if (mEntry == null)
+                mEntry = SmartDashboard.getEntry(mKey);
+            return mEntry;
+        }
+
+        protected abstract void publish();
+
+        abstract void publishTo(Sink sink);
+    }
+
+    public static class NumberSlot extends Slot
+    {
+
+        private volatile double mValue;
+
+        private NumberSlot(String key, double minPeriod)
+        {
+            super(key, minPeriod);
+        }
+
+        public void set(double value)
+        {
+            // Compare bits so NaN doesn't look like a change every time
+            if (Double.doubleToLongBits(value) != Double.doubleToLongBits(mValue))
+            {
+                mValue = value;
+                markDirty();
+            }
+        }
+
+        public double get()
+        {
+            return mValue;
+        }
+
+        @Override
+        protected void publish()
+        {
+            getEntry().setDouble(mValue);
+        }
+
+        @Override
+        void publishTo(Sink sink)
+        {
+            sink.putNumber(mKey, mValue);
+        }
+    }
+
+    public static class StringSlot extends Slot
+    {
+
+        private volatile String mValue = "";
+
+        private StringSlot(String key, double minPeriod)
+        {
+            super(key, minPeriod);
+        }
+
+        public void set(String value)
+        {
+            if (value == null)
+                value = "";
+            if (!value.equals(mValue))
+            {
+                mValue = value;
+                markDirty();
+            }
+        }
+
+        public String get()
+        {
+            return mValue;
+        }
+
+        @Override
+        protected void publish()
+        {
+            getEntry().setString(mValue);
+        }
+
+        @Override
+        void publishTo(Sink sink)
+        {
+            sink.putString(mKey, mValue);
+        }
+    }
+
+    public static class BooleanSlot extends Slot
+    {
+
+        private volatile boolean mValue;
+
+        private BooleanSlot(String key, double minPeriod)
+        {
+            super(key, minPeriod);
+        }
+
+        public void set(boolean value)
+        {
+            if (value != mValue)
+            {
+                mValue = value;
+                markDirty();
+            }
+        }
+
+        public boolean get()
+        {
+            return mValue;
+        }
+
+        @Override
+        protected void publish()
+        {
+            getEntry().setBoolean(mValue);
+        }
+
+        @Override
+        void publishTo(Sink sink)
+        {
+            sink.putBoolean(mKey, mValue);
+        }
+    }
+
+    private static final double kDefaultPublishPeriod = 0.02; // Seconds
+    private static final double kDefaultMinPeriod = 0.1; // Seconds
+
+    private final Map<String, Slot> mSlotsByKey = new ConcurrentHashMap<>();
+    private final List<Slot> mSlots = new CopyOnWriteArrayList<>();
+    private volatile double mDefaultMinPeriod = kDefaultMinPeriod;
+    private final Sink mSink; // null means NetworkTables
+    private Thread mThread = null;
+
+    private TelemetryBus()
+    {
+        this(null);
+    }
+
+    // For tests, which publish into sink instead of NetworkTables
+    TelemetryBus(Sink sink)
+    {
+        mSink = sink;
+    }
+
+    /**
+     * @param minPeriod used for slots created after this call that don't
+     *                  specify their own
+     */
+    public void setDefaultMinPeriod(double minPeriod)
+    {
+        mDefaultMinPeriod = minPeriod;
+    }
+
+    public NumberSlot number(String key)
+    {
+        return number(key, mDefaultMinPeriod);
+    }
+
+    public NumberSlot number(String key, double minPeriod)
+    {
+        return getOrCreate(key, NumberSlot.class, () -> new NumberSlot(key, minPeriod));
+    }
+
+    public StringSlot string(String key)
+    {
+        return string(key, mDefaultMinPeriod);
+    }
+
+    public StringSlot string(String key, double minPeriod)
+    {
+        return getOrCreate(key, StringSlot.class, () -> new StringSlot(key, minPeriod));
+    }
+
+    public BooleanSlot bool(String key)
+    {
+        return bool(key, mDefaultMinPeriod);
+    }
+
+    public BooleanSlot bool(String key, double minPeriod)
+    {
+        return getOrCreate(key, BooleanSlot.class, () -> new BooleanSlot(key, minPeriod));
+    }
+
+    private synchronized <T extends Slot> T getOrCreate(String key, Class<T> type, Supplier<T> factory)
+    {
+        Slot slot = mSlotsByKey.get(key);
+        if (slot == null)
+        {
+            slot = factory.get();
+            mSlotsByKey.put(key, slot);
+            mSlots.add(slot);
+        }
+        else if (!type.isInstance(slot))
+        {
+            throw new IllegalArgumentException("Telemetry key " + key + " is already a "
+                    + slot.getClass().getSimpleName());
+        }
+        return type.cast(slot);
+    }
+
+    /**
+     * Publishes every dirty slot that's due. The background thread calls
+     * this; it's public so tests and simulations can publish synchronously.
+     */
+    public void publish()
+    {
+        final double now = Clock.getTime();
+        for (Slot slot : mSlots)
+            slot.publishIfDue(now, mSink);
+    }
+
+    public void start()
+    {
+        start(kDefaultPublishPeriod);
+    }
+
+    /**
+     * Starts the publisher thread. Calling this again does nothing.
+     *
+     * @param publishPeriod seconds between passes over the slots
+     */
+    public synchronized void start(double publishPeriod)
+    {
+        if (mThread != null)
+            return;
+
+        final long sleepMillis = Math.max(1, (long) (publishPeriod * 1000));
+        mThread = new Thread(new CrashTrackingRunnable()
+        {
+
+            @Override
+            public void runCrashTracked()
+            {
+                while (!Thread.currentThread().isInterrupted())
+                {
+                    publish();
+                    try
+                    {
+                        Thread.sleep(sleepMillis);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        return;
+                    }
+                }
+            }
+        }, "TelemetryBus");
+        mThread.setDaemon(true);
+        mThread.setPriority(Thread.MIN_PRIORITY);
+        mThread.start();
+    }
+
+    public int getNumSlots()
+    {
+        return mSlots.size();
+    }
+}
@@ -1,7 +1,5 @@
 package com.spartronics4915.lib.util;
 
-import edu.wpi.first.wpilibj.Timer;
-
 /**
  * This class contains a boolean value and a timer. It can set its boolean value
  * and return whether the timer is within
@@ -11,7 +9,7 @@ import edu.wpi.first.wpilibj.Timer;
 public class TimeDelayedBoolean
 {
 
-    private Timer t = new Timer();
+    private Stopwatch t = new Stopwatch();
     private boolean m_old = false;
 
     public boolean update(boolean value, double timeout)
@@ -0,0 +1,146 @@
+package com.spartronics4915.lib.util;
+
+/**
+ * Fixed-bucket histogram of execution times, cheap enough to record from
+ * inside a control loop (no allocation, no locking). Percentiles are
+ * reported at bucket resolution; the max is exact.
+ *
+ * Recording and reporting may happen on different threads. Reports can be
+ * off by a sample or two, which is fine for telemetry.
+ */
+public class TimingHistogram
+{
+
+    private static final long kDefaultBucketNanos = 50_000; // 50 us
+    private static final int kDefaultBuckets = 400; // 20 ms, then everything lands in the last bucket
+
+    private final String mName;
+    private final long mBucketNanos;
+    private final long mOverrunNanos;
+    private final long[] mBuckets;
+    private long mCount;
+    private long mTotalNanos;
+    private long mMaxNanos;
+    private long mMinNanos = Long.MAX_VALUE;
+    private long mOverruns;
+
+    /**
+     * @param name          used in reports
+     * @param overrunPeriod samples longer than this many seconds are counted as
+     *                      overruns
+     */
+    public TimingHistogram(String name, double overrunPeriod)
+    {
+        this(name, overrunPeriod, kDefaultBucketNanos, kDefaultBuckets);
+    }
+
+    public TimingHistogram(String name, double overrunPeriod, long bucketNanos, int buckets)
+    {
+        mName = name;
+        mOverrunNanos = (long) (overrunPeriod * 1e9);
+        mBucketNanos = bucketNanos;
+        mBuckets = new long[buckets + 1]; // Last bucket holds everything past the range
+    }
+
+    public void record(long nanos)
+    {
+        if (nanos < 0)
+            nanos = 0;
+        int bucket = (int) Math.min(nanos / mBucketNanos, mBuckets.length - 1);
+        mBuckets[bucket]++;
+        mCount++;
+        mTotalNanos += nanos;
+        if (nanos > mMaxNanos)
+            mMaxNanos = nanos;
+        if (nanos < mMinNanos)
+            mMinNanos = nanos;
+        if (nanos > mOverrunNanos)
+            mOverruns++;
+    }
+
+    public void reset()
+    {
+        for (int i = 0; i < mBuckets.length; i++)
+            mBuckets[i] = 0;
+        mCount = 0;
+        mTotalNanos = 0;
+        mMaxNanos = 0;
+        mMinNanos = Long.MAX_VALUE;
+        mOverruns = 0;
+    }
+
+    public String getName()
+    {
+        return mName;
+    }
+
+    public long getCount()
+    {
+        return mCount;
+    }
+
+    public long getOverruns()
+    {
+        return mOverruns;
+    }
+
+    /**
+     * @param percentile in [0, 1]
+     * @return upper edge of the bucket holding that percentile, in seconds
+     */
+    public double getPercentile(double percentile)
+    {
+        final long count = mCount;
+        if (count <= 0)
+            return 0.0;
+
+        final long rank = (long) Math.ceil(Util.limit(percentile, 0.0, 1.0) * count);
+        long seen = 0;
+        for (int i = 0; i < mBuckets.length; i++)
+        {
+            seen += mBuckets[i];
+            if (seen >= rank && seen > 0)
+                return i == mBuckets.length - 1 ? getMax() : Math.min((i + 1) * mBucketNanos, mMaxNanos) / 1e9;
+        }
+        return getMax();
+    }
+
+    /**
+     * @return in seconds
+     */
+    public double getMax()
+    {
+        return mMaxNanos / 1e9;
+    }
+
+    /**
+     * @return in seconds, or 0 if nothing has been recorded
+     */
+    public double getMin()
+    {
+        return mCount <= 0 ? 0.0 : mMinNanos / 1e9;
+    }
+
+    /**
+     * @return in seconds
+     */
+    public double getMean()
+    {
+        return mCount <= 0 ? 0.0 : mTotalNanos / 1e9 / mCount;
+    }
+
+    /**
+     * @return milliseconds, as "p50 p99 max overruns/count"
+     */
+    public String getSummary()
+    {
+        return String.format("%.2f %.2f %.2f %d/%d", getPercentile(0.5) * 1e3, getPercentile(0.99) * 1e3,
+                getMax() * 1e3, mOverruns, mCount);
+    }
+
+    @Override
+    public String toString()
+    {
+        return mName + " (ms p50 p99 max overruns/count): " + getSummary();
+    }
+}
@@ -0,0 +1,84 @@
+package com.spartronics4915.frc2019;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PNPFrameTest
+{
+
+    private static final double kFloatEpsilon = 1e-4;
+
+    @Test
+    public void testRoundTrip()
+    {
+        PNPFrame sent = new PNPFrame(4);
+        sent.frameId = 123456;
+        sent.latency = 0.045;
+        sent.targetCount = 3;
+        for (int i = 0; i < sent.targetCount; i++)
+        {
+            sent.x[i] = 10.5 * (i + 1);
+            sent.y[i] = -3.25 * i;
+            sent.rotationDegrees[i] = 170.0 + i;
+        }
+        byte[] raw = sent.encode();
+        assertEquals(PNPFrame.kHeaderBytes + 3 * PNPFrame.kTargetBytes, raw.length);
+
+        PNPFrame received = new PNPFrame(4);
+        assertTrue(received.decode(raw));
+        assertEquals(123456, received.frameId);
+        assertEquals(0.045, received.latency, kFloatEpsilon);
+        assertEquals(3, received.targetCount);
+        for (int i = 0; i < 3; i++)
+        {
+            assertEquals(sent.x[i], received.x[i], kFloatEpsilon);
+            assertEquals(sent.y[i], received.y[i], kFloatEpsilon);
+            assertEquals(sent.rotationDegrees[i], received.rotationDegrees[i], kFloatEpsilon);
+        }
+
+        // Extra targets beyond the slot capacity are dropped, not an error
+        PNPFrame small = new PNPFrame(2);
+        assertTrue(small.decode(raw));
+        assertEquals(2, small.targetCount);
+        assertEquals(sent.x[1], small.x[1], kFloatEpsilon);
+    }
+
+    @Test
+    public void testMalformed()
+    {
+        PNPFrame frame = new PNPFrame();
+        assertFalse(frame.decode(null));
+        assertFalse(frame.decode(new byte[3]));
+
+        PNPFrame sent = new PNPFrame();
+        sent.targetCount = 1;
+        byte[] raw = sent.encode();
+        raw[0] = 2; // Unknown version
+        assertFalse(frame.decode(raw));
+        assertEquals(0, frame.targetCount);
+
+        raw[0] = PNPFrame.kVersion;
+        raw[1] = 5; // Claims more targets than it has
+        assertFalse(frame.decode(raw));
+        assertEquals(0, frame.targetCount);
+    }
+
+    @Test
+    public void testLegacy()
+    {
+        PNPFrame frame = new PNPFrame();
+        assertTrue(frame.decodeLegacy(new double[] { 1, 2, 3, 4, 5, 6, 0.1 }));
+        assertEquals(2, frame.targetCount);
+        assertEquals(0.1, frame.latency, 1e-9);
+        assertEquals(4, frame.x[1], 1e-9);
+        assertEquals(6, frame.rotationDegrees[1], 1e-9);
+        assertEquals(0, frame.frameId);
+
+        assertTrue(frame.decodeLegacy(new double[] { 0.2 }));
+        assertEquals(0, frame.targetCount);
+
+        assertFalse(frame.decodeLegacy(new double[] { 1, 2, 0.1 }));
+        assertFalse(frame.decodeLegacy(new double[0]));
+    }
+}
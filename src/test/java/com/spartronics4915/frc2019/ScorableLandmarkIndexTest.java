@@ -0,0 +1,113 @@
+package com.spartronics4915.frc2019;
+
+import com.spartronics4915.frc2019.Constants.ScorableLandmark;
+import com.spartronics4915.lib.geometry.Pose2d;
+import com.spartronics4915.lib.geometry.Rotation2d;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScorableLandmarkIndexTest
+{
+
+    private static ScorableLandmark bruteForceClosest(Pose2d pose, double maxBearing)
+    {
+        ScorableLandmark best = null;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (ScorableLandmark l : ScorableLandmark.values())
+        {
+            Pose2d robotToLandmark = pose.inverse().transformBy(l.fieldPose);
+            double distance = robotToLandmark.getTranslation().norm();
+            double bearing = Math.abs(robotToLandmark.getTranslation().direction().getRadians());
+            if (bearing <= maxBearing && distance < bestDistance)
+            {
+                best = l;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    @Test
+    public void testMatchesBruteForce()
+    {
+        ScorableLandmarkIndex index = ScorableLandmarkIndex.getInstance();
+        Random rand = new Random(4915);
+        final double kBearing = Math.toRadians(30);
+        for (int i = 0; i < 5000; i++)
+        {
+            // Include some poses off the field to exercise the fallback
+            Pose2d pose = new Pose2d(rand.nextDouble() * 700 - 30, rand.nextDouble() * 400 - 200,
+                    Rotation2d.fromDegrees(rand.nextDouble() * 360));
+            assertEquals(bruteForceClosest(pose, Math.PI), index.getClosest(pose));
+
+            ScorableLandmark expected = bruteForceClosest(pose, kBearing);
+            if (expected == null)
+                expected = bruteForceClosest(pose, Math.PI);
+            assertEquals(expected, index.getClosest(pose, kBearing, Math.PI));
+        }
+    }
+
+    @Test
+    public void testFaceAngleFilter()
+    {
+        ScorableLandmarkIndex index = ScorableLandmarkIndex.getInstance();
+        ScorableLandmark station = ScorableLandmark.LEFT_LOADING_STATION;
+
+        // Squarely in front of the loading station, looking at it
+        Pose2d facing = new Pose2d(station.fieldPose.getTranslation().x() + 40,
+                station.fieldPose.getTranslation().y(), Rotation2d.fromDegrees(180));
+        assertEquals(station, index.getClosest(facing, Math.toRadians(30), Math.toRadians(20)));
+
+        // Same spot, but the loading station is side-on, so the next square-on face wins
+        Pose2d sideways = new Pose2d(facing.getTranslation(), Rotation2d.fromDegrees(90));
+        assertEquals(ScorableLandmark.LEFT_ROCKET_MIDDLE_FACE, index.getClosest(sideways, Math.PI, Math.toRadians(20)));
+        assertEquals(station, index.getClosest(sideways));
+
+        // Nothing within a narrow bearing, so we fall back to the nearest overall
+        Pose2d offField = new Pose2d(40, 0, Rotation2d.fromDegrees(180));
+        assertEquals(bruteForceClosest(offField, Math.PI), index.getClosest(offField, Math.toRadians(1), Math.PI));
+    }
+
+    @Test
+    public void testCandidatesAreSorted()
+    {
+        ScorableLandmarkIndex index = ScorableLandmarkIndex.getInstance();
+        ScorableLandmark[] candidates = new ScorableLandmark[4];
+        Pose2d pose = new Pose2d(260, 30, Rotation2d.identity());
+        assertEquals(4, index.getClosestCandidates(pose, candidates));
+        assertEquals(bruteForceClosest(pose, Math.PI), candidates[0]);
+        for (int i = 1; i < candidates.length; i++)
+        {
+            assertTrue(pose.getTranslation().distance(candidates[i - 1].fieldPose.getTranslation())
+                    <= pose.getTranslation().distance(candidates[i].fieldPose.getTranslation()));
+        }
+        assertEquals(ScorableLandmark.values().length,
+                index.getClosestCandidates(pose, new ScorableLandmark[ScorableLandmark.values().length + 2]));
+    }
+
+    @Test
+    public void testCandidatesMatchBruteForce()
+    {
+        ScorableLandmarkIndex index = ScorableLandmarkIndex.getInstance();
+        Random rand = new Random(254);
+        ScorableLandmark[] candidates = new ScorableLandmark[3];
+        double[] distances = new double[ScorableLandmark.values().length];
+        for (int i = 0; i < 5000; i++)
+        {
+            Pose2d pose = new Pose2d(rand.nextDouble() * 700 - 30, rand.nextDouble() * 400 - 200,
+                    Rotation2d.identity());
+            for (ScorableLandmark l : ScorableLandmark.values())
+                distances[l.ordinal()] = pose.getTranslation().distance(l.fieldPose.getTranslation());
+            Arrays.sort(distances);
+
+            assertEquals(candidates.length, index.getClosestCandidates(pose, candidates));
+            for (int j = 0; j < candidates.length; j++)
+                assertEquals(distances[j], pose.getTranslation().distance(candidates[j].fieldPose.getTranslation()),
+                        1E-9);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.spartronics4915.frc2019;
+
+import com.spartronics4915.frc2019.subsystems.Subsystem;
+import com.spartronics4915.lib.util.ILoop;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SubsystemManagerTest
+{
+
+    private static class FakeSubsystem extends Subsystem
+    {
+        private final boolean mAtomic;
+        final CountDownLatch gate = new CountDownLatch(1);
+        final CountDownLatch firstReadDone = new CountDownLatch(1);
+        final AtomicInteger reads = new AtomicInteger();
+        volatile Thread readThread;
+        volatile boolean reading;
+        int writes;
+        boolean wroteWhileReading;
+
+        FakeSubsystem(boolean atomic, boolean blockFirstRead)
+        {
+            mAtomic = atomic;
+            if (!blockFirstRead)
+                gate.countDown();
+        }
+
+        @Override
+        public boolean hasAtomicInputSnapshot()
+        {
+            return mAtomic;
+        }
+
+        @Override
+        public void readPeriodicInputs()
+        {
+            reading = true;
+            readThread = Thread.currentThread();
+            reads.incrementAndGet();
+            try
+            {
+                gate.await();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            reading = false;
+            firstReadDone.countDown();
+        }
+
+        @Override
+        public void writePeriodicOutputs()
+        {
+            writes++;
+            wroteWhileReading |= reading;
+        }
+
+        @Override
+        public boolean checkSystem(String variant)
+        {
+            return true;
+        }
+
+        @Override
+        public void outputTelemetry()
+        {
+        }
+
+        @Override
+        public void stop()
+        {
+        }
+    }
+
+    private static ILoop enabledLoop(SubsystemManager manager)
+    {
+        final List<ILoop> loops = new ArrayList<>();
+        manager.registerEnabledLoops(loops::add);
+        assertEquals(1, loops.size());
+        return loops.get(0);
+    }
+
+    @Test
+    public void testLateReadIsStaleAndNotRequeued() throws InterruptedException
+    {
+        final FakeSubsystem slow = new FakeSubsystem(true, true);
+        final FakeSubsystem plain = new FakeSubsystem(false, false);
+        final SubsystemManager manager = new SubsystemManager(Arrays.asList(slow, plain), 2, 0.05);
+        final ILoop loop = enabledLoop(manager);
+        loop.onStart(0.0);
+
+        loop.onLoop(0.0);
+        assertTrue(slow.areInputsStale());
+        assertNotSame(Thread.currentThread(), slow.readThread);
+        assertEquals(1, slow.writes, "an atomic subsystem still writes while its read is late");
+
+        // Still on the bus, so no second read is queued behind it
+        loop.onLoop(Constants.kLooperDt);
+        assertTrue(slow.areInputsStale());
+        assertEquals(1, slow.reads.get());
+
+        slow.gate.countDown();
+        assertTrue(slow.firstReadDone.await(1, TimeUnit.SECONDS));
+        loop.onLoop(2 * Constants.kLooperDt);
+        assertFalse(slow.areInputsStale());
+    }
+
+    @Test
+    public void testOnlyAtomicSubsystemsReadOffThread()
+    {
+        final FakeSubsystem atomic = new FakeSubsystem(true, false);
+        final FakeSubsystem plain = new FakeSubsystem(false, false);
+        final SubsystemManager manager = new SubsystemManager(Arrays.asList(atomic, plain), 2, 0.05);
+        final ILoop loop = enabledLoop(manager);
+        loop.onStart(0.0);
+
+        for (int i = 0; i < 5; i++)
+        {
+            loop.onLoop(i * Constants.kLooperDt);
+            // A subsystem without a snapshot is read here, so its writes never overlap a read
+            assertSame(Thread.currentThread(), plain.readThread);
+            assertFalse(plain.areInputsStale());
+            assertFalse(plain.wroteWhileReading);
+            assertEquals(i + 1, plain.reads.get());
+            assertEquals(i + 1, plain.writes);
+        }
+        assertNotSame(Thread.currentThread(), atomic.readThread);
+        assertFalse(atomic.areInputsStale());
+    }
+
+    @Test
+    public void testSequentialReads()
+    {
+        final FakeSubsystem atomic = new FakeSubsystem(true, false);
+        final SubsystemManager manager = new SubsystemManager(Arrays.asList(atomic), 0, 0.0);
+        final ILoop loop = enabledLoop(manager);
+        loop.onStart(0.0);
+        loop.onLoop(0.0);
+        assertSame(Thread.currentThread(), atomic.readThread);
+        assertFalse(atomic.areInputsStale());
+    }
+}
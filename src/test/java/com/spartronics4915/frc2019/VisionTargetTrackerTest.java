@@ -0,0 +1,149 @@
+package com.spartronics4915.frc2019;
+
+import com.spartronics4915.lib.geometry.Pose2d;
+import com.spartronics4915.lib.geometry.Rotation2d;
+import com.spartronics4915.lib.util.Clock;
+import com.spartronics4915.lib.util.IClock;
+import com.spartronics4915.lib.util.SimulatedClock;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VisionTargetTrackerTest
+{
+
+    private static final double kFramePeriod = 1.0 / 30.0;
+
+    private interface ClockTest
+    {
+        void run(SimulatedClock clock);
+    }
+
+    // Queries age tracks against Clock, so frames and queries share a simulated one
+    private static void withClock(ClockTest test)
+    {
+        final IClock previous = Clock.getSource();
+        final SimulatedClock clock = new SimulatedClock();
+        Clock.setSource(clock);
+        try
+        {
+            test.run(clock);
+        }
+        finally
+        {
+            Clock.setSource(previous);
+        }
+    }
+
+    @Test
+    public void testStableIdsAcrossSwaps()
+    {
+        withClock((clock) ->
+        {
+            VisionTargetTracker tracker = new VisionTargetTracker();
+            Pose2d left = new Pose2d(200, 30, Rotation2d.fromDegrees(90));
+            Pose2d right = new Pose2d(200, -30, Rotation2d.fromDegrees(-90));
+
+            int[] ids = tracker.update(clock.getTime(), new Pose2d[] { left, right });
+            assertEquals(2, ids.length);
+            int leftId = ids[0];
+            int rightId = ids[1];
+            assertNotEquals(leftId, rightId);
+
+            // The coprocessor doesn't promise an order, so the same targets can come back swapped
+            for (int i = 1; i < 10; i++)
+            {
+                boolean swap = i % 2 == 0;
+                ids = tracker.update(clock.step(kFramePeriod),
+                        swap ? new Pose2d[] { right, left } : new Pose2d[] { left, right });
+                assertEquals(swap ? rightId : leftId, ids[0]);
+                assertEquals(swap ? leftId : rightId, ids[1]);
+            }
+            assertEquals(2, tracker.getNumTracks());
+            assertTrue(tracker.isConfirmed(leftId));
+            assertEquals(10, tracker.getHits(rightId));
+
+            // Fewer detections than last frame only returns IDs for the ones we got
+            assertArrayEquals(new int[] { rightId }, tracker.update(clock.step(kFramePeriod), new Pose2d[] { right }));
+        });
+    }
+
+    @Test
+    public void testSmoothing()
+    {
+        withClock((clock) ->
+        {
+            VisionTargetTracker tracker = new VisionTargetTracker();
+            Random rand = new Random(4915);
+            final double kX = 150, kY = 60, kNoise = 2.0;
+            double rawErr = 0.0, trackedErr = 0.0;
+            int id = VisionTargetTracker.kNoTrack;
+            for (int i = 0; i < 100; i++)
+            {
+                Pose2d detection = new Pose2d(kX + kNoise * rand.nextGaussian(), kY + kNoise * rand.nextGaussian(),
+                        Rotation2d.fromDegrees(180 + rand.nextGaussian()));
+                int detectionId = tracker.update(clock.step(kFramePeriod), new Pose2d[] { detection })[0];
+                if (i == 0)
+                    id = detectionId;
+                assertEquals(id, detectionId);
+
+                if (i >= 20)
+                {
+                    Pose2d tracked = tracker.getTargetPose(id).get();
+                    rawErr += Math.hypot(detection.getTranslation().x() - kX, detection.getTranslation().y() - kY);
+                    trackedErr += Math.hypot(tracked.getTranslation().x() - kX, tracked.getTranslation().y() - kY);
+                }
+            }
+            assertTrue(trackedErr < rawErr / 2.0);
+            assertEquals(180.0, Math.abs(tracker.getTargetPose(id).get().getRotation().getDegrees()), 1.0);
+        });
+    }
+
+    @Test
+    public void testGatingAndTimeout()
+    {
+        withClock((clock) ->
+        {
+            VisionTargetTracker tracker = new VisionTargetTracker();
+            int first = tracker.update(clock.getTime(), new Pose2d[] { new Pose2d(100, 0, Rotation2d.identity()) })[0];
+            assertFalse(tracker.isConfirmed(first));
+
+            // Outside the gate, so this is a different target
+            final Pose2d far = new Pose2d(100 + Constants.kVisionTrackGateDistance * 2, 0, Rotation2d.identity());
+            int second = tracker.update(clock.step(kFramePeriod), new Pose2d[] { far })[0];
+            assertNotEquals(first, second);
+            assertEquals(2, tracker.getNumTracks());
+
+            // Long enough without a sighting drops the first track
+            clock.setTime(Constants.kVisionTrackTimeout + kFramePeriod / 2);
+            assertEquals(second, tracker.update(clock.getTime(), new Pose2d[] { far })[0]);
+            assertFalse(tracker.getTargetPose(first).isPresent());
+            assertEquals(1, tracker.getNumTracks());
+
+            tracker.clear();
+            assertEquals(0, tracker.getNumTracks());
+            assertFalse(tracker.getTargetPose(second).isPresent());
+        });
+    }
+
+    @Test
+    public void testExpiresWithoutFrames()
+    {
+        withClock((clock) ->
+        {
+            VisionTargetTracker tracker = new VisionTargetTracker();
+            int id = tracker.update(clock.getTime(), new Pose2d[] { new Pose2d(100, 0, Rotation2d.identity()) })[0];
+            assertTrue(tracker.getTargetPose(id).isPresent());
+
+            // No more frames arrive, but the track still ages out when asked about
+            clock.step(Constants.kVisionTrackTimeout / 2);
+            assertTrue(tracker.getTargetPose(id).isPresent());
+            clock.step(Constants.kVisionTrackTimeout);
+            assertFalse(tracker.getTargetPose(id).isPresent());
+            assertEquals(0, tracker.getHits(id));
+            assertEquals(0, tracker.getNumTracks());
+        });
+    }
+}
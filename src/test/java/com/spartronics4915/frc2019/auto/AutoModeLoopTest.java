@@ -0,0 +1,95 @@
+package com.spartronics4915.frc2019.auto;
+
+import com.spartronics4915.frc2019.auto.actions.Action;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AutoModeLoopTest
+{
+
+    // Updates kUpdates times, blocking in the second update until released
+    private static class SlowAction implements Action
+    {
+        static final int kUpdates = 4;
+
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger updates = new AtomicInteger();
+
+        @Override
+        public boolean isFinished()
+        {
+            return updates.get() >= kUpdates;
+        }
+
+        @Override
+        public void update()
+        {
+            if (updates.incrementAndGet() == 2)
+            {
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public void done()
+        {
+        }
+
+        @Override
+        public void start()
+        {
+        }
+    }
+
+    @Test
+    public void testLateStepSkipsTicks()
+    {
+        final SlowAction action = new SlowAction();
+        final AutoModeLoop loop = new AutoModeLoop(0.2);
+        loop.setAutoMode(new AutoModeBase()
+        {
+
+            @Override
+            protected void routine() throws AutoModeEndedException
+            {
+                runAction(action);
+            }
+        });
+
+        loop.onLoop(0.0);
+        assertEquals(1, action.updates.get());
+
+        // The second update overruns, so the tick goes on without it
+        loop.onLoop(0.01);
+        assertEquals(2, action.updates.get());
+        assertTrue(loop.isRunning());
+
+        // Still stuck: the mode isn't let go again
+        loop.onLoop(0.02);
+        assertEquals(2, action.updates.get());
+
+        // This tick only collects the late step
+        action.release.countDown();
+        loop.onLoop(0.03);
+        assertEquals(2, action.updates.get());
+
+        loop.onLoop(0.04);
+        assertEquals(3, action.updates.get());
+        loop.onLoop(0.05);
+        assertEquals(4, action.updates.get());
+        assertTrue(loop.isRunning());
+        loop.onLoop(0.06);
+        assertFalse(loop.isRunning());
+    }
+}
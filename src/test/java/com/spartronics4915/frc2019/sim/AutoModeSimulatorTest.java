@@ -0,0 +1,75 @@
+package com.spartronics4915.frc2019.sim;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.spartronics4915.frc2019.Constants;
+import com.spartronics4915.frc2019.auto.AutoModeBase;
+import com.spartronics4915.frc2019.auto.AutoModeEndedException;
+import com.spartronics4915.frc2019.auto.actions.WaitAction;
+import com.spartronics4915.frc2019.auto.modes.PlaceHatchFromSideMode;
+import com.spartronics4915.lib.geometry.Pose2d;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs a real auto mode against the simulated drivetrain. The simulated robot
+ * matches the motion planner's model, so it should track closely; the timing
+ * is printed rather than asserted, as in AutoModeTiming.
+ */
+public class AutoModeSimulatorTest
+{
+
+    @Test
+    public void testPlaceHatchFromSide()
+    {
+        AutoModeSimulator simulator = new AutoModeSimulator();
+
+        for (boolean isLeft : new boolean[] { false, true })
+        {
+            AutoModeSimulator.Result result = simulator.run(new PlaceHatchFromSideMode(isLeft),
+                    isLeft ? Constants.kRightRobotLocationOnPlatform.mirror() : Constants.kRightRobotLocationOnPlatform,
+                    30.0);
+            System.out.println("AutoModeSimulatorTest: PlaceHatchFromSideMode(" + isLeft + ") " + result);
+
+            assertTrue(result.completed);
+            assertTrue(result.finalPoseError < 6.0, "final error " + result.finalPoseError);
+            assertTrue(result.maxTrackingError < 12.0, "tracking error " + result.maxTrackingError);
+            assertTrue(result.finalEstimatedPose.getTranslation().distance(result.finalPose.getTranslation()) < 6.0,
+                    "odometry drifted to " + result.finalEstimatedPose + ", really at " + result.finalPose);
+        }
+    }
+
+    // Back-to-back actions hand off within a tick in the looper, but wait out
+    // the poll period when the mode polls from its own thread
+    @Test
+    public void testActionHandoffs()
+    {
+        AutoModeSimulator simulator = new AutoModeSimulator();
+
+        simulator.setRunInLooper(true);
+        AutoModeSimulator.Result looped = simulator.run(new WaitingMode(), Pose2d.identity(), 5.0);
+        simulator.setRunInLooper(false);
+        AutoModeSimulator.Result polled = simulator.run(new WaitingMode(), Pose2d.identity(), 5.0);
+        simulator.setRunInLooper(Constants.kRunAutoInLooper);
+        System.out.println("AutoModeSimulatorTest: looped " + looped.actionHandoffs);
+        System.out.println("AutoModeSimulatorTest: polled " + polled.actionHandoffs);
+
+        assertTrue(looped.completed && polled.completed);
+        assertEquals(4, looped.actionHandoffs.getCount());
+        assertEquals(4, polled.actionHandoffs.getCount());
+        assertTrue(looped.actionHandoffs.getMax() <= Constants.kLooperDt + 1e-3);
+        assertTrue(polled.actionHandoffs.getMin() > looped.actionHandoffs.getMax());
+        assertTrue(looped.duration < polled.duration);
+    }
+
+    private static class WaitingMode extends AutoModeBase
+    {
+
+        @Override
+        protected void routine() throws AutoModeEndedException
+        {
+            for (int i = 0; i < 5; i++)
+                runAction(new WaitAction(0.105));
+        }
+    }
+}
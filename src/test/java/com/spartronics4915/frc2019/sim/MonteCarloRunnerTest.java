@@ -0,0 +1,48 @@
+package com.spartronics4915.frc2019.sim;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.spartronics4915.frc2019.planners.DriveMotionPlanner.FollowerType;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A small batch through real worker processes, to check the plumbing; the
+ * interesting numbers come from running MonteCarloRunner's main by hand.
+ */
+public class MonteCarloRunnerTest
+{
+
+    @Test
+    public void testPercentile()
+    {
+        double[] sorted = { 1, 2, 3, 4 };
+        assertEquals(1.0, MonteCarloRunner.Summary.percentile(sorted, 0.0));
+        assertEquals(2.0, MonteCarloRunner.Summary.percentile(sorted, 0.5));
+        assertEquals(4.0, MonteCarloRunner.Summary.percentile(sorted, 0.95));
+        assertEquals(4.0, MonteCarloRunner.Summary.percentile(sorted, 1.0));
+        assertTrue(Double.isNaN(MonteCarloRunner.Summary.percentile(new double[0], 0.5)));
+    }
+
+    @Test
+    public void testWorkers() throws Exception
+    {
+        MonteCarloRunner runner = new MonteCarloRunner("Right: Drive Off Hab and Place Parallel Panel", 1.0, 15.0, 2);
+        MonteCarloRunner.Summary summary = runner.run(FollowerType.NONLINEAR_FEEDBACK, 5, 100);
+        System.out.println("MonteCarloRunnerTest: " + summary);
+
+        assertEquals(5, summary.trials.size());
+        assertEquals(5, summary.completed);
+        Set<Long> seeds = new HashSet<>();
+        for (MonteCarloRunner.Trial trial : summary.trials)
+        {
+            seeds.add(trial.seed);
+            assertTrue(trial.finalPoseError < 12.0, "seed " + trial.seed + " missed by " + trial.finalPoseError);
+        }
+        assertEquals(5, seeds.size());
+        assertTrue(seeds.contains(100L) && seeds.contains(104L));
+    }
+}
@@ -0,0 +1,99 @@
+package com.spartronics4915.frc2019.sim;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.ctre.phoenix.motorcontrol.ControlMode;
+import com.spartronics4915.frc2019.Constants;
+import com.spartronics4915.lib.drivers.SimulatedDeviceFactory;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.wpilibj.DoubleSolenoid.Value;
+
+/**
+ * Superstructure sequences end to end on the SimulatedRobot, plus the climb
+ * model on its own. Timelines are printed rather than asserted, since the
+ * mechanism timings are guesses. The CLIMB sequence isn't run end to end: it
+ * doesn't finish on the simulator yet (see SuperstructureSimulator.climb).
+ */
+public class SuperstructureSimulatorTest
+{
+
+    @Test
+    public void testCargoCycle()
+    {
+        SuperstructureSimulator simulator = new SuperstructureSimulator();
+        SimulatedCargo cargo = simulator.getRobot().getCargo();
+
+        SuperstructureSimulator.Result intake = simulator.intakeCargo();
+        System.out.println("SuperstructureSimulatorTest: " + intake);
+        assertTrue(intake.completed);
+        assertTrue(intake.getEventTime("intake arm extended") < intake.getEventTime("cargo into chute"));
+        assertTrue(cargo.isPresent());
+        assertEquals(CargoChuteSim.kRampSensorPosition, cargo.getPosition(), SimulatedCargo.kRadius);
+
+        SuperstructureSimulator.Result shoot = simulator.shootCargoIntoBay();
+        System.out.println("SuperstructureSimulatorTest: " + shoot);
+        assertTrue(shoot.completed);
+        assertTrue(shoot.getEventTime("ramp extended") < shoot.getEventTime("cargo shot high"));
+        assertFalse(cargo.isPresent());
+    }
+
+    @Test
+    public void testEjectPanel()
+    {
+        SuperstructureSimulator simulator = new SuperstructureSimulator();
+        SuperstructureSimulator.Result eject = simulator.ejectPanel();
+        System.out.println("SuperstructureSimulatorTest: " + eject);
+        assertTrue(eject.completed);
+        assertTrue(eject.getEventTime("panel released") < eject.duration);
+        assertFalse(simulator.getRobot().getPanelHandler().hasPanel());
+    }
+
+    // The climb Superstructure means to do, by hand, on devices of our own
+    @Test
+    public void testClimbModel()
+    {
+        SimulatedDeviceFactory devices = new SimulatedDeviceFactory();
+        MechanismEventLog events = new MechanismEventLog();
+        CargoIntakeSim intake = new CargoIntakeSim(devices, new SimulatedCargo(), events);
+        ClimberSim climber = new ClimberSim(devices, intake, events);
+        final int pcm = Constants.kClimberPCMId;
+
+        // Lift both ends and pull on with the intake
+        for (int id : new int[] { Constants.kFrontLeftSolenoidId1, Constants.kFrontRightSolenoidId1,
+                Constants.kRearLeftSolenoidId1, Constants.kRearRightSolenoidId1 })
+            devices.getDoubleSolenoid(pcm, id).set(Value.kForward);
+        devices.getSolenoid(Constants.kCargoHatchArmPCMId, Constants.kCargoIntakeSolenoid).set(true);
+        devices.getSolenoid(Constants.kCargoHatchArmPCMId, Constants.kCargoIntakeSolenoidClimb).set(true);
+        devices.getTalon(Constants.kCargoIntakeMotorLeft).set(ControlMode.PercentOutput, Constants.kCargoIntakeClimbSpeed);
+        devices.getTalon(Constants.kCargoIntakeMotorRight).set(ControlMode.PercentOutput, Constants.kCargoIntakeClimbSpeed);
+        devices.step(0.5);
+        assertEquals(0.0, climber.getProgress(), 1e-9, "can't get on until the front is above the platform");
+        devices.step(1.5);
+        assertTrue(climber.getProgress() > 10.0);
+
+        // Front down onto the platform; the front sensor sees it close up
+        devices.getDoubleSolenoid(pcm, Constants.kFrontLeftSolenoidId1).set(Value.kReverse);
+        devices.getDoubleSolenoid(pcm, Constants.kFrontRightSolenoidId1).set(Value.kReverse);
+        devices.step(1.0);
+        final double front = devices.getAnalogInput(Constants.kClimberFrontIRSensorID).getAverageVoltage();
+        assertTrue(front > Constants.kClimberSensorFrontMinVoltage && front < Constants.kClimberSensorFrontMinVoltage + 1,
+                "front sensor " + front);
+
+        // Drive until the rear is over the platform, then bring the rear up
+        devices.getTalon(Constants.kLeftDriveMasterId).set(ControlMode.PercentOutput, 0.3);
+        devices.getTalon(Constants.kRightDriveMasterId).set(ControlMode.PercentOutput, 0.3);
+        for (int i = 0; i < 300 && Double.isNaN(events.getTime("rear over platform")); i++)
+            devices.step(0.01);
+        assertFalse(Double.isNaN(events.getTime("rear over platform")));
+        final double rear = devices.getAnalogInput(Constants.kClimberRearIRSensorID).getAverageVoltage();
+        assertTrue(rear > Constants.kClimberSensorRearMinVoltage && rear < Constants.kClimberSensorRearMinVoltage + 1,
+                "rear sensor " + rear);
+
+        devices.getDoubleSolenoid(pcm, Constants.kRearLeftSolenoidId1).set(Value.kReverse);
+        devices.getDoubleSolenoid(pcm, Constants.kRearRightSolenoidId1).set(Value.kReverse);
+        devices.step(1.0);
+        assertFalse(Double.isNaN(events.getTime("on platform")));
+    }
+}
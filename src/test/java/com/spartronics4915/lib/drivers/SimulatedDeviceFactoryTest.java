@@ -0,0 +1,97 @@
+package com.spartronics4915.lib.drivers;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.ctre.phoenix.motorcontrol.ControlMode;
+import com.ctre.phoenix.motorcontrol.VelocityMeasPeriod;
+
+import org.junit.jupiter.api.Test;
+
+public class SimulatedDeviceFactoryTest
+{
+
+    @Test
+    public void testSameIdsGiveSameDevices()
+    {
+        SimulatedDeviceFactory devices = new SimulatedDeviceFactory();
+        assertSame(devices.createTalon(3), devices.getTalon(3));
+        assertNotSame(devices.getTalon(3), devices.getTalon(4));
+        assertSame(devices.createSolenoid(0, 2), devices.getSolenoid(0, 2));
+        assertNotSame(devices.getSolenoid(0, 2), devices.getSolenoid(1, 2));
+        assertSame(devices.createDoubleSolenoid(0, 4, 5), devices.getDoubleSolenoid(0, 4));
+        assertSame(devices.createAnalogInput(1), devices.getAnalogInput(1));
+        assertSame(devices.createPigeon(7), devices.getGyro());
+        assertNull(devices.getTalon(3).getTalon());
+    }
+
+    @Test
+    public void testSlaveFollowsMaster()
+    {
+        SimulatedDeviceFactory devices = new SimulatedDeviceFactory();
+        ITalonSRX slave = devices.createPermanentSlaveTalon(2, 1);
+        SimulatedTalonSRX master = devices.getTalon(1);
+        devices.addMechanism(dt ->
+        {
+            master.update();
+            devices.getTalon(2).update();
+        });
+
+        master.set(ControlMode.PercentOutput, 0.5);
+        devices.step(0.01);
+        assertEquals(ControlMode.Follower, devices.getTalon(2).getControlMode());
+        assertEquals(0.5, slave.getMotorOutputPercent(), 1e-9);
+        assertEquals(6.0, slave.getMotorOutputVoltage(), 1e-9);
+
+        master.set(ControlMode.PercentOutput, 0.01); // Inside the default deadband
+        devices.step(0.01);
+        assertEquals(0.0, slave.getMotorOutputPercent(), 1e-9);
+    }
+
+    @Test
+    public void testStatusLatency()
+    {
+        SimulatedDeviceFactory devices = new SimulatedDeviceFactory();
+        SimulatedTalonSRX talon = devices.getTalon(1);
+        talon.configVelocityMeasurementPeriod(VelocityMeasPeriod.Period_10Ms, 0);
+        talon.setStatusLatency(0.005);
+        final double[] ticks = { 0.0 };
+        devices.addMechanism(dt ->
+        {
+            ticks[0] += 1.0; // 1 tick/ms is 100 ticks/100ms
+            talon.measure(ticks[0]);
+        });
+
+        devices.step(0.003);
+        assertEquals(0, talon.getSelectedSensorPosition(0));
+        devices.step(0.017);
+        assertEquals(15, talon.getSelectedSensorPosition(0));
+        assertEquals(100, talon.getSelectedSensorVelocity(0));
+
+        // Zeroing is seen straight away, as the real Talon's next frame would
+        talon.setSelectedSensorPosition(0, 0, 0);
+        assertEquals(0, talon.getSelectedSensorPosition(0));
+    }
+
+    @Test
+    public void testVelocityClosedLoop()
+    {
+        SimulatedDeviceFactory devices = new SimulatedDeviceFactory();
+        SimulatedTalonSRX talon = devices.getTalon(1);
+        talon.config_kP(0, 1.0, 0);
+        talon.config_kF(0, 1023.0 / 1000.0, 0); // Full output is 1000 ticks/100ms
+        talon.configVelocityMeasurementPeriod(VelocityMeasPeriod.Period_10Ms, 0);
+
+        // A motor with no inertia: 10 ticks/ms at full output
+        final double[] ticks = { 0.0 };
+        devices.addMechanism(dt ->
+        {
+            ticks[0] += talon.update() * 10.0;
+            talon.measure(ticks[0]);
+        });
+
+        talon.set(ControlMode.Velocity, 500.0);
+        devices.step(0.5);
+        assertEquals(500.0, talon.getSelectedSensorVelocity(0), 10.0);
+        assertEquals(0.5, talon.getMotorOutputPercent(), 0.02);
+    }
+}
@@ -0,0 +1,99 @@
+package com.spartronics4915.lib.geometry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Measures one odometry-plus-error cycle with MutablePose2d and with Pose2d.
+ * The allocation count is asserted (it has to be zero); the timings are just
+ * printed, as in AutoModeTiming. Tagged so plain test runs skip it; run it
+ * with the benchmark task. MutablePose2dTest checks the math.
+ */
+@Tag("benchmark")
+public class MutablePose2dBenchmark
+{
+
+    private static final double kTestEpsilon = 1E-9;
+    private static final int kWarmupCycles = 200_000;
+    private static final int kCycles = 1_000_000;
+
+    private static void assertPoseEquals(Pose2d expected, MutablePose2d actual)
+    {
+        assertEquals(expected.getTranslation().x(), actual.getX(), kTestEpsilon);
+        assertEquals(expected.getTranslation().y(), actual.getY(), kTestEpsilon);
+        assertEquals(expected.getRotation().cos(), actual.cos(), kTestEpsilon);
+        assertEquals(expected.getRotation().sin(), actual.sin(), kTestEpsilon);
+    }
+
+    // The per-loop geometry in RobotStateEstimator and DriveMotionPlanner
+    private static double immutableCycle(Pose2d pose, Pose2d setpoint, int i)
+    {
+        final Pose2d next = pose.transformBy(Pose2d.exp(new Twist2d(0.1, 0.0, 0.001 * (i & 7))));
+        final Pose2d error = next.inverse().transformBy(setpoint);
+        return error.getTranslation().x() + error.getRotation().getRadians();
+    }
+
+    @Test
+    void mutableCycleDoesNotAllocate()
+    {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)
+                || !((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported())
+        {
+            System.out.println("MutablePose2dBenchmark: no allocation counter on this JVM");
+            return;
+        }
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        final long id = Thread.currentThread().getId();
+
+        final Pose2d setpoint = new Pose2d(5.0, 1.0, Rotation2d.fromDegrees(10));
+        final MutablePose2d mutableSetpoint = new MutablePose2d(setpoint);
+        final MutablePose2d pose = new MutablePose2d();
+        final MutablePose2d error = new MutablePose2d();
+        double sink = 0;
+
+        for (int i = 0; i < kWarmupCycles; i++)
+        {
+            sink += immutableCycle(Pose2d.identity(), setpoint, i);
+            pose.transformByExp(0.1, 0.0, 0.001 * (i & 7));
+            sink += error.setInverseTransformBy(pose, mutableSetpoint).getX();
+        }
+
+        pose.setIdentity();
+        long before = threads.getThreadAllocatedBytes(id);
+        long start = System.nanoTime();
+        for (int i = 0; i < kCycles; i++)
+        {
+            pose.transformByExp(0.1, 0.0, 0.001 * (i & 7));
+            error.setInverseTransformBy(pose, mutableSetpoint);
+            sink += error.getX() + error.getRadians();
+        }
+        final long mutableNanos = System.nanoTime() - start;
+        final long mutableBytes = threads.getThreadAllocatedBytes(id) - before;
+
+        Pose2d immutablePose = Pose2d.identity();
+        before = threads.getThreadAllocatedBytes(id);
+        start = System.nanoTime();
+        for (int i = 0; i < kCycles; i++)
+        {
+            immutablePose = immutablePose.transformBy(Pose2d.exp(new Twist2d(0.1, 0.0, 0.001 * (i & 7))));
+            final Pose2d e = immutablePose.inverse().transformBy(setpoint);
+            sink += e.getTranslation().x() + e.getRotation().getRadians();
+        }
+        final long immutableNanos = System.nanoTime() - start;
+        final long immutableBytes = threads.getThreadAllocatedBytes(id) - before;
+
+        System.out.println(String.format("MutablePose2dBenchmark: mutable %.1f ns, %.1f bytes/cycle; "
+                + "immutable %.1f ns, %.1f bytes/cycle (%s)", (double) mutableNanos / kCycles,
+                (double) mutableBytes / kCycles, (double) immutableNanos / kCycles, (double) immutableBytes / kCycles,
+                sink));
+
+        // The counter itself may allocate a little, but not per cycle
+        assertTrue(mutableBytes < 1024, "mutable cycle allocated " + mutableBytes + " bytes");
+        assertPoseEquals(immutablePose, pose);
+    }
+}
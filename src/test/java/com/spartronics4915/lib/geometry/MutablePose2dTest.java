@@ -0,0 +1,45 @@
+package com.spartronics4915.lib.geometry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class MutablePose2dTest
+{
+
+    private static final double kTestEpsilon = 1E-9;
+
+    private static void assertPoseEquals(Pose2d expected, MutablePose2d actual)
+    {
+        assertEquals(expected.getTranslation().x(), actual.getX(), kTestEpsilon);
+        assertEquals(expected.getTranslation().y(), actual.getY(), kTestEpsilon);
+        assertEquals(expected.getRotation().cos(), actual.cos(), kTestEpsilon);
+        assertEquals(expected.getRotation().sin(), actual.sin(), kTestEpsilon);
+    }
+
+    @Test
+    void matchesPose2d()
+    {
+        final Pose2d a = new Pose2d(3.0, -2.0, Rotation2d.fromDegrees(30));
+        final Pose2d b = new Pose2d(-1.5, 4.0, Rotation2d.fromDegrees(-100));
+        final MutablePose2d m = new MutablePose2d();
+
+        assertPoseEquals(a.transformBy(b), m.setTransformBy(a, b));
+        assertPoseEquals(a.inverse().transformBy(b), m.setInverseTransformBy(a, b));
+        assertPoseEquals(a.inverse(), m.set(a).invert());
+        assertPoseEquals(a.transformBy(b).transformBy(a), m.setTransformBy(a, b).transformBy(a));
+
+        // Aliased arguments
+        final MutablePose2d ma = new MutablePose2d(a);
+        assertPoseEquals(a.transformBy(a), ma.setTransformBy(ma, ma));
+
+        for (Twist2d t : new Twist2d[] { new Twist2d(1.0, 0.0, 0.0), new Twist2d(2.0, 0.5, 0.3),
+                new Twist2d(-0.5, 0.0, 1E-12), new Twist2d(0.0, 0.0, -2.0) })
+        {
+            assertPoseEquals(Pose2d.exp(t), m.setExp(t));
+            assertPoseEquals(a.transformBy(Pose2d.exp(t)), m.set(a).transformByExp(t.dx, t.dy, t.dtheta));
+        }
+
+        assertPoseEquals(m.set(a).toPose2d(), m);
+    }
+}
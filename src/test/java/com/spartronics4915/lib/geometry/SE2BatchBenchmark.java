@@ -0,0 +1,91 @@
+package com.spartronics4915.lib.geometry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.spartronics4915.lib.lidar.icp.Point;
+import com.spartronics4915.lib.lidar.icp.Transform;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks SE2Batch against the object-per-point code it stands in for, then
+ * times both on a lidar-scan-sized cloud. There's no JMH in this build, so
+ * timings are printed rather than asserted, as in AutoModeTiming. The timing
+ * run is tagged so plain test runs skip it; run it with the benchmark task.
+ */
+public class SE2BatchBenchmark
+{
+
+    private static final double kTestEpsilon = 1E-9;
+    private static final int kPoints = 720;
+    private static final int kWarmupRounds = 20_000;
+    private static final int kRounds = 20_000;
+
+    private static double[] ramp(double start, double step)
+    {
+        double[] a = new double[kPoints];
+        for (int i = 0; i < kPoints; i++)
+            a[i] = start + step * i + Math.sin(i);
+        return a;
+    }
+
+    @Test
+    void matchesObjectPath()
+    {
+        final Pose2d pose = new Pose2d(12.0, -3.0, Rotation2d.fromDegrees(37));
+        final Transform transform = new Transform(pose);
+        final double[] xs = ramp(-50, 0.1), ys = ramp(20, -0.07);
+        final double[] outXs = new double[kPoints], outYs = new double[kPoints];
+
+        transform.apply(xs, ys, outXs, outYs, kPoints);
+        for (int i = 0; i < kPoints; i++)
+        {
+            Point p = transform.apply(new Point(xs[i], ys[i]));
+            assertEquals(p.x, outXs[i], kTestEpsilon);
+            assertEquals(p.y, outYs[i], kTestEpsilon);
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void timeAgainstObjectPath()
+    {
+        final Transform transform = new Transform(0.3, 4.0, -2.0);
+        final double[] xs = ramp(-50, 0.1), ys = ramp(20, -0.07);
+        final double[] outXs = new double[kPoints], outYs = new double[kPoints];
+        final Point[] points = new Point[kPoints];
+        for (int i = 0; i < kPoints; i++)
+            points[i] = new Point(xs[i], ys[i]);
+        final Point[] outPoints = new Point[kPoints];
+        double sink = 0;
+
+        for (int r = 0; r < kWarmupRounds; r++)
+        {
+            transform.apply(xs, ys, outXs, outYs, kPoints);
+            for (int i = 0; i < kPoints; i++)
+                outPoints[i] = transform.apply(points[i]);
+            sink += outXs[r % kPoints] + outPoints[r % kPoints].y;
+        }
+
+        long start = System.nanoTime();
+        for (int r = 0; r < kRounds; r++)
+        {
+            transform.apply(xs, ys, outXs, outYs, kPoints);
+            sink += outXs[r % kPoints];
+        }
+        final double batchNs = (double) (System.nanoTime() - start) / kRounds / kPoints;
+
+        start = System.nanoTime();
+        for (int r = 0; r < kRounds; r++)
+        {
+            for (int i = 0; i < kPoints; i++)
+                outPoints[i] = transform.apply(points[i]);
+            sink += outPoints[r % kPoints].x;
+        }
+        final double objectNs = (double) (System.nanoTime() - start) / kRounds / kPoints;
+
+        System.out.println(String.format("SE2BatchBenchmark: batch %.2f ns/point, object %.2f ns/point (%s)", batchNs,
+                objectNs, sink));
+    }
+}
@@ -81,4 +81,47 @@ public class ICPTest
         //assertEquals(0, tx1.ty, kTestEpsilon);
         //assertEquals(mapRot, tx1.theta, kTestEpsilon);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSegmentModelTransform()
+    {
+        Segment[] walls = Segment.makeInRectangle(new Point(0, 0), new Point(100, 50));
+        Segment[] moved = new Segment[walls.length];
+        Transform xform = new Transform(Math.toRadians(20), 5, -3);
+        for (int i = 0; i < walls.length; i++)
+            moved[i] = xform.apply(walls[i]);
+
+        SegmentReferenceModel model = new SegmentReferenceModel(walls.clone());
+        model.transformBy(xform);
+        SegmentReferenceModel expected = new SegmentReferenceModel(moved);
+
+        double[] out = new double[2];
+        for (Point p : new Point[] { new Point(10, 10), new Point(-20, 70), new Point(60, 25), new Point(120, -5) })
+        {
+            Point closest = expected.getClosestPoint(p);
+            model.getClosestPoint(p.x, p.y, out);
+            assertEquals(closest.x, out[0], kTestEpsilon);
+            assertEquals(closest.y, out[1], kTestEpsilon);
+        }
+    }
+
+    @Test
+    public void testSegmentModelRawLine()
+    {
+        // Ten inches long with t in [0, 1]; the model has to normalize it to
+        // compare its distance against the unit wall above it
+        Segment raw = new Segment(new Line(new Point(0, 0), new Point(10, 0)), 0, 1);
+        Segment wall = new Segment(new Point(0, 5), new Point(10, 5));
+        SegmentReferenceModel model = new SegmentReferenceModel(raw, wall);
+
+        double[] out = new double[2];
+        model.getClosestPoint(5, 1, out);
+        assertEquals(5, out[0], kTestEpsilon);
+        assertEquals(0, out[1], kTestEpsilon);
+
+        model.transformBy(new Transform(0, 0, 2));
+        model.getClosestPoint(5, 3, out);
+        assertEquals(5, out[0], kTestEpsilon);
+        assertEquals(2, out[1], kTestEpsilon);
+    }
+}
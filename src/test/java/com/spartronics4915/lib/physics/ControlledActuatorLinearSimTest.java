@@ -1,4 +1,4 @@
-package com.spartronics4915.util.test;
+package com.spartronics4915.lib.physics;
 
 import org.junit.jupiter.api.Test;
 
@@ -0,0 +1,80 @@
+package com.spartronics4915.lib.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class BinaryLogTest
+{
+
+    public static class Sample
+    {
+
+        public double velocity;
+        public int ticks;
+        public boolean onTarget;
+        public static int kIgnored = 7;
+    }
+
+    public static class Unflattened
+    {
+
+        public double velocity;
+        public String label = "not primitive";
+    }
+
+    @Test
+    public void testRoundTripToCSV() throws IOException
+    {
+        Path bin = Files.createTempFile("binarylog", ".bin");
+        Path csv = Files.createTempFile("binarylog", ".csv");
+        try
+        {
+            BinaryLogWriter<Sample> writer = new BinaryLogWriter<>(bin.toString(), Sample.class);
+            assertEquals(1 + 8 + 4 + 1, writer.getRecordBytes());
+
+            Sample sample = new Sample();
+            for (int i = 0; i < 3; i++)
+            {
+                sample.velocity = i * 1.5;
+                sample.ticks = -i;
+                sample.onTarget = i == 2;
+                writer.add(sample);
+            }
+            writer.close();
+            writer.add(sample); // Ignored after close
+
+            assertEquals(3, BinaryLogToCSV.convert(bin, csv));
+            List<String> lines = Files.readAllLines(csv);
+            assertEquals(4, lines.size());
+            assertEquals("velocity, ticks, onTarget", lines.get(0));
+            assertEquals("0.0, 0, false", lines.get(1));
+            assertEquals("3.0, -2, true", lines.get(3));
+        }
+        finally
+        {
+            Files.deleteIfExists(bin);
+            Files.deleteIfExists(csv);
+        }
+    }
+
+    @Test
+    public void testRejectsNonPrimitiveFields() throws IOException
+    {
+        Path bin = Files.createTempFile("binarylog", ".bin");
+        try
+        {
+            assertThrows(IllegalArgumentException.class,
+                    () -> new BinaryLogWriter<>(bin.toString(), Unflattened.class));
+        }
+        finally
+        {
+            Files.deleteIfExists(bin);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.spartronics4915.lib.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class ClockTest
+{
+
+    private static final double kTestEpsilon = 1E-9;
+
+    @Test
+    public void testStopwatchFollowsSimulatedClock()
+    {
+        final IClock previous = Clock.getSource();
+        final SimulatedClock clock = new SimulatedClock(100.0);
+        Clock.setSource(clock);
+        try
+        {
+            assertEquals(100.0, Clock.getTime(), kTestEpsilon);
+
+            Stopwatch watch = new Stopwatch();
+            assertEquals(0.0, watch.get(), kTestEpsilon);
+            clock.step(1.0);
+            assertEquals(0.0, watch.get(), kTestEpsilon); // Not started
+
+            watch.start();
+            clock.step(0.5);
+            assertEquals(0.5, watch.get(), kTestEpsilon);
+            watch.stop();
+            clock.step(2.0);
+            assertEquals(0.5, watch.get(), kTestEpsilon);
+
+            watch.reset();
+            watch.start();
+            clock.step(0.25);
+            assertFalse(watch.hasPeriodPassed(0.3));
+            clock.step(0.1);
+            assertTrue(watch.hasPeriodPassed(0.3));
+            assertEquals(0.05, watch.get(), kTestEpsilon);
+
+            TimeDelayedBoolean delayed = new TimeDelayedBoolean();
+            assertFalse(delayed.update(true, 1.0));
+            clock.step(0.9);
+            assertFalse(delayed.update(true, 1.0));
+            clock.step(0.2);
+            assertTrue(delayed.update(true, 1.0));
+
+            assertThrows(IllegalArgumentException.class, () -> clock.step(-0.1));
+        }
+        finally
+        {
+            Clock.setSource(previous);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.spartronics4915.lib.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class JVMStatsTest
+{
+
+    @Test
+    public void testCountsAllocation()
+    {
+        JVMStats.registerCurrentThread("JVMStatsTest");
+        JVMStats stats = new JVMStats();
+        stats.sample(); // First sample only sets the baseline for a new thread
+
+        long[][] garbage = new long[100][];
+        for (int i = 0; i < garbage.length; i++)
+            garbage[i] = new long[1000];
+        stats.sample();
+
+        assertTrue(stats.getThreadLabels().contains("JVMStatsTest"));
+        assertTrue(stats.getAllocatedBytes("JVMStatsTest") >= 100 * 1000 * 8);
+        assertTrue(stats.getGCCount() >= 0);
+        assertEquals(0, stats.getAllocatedBytes("nobody"));
+        assertTrue(garbage[99].length > 0);
+    }
+}
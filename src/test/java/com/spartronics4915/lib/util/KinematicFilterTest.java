@@ -0,0 +1,97 @@
+package com.spartronics4915.lib.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KinematicFilterTest
+{
+
+    private static final double kDt = 0.01;
+
+    @Test
+    public void testConstantAcceleration()
+    {
+        // An alpha-beta-gamma filter has no steady state error on a parabola
+        final double kAccel = 30.0, kInitialVel = -5.0;
+        KinematicFilter filter = KinematicFilter.fromSmoothingFactor(0.6);
+        double t = 0.0;
+        for (int i = 0; i < 500; i++)
+        {
+            t = i * kDt;
+            filter.update(t, kInitialVel * t + 0.5 * kAccel * t * t);
+        }
+        assertEquals(kInitialVel * t + 0.5 * kAccel * t * t, filter.getPosition(), 1e-6);
+        assertEquals(kInitialVel + kAccel * t, filter.getVelocity(), 1e-6);
+        assertEquals(kAccel, filter.getAcceleration(), 1e-6);
+    }
+
+    @Test
+    public void testIrregularTimesteps()
+    {
+        final double kVel = 12.0;
+        KinematicFilter filter = new KinematicFilter(0.5, 0.2, 0.0);
+        Random rand = new Random(4915);
+        double t = 0.0;
+        for (int i = 0; i < 1000; i++)
+        {
+            t += kDt * (0.5 + rand.nextDouble());
+            filter.update(t, kVel * t);
+        }
+        assertEquals(kVel, filter.getVelocity(), 1e-6);
+        assertEquals(0.0, filter.getAcceleration(), 1e-9);
+
+        // Stale samples are ignored
+        filter.update(t - 1.0, 0.0);
+        assertEquals(kVel, filter.getVelocity(), 1e-6);
+        assertEquals(t, filter.getLastTimestamp(), Util.kEpsilon);
+    }
+
+    @Test
+    public void testNoiseRejection()
+    {
+        final double kVel = 50.0, kNoise = 0.05;
+        KinematicFilter filter = KinematicFilter.fromSmoothingFactor(0.8);
+        Random rand = new Random(254);
+        double prevMeasurement = 0.0;
+        double filteredErrSq = 0.0, diffErrSq = 0.0;
+        for (int i = 0; i < 2000; i++)
+        {
+            double t = i * kDt;
+            double measurement = kVel * t + kNoise * rand.nextGaussian();
+            filter.update(t, measurement);
+            if (i > 200)
+            {
+                double diffVel = (measurement - prevMeasurement) / kDt;
+                filteredErrSq += (filter.getVelocity() - kVel) * (filter.getVelocity() - kVel);
+                diffErrSq += (diffVel - kVel) * (diffVel - kVel);
+            }
+            prevMeasurement = measurement;
+        }
+        assertTrue(filteredErrSq < diffErrSq / 10.0);
+    }
+
+    @Test
+    public void testReset()
+    {
+        KinematicFilter filter = KinematicFilter.fromSmoothingFactor(0.5);
+        assertFalse(filter.isInitialized());
+        filter.update(1.0, 3.0);
+        assertTrue(filter.isInitialized());
+        assertEquals(3.0, filter.getPosition(), Util.kEpsilon);
+        assertEquals(0.0, filter.getVelocity(), Util.kEpsilon);
+
+        filter.update(1.1, 4.0);
+        assertTrue(filter.getVelocity() > 0.0);
+
+        filter.reset(2.0, -1.0);
+        assertEquals(-1.0, filter.getPosition(), Util.kEpsilon);
+        assertEquals(0.0, filter.getVelocity(), Util.kEpsilon);
+        assertEquals(0.0, filter.getAcceleration(), Util.kEpsilon);
+
+        filter.reset();
+        assertFalse(filter.isInitialized());
+    }
+}
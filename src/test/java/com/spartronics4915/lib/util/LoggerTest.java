@@ -0,0 +1,193 @@
+package com.spartronics4915.lib.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+public class LoggerTest
+{
+
+    private static final String kUUID = "[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}";
+
+    private interface LogTest
+    {
+
+        void run(Path dir, Path log) throws IOException;
+    }
+
+    // Runs test with the Logger writing to a fresh directory
+    private static void withTempLog(LogTest test) throws IOException
+    {
+        final Path dir = Files.createTempDirectory("LoggerTest");
+        final int verbosity = Logger.sVerbosity;
+        Logger.setLogPath(dir.resolve("crash_tracking.txt"));
+        try
+        {
+            test.run(dir, dir.resolve("crash_tracking.txt"));
+        }
+        finally
+        {
+            Logger.sVerbosity = verbosity;
+            Logger.setLogPath(Paths.get(System.getProperty("user.home"), "crash_tracking.txt"));
+            for (String name : new String[] { "crash_tracking.txt", "crash_tracking.1.txt", "crash_tracking.2.txt",
+                    "crash_tracking.3.txt" })
+                Files.deleteIfExists(dir.resolve(name));
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void testLevelsInFile() throws IOException
+    {
+        withTempLog((dir, log) ->
+        {
+            Logger.sVerbosity = 2;
+            Logger.notice("a notice");
+            Logger.warning("a warning");
+            Logger.error("an error");
+            Logger.info("an info");
+            Logger.debug("a debug");
+            Logger.flush();
+
+            List<String> lines = Files.readAllLines(log, StandardCharsets.UTF_8);
+            assertEquals(3, lines.size(), lines.toString());
+            assertTrue(lines.get(0).matches(kUUID + ", NOTICE  a notice"), lines.get(0));
+            assertTrue(lines.get(1).matches(kUUID + ", WARNING a warning"), lines.get(1));
+            assertTrue(lines.get(2).matches(kUUID + ", ERROR   an error"), lines.get(2));
+            assertEquals(lines.get(0).substring(0, 36), lines.get(2).substring(0, 36), "one id per run");
+        });
+    }
+
+    @Test
+    public void testVerbosityOnConsole() throws IOException
+    {
+        withTempLog((dir, log) ->
+        {
+            final PrintStream out = System.out;
+            final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(captured, true));
+            try
+            {
+                Logger.setVerbosity("NOTICE");
+                Logger.info("quiet info");
+                Logger.notice("loud notice");
+                Logger.setVerbosity("INFO");
+                Logger.info("loud info");
+                Logger.debug("quiet debug");
+                Logger.setVerbosity("DEBUG");
+                Logger.debug("loud debug");
+            }
+            finally
+            {
+                System.setOut(out);
+            }
+
+            final String console = captured.toString();
+            assertFalse(console.contains("quiet"), console);
+            assertTrue(console.contains("NOTICE  loud notice"), console);
+            assertTrue(console.contains("INFO    loud info"), console);
+            assertTrue(console.contains("DEBUG    loud debug"), console);
+        });
+    }
+
+    @Test
+    public void testWriterThreadWritesQueuedLines() throws IOException
+    {
+        withTempLog((dir, log) ->
+        {
+            Logger.notice("queued one");
+            Logger.warning("queued two");
+            try
+            {
+                Logger.awaitWritten();
+            }
+            catch (InterruptedException e)
+            {
+                fail("interrupted");
+            }
+
+            // No flush: the writer thread put these out on its own
+            List<String> lines = Files.readAllLines(log, StandardCharsets.UTF_8);
+            assertEquals(2, lines.size(), lines.toString());
+            assertTrue(lines.get(0).endsWith("NOTICE  queued one"), lines.get(0));
+            assertTrue(lines.get(1).endsWith("WARNING queued two"), lines.get(1));
+        });
+    }
+
+    @Test
+    public void testCrashIsWrittenImmediately() throws IOException
+    {
+        withTempLog((dir, log) ->
+        {
+            Logger.notice("before the crash");
+            Logger.logThrowableCrash("while testing", new IllegalStateException("boom"));
+
+            // No flush: a crash writes out what's queued, then itself
+            final String text = new String(Files.readAllBytes(log), StandardCharsets.UTF_8);
+            assertTrue(text.indexOf("NOTICE  before the crash") >= 0, text);
+            assertTrue(text.indexOf("NOTICE  before the crash") < text.indexOf("ERROR while testing"), text);
+            assertTrue(text.contains("java.lang.IllegalStateException: boom"), text);
+            assertTrue(text.contains("testCrashIsWrittenImmediately"), text);
+        });
+    }
+
+    @Test
+    public void testOverflowIsCounted() throws IOException
+    {
+        withTempLog((dir, log) ->
+        {
+            final int n = 5000;
+            for (int i = 0; i < n; i++)
+                Logger.notice("line " + i);
+            Logger.flush();
+
+            // The writer thread may drain some of these as we go, so how many are
+            // dropped varies, but every line is either written or counted
+            int written = 0, dropped = 0;
+            final Pattern droppedLine = Pattern.compile(kUUID + ", WARNING Logger dropped (\\d+) entries");
+            for (String line : Files.readAllLines(log, StandardCharsets.UTF_8))
+            {
+                Matcher m = droppedLine.matcher(line);
+                if (m.matches())
+                    dropped += Integer.parseInt(m.group(1));
+                else if (line.contains("NOTICE  line "))
+                    written++;
+            }
+            assertEquals(n, written + dropped);
+            assertTrue(written >= 1024, "a full ring is always written: " + written);
+        });
+    }
+
+    @Test
+    public void testRotation() throws IOException
+    {
+        withTempLog((dir, log) ->
+        {
+            final StringBuilder filler = new StringBuilder();
+            for (int i = 0; i < 200; i++)
+                filler.append('x');
+            for (int i = 0; i < 6000; i++)
+            {
+                Logger.notice(filler.toString());
+                if (i % 500 == 0)
+                    Logger.flush(); // Keep the ring from overflowing
+            }
+            Logger.flush();
+
+            assertTrue(Files.exists(dir.resolve("crash_tracking.1.txt")));
+            assertTrue(Files.size(dir.resolve("crash_tracking.1.txt")) >= 1024 * 1024);
+            assertTrue(Files.size(log) < 1024 * 1024);
+        });
+    }
+}
@@ -0,0 +1,78 @@
+package com.spartronics4915.lib.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+
+public class LoopWatchdogTest
+{
+
+    private static final long kMillis = 1_000_000;
+
+    // The watchdog's own thread isn't started; we call sample() at fake times
+    @Test
+    public void testSamplesOverrun() throws InterruptedException
+    {
+        final long[] now = { 1000 * kMillis };
+        final LoopWatchdog watchdog = new LoopWatchdog("TestLoop", 0.005, 0.001, () -> now[0]);
+        assertEquals(-1, watchdog.sample());
+
+        // On time: the only check is at the deadline, which has nothing to do
+        watchdog.cycleStarted();
+        now[0] += kMillis;
+        assertEquals(4 * kMillis + 1, watchdog.sample());
+        watchdog.cycleFinished();
+        now[0] += 4 * kMillis + 1;
+        assertEquals(-1, watchdog.sample());
+        assertEquals(0, watchdog.getOverruns());
+
+        // A cycle that's stuck past its deadline on another thread
+        final CountDownLatch inCycle = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Thread loop = new Thread(() ->
+        {
+            watchdog.cycleStarted();
+            stuckInCycle(inCycle, release);
+            watchdog.cycleFinished();
+        });
+        loop.start();
+        inCycle.await();
+        // Both samples have to catch it parked in the same place
+        while (loop.getState() != Thread.State.WAITING)
+            Thread.yield();
+
+        now[0] += 6 * kMillis;
+        assertEquals(kMillis, watchdog.sample());
+        now[0] += kMillis;
+        assertEquals(kMillis, watchdog.sample());
+        assertEquals(0, watchdog.getOverruns(), "counted once it's over");
+
+        release.countDown();
+        loop.join();
+        now[0] += kMillis;
+        assertEquals(-1, watchdog.sample());
+        assertEquals(1, watchdog.getOverruns());
+
+        List<Map.Entry<String, Integer>> sites = watchdog.getSites();
+        assertFalse(sites.isEmpty());
+        assertEquals(2, (int) sites.get(0).getValue());
+        assertTrue(sites.get(0).getKey().contains("stuckInCycle"), sites.get(0).getKey());
+    }
+
+    private static void stuckInCycle(CountDownLatch inCycle, CountDownLatch release)
+    {
+        inCycle.countDown();
+        try
+        {
+            release.await();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
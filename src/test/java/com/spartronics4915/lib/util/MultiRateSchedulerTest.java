@@ -0,0 +1,72 @@
+package com.spartronics4915.lib.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class MultiRateSchedulerTest
+{
+
+    @Test
+    public void testPeriodToTicks()
+    {
+        assertEquals(1, MultiRateScheduler.periodToTicks(0.01, 0.01));
+        assertEquals(1, MultiRateScheduler.periodToTicks(0.001, 0.01));
+        assertEquals(2, MultiRateScheduler.periodToTicks(0.02, 0.01));
+        assertEquals(5, MultiRateScheduler.periodToTicks(0.05, 0.01));
+    }
+
+    @Test
+    public void testRunsAtPeriod()
+    {
+        MultiRateScheduler scheduler = new MultiRateScheduler();
+        int fast = scheduler.addTask(1, MultiRateScheduler.kAutoPhase);
+        int slow = scheduler.addTask(5, 3);
+        scheduler.assignPhases();
+
+        int fastRuns = 0, slowRuns = 0;
+        for (long tick = 0; tick < 100; tick++)
+        {
+            if (scheduler.isDue(fast, tick))
+                fastRuns++;
+            if (scheduler.isDue(slow, tick))
+            {
+                slowRuns++;
+                assertEquals(3, tick % 5);
+            }
+        }
+        assertEquals(100, fastRuns);
+        assertEquals(20, slowRuns);
+    }
+
+    @Test
+    public void testSpreadsSlowTasks()
+    {
+        MultiRateScheduler scheduler = new MultiRateScheduler();
+        for (int i = 0; i < 4; i++)
+            scheduler.addTask(4, MultiRateScheduler.kAutoPhase);
+        scheduler.addTask(2, MultiRateScheduler.kAutoPhase);
+        scheduler.addTask(2, MultiRateScheduler.kAutoPhase);
+        scheduler.assignPhases();
+
+        // 4 quarter-rate tasks and 2 half-rate tasks are 2 per tick when spread evenly
+        for (long tick = 0; tick < 8; tick++)
+        {
+            int due = 0;
+            for (int t = 0; t < scheduler.getNumTasks(); t++)
+            {
+                if (scheduler.isDue(t, tick))
+                    due++;
+            }
+            assertEquals(2, due);
+        }
+    }
+
+    @Test
+    public void testRejectsBadPhase()
+    {
+        MultiRateScheduler scheduler = new MultiRateScheduler();
+        assertThrows(IllegalArgumentException.class, () -> scheduler.addTask(2, 2));
+        assertThrows(IllegalArgumentException.class, () -> scheduler.addTask(0, MultiRateScheduler.kAutoPhase));
+    }
+}
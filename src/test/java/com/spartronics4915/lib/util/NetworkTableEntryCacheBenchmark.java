@@ -0,0 +1,77 @@
+package com.spartronics4915.lib.util;
+
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Rough per-call cost of the Subsystem dashboard helpers, before (key
+ * concatenation plus SmartDashboard lookup) and after (cached entry). Like
+ * AutoModeTiming, this prints numbers rather than asserting on them; timing
+ * on a shared build machine is too noisy to fail a build over. Tagged so
+ * plain test runs skip it; run it with the benchmark task.
+ */
+@Tag("benchmark")
+public class NetworkTableEntryCacheBenchmark
+{
+
+    private static final int kWarmupCalls = 50_000;
+    private static final int kCalls = 500_000;
+
+    private final String mName = "Benchmark";
+    private volatile double mSink; // Keeps the JIT from discarding the reads
+
+    @Test
+    void comparePerCallCost()
+    {
+        Assumptions.assumeTrue(networkTablesAvailable(), "NetworkTables native library not loaded");
+        final NetworkTableEntryCache cache = new NetworkTableEntryCache(mName + "/");
+
+        report("put, string key", this::putByKey);
+        report("put, cached entry", (i) -> cache.get("value").setDouble(i));
+        report("get, string key", (i) -> mSink = SmartDashboard.getNumber(mName + "/" + "value", 0.0));
+        report("get, cached entry", (i) -> mSink = cache.get("value").getDouble(0.0));
+
+        final NetworkTableEntry held = cache.get("value");
+        report("get, held entry", (i) -> mSink = held.getDouble(0.0));
+    }
+
+    // NetworkTables needs its native library, which not every desktop build has
+    private static boolean networkTablesAvailable()
+    {
+        try
+        {
+            return SmartDashboard.getEntry("Benchmark/probe") != null;
+        }
+        catch (LinkageError e)
+        {
+            return false;
+        }
+    }
+
+    private void putByKey(int i)
+    {
+        SmartDashboard.putNumber(mName + "/" + "value", i);
+    }
+
+    private interface Call
+    {
+        void run(int i);
+    }
+
+    private static void report(String label, Call call)
+    {
+        for (int i = 0; i < kWarmupCalls; i++)
+            call.run(i);
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < kCalls; i++)
+            call.run(i);
+        final double nanosPerCall = (System.nanoTime() - start) / (double) kCalls;
+
+        System.out.println(String.format("%-20s %8.1f ns/call", label, nanosPerCall));
+    }
+}
@@ -0,0 +1,36 @@
+package com.spartronics4915.lib.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class ProfilerTest
+{
+
+    @Test
+    public void testSpansRecord() throws InterruptedException
+    {
+        final int outer = Profiler.register("ProfilerTest/outer");
+        final int inner = Profiler.register("ProfilerTest/inner");
+        assertEquals(outer, Profiler.register("ProfilerTest/outer"));
+        assertNotEquals(outer, inner);
+
+        for (int i = 0; i < 3; i++)
+        {
+            try (Profiler.Span o = Profiler.span(outer))
+            {
+                try (Profiler.Span in = Profiler.span(inner))
+                {
+                    Thread.sleep(2);
+                }
+            }
+        }
+
+        assertEquals(3, Profiler.getTiming(outer).getCount());
+        assertEquals(3, Profiler.getTiming(inner).getCount());
+        assertTrue(Profiler.getLast(inner) >= 0.002);
+        assertTrue(Profiler.getLast(outer) >= Profiler.getLast(inner));
+        assertTrue(Profiler.getTiming(inner).getMin() <= Profiler.getTiming(inner).getMax());
+        assertEquals("ProfilerTest/inner", Profiler.getName(inner));
+    }
+}
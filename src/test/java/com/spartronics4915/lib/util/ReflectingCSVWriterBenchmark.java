@@ -0,0 +1,69 @@
+package com.spartronics4915.lib.util;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Rough per-row cost of ReflectingCSVWriter.add against the Field.get row
+ * builder it replaced, each including its queue. Like AutoModeTiming, this
+ * prints numbers rather than asserting on them; ReflectingCSVWriterTest
+ * checks the rows themselves. Tagged so plain test runs skip it; run it with
+ * the benchmark task.
+ */
+@Tag("benchmark")
+public class ReflectingCSVWriterBenchmark
+{
+
+    private static final int kWarmupRows = 300_000;
+    private static final int kRows = 500_000;
+
+    @Test
+    public void timeAgainstFieldGet() throws IOException, IllegalAccessException
+    {
+        Path csv = Files.createTempFile("csvwriter", ".csv");
+        try
+        {
+            ReflectingCSVWriter<ReflectingCSVWriterTest.Row> writer = new ReflectingCSVWriter<>(csv.toString(),
+                    ReflectingCSVWriterTest.Row.class);
+            ReflectingCSVWriterTest.Row row = new ReflectingCSVWriterTest.Row();
+            Field[] fields = ReflectingCSVWriterTest.Row.class.getFields();
+
+            // Draining as we go keeps either queue from filling up
+            ConcurrentLinkedDeque<String> fieldGetQueue = new ConcurrentLinkedDeque<>();
+            long start = 0;
+            for (int i = 0; i < kWarmupRows + kRows; i++)
+            {
+                if (i == kWarmupRows)
+                    start = System.nanoTime();
+                fieldGetQueue.add(ReflectingCSVWriterTest.fieldGetRow(fields, row));
+                if ((i & 1023) == 0)
+                    fieldGetQueue.clear();
+            }
+            final double fieldGetNanos = (System.nanoTime() - start) / (double) kRows;
+
+            for (int i = 0; i < kWarmupRows + kRows; i++)
+            {
+                if (i == kWarmupRows)
+                    start = System.nanoTime();
+                writer.add(row);
+                if ((i & 1023) == 0)
+                    writer.write();
+            }
+            final double handleNanos = (System.nanoTime() - start) / (double) kRows;
+            writer.flush();
+
+            System.out.println(String.format("ReflectingCSVWriter row: Field.get %.0f ns, MethodHandle %.0f ns",
+                    fieldGetNanos, handleNanos));
+        }
+        finally
+        {
+            Files.deleteIfExists(csv);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.spartronics4915.lib.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class ReflectingCSVWriterTest
+{
+
+    public static class Row
+    {
+
+        public double x = 1.25;
+        public double y = -3.5;
+        public int ticks = 42;
+        public long frame = 1234567890123L;
+        public short gear = 2;
+        public char mode = 'A';
+        public boolean onTarget = true;
+        public CSVWritable pose = () -> "0.0,1.0,90.0";
+        public String label = "path";
+        public static int kVersion = 3;
+    }
+
+    // What ReflectingCSVWriter.add did with Field.get before its getters were compiled
+    static String fieldGetRow(Field[] fields, Object value) throws IllegalAccessException
+    {
+        StringBuffer line = new StringBuffer();
+        for (Field field : fields)
+        {
+            if (line.length() != 0)
+                line.append(", ");
+            if (CSVWritable.class.isAssignableFrom(field.getType()))
+                line.append(((CSVWritable) field.get(value)).toCSV());
+            else
+                line.append(field.get(value).toString());
+        }
+        return line.toString();
+    }
+
+    @Test
+    public void testRowsMatchFieldGet() throws IOException, IllegalAccessException
+    {
+        Path csv = Files.createTempFile("csvwriter", ".csv");
+        try
+        {
+            ReflectingCSVWriter<Row> writer = new ReflectingCSVWriter<>(csv.toString(), Row.class);
+            Row row = new Row();
+            writer.add(row);
+            row.x = Double.NaN;
+            row.ticks = -1;
+            row.onTarget = false;
+            writer.add(row);
+            writer.flush();
+
+            Field[] fields = Row.class.getFields();
+            List<String> lines = Files.readAllLines(csv);
+            assertEquals(3, lines.size());
+            assertTrue(lines.get(0).contains("kVersion"), lines.get(0));
+            assertEquals(fieldGetRow(fields, new Row()), lines.get(1));
+            assertEquals(fieldGetRow(fields, row), lines.get(2));
+        }
+        finally
+        {
+            Files.deleteIfExists(csv);
+        }
+    }
+
+    @Test
+    public void testOverflowIsCounted() throws IOException
+    {
+        Path csv = Files.createTempFile("csvwriter", ".csv");
+        try
+        {
+            ReflectingCSVWriter<Row> writer = new ReflectingCSVWriter<>(csv.toString(), Row.class, 4);
+            for (int i = 0; i < 6; i++)
+                writer.add(new Row());
+            assertEquals(2, writer.getDroppedLines());
+            writer.flush();
+            assertEquals(0, writer.getDroppedLines());
+
+            // Header plus the rows that fit
+            assertEquals(5, Files.readAllLines(csv).size());
+        }
+        finally
+        {
+            Files.deleteIfExists(csv);
+        }
+    }
+
+    public static class Sample
+    {
+
+        public double velocity;
+        public int ticks;
+        public boolean onTarget;
+    }
+
+    @Test
+    public void testSameLayoutAsBinaryLog() throws IOException
+    {
+        Path direct = Files.createTempFile("csvwriter", ".csv");
+        Path bin = Files.createTempFile("csvwriter", ".bin");
+        Path converted = Files.createTempFile("csvwriter", ".csv");
+        try
+        {
+            ReflectingCSVWriter<Sample> csvWriter = new ReflectingCSVWriter<>(direct.toString(), Sample.class);
+            BinaryLogWriter<Sample> binWriter = new BinaryLogWriter<>(bin.toString(), Sample.class);
+            Sample sample = new Sample();
+            for (int i = 0; i < 3; i++)
+            {
+                sample.velocity = i * 0.1;
+                sample.ticks = i - 1;
+                sample.onTarget = i == 1;
+                csvWriter.add(sample);
+                binWriter.add(sample);
+            }
+            csvWriter.flush();
+            binWriter.close();
+
+            assertEquals(3, BinaryLogToCSV.convert(bin, converted));
+            assertEquals(Files.readAllLines(direct), Files.readAllLines(converted));
+        }
+        finally
+        {
+            Files.deleteIfExists(direct);
+            Files.deleteIfExists(bin);
+            Files.deleteIfExists(converted);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.spartronics4915.lib.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class StateMachineTest
+{
+
+    private static final double kTestEpsilon = 1E-9;
+    private static final double kDt = 0.01;
+
+    private enum State
+    {
+        IDLE, WAITING, DONE
+    }
+
+    @Test
+    public void testOnlyRunsWhenSomethingHappens()
+    {
+        final IClock previous = Clock.getSource();
+        final SimulatedClock clock = new SimulatedClock(10.0);
+        Clock.setSource(clock);
+        try
+        {
+            StateMachine<State> machine = new StateMachine<>("Test", State.IDLE);
+            machine.reset(State.IDLE, clock.getTime());
+
+            // Entry run, then nothing
+            assertTrue(machine.startRun(clock.getTime()));
+            assertTrue(machine.isStateChanged());
+            assertFalse(machine.endRun(State.IDLE));
+            for (int i = 0; i < 10; i++)
+                assertFalse(machine.startRun(clock.step(kDt)));
+
+            // A signal from between loops wakes the next one, and takes the blame
+            machine.signal("go");
+            assertTrue(machine.startRun(clock.step(kDt)));
+            assertEquals("go", machine.getCause());
+            assertTrue(machine.endRun(State.WAITING));
+            assertEquals(0.01, machine.getLastLatency(), kTestEpsilon);
+            assertEquals("go", machine.getLastCause());
+            assertEquals(State.WAITING, machine.getState());
+            assertEquals("Test WAITING", machine.getStateDescription());
+
+            // Entry run for WAITING sets a deadline
+            assertTrue(machine.startRun(clock.step(kDt)));
+            assertTrue(machine.isStateChanged());
+            assertFalse(machine.hasStateTimePassed(0.05, clock.getTime()));
+            assertFalse(machine.endRun(State.WAITING));
+            int runs = 0;
+            State newState = State.WAITING;
+            for (int i = 0; i < 10 && newState == State.WAITING; i++)
+            {
+                if (!machine.startRun(clock.step(kDt)))
+                    continue;
+                runs++;
+                assertEquals("timeout", machine.getCause());
+                if (machine.hasStateTimePassed(0.05, clock.getTime()))
+                    newState = State.DONE;
+                machine.endRun(newState);
+            }
+            assertEquals(State.DONE, machine.getState());
+            assertTrue(runs <= 2, "ran " + runs + " times waiting out the deadline");
+            assertEquals(2, machine.getLatency().getCount());
+
+            // Signals before a reset are forgotten
+            machine.signal("stale");
+            machine.reset(State.IDLE, clock.getTime());
+            assertTrue(machine.startRun(clock.step(kDt)));
+            assertEquals("Test IDLE", machine.getCause());
+            machine.endRun(State.IDLE);
+            assertFalse(machine.startRun(clock.step(kDt)));
+
+            // Polling states run every loop
+            machine.poll();
+            assertTrue(machine.startRun(clock.step(kDt)));
+            assertEquals("poll", machine.getCause());
+            machine.endRun(State.IDLE);
+            assertFalse(machine.startRun(clock.step(kDt)));
+        }
+        finally
+        {
+            Clock.setSource(previous);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.spartronics4915.lib.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class TelemetryBusTest
+{
+
+    // Records every publish as "key=value"
+    private static class RecordingSink implements TelemetryBus.Sink
+    {
+
+        final List<String> published = new ArrayList<>();
+
+        @Override
+        public void putNumber(String key, double value)
+        {
+            published.add(key + "=" + value);
+        }
+
+        @Override
+        public void putString(String key, String value)
+        {
+            published.add(key + "=" + value);
+        }
+
+        @Override
+        public void putBoolean(String key, boolean value)
+        {
+            published.add(key + "=" + value);
+        }
+    }
+
+    private interface BusTest
+    {
+        void run(SimulatedClock clock, TelemetryBus bus, RecordingSink sink);
+    }
+
+    private static void withBus(BusTest test)
+    {
+        final IClock previous = Clock.getSource();
+        final SimulatedClock clock = new SimulatedClock(5.0);
+        Clock.setSource(clock);
+        try
+        {
+            final RecordingSink sink = new RecordingSink();
+            test.run(clock, new TelemetryBus(sink), sink);
+        }
+        finally
+        {
+            Clock.setSource(previous);
+        }
+    }
+
+    @Test
+    public void testOnlyChangesArePublished()
+    {
+        withBus((clock, bus, sink) ->
+        {
+            final TelemetryBus.NumberSlot number = bus.number("a", 0.0);
+            final TelemetryBus.StringSlot string = bus.string("b", 0.0);
+            final TelemetryBus.BooleanSlot bool = bus.bool("c", 0.0);
+
+            // Every slot goes out once, so the dashboard has a value
+            bus.publish();
+            assertEquals(3, sink.published.size(), sink.published.toString());
+            sink.published.clear();
+
+            // Same values again, so nothing to publish
+            number.set(0.0);
+            string.set("");
+            bool.set(false);
+            clock.step(1.0);
+            bus.publish();
+            assertTrue(sink.published.isEmpty(), sink.published.toString());
+
+            number.set(2.5);
+            bool.set(true);
+            clock.step(1.0);
+            bus.publish();
+            assertEquals(2, sink.published.size(), sink.published.toString());
+            assertTrue(sink.published.contains("a=2.5"));
+            assertTrue(sink.published.contains("c=true"));
+            sink.published.clear();
+
+            // NaN compares unequal to itself, but shouldn't count as a change
+            number.set(Double.NaN);
+            bus.publish();
+            number.set(Double.NaN);
+            clock.step(1.0);
+            bus.publish();
+            assertEquals(1, sink.published.size(), sink.published.toString());
+        });
+    }
+
+    @Test
+    public void testRateLimit()
+    {
+        withBus((clock, bus, sink) ->
+        {
+            // Binary fractions, so the clock steps add up exactly
+            final double kMinPeriod = 0.125, kDt = 0.03125;
+            final TelemetryBus.NumberSlot slot = bus.number("fast", kMinPeriod);
+            bus.publish();
+            sink.published.clear();
+
+            // A new value every tick for 48 ticks, published every fourth
+            for (int i = 1; i <= 48; i++)
+            {
+                clock.step(kDt);
+                assertEquals(i % 4 == 0, slot.isDue(), "tick " + i);
+                slot.set(i);
+                bus.publish();
+            }
+            assertEquals(12, sink.published.size(), sink.published.toString());
+            assertEquals("fast=48.0", sink.published.get(11));
+
+            // The last value isn't lost, just delayed until the slot is due
+            slot.set(1000);
+            clock.step(kDt);
+            bus.publish();
+            assertFalse(sink.published.contains("fast=1000.0"));
+            clock.step(kMinPeriod);
+            assertTrue(slot.isDue());
+            bus.publish();
+            assertEquals("fast=1000.0", sink.published.get(sink.published.size() - 1));
+            assertFalse(slot.isDue());
+        });
+    }
+
+    @Test
+    public void testKeyTypesDontMix()
+    {
+        withBus((clock, bus, sink) ->
+        {
+            final TelemetryBus.NumberSlot slot = bus.number("x");
+            assertSame(slot, bus.number("x"));
+            assertThrows(IllegalArgumentException.class, () -> bus.string("x"));
+            assertEquals(1, bus.getNumSlots());
+        });
+    }
+}
@@ -0,0 +1,49 @@
+package com.spartronics4915.lib.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimingHistogramTest
+{
+
+    private static final double kBucket = 50e-6; // default resolution, seconds
+
+    @Test
+    public void testPercentiles()
+    {
+        TimingHistogram h = new TimingHistogram("test", 0.010);
+        assertEquals(0.0, h.getPercentile(0.5), Util.kEpsilon);
+
+        // 0.1 ms steps up to 10 ms
+        for (int i = 1; i <= 100; i++)
+            h.record(i * 100_000L);
+        assertEquals(100, h.getCount());
+        assertEquals(0.005, h.getPercentile(0.5), kBucket);
+        assertEquals(0.0099, h.getPercentile(0.99), kBucket);
+        assertEquals(0.010, h.getMax(), Util.kEpsilon);
+        assertEquals(0.00505, h.getMean(), 1e-9);
+        assertEquals(0, h.getOverruns()); // 10 ms exactly isn't an overrun
+
+        h.record(12_000_000L);
+        assertEquals(1, h.getOverruns());
+        assertEquals(0.012, h.getPercentile(1.0), kBucket);
+    }
+
+    @Test
+    public void testOutOfRange()
+    {
+        TimingHistogram h = new TimingHistogram("test", 0.010);
+        h.record(-5);
+        h.record(1_000_000_000L); // 1 s, way past the last bucket
+        assertEquals(2, h.getCount());
+        assertEquals(0.0, h.getPercentile(0.5), kBucket);
+        assertEquals(1.0, h.getPercentile(0.99), Util.kEpsilon);
+        assertEquals(1.0, h.getMax(), Util.kEpsilon);
+
+        h.reset();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getOverruns());
+        assertEquals(0.0, h.getMax(), Util.kEpsilon);
+    }
+}